@@ -1,5 +1,4 @@
 package Maze;
-import Maze.Maze.Path;
 import queue.Queue;
 
 /**
@@ -24,10 +23,30 @@ public class BFS_Solver extends MazeSolver
 		super(inputMaze);
 	} // DFS_Solver default constructor
 	
+	/**
+	 * Endpoint BFS_Solver Constructor: searches for the shortest
+	 * path between two given cells instead of from mazeStart to
+	 * mazeEnd
+	 * 
+	 * @param inputMaze		the Maze this Solver will attempt to
+	 * 						   solve
+	 * @param fromRow		the row of the first cell of the path
+	 * @param fromCol		the column of the first cell of the path
+	 * @param toRow			the row of the last cell of the path
+	 * @param toCol			the column of the last cell of the path
+	 * @throws IndexOutOfBoundsException	if either cell is outside
+	 * 						   the maze
+	 */
+	public BFS_Solver(Maze inputMaze, int fromRow, int fromCol, int toRow, int toCol) {
+		super(inputMaze, inputMaze.checkedCellAt(fromRow, fromCol),
+				inputMaze.checkedCellAt(toRow, toCol));
+	} // BFS_Solver endpoint constructor
+	
 ///// Instance Methods /////////////////////////////////////////////
 	/**
-	 * Utility method: solves the maze, producing a traversal tree
-	 *    and a shortest-path from start to end.
+	 * Utility method: expands the next cell of a breadth-first
+	 *    search, producing a traversal tree and, once the end cell
+	 *    is dequeued, a shortest-path from start to end.
 	 *    
 	 * NOTE: the book psuedocode marks all cells not visited 
 	 *    before anything else. SolutionCell objects are marked 
@@ -35,43 +54,63 @@ public class BFS_Solver extends MazeSolver
 	 *    unnecessary to re-initialize all the cells in this way. 
 	 */
 	@Override
-	public void solve() 
+	protected int step() 
 	{	
-		SolutionCell start = solution[maze.mazeStart.row][maze.mazeStart.col];
-		
-		Queue<SolutionCell> q = new Queue<SolutionCell>();
-		
-		start.visited = true;
-		start.searchOrdinal = 0;
-		q.enqueue(start);
-		SolutionCell sc;
+		if(over) return -1;
+		if(q == null)
+		{
+			SolutionCell start = solution[this.start.index];
+			q = new Queue<SolutionCell>();
+			start.visited = true;
+			start.searchOrdinal = 0;
+			q.enqueue(start);
+		}
 		
-		Path[] paths = Path.values();
-		while((sc = q.dequeue()) != null && sc.cell != maze.mazeEnd)
+		SolutionCell sc = q.dequeue();
+		if(sc == null || sc.cell == end)
 		{
-			for(int i = 0; i < paths.length; i++)
+			over = true;
+			q = null;
+			
+			// traverse the BFS tree from end to start using
+			// the .parent attribute of successive DFS_SolutionCells
+			// and mark each cell in the resulting simple path as
+			// a part of the shortest-path
+			SolutionCell curr = solution[end.index];
+			do
 			{
-				//TODO fix this
-				SolutionCell neighbor = sc.getUnvisitedNeighbor(paths[i]);
-				if(neighbor != null )
-				{
-					neighbor.visited = true;
-					neighbor.searchOrdinal = sc.searchOrdinal + 1;
-					neighbor.parent = sc;
-					q.enqueue(neighbor);
-				}
-			}
+				curr.inOptimalPath = true;
+				curr = curr.parent;
+			}while(curr != null);
+			return sc == null ? -1 : sc.cell.index;
 		}
 		
-		// traverse the BFS tree from mazeEnd to mazeStart using
-		// the .parent attribute of successive DFS_SolutionCells
-		// and mark each cell in the resulting simple path as
-		// a part of the shortest-path
-		SolutionCell curr = solution[maze.mazeEnd.row][maze.mazeEnd.col];
-		do
+		expanded();
+		for(int i = 0; i < DIRECTIONS.length; i++)
 		{
-			curr.inOptimalPath = true;
-			curr = curr.parent;
-		}while(curr != null);
-	} // solve()
+			//TODO fix this
+			SolutionCell neighbor = sc.getUnvisitedNeighbor(DIRECTIONS[i]);
+			if(neighbor != null )
+			{
+				neighbor.visited = true;
+				neighbor.searchOrdinal = sc.searchOrdinal + 1;
+				neighbor.parent = sc;
+				q.enqueue(neighbor);
+			}
+		}
+		return sc.cell.index;
+	} // step()
+	
+	/**
+	 * @return	the distance of the cell from start
+	 */
+	@Override
+	protected int depth(int index)
+	{
+		return solution[index].searchOrdinal;
+	} // depth()
+
+///// Instance Fields //////////////////////////////////////////////
+	private Queue<SolutionCell> q;	// the frontier, while searching
+	private boolean over;			// the search has ended
 }
@@ -0,0 +1,34 @@
+package Maze;
+
+/**
+ * Class CancellationToken lets a caller stop solves it has started
+ *    with SolverType.solveAsync(). One token may be shared by any
+ *    number of solves; cancel() stops them all.
+ *
+ * A solve polls its token every MazeSolver.CHECK_INTERVAL cells it
+ *    expands, so cancelling costs the solver a volatile read now and
+ *    then, and takes effect within that many expansions.
+ */
+public final class CancellationToken
+{
+///// Instance Methods /////////////////////////////////////////////
+	/**
+	 * Utility method: asks every solve using this token to stop. A
+	 *    token can't be reset.
+	 */
+	public void cancel()
+	{
+		cancelled = true;
+	} // cancel()
+
+	/**
+	 * @return	true once cancel() has been called
+	 */
+	public boolean isCancelled()
+	{
+		return cancelled;
+	} // isCancelled()
+
+///// Instance Fields //////////////////////////////////////////////
+	private volatile boolean cancelled;
+} // CancellationToken class
@@ -0,0 +1,53 @@
+package Maze;
+import Maze.Maze.Path;
+
+/**
+ * Interface describes a maze as a graph of cells, each named by a
+ *    long id, with up to four neighbors reached through the Path
+ *    directions. It is the cell-neighbor view shared by the packed
+ *    Maze grid (where the id is the storage index of the cell) and
+ *    by mazes with no fixed size, so searches written against it
+ *    run on either.
+ */
+public interface CellGraph
+{
+	/**
+	 * @param row	the row of a cell
+	 * @param col	the column of a cell
+	 * @return		the id of the cell at (row, col), or NONE if there
+	 * 					is no cell there
+	 */
+	long cellId(long row, long col);
+
+	/**
+	 * @param cell	the id of a cell
+	 * @return		the row of the cell
+	 */
+	long rowOf(long cell);
+
+	/**
+	 * @param cell	the id of a cell
+	 * @return		the column of the cell
+	 */
+	long colOf(long cell);
+
+	/**
+	 * @param cell		the id of a cell
+	 * @param direction	a direction out of the cell
+	 * @return			true if the path out of the cell in that
+	 * 						direction is open and leads to a neighbor
+	 */
+	boolean hasPath(long cell, Path direction);
+
+	/**
+	 * @param cell		the id of a cell
+	 * @param direction	a direction out of the cell
+	 * @return			the id of the neighboring cell in that
+	 * 						direction, whether or not a path leads to
+	 * 						it, or NONE if there is no neighbor
+	 */
+	long neighbor(long cell, Path direction);
+
+	/** the id returned where there is no cell */
+	long NONE = Long.MIN_VALUE;
+} // CellGraph interface
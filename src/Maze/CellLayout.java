@@ -0,0 +1,326 @@
+package Maze;
+
+/**
+ * Abstract Class CellLayout maps the (row, column) address of a cell
+ *    in a Maze onto a single index into the packed storage of the
+ *    maze (and of any per-cell solver state kept alongside it).
+ *
+ * The plain row-major layout stores each row contiguously, so a move
+ *    NORTH or SOUTH jumps a full row ahead or behind. The other two
+ *    layouts keep vertically-adjacent cells close together in memory:
+ * 			TILED  - the grid is cut into square tiles (64x64 by
+ * 						default), each tile stored row-major and
+ * 						the tiles themselves stored row-major
+ * 			MORTON - cells are stored along a Z-order curve, so
+ * 						any aligned power-of-two square of cells is
+ * 						contiguous
+ *
+ * The blocked layouts pad the grid out to whole tiles (or to a power
+ *    of two in each dimension), so capacity() may be larger than
+ *    rows*cols. Padding slots are never addressed by a valid
+ *    (row, column) pair.
+ */
+public abstract class CellLayout
+{
+///// Constructors /////////////////////////////////////////////////
+	/**
+	 * Default constructor: records the dimensions of the grid
+	 *
+	 * @param rows	the number of rows in the grid
+	 * @param cols	the number of columns in the grid
+	 */
+	protected CellLayout(int rows, int cols)
+	{
+		this.rows = rows;
+		this.cols = cols;
+	} // default CellLayout constructor
+
+///// Static Methods ///////////////////////////////////////////////
+	/**
+	 * Factory method: builds a layout of the requested type for a
+	 *    grid of the given size
+	 *
+	 * @param type	the storage order to use
+	 * @param rows	the number of rows in the grid
+	 * @param cols	the number of columns in the grid
+	 * @return		a layout bound to the given dimensions
+	 */
+	public static CellLayout of(Type type, int rows, int cols)
+	{
+		switch(type)
+		{
+		case TILED:
+			return new Tiled(rows, cols, DEFAULT_TILE_SHIFT);
+		case MORTON:
+			return new Morton(rows, cols);
+		case ROW_MAJOR:
+		default:
+			return new RowMajor(rows, cols);
+		}
+	} // of()
+
+///// Instance Methods /////////////////////////////////////////////
+	/**
+	 * @param row	a row index, 0 <= row < rows
+	 * @param col	a column index, 0 <= col < cols
+	 * @return		the storage index of the cell at (row, col)
+	 */
+	public abstract int index(int row, int col);
+
+	/**
+	 * @param index	a storage index returned by index()
+	 * @return		the row of the cell stored at that index
+	 */
+	public abstract int row(int index);
+
+	/**
+	 * @param index	a storage index returned by index()
+	 * @return		the column of the cell stored at that index
+	 */
+	public abstract int col(int index);
+
+	/**
+	 * @return	the number of storage slots needed, including any
+	 * 				padding slots
+	 */
+	public abstract int capacity();
+
+	/**
+	 * @return	the storage order implemented by this layout
+	 */
+	public abstract Type type();
+
+	/**
+	 * Utility method: returns the storage index of the cell offset
+	 *    from the given cell by (dRow, dCol). The caller is
+	 *    responsible for staying inside the grid.
+	 *
+	 * Subclasses override this where the step can be taken without
+	 *    decoding the row and column.
+	 *
+	 * @param index	the storage index of the starting cell
+	 * @param dRow	the row offset (-1, 0 or 1)
+	 * @param dCol	the column offset (-1, 0 or 1)
+	 * @return		the storage index of the offset cell
+	 */
+	public int step(int index, int dRow, int dCol)
+	{
+		return index(row(index) + dRow, col(index) + dCol);
+	} // step()
+
+	/**
+	 * @param index	a storage index in [0, capacity())
+	 * @return		true if the slot holds a cell of the grid, false
+	 * 					if it is padding
+	 */
+	public boolean isCell(int index)
+	{
+		return row(index) < rows && col(index) < cols;
+	} // isCell()
+
+///// Instance Fields //////////////////////////////////////////////
+	public final int rows;			// the number of rows in the grid
+	public final int cols;			// the number of columns in the grid
+
+	static final int DEFAULT_TILE_SHIFT = 6;	// 64x64 tiles
+
+///// Inner Classes ////////////////////////////////////////////////
+	/**
+	 * enum type lists the available storage orders
+	 */
+	public enum Type
+	{
+		ROW_MAJOR, TILED, MORTON
+	} // enum Type
+
+	/**
+	 * Class implements the plain row-major storage order
+	 */
+	private static final class RowMajor extends CellLayout
+	{
+		private RowMajor(int rows, int cols)
+		{
+			super(rows, cols);
+		} // RowMajor constructor
+
+		@Override
+		public int index(int row, int col)	{ return row * cols + col; }
+		@Override
+		public int row(int index)			{ return index / cols; }
+		@Override
+		public int col(int index)			{ return index % cols; }
+		@Override
+		public int capacity()				{ return rows * cols; }
+		@Override
+		public Type type()					{ return Type.ROW_MAJOR; }
+		@Override
+		public boolean isCell(int index)	{ return true; }
+
+		@Override
+		public int step(int index, int dRow, int dCol)
+		{
+			return index + dRow * cols + dCol;
+		} // step()
+	} // RowMajor class
+
+	/**
+	 * Class implements a blocked storage order: square tiles of
+	 *    2^shift cells on a side, row-major inside each tile, and
+	 *    tiles stored row-major across the grid
+	 */
+	private static final class Tiled extends CellLayout
+	{
+		private Tiled(int rows, int cols, int shift)
+		{
+			super(rows, cols);
+			this.shift = shift;
+			mask = (1 << shift) - 1;
+			tilesAcross = (cols + mask) >>> shift;
+			int tilesDown = (rows + mask) >>> shift;
+
+			long slots = ((long) tilesAcross * tilesDown) << (2 * shift);
+			if(slots > Integer.MAX_VALUE)
+				throw new IllegalArgumentException(
+						"maze too large for tiled layout: " + rows + "x" + cols);
+			capacity = (int) slots;
+		} // Tiled constructor
+
+		@Override
+		public int index(int row, int col)
+		{
+			int tile = (row >>> shift) * tilesAcross + (col >>> shift);
+			return (tile << (2 * shift)) | ((row & mask) << shift) | (col & mask);
+		} // index()
+
+		@Override
+		public int row(int index)
+		{
+			int tile = index >>> (2 * shift);
+			return ((tile / tilesAcross) << shift) | ((index >>> shift) & mask);
+		} // row()
+
+		@Override
+		public int col(int index)
+		{
+			int tile = index >>> (2 * shift);
+			return ((tile % tilesAcross) << shift) | (index & mask);
+		} // col()
+
+		@Override
+		public int capacity()	{ return capacity; }
+		@Override
+		public Type type()		{ return Type.TILED; }
+
+		@Override
+		public int step(int index, int dRow, int dCol)
+		{
+			// stay inside the tile whenever possible: that is just an
+			// offset of one cell or one tile row
+			int innerRow = ((index >>> shift) & mask) + dRow;
+			int innerCol = (index & mask) + dCol;
+			if(innerRow >= 0 && innerRow <= mask && innerCol >= 0 && innerCol <= mask)
+				return index + (dRow << shift) + dCol;
+
+			return super.step(index, dRow, dCol);
+		} // step()
+
+		private final int shift;		// log2 of the tile side
+		private final int mask;			// tile side - 1
+		private final int tilesAcross;	// tiles per row of tiles
+		private final int capacity;		// total slots, with padding
+	} // Tiled class
+
+	/**
+	 * Class implements a Z-order (Morton) storage order. The low bits
+	 *    of the row and column are interleaved; when the grid is not
+	 *    square the remaining high bits of the longer dimension sit
+	 *    above the interleaved bits.
+	 */
+	private static final class Morton extends CellLayout
+	{
+		private Morton(int rows, int cols)
+		{
+			super(rows, cols);
+			rowBits = bitsFor(rows);
+			colBits = bitsFor(cols);
+			lowBits = Math.min(rowBits, colBits);
+
+			if(rowBits + colBits > 30)
+				throw new IllegalArgumentException(
+						"maze too large for Morton layout: " + rows + "x" + cols);
+		} // Morton constructor
+
+		@Override
+		public int index(int row, int col)
+		{
+			int lowMask = (1 << lowBits) - 1;
+			int high = (row >>> lowBits) | (col >>> lowBits);
+			return (high << (2 * lowBits))
+					| (spread(row & lowMask) << 1) | spread(col & lowMask);
+		} // index()
+
+		@Override
+		public int row(int index)
+		{
+			int low = compact(index >>> 1) & ((1 << lowBits) - 1);
+			if(rowBits > colBits)
+				return ((index >>> (2 * lowBits)) << lowBits) | low;
+			return low;
+		} // row()
+
+		@Override
+		public int col(int index)
+		{
+			int low = compact(index) & ((1 << lowBits) - 1);
+			if(colBits > rowBits)
+				return ((index >>> (2 * lowBits)) << lowBits) | low;
+			return low;
+		} // col()
+
+		@Override
+		public int capacity()	{ return 1 << (rowBits + colBits); }
+		@Override
+		public Type type()		{ return Type.MORTON; }
+
+		/**
+		 * @param n	a dimension of the grid, n >= 1
+		 * @return	the number of bits needed to hold n - 1
+		 */
+		private static int bitsFor(int n)
+		{
+			return 32 - Integer.numberOfLeadingZeros(n - 1);
+		} // bitsFor()
+
+		/**
+		 * Utility method: spreads the low 16 bits of x out to the
+		 *    even bit positions
+		 */
+		private static int spread(int x)
+		{
+			x &= 0x0000ffff;
+			x = (x | (x << 8)) & 0x00ff00ff;
+			x = (x | (x << 4)) & 0x0f0f0f0f;
+			x = (x | (x << 2)) & 0x33333333;
+			x = (x | (x << 1)) & 0x55555555;
+			return x;
+		} // spread()
+
+		/**
+		 * Utility method: gathers the even bit positions of x into
+		 *    the low 16 bits (the inverse of spread())
+		 */
+		private static int compact(int x)
+		{
+			x &= 0x55555555;
+			x = (x | (x >>> 1)) & 0x33333333;
+			x = (x | (x >>> 2)) & 0x0f0f0f0f;
+			x = (x | (x >>> 4)) & 0x00ff00ff;
+			x = (x | (x >>> 8)) & 0x0000ffff;
+			return x;
+		} // compact()
+
+		private final int rowBits;		// bits needed for a row index
+		private final int colBits;		// bits needed for a column index
+		private final int lowBits;		// bits interleaved from each
+	} // Morton class
+} // CellLayout class
@@ -0,0 +1,279 @@
+package Maze;
+import Maze.Maze.Path;
+import cache.LruCache;
+
+import java.util.Random;
+
+/**
+ * Class ChunkedMaze implements a maze with no fixed size: it covers
+ *    every (row, col) with rows and columns in the int range, except
+ *    row Integer.MIN_VALUE, and is generated one square chunk at a
+ *    time, only when a search first looks at a cell in that chunk.
+ *
+ * Each chunk is a perfect maze of its own, carved by the same
+ *    randomized depth-first search as Maze.mazify(), from a Random
+ *    seeded by (seed, chunkX, chunkY) alone. Every border shared by
+ *    two chunks has exactly one opening, at a position hashed from
+ *    (seed, border), so both chunks agree on it whichever of them is
+ *    generated first. The whole plane is therefore connected, with
+ *    loops only at the scale of chunks.
+ *
+ * Generated chunks are kept in an LruCache bounded by their bytes;
+ *    an evicted chunk is regenerated, identically, if it is needed
+ *    again. The last chunk used is remembered, so walking inside one
+ *    chunk does not touch the cache. Safe for use from many threads.
+ *
+ * ChunkedMaze is a CellGraph whose cell ids pack the row into the high
+ *    32 bits and the column into the low 32 bits, so GraphSearch runs
+ *    on it exactly as on a Maze. Those ids use all 64 bits, so one
+ *    row has to go to make room for NONE: the id of cell
+ *    (Integer.MIN_VALUE, 0) would be NONE itself, and the whole of
+ *    that row is left out, as the maze's northern edge.
+ */
+public class ChunkedMaze implements CellGraph
+{
+///// Constructors /////////////////////////////////////////////////
+	/**
+	 * Default constructor
+	 *
+	 * @param seed			chooses the maze
+	 * @param chunkSide		the number of rows (and columns) in a
+	 * 							chunk, at least 2
+	 * @param cacheBytes	the bytes of generated chunks to keep
+	 */
+	public ChunkedMaze(long seed, int chunkSide, long cacheBytes)
+	{
+		if(chunkSide < 2)
+			throw new IllegalArgumentException("chunkSide < 2");
+		this.seed = seed;
+		this.side = chunkSide;
+		chunks = new LruCache<Long, byte[]>(cacheBytes, new LruCache.Weigher<byte[]>() {
+			public long weigh(byte[] chunk) { return chunk.length; }
+		});
+	} // default ChunkedMaze constructor
+
+///// Static Methods ///////////////////////////////////////////////
+	/**
+	 * Utility method: a 64-bit finalizer (Stafford's mix 13), used to
+	 *    turn (seed, coordinates) into well-spread seeds and hashes
+	 */
+	private static long mix(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	} // mix()
+
+///// Instance Methods /////////////////////////////////////////////
+	@Override
+	public long cellId(long row, long col)
+	{
+		if(row <= Integer.MIN_VALUE || row > Integer.MAX_VALUE
+				|| col < Integer.MIN_VALUE || col > Integer.MAX_VALUE)
+			return NONE;
+		return (row << 32) | (col & 0xffffffffL);
+	} // cellId()
+
+	@Override
+	public long rowOf(long cell)
+	{
+		return cell >> 32;
+	} // rowOf()
+
+	@Override
+	public long colOf(long cell)
+	{
+		return (int) cell;
+	} // colOf()
+
+	@Override
+	public boolean hasPath(long cell, Path direction)
+	{
+		long row = rowOf(cell);
+		long col = colOf(cell);
+		if(neighbor(cell, direction) == NONE) return false;
+
+		byte[] chunk = chunk(Math.floorDiv(row, side), Math.floorDiv(col, side));
+		int local = Math.floorMod(row, side) * side + Math.floorMod(col, side);
+		return (chunk[local] & bit(direction)) != 0;
+	} // hasPath()
+
+	@Override
+	public long neighbor(long cell, Path direction)
+	{
+		long row = rowOf(cell);
+		long col = colOf(cell);
+		switch(direction)
+		{
+		case NORTH:	return cellId(row - 1, col);
+		case EAST:	return cellId(row, col + 1);
+		case SOUTH:	return cellId(row + 1, col);
+		case WEST:	return cellId(row, col - 1);
+		default:	return NONE;
+		}
+	} // neighbor()
+
+	/**
+	 * @return	the counters of the chunk cache
+	 */
+	public String cacheStats()
+	{
+		return chunks.toString();
+	} // cacheStats()
+
+	/**
+	 * Utility method: returns the open-path bits of every cell of a
+	 *    chunk, generating the chunk if it is not cached
+	 *
+	 * @param chunkY	the chunk row, floor(row / side)
+	 * @param chunkX	the chunk column, floor(col / side)
+	 * @return			side * side bytes, row-major; the low four bits
+	 * 						of each are the open paths, as in Maze.grid
+	 */
+	private byte[] chunk(final long chunkY, final long chunkX)
+	{
+		long key = (chunkY << 32) | (chunkX & 0xffffffffL);
+		Chunk last = lastChunk;
+		if(last != null && last.key == key)
+			return last.bits;
+
+		byte[] bits = chunks.get(key, new LruCache.Loader<Long, byte[]>() {
+			public byte[] load(Long k) { return generate(chunkY, chunkX); }
+		});
+		lastChunk = new Chunk(key, bits);
+		return bits;
+	} // chunk()
+
+	/**
+	 * Utility method: carves one chunk, then opens the door on each of
+	 *    its four borders
+	 */
+	private byte[] generate(long chunkY, long chunkX)
+	{
+		byte[] bits = new byte[side * side];
+		Random random = new Random(mix(mix(seed ^ chunkY) ^ chunkX));
+
+		// randomized depth-first search, as in Maze.mazify()
+		int[] stack = new int[side * side];
+		int top = 0;
+		boolean[] visited = new boolean[side * side];
+		int current = 0;
+		visited[0] = true;
+		int visitedCells = 1;
+		Path[] spinner = Path.values();
+		while(visitedCells < bits.length)
+		{
+			shuffle(spinner, random);
+			int next = -1;
+			Path direction = null;
+			for(int i = 0; i < spinner.length && next < 0; i++)
+			{
+				direction = spinner[i];
+				int candidate = localNeighbor(current, direction);
+				if(candidate >= 0 && !visited[candidate])
+					next = candidate;
+			}
+
+			if(next >= 0)
+			{
+				bits[current] |= bit(direction);
+				bits[next] |= bit(opposite(direction));
+				stack[top++] = current;
+				visited[next] = true;
+				visitedCells++;
+				current = next;
+			}
+			else
+			{
+				current = stack[--top];
+			}
+		}
+
+		// the door in each border is chosen by the border, not the chunk
+		int last = side - 1;
+		bits[door(chunkY, chunkX, 0)] |= bit(Path.NORTH);
+		bits[last * side + door(chunkY + 1, chunkX, 0)] |= bit(Path.SOUTH);
+		bits[door(chunkY, chunkX, 1) * side] |= bit(Path.WEST);
+		bits[door(chunkY, chunkX + 1, 1) * side + last] |= bit(Path.EAST);
+		return bits;
+	} // generate()
+
+	/**
+	 * Utility method: places the door in a border between chunks
+	 *
+	 * @param chunkY	the chunk south of (or east of) the border
+	 * @param chunkX	the chunk south of (or east of) the border
+	 * @param vertical	0 for the border along the north side of the
+	 * 						chunk, 1 for the border along its west side
+	 * @return			the column (or row) of the door, in the chunk
+	 */
+	private int door(long chunkY, long chunkX, int vertical)
+	{
+		long h = mix(mix(mix(seed + 0x9e3779b97f4a7c15L * (vertical + 1)) ^ chunkY) ^ chunkX);
+		return (int) Math.floorMod(h, (long) side);
+	} // door()
+
+	/**
+	 * @return	the local index of the neighbor inside the chunk, or -1
+	 */
+	private int localNeighbor(int local, Path direction)
+	{
+		int row = local / side;
+		int col = local % side;
+		switch(direction)
+		{
+		case NORTH:	return row > 0 ? local - side : -1;
+		case EAST:	return col < side - 1 ? local + 1 : -1;
+		case SOUTH:	return row < side - 1 ? local + side : -1;
+		case WEST:	return col > 0 ? local - 1 : -1;
+		default:	return -1;
+		}
+	} // localNeighbor()
+
+	private static void shuffle(Path[] spinner, Random random)
+	{
+		for(int i = spinner.length - 1; i > 0; i--)
+		{
+			int index = random.nextInt(i + 1);
+			Path a = spinner[index];
+			spinner[index] = spinner[i];
+			spinner[i] = a;
+		}
+	} // shuffle()
+
+	/**
+	 * @return	the pathState bit of a direction (1 << ordinal, the
+	 * 				same bits as Maze.Path values)
+	 */
+	private static int bit(Path direction)
+	{
+		return 1 << direction.ordinal();
+	} // bit()
+
+	private static Path opposite(Path direction)
+	{
+		return Path.values()[(direction.ordinal() + 2) & 3];
+	} // opposite()
+
+///// Instance Fields //////////////////////////////////////////////
+	public final long seed;			// chooses the maze
+	public final int side;			// rows (and columns) per chunk
+	private final LruCache<Long, byte[]> chunks;
+	private volatile Chunk lastChunk;	// the chunk used most recently
+
+///// Inner Classes ////////////////////////////////////////////////
+	/**
+	 * Class pairs a chunk with its key, so that both are read together
+	 */
+	private static final class Chunk
+	{
+		private Chunk(long key, byte[] bits)
+		{
+			this.key = key;
+			this.bits = bits;
+		} // Chunk constructor
+
+		final long key;
+		final byte[] bits;
+	} // Chunk class
+} // ChunkedMaze class
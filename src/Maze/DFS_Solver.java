@@ -1,11 +1,18 @@
 package Maze;
-import Maze.Maze.Path;
+
+import java.util.Arrays;
 
 /**
  * DFS_Solver inherits from the general MazeSolver class. It
- *    implements the required solve() method using a depth-first
+ *    implements the required step() method using a depth-first
  *    search, along with supporting methods.
  *
+ * The search keeps its own stack of the cells on the current branch,
+ *    each with the next direction to try from it, rather than
+ *    recursing, so it can stop after any cell and resume on the next
+ *    call, and the depth of the maze is not limited by the depth of
+ *    the thread's stack.
+ *
  */
 public class DFS_Solver extends MazeSolver
 {
@@ -23,10 +30,31 @@ public class DFS_Solver extends MazeSolver
 		super(inputMaze);
 	} // DFS_Solver default constructor
 	
+	/**
+	 * Endpoint DFS_Solver Constructor: searches for a path between
+	 * two given cells instead of from mazeStart to mazeEnd
+	 * 
+	 * @param inputMaze		the Maze this Solver will attempt to
+	 * 						   solve
+	 * @param fromRow		the row of the first cell of the path
+	 * @param fromCol		the column of the first cell of the path
+	 * @param toRow			the row of the last cell of the path
+	 * @param toCol			the column of the last cell of the path
+	 * @throws IndexOutOfBoundsException	if either cell is outside
+	 * 						   the maze
+	 */
+	public DFS_Solver(Maze inputMaze, int fromRow, int fromCol, int toRow, int toCol) {
+		super(inputMaze, inputMaze.checkedCellAt(fromRow, fromCol),
+				inputMaze.checkedCellAt(toRow, toCol));
+	} // DFS_Solver endpoint constructor
+	
 ///// Instance Methods /////////////////////////////////////////////
 	/**
-	 * Utility method: solves the maze, producing a traversal tree
-	 *    and a shortest-path from start to end.
+	 * Utility method: expands the next cell of a depth-first
+	 *    search, producing a traversal tree and a path from start to
+	 *    end. The search starts at the start cell; if it ends without
+	 *    reaching the end cell, it goes on from each cell not yet
+	 *    visited, in row-major order.
 	 *    
 	 * NOTE: the book psuedocode sets the color of all cells
 	 *    to white before anything else. SolutionCell objects
@@ -35,74 +63,125 @@ public class DFS_Solver extends MazeSolver
 	 *    re-initialize all the cells in this way. 
 	 */
 	@Override
-	public void solve() 
+	protected int step() 
 	{
-		for(int row = 0; row < maze.rowCount; row++)
+		while(!solved && !over)
 		{
-			for(int col = 0; col < maze.colCount; col++)
+			if(size == 0)
+			{
+				SolutionCell root = nextRoot();
+				if(root == null) break;
+				return enter(root).cell.index;
+			}
+			
+			// resume the cell on top of the stack at the direction
+			// after the one last taken from it
+			SolutionCell sc = stack[size - 1];
+			while(next[size - 1] < DIRECTIONS.length)
 			{
-				SolutionCell sc = (SolutionCell) solution[row][col];
-				
-				// recursively solve the maze using depth-first search
-				DFS_Visit(sc);
+				// sc.getUnvisitedNeighbor() returns null if the
+				// neighbor in the indicated direction does not exist,
+				// or has been visited before
+				SolutionCell neighbor = sc.getUnvisitedNeighbor(DIRECTIONS[next[size - 1]++]);
+				if(neighbor != null)
+				{
+					neighbor.parent = sc;	// add it to the DFS tree
+					return enter(neighbor).cell.index;
+				}
 			}
-		} 
+			stack[--size] = null;	// every direction tried: backtrack
+		}
 		
-		// traverse the DFS tree from mazeEnd to mazeStart using
-		// the .parent attribute of successive DFS_SolutionCells
-		// and mark each cell in the resulting simple path as
-		// a part of the shortest-path
-		SolutionCell curr = 
-				(SolutionCell) solution[maze.mazeEnd.row][maze.mazeEnd.col];
-		do
+		if(!over)
 		{
-			curr.inOptimalPath = true;
-			curr = (SolutionCell) curr.parent;
-		}while(curr != null);
-	} // solve()
+			over = true;
+			stack = null;
+			next = null;
+			
+			// traverse the DFS tree from end to start using
+			// the .parent attribute of successive DFS_SolutionCells
+			// and mark each cell in the resulting simple path as
+			// a part of the shortest-path
+			SolutionCell curr = solution[end.index];
+			do
+			{
+				curr.inOptimalPath = true;
+				curr = curr.parent;
+			}while(curr != null);
+		}
+		return -1;
+	} // step()
+	
+	/**
+	 * @return	the length of the branch from the root of the search
+	 * 				to the cell
+	 */
+	@Override
+	protected int depth(int index)
+	{
+		return depth;
+	} // depth()
 	
 	/**
-	 * Method recursively performs the depth-first search
-	 *    maze solution
+	 * Utility method: visits a cell and, unless it is the end cell,
+	 *    pushes it to be expanded
 	 *    
-	 * @param sc	the solution-array cell currently being
-	 * 					processed
+	 * @param sc	the cell; its parent is already set
+	 * @return		sc
 	 */
-	private void DFS_Visit(SolutionCell sc)
+	private SolutionCell enter(SolutionCell sc)
 	{
-		if (solved) return; // base case:end cell has been found. 
-							// No need to keep looking.
-		
-		if (sc.cell == maze.mazeEnd)    // this cell is the end cell
+		sc.searchOrdinal = time++;	// set its traversal order
+		sc.visited = true;
+		if (sc.cell == end)    // this cell is the end cell
 		{								
 			sc.inOptimalPath = true;	// put it in the optimal path
-			sc.searchOrdinal = time++;  // set its traversal order
-			sc.visited = true;	// set the last cell visited 
-								// (so the last cell will print correctly)
 			solved = true;              // mark the maze solved
-			return;
+			depth = size;
+			return sc;
 		}
 		
 		// if we get this far, we haven't yet found the end
-		sc.searchOrdinal = time++;
-		sc.visited = true;
-		
-		// get the list of all directions in which we might find a
-		// neighbor suitable for processing
-		Path[] paths = Path.values();
-		
-		for(int i = 0; i < paths.length; i++)
+		expanded();
+		if(size == stack.length)
 		{
-			// sc.getWhiteNeighbor() returns null if the neighbor
-			// in the indicated direction does not exist, or has
-			// been visited before
-			SolutionCell neighbor = sc.getUnvisitedNeighbor(paths[i]);
-			if(neighbor != null)
-			{
-				// if we get here, neighbor has not been visited
-				neighbor.parent = sc;	// add it to the DFS tree
-				DFS_Visit(neighbor);	// recursive call
-			}
+			stack = Arrays.copyOf(stack, size * 2);
+			next = Arrays.copyOf(next, size * 2);
 		}
-	}
+		stack[size] = sc;
+		next[size] = 0;
+		depth = size++;
+		return sc;
+	} // enter()
+	
+	/**
+	 * Utility method: the cell the next tree of the search grows
+	 *    from: first the start cell, then any cell the earlier trees
+	 *    did not reach
+	 *    
+	 * @return	the cell, or null if every cell has been visited
+	 */
+	private SolutionCell nextRoot()
+	{
+		if(!started)
+		{
+			started = true;
+			return solution[start.index];
+		}
+		for(; scan < maze.rowCount * maze.colCount; scan++)
+		{
+			SolutionCell sc = solutionAt(scan / maze.colCount, scan % maze.colCount);
+			if(!sc.visited) return sc;
+		}
+		return null;
+	} // nextRoot()
+	
+///// Instance Fields //////////////////////////////////////////////
+	private SolutionCell[] stack = new SolutionCell[64];	// the current branch
+	private byte[] next = new byte[64];	// the next direction to try, by stack slot
+	private int size;					// cells on the stack
+	private int depth;					// of the cell last returned by step()
+	private int scan;					// the next row-major cell nextRoot() checks
+	private boolean started;			// the start cell has been taken up
+	private boolean over;				// the search has ended
 }
@@ -0,0 +1,46 @@
+package Maze;
+
+/**
+ * Class Expansion is one step of a search, as produced lazily by
+ *    MazeSolver.steps() and MazeSolver.stream(): the cell the solver
+ *    took up, the cell it was reached from, and how deep in the
+ *    search it is. For BFS and LPA* the depth is the distance from
+ *    the start; for DFS it is the depth in the search tree, i.e. the
+ *    length of the current branch.
+ */
+public final class Expansion
+{
+///// Constructors /////////////////////////////////////////////////
+	Expansion(int row, int col, int parentRow, int parentCol, int depth)
+	{
+		this.row = row;
+		this.col = col;
+		this.parentRow = parentRow;
+		this.parentCol = parentCol;
+		this.depth = depth;
+	} // Expansion constructor
+
+///// Instance Methods /////////////////////////////////////////////
+	/**
+	 * @return	false for a cell a search started from
+	 */
+	public boolean hasParent()
+	{
+		return parentRow >= 0;
+	} // hasParent()
+
+	@Override
+	public String toString()
+	{
+		return "(" + row + ", " + col + ")"
+				+ (hasParent() ? " from (" + parentRow + ", " + parentCol + ")" : "")
+				+ " depth " + depth;
+	} // toString()
+
+///// Instance Fields //////////////////////////////////////////////
+	public final int row;
+	public final int col;
+	public final int parentRow;		// -1 if there is no parent
+	public final int parentCol;		// -1 if there is no parent
+	public final int depth;			// -1 if unreachable (LPA* only)
+} // Expansion class
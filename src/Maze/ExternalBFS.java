@@ -0,0 +1,348 @@
+package Maze;
+import Maze.Maze.Path;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class ExternalBFS implements breadth-first search over a MazeFile
+ *    with all of its per-cell state on disk rather than on the heap,
+ *    for mazes too large for BFS_Solver. The heap holds only a few
+ *    megabytes of buffers, whatever the size of the maze.
+ *
+ * The search keeps, in a work directory:
+ * 			visited.bits	- 1 bit per cell, memory-mapped
+ * 			parents.bits	- 2 bits per cell, memory-mapped: the move
+ * 							  into the cell when it was first reached
+ * 			frontier.q		- the part of the queue that does not fit
+ * 							  in its two in-memory blocks, written and
+ * 							  read back in 1MB sequential blocks
+ * 			moves.bits		- the path, 2 bits per move, rebuilt from
+ * 							  parents.bits back to front
+ *    The queue spills to one file, reused whenever it drains, rather
+ *    than to a file per level: a maze with a long shortest path has
+ *    as many levels as the path has cells, and most levels are small.
+ *
+ * Usage:
+ * 			try(MazeFile maze = MazeFile.open(file);
+ * 					ExternalBFS bfs = new ExternalBFS(maze, workDir))
+ * 			{
+ * 				long cells = bfs.solve(fromRow, fromCol, toRow, toCol);
+ * 				...
+ * 			}
+ */
+public class ExternalBFS implements Closeable
+{
+///// Constructors /////////////////////////////////////////////////
+	/**
+	 * Default constructor
+	 *
+	 * @param maze		the maze to search
+	 * @param workDir	the directory for the work files, which needs
+	 * 						room for 3 bits per cell of the maze
+	 */
+	public ExternalBFS(MazeFile maze, java.nio.file.Path workDir)
+	{
+		this(maze, workDir, SpillQueue.BLOCK, MappedRegion.SHIFT);
+	} // default ExternalBFS constructor
+
+	/**
+	 * Test constructor: as the default constructor, but with queue
+	 *    blocks of queueBlock longs and work files mapped in segments
+	 *    of 2^segmentShift bytes, so a small maze exercises the spill
+	 *    file and the segment boundaries
+	 */
+	ExternalBFS(MazeFile maze, java.nio.file.Path workDir, int queueBlock, int segmentShift)
+	{
+		this.maze = maze;
+		this.workDir = workDir;
+		this.queueBlock = queueBlock;
+		this.segmentShift = segmentShift;
+	} // test ExternalBFS constructor
+
+///// Instance Methods /////////////////////////////////////////////
+	/**
+	 * Utility method: finds a shortest path between two cells and
+	 *    stores it for path() and movesFile()
+	 *
+	 * @param fromRow	the row of the first cell of the path
+	 * @param fromCol	the column of the first cell of the path
+	 * @param toRow		the row of the last cell of the path
+	 * @param toCol		the column of the last cell of the path
+	 * @return			the number of cells on the path, or 0 if the
+	 * 						last cell cannot be reached
+	 * @throws IndexOutOfBoundsException	if either cell is outside
+	 * 						the maze
+	 * @throws IOException	if a work file cannot be written
+	 */
+	public long solve(long fromRow, long fromCol, long toRow, long toCol) throws IOException
+	{
+		long from = maze.cellId(fromRow, fromCol);
+		long to = maze.cellId(toRow, toCol);
+		if(from == CellGraph.NONE || to == CellGraph.NONE)
+			throw new IndexOutOfBoundsException("no cell at (" + fromRow + ", " + fromCol
+					+ ") or (" + toRow + ", " + toCol + ")");
+		close();
+		startRow = fromRow;
+		startCol = fromCol;
+		expanded = 0;
+		moveCount = -1;
+
+		Files.createDirectories(workDir);
+		long cells = maze.cellCount();
+		visited = MappedRegion.create(workDir.resolve("visited.bits"), (cells + 7) >>> 3,
+				segmentShift);
+		parents = MappedRegion.create(workDir.resolve("parents.bits"), (cells + 3) >>> 2,
+				segmentShift);
+
+		Path[] paths = Path.values();
+		long level = 0;			// the distance of the cells being expanded
+		long levelLeft = 1;		// cells of that level still queued
+		long nextLevel = 0;		// cells queued for the level after it
+		boolean found = from == to;
+		setVisited(from);
+		try(SpillQueue queue = new SpillQueue(workDir.resolve("frontier.q"), queueBlock))
+		{
+			queue.add(from);
+			while(!found && !queue.isEmpty())
+			{
+				long cell = queue.poll();
+				expanded++;
+				for(int i = 0; i < paths.length && !found; i++)
+				{
+					if(!maze.hasPath(cell, paths[i])) continue;
+					long next = maze.neighbor(cell, paths[i]);
+					if(isVisited(next)) continue;
+
+					setVisited(next);
+					setParent(next, paths[i].ordinal());
+					found = next == to;
+					queue.add(next);
+					nextLevel++;
+				}
+				if(!found && --levelLeft == 0)
+				{
+					level++;
+					levelLeft = nextLevel;
+					nextLevel = 0;
+				}
+			}
+		}
+		if(!found) return 0;
+
+		// the end was reached from a cell of the current level
+		moveCount = from == to ? 0 : level + 1;
+		markPath(to, paths);
+		return moveCount + 1;
+	} // solve()
+
+	/**
+	 * @return	the path found by the last solve(), or null if there was
+	 * 				none
+	 * @throws ArithmeticException	if the path has more moves, or its
+	 * 				cells more rows or columns, than an int can count;
+	 * 				read movesFile() instead
+	 */
+	public MazePath path()
+	{
+		if(moveCount < 0) return null;
+		MazePath.Builder builder = new MazePath.Builder(
+				Math.toIntExact(startRow), Math.toIntExact(startCol));
+		Path[] paths = Path.values();
+		for(int i = 0; i < Math.toIntExact(moveCount); i++)
+			builder.add(paths[(moves.get(i >>> 2) >>> ((i & 3) * 2)) & 3]);
+		return builder.build();
+	} // path()
+
+	/**
+	 * @return	the file holding the moves of the last path found, 4 per
+	 * 				byte from the low bits up, each a Path ordinal, as
+	 * 				in MazePath's packed encoding; null if there was none
+	 */
+	public java.nio.file.Path movesFile()
+	{
+		return moveCount < 0 ? null : workDir.resolve("moves.bits");
+	} // movesFile()
+
+	/**
+	 * @return	the number of cells expanded by the last solve()
+	 */
+	public long expanded()
+	{
+		return expanded;
+	} // expanded()
+
+	/**
+	 * Utility method: closes and deletes the work files. The path of
+	 *    the last solve() is no longer available afterwards.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		MappedRegion[] regions = {visited, parents, moves};
+		String[] names = {"visited.bits", "parents.bits", "moves.bits"};
+		for(int i = 0; i < regions.length; i++)
+		{
+			if(regions[i] == null) continue;
+			regions[i].close();
+			Files.deleteIfExists(workDir.resolve(names[i]));
+		}
+		visited = parents = moves = null;
+		moveCount = -1;
+	} // close()
+
+	/**
+	 * Utility method: walks back from the end cell through the parent
+	 *    moves, writing each into moves.bits from the back
+	 */
+	private void markPath(long to, Path[] paths) throws IOException
+	{
+		moves = MappedRegion.create(workDir.resolve("moves.bits"),
+				Math.max(1, (moveCount + 3) >>> 2), segmentShift);
+		long cell = to;
+		for(long i = moveCount - 1; i >= 0; i--)
+		{
+			int move = parent(cell);
+			long at = i >>> 2;
+			moves.put(at, (byte) (moves.get(at) | (move << ((i & 3) * 2))));
+			cell = maze.neighbor(cell, paths[(move + 2) & 3]);	// step back
+		}
+	} // markPath()
+
+	private boolean isVisited(long cell)
+	{
+		return (visited.get(cell >>> 3) & (1 << (cell & 7))) != 0;
+	} // isVisited()
+
+	private void setVisited(long cell)
+	{
+		long at = cell >>> 3;
+		visited.put(at, (byte) (visited.get(at) | (1 << (cell & 7))));
+	} // setVisited()
+
+	private int parent(long cell)
+	{
+		return (parents.get(cell >>> 2) >>> ((cell & 3) * 2)) & 3;
+	} // parent()
+
+	private void setParent(long cell, int move)
+	{
+		long at = cell >>> 2;
+		parents.put(at, (byte) (parents.get(at) | (move << ((cell & 3) * 2))));
+	} // setParent()
+
+///// Instance Fields //////////////////////////////////////////////
+	private final MazeFile maze;
+	private final java.nio.file.Path workDir;
+	private final int queueBlock;		// longs per SpillQueue block
+	private final int segmentShift;		// log2 of the MappedRegion segments
+	private MappedRegion visited;		// 1 bit per cell
+	private MappedRegion parents;		// 2 bits per cell
+	private MappedRegion moves;			// 2 bits per move of the path
+	private long startRow;				// the first cell of the path
+	private long startCol;
+	private long moveCount = -1;		// moves on the path, -1 if none
+	private long expanded;				// cells expanded by last solve()
+
+///// Inner Classes ////////////////////////////////////////////////
+	/**
+	 * Class implements a FIFO queue of longs that keeps its head and
+	 *    tail blocks in memory and everything between them in a file.
+	 *    A full tail block is appended to the file; an empty head block
+	 *    is refilled from the front of the file, or takes over the
+	 *    tail block once the file is drained, at which point the file
+	 *    is reused from its start.
+	 */
+	static final class SpillQueue implements Closeable
+	{
+		SpillQueue(java.nio.file.Path file, int block) throws IOException
+		{
+			this.file = file;
+			this.block = block;
+			head = new long[block];
+			tail = new long[block];
+			channel = FileChannel.open(file, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.READ, StandardOpenOption.WRITE);
+			io = ByteBuffer.allocateDirect(block * 8);
+			ioLongs = io.asLongBuffer();
+		} // SpillQueue constructor
+
+		void add(long value) throws IOException
+		{
+			if(tailEnd == block)
+			{
+				ioLongs.clear();
+				ioLongs.put(tail, 0, block);
+				io.clear();
+				while(io.hasRemaining())
+					writeAt += channel.write(io, writeAt);
+				tailEnd = 0;
+			}
+			tail[tailEnd++] = value;
+		} // add()
+
+		/**
+		 * @return	the value at the head of the queue, which must not
+		 * 				be empty
+		 */
+		long poll() throws IOException
+		{
+			if(headAt == headEnd)
+			{
+				if(readAt < writeAt)
+				{
+					io.clear();
+					while(io.hasRemaining())
+						readAt += channel.read(io, readAt);
+					ioLongs.clear();
+					ioLongs.get(head, 0, block);
+					headEnd = block;
+					if(readAt == writeAt) readAt = writeAt = 0;	// drained
+				}
+				else
+				{
+					long[] swap = head;
+					head = tail;
+					tail = swap;
+					headEnd = tailEnd;
+					tailEnd = 0;
+				}
+				headAt = 0;
+			}
+			return head[headAt++];
+		} // poll()
+
+		boolean isEmpty()
+		{
+			return headAt == headEnd && readAt == writeAt && tailEnd == 0;
+		} // isEmpty()
+
+		@Override
+		public void close() throws IOException
+		{
+			channel.close();
+			Files.deleteIfExists(file);
+		} // close()
+
+		private final java.nio.file.Path file;
+		private final FileChannel channel;
+		private final ByteBuffer io;			// one block, for file I/O
+		private final LongBuffer ioLongs;		// the same block, as longs
+		private final int block;				// longs in each block
+		private long[] head;
+		private int headAt;						// next value of head
+		private int headEnd;					// values in head
+		private long[] tail;
+		private int tailEnd;					// values in tail
+		private long readAt;					// file offsets
+		private long writeAt;
+
+		static final int BLOCK = 1 << 17;	// longs: 1MB
+	} // SpillQueue class
+} // ExternalBFS class
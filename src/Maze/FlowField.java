@@ -0,0 +1,506 @@
+package Maze;
+import Maze.Maze.Path;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Class FlowField routes any number of agents to their nearest target
+ *    cell at once. One breadth-first search, started from every target
+ *    together, gives each cell of the maze:
+ * 			distance	- the number of moves to the nearest target, in
+ * 						  an int per cell
+ * 			flow		- the first of those moves, 2 bits per cell (a
+ * 						  Path ordinal), 4 cells per byte
+ *    after which any agent's next move, or its whole path, is a lookup
+ *    instead of a search. Both arrays are indexed by storage index,
+ *    like the maze's grid. Where two moves are equally short the flow
+ *    takes the first in Path order, so the field depends only on the
+ *    maze and the targets.
+ *
+ * Targets are added and removed between builds. build() recomputes the
+ *    whole field; refresh() repairs it for the targets changed since,
+ *    touching only the cells whose distance changes:
+ * 			- a new target lowers distances around it, spreading out
+ * 			  until it meets cells already as close to another target
+ * 			- a removed target invalidates the cells whose flow led to
+ * 			  it, which are then refilled from the cells around them
+ *    Walls changed in the maze need a build().
+ *
+ * Lookups may be made from many threads once a build or refresh has
+ *    returned; changing targets, build() and refresh() may not overlap
+ *    lookups or each other.
+ */
+public class FlowField
+{
+///// Constructors /////////////////////////////////////////////////
+	/**
+	 * Default constructor: a field with no targets, in which nothing
+	 *    is reachable until targets are added and built
+	 *
+	 * @param maze	the maze to route through
+	 */
+	public FlowField(Maze maze)
+	{
+		this.maze = maze;
+		int slots = maze.layout.capacity();
+		distance = new int[slots];
+		flow = new byte[(slots + 3) >>> 2];
+		Arrays.fill(distance, UNREACHED);
+	} // default FlowField constructor
+
+///// Instance Methods /////////////////////////////////////////////
+	/**
+	 * Utility method: makes a cell a target from the next build() or
+	 *    refresh()
+	 *
+	 * @throws IndexOutOfBoundsException	if (row, col) is outside the
+	 * 						maze
+	 */
+	public void addTarget(int row, int col)
+	{
+		int index = maze.checkedCellAt(row, col).index;
+		removing.clear(index);
+		if(!targets.get(index)) adding.set(index);
+	} // addTarget()
+
+	/**
+	 * Utility method: stops a cell being a target from the next
+	 *    build() or refresh()
+	 *
+	 * @throws IndexOutOfBoundsException	if (row, col) is outside the
+	 * 						maze
+	 */
+	public void removeTarget(int row, int col)
+	{
+		int index = maze.checkedCellAt(row, col).index;
+		adding.clear(index);
+		if(targets.get(index)) removing.set(index);
+	} // removeTarget()
+
+	/**
+	 * Utility method: recomputes the whole field on the calling thread
+	 */
+	public void build()
+	{
+		try
+		{
+			build(1);
+		}
+		catch(InterruptedException e)
+		{
+			throw new IllegalStateException(e);	// no pool with one thread
+		}
+	} // build()
+
+	/**
+	 * Utility method: recomputes the whole field. The search runs level
+	 *    by level; a level with a large frontier is split among the
+	 *    threads, each claiming new cells with a compare-and-set on
+	 *    their distance, and the flow is then filled in, in parallel
+	 *    over ranges of cells. In a perfect maze most frontiers are
+	 *    small, and those levels are expanded on the calling thread.
+	 *
+	 * @param threads	the number of threads to use
+	 * @throws InterruptedException	if the caller is interrupted
+	 */
+	public void build(int threads) throws InterruptedException
+	{
+		targets.or(adding);
+		targets.andNot(removing);
+		adding.clear();
+		removing.clear();
+
+		Arrays.fill(distance, UNREACHED);
+		Cells frontier = new Cells();
+		for(int t = targets.nextSetBit(0); t >= 0; t = targets.nextSetBit(t + 1))
+		{
+			distance[t] = 0;
+			frontier.add(t);
+		}
+
+		ExecutorService pool = threads > 1
+				? ThreadPools.newCpuPool("maze-flow", threads) : null;
+		try
+		{
+			for(int level = 1; frontier.size > 0; level++)
+			{
+				if(pool == null || frontier.size < PARALLEL_FRONTIER)
+				{
+					Cells next = new Cells();
+					expand(frontier, 0, frontier.size, level, next, false);
+					frontier = next;
+				}
+				else
+					frontier = expandParallel(pool, threads, frontier, level);
+			}
+			fillFlow(pool, threads);
+		}
+		finally
+		{
+			if(pool != null) pool.shutdownNow();
+		}
+	} // build()
+
+	/**
+	 * Utility method: applies the targets added and removed since the
+	 *    last build() or refresh(), repairing only the cells affected
+	 *
+	 * @return	the number of cells whose distance was recomputed
+	 */
+	public int refresh()
+	{
+		Path[] paths = Path.values();
+		Cells changed = new Cells();		// each cell once
+		BitSet touched = new BitSet();		// the cells in changed
+
+		// invalidate the cells whose flow leads to a removed target
+		Cells stack = new Cells();
+		for(int t = removing.nextSetBit(0); t >= 0; t = removing.nextSetBit(t + 1))
+		{
+			targets.clear(t);
+			distance[t] = UNREACHED;
+			stack.add(t);
+		}
+		while(stack.size > 0)
+		{
+			int u = stack.cells[--stack.size];
+			touched.set(u);
+			changed.add(u);
+			for(int i = 0; i < paths.length; i++)
+			{
+				if(!maze.isOpen(u, paths[i])) continue;
+				int v = maze.neighborIndex(u, paths[i]);
+				int d = distance[v];
+				if(d != 0 && d != UNREACHED && flowTarget(v) == u)
+				{
+					distance[v] = UNREACHED;
+					stack.add(v);
+				}
+			}
+		}
+
+		// refill from the new targets and from the valid cells around
+		// the invalidated ones, nearest first
+		Cells seeds = new Cells();
+		for(int t = adding.nextSetBit(0); t >= 0; t = adding.nextSetBit(t + 1))
+		{
+			targets.set(t);
+			if(distance[t] != 0 && !touched.get(t))
+			{
+				touched.set(t);
+				changed.add(t);
+			}
+			distance[t] = 0;
+			seeds.add(t);
+		}
+		int invalidated = changed.size;
+		for(int k = 0; k < invalidated; k++)
+		{
+			int u = changed.cells[k];
+			for(int i = 0; i < paths.length; i++)
+			{
+				if(!maze.isOpen(u, paths[i])) continue;
+				int v = maze.neighborIndex(u, paths[i]);
+				if(distance[v] != UNREACHED) seeds.add(v);
+			}
+		}
+		adding.clear();
+		removing.clear();
+
+		long[] order = new long[seeds.size];
+		for(int k = 0; k < seeds.size; k++)
+			order[k] = ((long) distance[seeds.cells[k]] << 32) | seeds.cells[k];
+		Arrays.sort(order);
+
+		// breadth-first search with its starting cells at several
+		// distances: always expand the nearer of the next seed and the
+		// head of the queue
+		Cells queue = new Cells();
+		int head = 0;
+		int nextSeed = 0;
+		while(nextSeed < order.length || head < queue.size)
+		{
+			int u;
+			if(head == queue.size || (nextSeed < order.length
+					&& (int) (order[nextSeed] >>> 32) <= distance[queue.cells[head]]))
+				u = (int) order[nextSeed++];
+			else
+				u = queue.cells[head++];
+
+			int through = distance[u] + 1;
+			for(int i = 0; i < paths.length; i++)
+			{
+				if(!maze.isOpen(u, paths[i])) continue;
+				int v = maze.neighborIndex(u, paths[i]);
+				if(distance[v] > through)
+				{
+					if(!touched.get(v))
+					{
+						touched.set(v);
+						changed.add(v);
+					}
+					distance[v] = through;
+					queue.add(v);
+				}
+			}
+		}
+
+		// a cell's flow depends on its own distance and its neighbors'
+		for(int k = 0; k < changed.size; k++)
+		{
+			int u = changed.cells[k];
+			setFlow(u, bestMove(u, paths));
+			for(int i = 0; i < paths.length; i++)
+			{
+				if(maze.isOpen(u, paths[i]))
+				{
+					int v = maze.neighborIndex(u, paths[i]);
+					setFlow(v, bestMove(v, paths));
+				}
+			}
+		}
+		return changed.size;
+	} // refresh()
+
+	/**
+	 * @return	the number of moves from (row, col) to the nearest
+	 * 				target, or -1 if no target can be reached
+	 * @throws IndexOutOfBoundsException	if (row, col) is outside the
+	 * 						maze
+	 */
+	public int distance(int row, int col)
+	{
+		int d = distance[maze.checkedCellAt(row, col).index];
+		return d == UNREACHED ? -1 : d;
+	} // distance()
+
+	/**
+	 * @return	the first move from (row, col) toward the nearest
+	 * 				target, or null on a target or if none can be
+	 * 				reached
+	 * @throws IndexOutOfBoundsException	if (row, col) is outside the
+	 * 						maze
+	 */
+	public Path next(int row, int col)
+	{
+		int index = maze.checkedCellAt(row, col).index;
+		int d = distance[index];
+		if(d == 0 || d == UNREACHED) return null;
+		return DIRECTIONS[flowOf(index)];
+	} // next()
+
+	/**
+	 * @return	the path from (row, col) to the nearest target, or null
+	 * 				if none can be reached
+	 * @throws IndexOutOfBoundsException	if (row, col) is outside the
+	 * 						maze
+	 */
+	public MazePath pathFrom(int row, int col)
+	{
+		int index = maze.checkedCellAt(row, col).index;
+		if(distance[index] == UNREACHED) return null;
+
+		MazePath.Builder builder = new MazePath.Builder(row, col);
+		while(distance[index] > 0)
+		{
+			int move = flowOf(index);
+			builder.add(DIRECTIONS[move]);
+			index = maze.neighborIndex(index, DIRECTIONS[move]);
+		}
+		return builder.build();
+	} // pathFrom()
+
+	/**
+	 * Utility method: expands cells [from, to) of a frontier, giving
+	 *    their unreached neighbors the next distance
+	 *
+	 * @param atomic	claim cells with compare-and-set, when other
+	 * 						threads expand the same level
+	 */
+	private void expand(Cells frontier, int from, int to, int level, Cells next,
+			boolean atomic)
+	{
+		Path[] paths = DIRECTIONS;
+		for(int k = from; k < to; k++)
+		{
+			int u = frontier.cells[k];
+			for(int i = 0; i < paths.length; i++)
+			{
+				if(!maze.isOpen(u, paths[i])) continue;
+				int v = maze.neighborIndex(u, paths[i]);
+				if(distance[v] != UNREACHED) continue;
+				if(atomic)
+				{
+					if(!DISTANCE.compareAndSet(distance, v, UNREACHED, level)) continue;
+				}
+				else
+					distance[v] = level;
+				next.add(v);
+			}
+		}
+	} // expand()
+
+	/**
+	 * Utility method: expands one level of the frontier in slices, one
+	 *    per task, and concatenates what they reach
+	 */
+	private Cells expandParallel(ExecutorService pool, int threads, final Cells frontier,
+			final int level) throws InterruptedException
+	{
+		List<Callable<Cells>> tasks = new ArrayList<Callable<Cells>>(threads);
+		for(int s = 0; s < threads; s++)
+		{
+			final int from = (int) ((long) frontier.size * s / threads);
+			final int to = (int) ((long) frontier.size * (s + 1) / threads);
+			tasks.add(new Callable<Cells>() {
+				public Cells call()
+				{
+					Cells next = new Cells();
+					expand(frontier, from, to, level, next, true);
+					return next;
+				}
+			});
+		}
+
+		Cells next = new Cells();
+		for(Future<Cells> f : pool.invokeAll(tasks))
+			next.addAll(result(f));
+		return next;
+	} // expandParallel()
+
+	/**
+	 * Utility method: fills in the flow of every cell, in parallel over
+	 *    ranges of cells that start on byte boundaries of the flow array
+	 */
+	private void fillFlow(ExecutorService pool, int threads) throws InterruptedException
+	{
+		if(pool == null)
+		{
+			fillFlow(0, distance.length);
+			return;
+		}
+
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(threads);
+		int bytes = flow.length;
+		for(int s = 0; s < threads; s++)
+		{
+			final int from = (int) ((long) bytes * s / threads) * 4;
+			final int to = Math.min(distance.length, (int) ((long) bytes * (s + 1) / threads) * 4);
+			tasks.add(new Callable<Void>() {
+				public Void call()
+				{
+					fillFlow(from, to);
+					return null;
+				}
+			});
+		}
+		for(Future<Void> f : pool.invokeAll(tasks))
+			result(f);
+	} // fillFlow()
+
+	private void fillFlow(int from, int to)
+	{
+		Path[] paths = DIRECTIONS;
+		for(int u = from; u < to; u++)
+			setFlow(u, bestMove(u, paths));
+	} // fillFlow()
+
+	/**
+	 * @return	the first move, in Path order, from a cell to a neighbor
+	 * 				one closer to a target; 0 if there is none
+	 */
+	private int bestMove(int u, Path[] paths)
+	{
+		int d = distance[u];
+		if(d == 0 || d == UNREACHED) return 0;
+		for(int i = 0; i < paths.length; i++)
+		{
+			if(maze.isOpen(u, paths[i])
+					&& distance[maze.neighborIndex(u, paths[i])] == d - 1)
+				return i;
+		}
+		return 0;
+	} // bestMove()
+
+	/**
+	 * @return	the cell the flow of u leads to
+	 */
+	private int flowTarget(int u)
+	{
+		return maze.neighborIndex(u, DIRECTIONS[flowOf(u)]);
+	} // flowTarget()
+
+	private int flowOf(int u)
+	{
+		return (flow[u >>> 2] >>> ((u & 3) * 2)) & 3;
+	} // flowOf()
+
+	private void setFlow(int u, int move)
+	{
+		int shift = (u & 3) * 2;
+		flow[u >>> 2] = (byte) ((flow[u >>> 2] & ~(3 << shift)) | (move << shift));
+	} // setFlow()
+
+	/**
+	 * @return	the result of a finished task, rethrowing its failure
+	 */
+	private static <T> T result(Future<T> f) throws InterruptedException
+	{
+		try
+		{
+			return f.get();
+		}
+		catch(ExecutionException e)
+		{
+			if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			if(e.getCause() instanceof Error) throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	} // result()
+
+///// Instance Fields //////////////////////////////////////////////
+	private final Maze maze;
+	private final int[] distance;		// moves to the nearest target
+	private final byte[] flow;			// 2 bits per cell: the first move
+	private final BitSet targets = new BitSet();	// as of the last build
+	private final BitSet adding = new BitSet();		// since then
+	private final BitSet removing = new BitSet();
+
+	private static final int UNREACHED = Integer.MAX_VALUE;
+	private static final int PARALLEL_FRONTIER = 4096;	// cells
+	private static final Path[] DIRECTIONS = Path.values();	// by ordinal
+	private static final VarHandle DISTANCE = MethodHandles.arrayElementVarHandle(int[].class);
+
+///// Inner Classes ////////////////////////////////////////////////
+	/**
+	 * Class is a growable list of storage indexes
+	 */
+	private static final class Cells
+	{
+		void add(int cell)
+		{
+			if(size == cells.length) cells = Arrays.copyOf(cells, size * 2);
+			cells[size++] = cell;
+		} // add()
+
+		void addAll(Cells other)
+		{
+			if(size + other.size > cells.length)
+				cells = Arrays.copyOf(cells, Math.max(size * 2, size + other.size));
+			System.arraycopy(other.cells, 0, cells, size, other.size);
+			size += other.size;
+		} // addAll()
+
+		int[] cells = new int[64];
+		int size;
+	} // Cells class
+} // FlowField class
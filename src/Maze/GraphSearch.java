@@ -0,0 +1,171 @@
+package Maze;
+import Maze.Maze.Path;
+
+import java.util.Arrays;
+
+/**
+ * Class GraphSearch implements breadth-first search over any
+ *    CellGraph, keeping its state in a hash table of the cells it has
+ *    reached rather than in an array over the whole maze. Its memory
+ *    therefore grows with the area searched, not with the size of the
+ *    maze, which makes it the search to use on a ChunkedMaze (or on a
+ *    small region of a very large Maze).
+ */
+public final class GraphSearch
+{
+	private GraphSearch() {}	// static methods only
+
+///// Static Methods ///////////////////////////////////////////////
+	/**
+	 * Utility method: finds a shortest path between two cells
+	 *
+	 * @param graph		the maze to search
+	 * @param fromRow	the row of the first cell of the path
+	 * @param fromCol	the column of the first cell of the path
+	 * @param toRow		the row of the last cell of the path
+	 * @param toCol		the column of the last cell of the path
+	 * @param maxCells	give up after reaching this many cells
+	 * @return			the path, or null if it was not found within
+	 * 						maxCells cells
+	 * @throws IndexOutOfBoundsException	if either end is not a cell
+	 * 						of the graph
+	 */
+	public static MazePath shortestPath(CellGraph graph, long fromRow, long fromCol,
+			long toRow, long toCol, long maxCells)
+	{
+		long from = graph.cellId(fromRow, fromCol);
+		long to = graph.cellId(toRow, toCol);
+		if(from == CellGraph.NONE || to == CellGraph.NONE)
+			throw new IndexOutOfBoundsException("no cell at (" + fromRow + ", " + fromCol
+					+ ") or (" + toRow + ", " + toCol + ")");
+
+		// for each cell reached, the direction of the move into it
+		CellMap cameBy = new CellMap();
+		cameBy.put(from, (byte) START);
+		long[] queue = new long[256];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = from;
+
+		Path[] paths = Path.values();
+		boolean found = from == to;
+		while(!found && head < tail)
+		{
+			long cell = queue[head++];
+			for(int i = 0; i < paths.length && !found; i++)
+			{
+				if(!graph.hasPath(cell, paths[i])) continue;
+				long next = graph.neighbor(cell, paths[i]);
+				if(cameBy.get(next) >= 0) continue;
+
+				cameBy.put(next, (byte) paths[i].ordinal());
+				found = next == to;
+				if(tail == queue.length)
+				{
+					// drop the part already dequeued before growing
+					System.arraycopy(queue, head, queue, 0, tail - head);
+					tail -= head;
+					head = 0;
+					if(tail == queue.length)
+						queue = Arrays.copyOf(queue, queue.length * 2);
+				}
+				queue[tail++] = next;
+			}
+			if(cameBy.size() >= maxCells) break;
+		}
+		if(!found) return null;
+
+		// walk back from the end, collecting the moves in reverse
+		byte[] moves = new byte[64];
+		int count = 0;
+		for(long cell = to; cell != from; )
+		{
+			int move = cameBy.get(cell);
+			if(count == moves.length) moves = Arrays.copyOf(moves, count * 2);
+			moves[count++] = (byte) move;
+			cell = graph.neighbor(cell, paths[(move + 2) & 3]);	// step back
+		}
+
+		MazePath.Builder builder = new MazePath.Builder(
+				Math.toIntExact(fromRow), Math.toIntExact(fromCol));
+		for(int i = count - 1; i >= 0; i--)
+			builder.add(paths[moves[i]]);
+		return builder.build();
+	} // shortestPath()
+
+	private static final int START = 4;		// marks the first cell
+
+///// Inner Classes ////////////////////////////////////////////////
+	/**
+	 * Class implements an open-addressing hash table from cell ids to
+	 *    one byte each, with -1 for absent cells. Cell ids are spread
+	 *    by a multiplicative hash, and the table doubles when it is
+	 *    half full.
+	 */
+	static final class CellMap
+	{
+		CellMap()
+		{
+			keys = new long[1024];
+			values = new byte[1024];
+			Arrays.fill(values, (byte) -1);
+		} // CellMap constructor
+
+		/**
+		 * @return	the value stored for cell, or -1 if there is none
+		 */
+		int get(long cell)
+		{
+			int mask = keys.length - 1;
+			for(int at = slot(cell, mask); values[at] >= 0; at = (at + 1) & mask)
+			{
+				if(keys[at] == cell) return values[at];
+			}
+			return -1;
+		} // get()
+
+		/**
+		 * @param value	a value, 0 <= value <= 127
+		 */
+		void put(long cell, byte value)
+		{
+			if(2 * (size + 1) > keys.length) grow();
+			int mask = keys.length - 1;
+			int at = slot(cell, mask);
+			while(values[at] >= 0 && keys[at] != cell)
+				at = (at + 1) & mask;
+			if(values[at] < 0) size++;
+			keys[at] = cell;
+			values[at] = value;
+		} // put()
+
+		int size()
+		{
+			return size;
+		} // size()
+
+		private void grow()
+		{
+			long[] oldKeys = keys;
+			byte[] oldValues = values;
+			keys = new long[oldKeys.length * 2];
+			values = new byte[oldKeys.length * 2];
+			Arrays.fill(values, (byte) -1);
+			size = 0;
+			for(int i = 0; i < oldKeys.length; i++)
+			{
+				if(oldValues[i] >= 0) put(oldKeys[i], oldValues[i]);
+			}
+		} // grow()
+
+		private static int slot(long cell, int mask)
+		{
+			long h = cell * 0x9e3779b97f4a7c15L;
+			return (int) (h ^ (h >>> 32)) & mask;
+		} // slot()
+
+		private long[] keys;
+		private byte[] values;
+		private int size;
+	} // CellMap class
+} // GraphSearch class
@@ -0,0 +1,504 @@
+package Maze;
+import Maze.Maze.Path;
+import queue.IndexedMinHeap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Class HierarchicalPathfinder answers repeated shortest-path queries
+ *    on one maze with HPA* (Botea, Mueller and Schaeffer): the search
+ *    runs on a small abstract graph, and only the clusters on the path
+ *    found are searched cell by cell.
+ *
+ * The maze is cut into square clusters of clusterSide cells. Every cell
+ *    with an open path into another cluster is an entrance, a node of
+ *    the abstract graph, with two kinds of edges:
+ * 			- across the border, to the entrance on the other side,
+ * 			  of length 1
+ * 			- inside its cluster, to every other entrance of the same
+ * 			  cluster it can reach without leaving the cluster, of
+ * 			  the length of the shortest such walk
+ *    The inside edges are found by a breadth-first search from each
+ *    entrance, cluster by cluster, in parallel. Every path through the
+ *    maze is a chain of such edges, so the paths found are shortest.
+ *
+ * A query searches the start and end clusters from the start and the
+ *    end cells, joining them to the entrances there, runs A* (with the
+ *    Manhattan distance) on the abstract graph, then refines each
+ *    inside edge of the result with a search of its cluster alone.
+ *
+ * After a wall changes, only the cluster or two it touches are
+ *    rebuilt. Queries and wall changes must not overlap each other.
+ */
+public class HierarchicalPathfinder
+{
+///// Constructors /////////////////////////////////////////////////
+	/**
+	 * Default constructor: build() must be called before findPath()
+	 *
+	 * @param maze			the maze to search
+	 * @param clusterSide	the number of rows (and columns) in a cluster
+	 */
+	public HierarchicalPathfinder(Maze maze, int clusterSide)
+	{
+		if(clusterSide < 1)
+			throw new IllegalArgumentException("clusterSide < 1");
+		this.maze = maze;
+		this.side = clusterSide;
+		clusterRows = (maze.rowCount + side - 1) / side;
+		clusterCols = (maze.colCount + side - 1) / side;
+		clusters = new Cluster[clusterRows * clusterCols];
+		for(int c = 0; c < clusters.length; c++)
+			clusters[c] = new Cluster(c / clusterCols * side, c % clusterCols * side);
+
+		int slots = maze.layout.capacity();
+		nodeSlot = new int[slots];
+		g = new int[slots];
+		parent = new int[slots];
+		seen = new int[slots];
+		closed = new int[slots];
+		Arrays.fill(nodeSlot, -1);
+		open = new IndexedMinHeap(slots);
+		startSearch = new Scratch(side);
+		endSearch = new Scratch(side);
+	} // default HierarchicalPathfinder constructor
+
+///// Instance Methods /////////////////////////////////////////////
+	/**
+	 * Utility method: finds the entrances and inside edges of every
+	 *    cluster
+	 *
+	 * @param threads	the number of threads to use
+	 * @throws InterruptedException	if the caller is interrupted
+	 */
+	public void build(int threads) throws InterruptedException
+	{
+		int groups = Math.min(clusters.length, 4 * threads);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(groups);
+		for(int t = 0; t < groups; t++)
+		{
+			final int from = (int) ((long) clusters.length * t / groups);
+			final int to = (int) ((long) clusters.length * (t + 1) / groups);
+			tasks.add(new Callable<Void>() {
+				public Void call()
+				{
+					Scratch scratch = new Scratch(side);
+					for(int c = from; c < to; c++)
+						clusters[c].rebuild(scratch);
+					return null;
+				}
+			});
+		}
+
+		ExecutorService pool = ThreadPools.newCpuPool("maze-hpa", threads);
+		try
+		{
+			for(Future<Void> f : pool.invokeAll(tasks))
+				result(f);
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+		built = true;
+	} // build()
+
+	/**
+	 * Utility method: finds a shortest path between two cells
+	 *
+	 * @param fromRow	the row of the first cell of the path
+	 * @param fromCol	the column of the first cell of the path
+	 * @param toRow		the row of the last cell of the path
+	 * @param toCol		the column of the last cell of the path
+	 * @return			the path, or null if there is none
+	 * @throws IndexOutOfBoundsException	if either cell is outside
+	 * 						the maze
+	 * @throws IllegalStateException		if build() has not been
+	 * 						called
+	 */
+	public MazePath findPath(int fromRow, int fromCol, int toRow, int toCol)
+	{
+		if(!built) throw new IllegalStateException("build() has not been called");
+		int start = maze.checkedCellAt(fromRow, fromCol).index;
+		int end = maze.checkedCellAt(toRow, toCol).index;
+		expansions = 0;
+		if(start == end) return new MazePath.Builder(fromRow, fromCol).build();
+
+		if(++query == 0)
+		{
+			// the stamps wrapped around: forget every old search
+			Arrays.fill(seen, 0);
+			Arrays.fill(closed, 0);
+			query = 1;
+		}
+		open.clear();
+		Cluster startCluster = clusterOf(start);
+		Cluster endCluster = clusterOf(end);
+		startCluster.search(start, startSearch);
+		endCluster.search(end, endSearch);
+
+		Path[] paths = DIRECTIONS;
+		reach(start, 0, -1, end);
+		while(!open.isEmpty())
+		{
+			int u = open.poll();
+			if(u == end) break;
+			closed[u] = query;
+			expansions++;
+
+			Cluster cluster = clusterOf(u);
+			if(u == start)
+			{
+				for(int j = 0; j < cluster.nodes.length; j++)
+				{
+					int d = startSearch.distance[cluster.local(cluster.nodes[j])];
+					if(d < INFINITY) reach(cluster.nodes[j], g[u] + d, u, end);
+				}
+			}
+			else
+			{
+				int m = cluster.nodes.length;
+				int row = nodeSlot[u] * m;
+				for(int j = 0; j < m; j++)
+				{
+					if(cluster.distance[row + j] < INFINITY)
+						reach(cluster.nodes[j], g[u] + cluster.distance[row + j], u, end);
+				}
+			}
+			for(int i = 0; i < paths.length; i++)
+			{
+				if(!maze.isOpen(u, paths[i])) continue;
+				int v = maze.neighborIndex(u, paths[i]);
+				if(clusterOf(v) != cluster) reach(v, g[u] + 1, u, end);
+			}
+			if(cluster == endCluster && endSearch.distance[cluster.local(u)] < INFINITY)
+				reach(end, g[u] + endSearch.distance[cluster.local(u)], u, end);
+		}
+		if(seen[end] != query) return null;
+
+		// the abstract path, end first
+		int[] hops = new int[16];
+		int count = 0;
+		for(int u = end; u >= 0; u = parent[u])
+		{
+			if(count == hops.length) hops = Arrays.copyOf(hops, count * 2);
+			hops[count++] = u;
+		}
+
+		MazePath.Builder builder = new MazePath.Builder(fromRow, fromCol);
+		for(int i = count - 1; i > 0; i--)
+		{
+			int a = hops[i];
+			int b = hops[i - 1];
+			Cluster cluster = clusterOf(a);
+			if(cluster != clusterOf(b))
+			{
+				for(int d = 0; d < paths.length; d++)
+				{
+					if(maze.isOpen(a, paths[d]) && maze.neighborIndex(a, paths[d]) == b)
+						builder.add(paths[d]);
+				}
+			}
+			else
+				cluster.refine(a, b, startSearch, builder);
+		}
+		return builder.build();
+	} // findPath()
+
+	/**
+	 * Utility method: opens or closes a wall of the maze and rebuilds
+	 *    the clusters it touches
+	 *
+	 * @param row			the row of the cell
+	 * @param col			the column of the cell
+	 * @param direction		the wall to change
+	 * @param wall			true to put the wall up, false to open it
+	 * @return				true if the wall changed
+	 * @throws IndexOutOfBoundsException	if (row, col) is outside
+	 * 							the maze
+	 * @throws IllegalArgumentException		if the wall is on the
+	 * 							boundary of the maze
+	 */
+	public boolean setWall(int row, int col, Path direction, boolean wall)
+	{
+		boolean changed = wall ? maze.closeWall(row, col, direction)
+				: maze.openWall(row, col, direction);
+		if(changed) wallChanged(row, col, direction);
+		return changed;
+	} // setWall()
+
+	/**
+	 * Utility method: rebuilds the clusters on both sides of a wall
+	 *    that was opened or closed directly on the maze
+	 *
+	 * @param row			the row of the cell
+	 * @param col			the column of the cell
+	 * @param direction		the wall that changed
+	 */
+	public void wallChanged(int row, int col, Path direction)
+	{
+		int u = maze.checkedCellAt(row, col).index;
+		int v = maze.neighborIndex(u, direction);
+		Cluster cluster = clusterOf(u);
+		cluster.rebuild(startSearch);
+		if(v >= 0 && clusterOf(v) != cluster)
+			clusterOf(v).rebuild(startSearch);
+	} // wallChanged()
+
+	/**
+	 * @return	the number of entrances, the nodes of the abstract graph
+	 */
+	public int nodeCount()
+	{
+		int nodes = 0;
+		for(Cluster cluster : clusters)
+			nodes += cluster.nodes.length;
+		return nodes;
+	} // nodeCount()
+
+	/**
+	 * @return	the number of abstract nodes expanded by the last
+	 * 				findPath()
+	 */
+	public int expansions()
+	{
+		return expansions;
+	} // expansions()
+
+	/**
+	 * Utility method: offers a node of the abstract graph a distance
+	 *    from the start, through the given parent
+	 */
+	private void reach(int v, int distance, int from, int end)
+	{
+		if(closed[v] == query) return;
+		if(seen[v] == query && g[v] <= distance) return;
+		seen[v] = query;
+		g[v] = distance;
+		parent[v] = from;
+		int h = Math.abs(maze.layout.row(v) - maze.layout.row(end))
+				+ Math.abs(maze.layout.col(v) - maze.layout.col(end));
+		open.put(v, ((long) (distance + h) << 32) | distance);
+	} // reach()
+
+	private Cluster clusterOf(int index)
+	{
+		return clusters[maze.layout.row(index) / side * clusterCols
+				+ maze.layout.col(index) / side];
+	} // clusterOf()
+
+	/**
+	 * @return	the result of a finished task, rethrowing its failure
+	 */
+	private static <T> T result(Future<T> f) throws InterruptedException
+	{
+		try
+		{
+			return f.get();
+		}
+		catch(ExecutionException e)
+		{
+			if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			if(e.getCause() instanceof Error) throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	} // result()
+
+///// Instance Fields //////////////////////////////////////////////
+	private final Maze maze;
+	private final int side;				// rows (and columns) per cluster
+	private final int clusterRows;
+	private final int clusterCols;
+	private final Cluster[] clusters;	// row-major
+	private final int[] nodeSlot;		// entrance -> its place in its
+										// cluster's nodes, else -1
+	private boolean built;
+
+	// the state of a query, by storage index; g and parent are valid
+	// where seen equals query
+	private final int[] g;				// distance from the start
+	private final int[] parent;			// the previous abstract node
+	private final int[] seen;
+	private final int[] closed;
+	private final IndexedMinHeap open;
+	private final Scratch startSearch;	// the start's cluster, searched
+	private final Scratch endSearch;	// the end's cluster, searched
+	private int query;					// stamp of the current query
+	private int expansions;
+
+	private static final int INFINITY = Integer.MAX_VALUE / 2;
+	private static final Path[] DIRECTIONS = Path.values();	// by ordinal
+
+///// Inner Classes ////////////////////////////////////////////////
+	/**
+	 * Class holds the working arrays of a search confined to one
+	 *    cluster, indexed by the cell's place in the cluster
+	 */
+	private static final class Scratch
+	{
+		Scratch(int side)
+		{
+			distance = new int[side * side];
+			via = new byte[side * side];
+			queue = new int[side * side];
+		} // Scratch constructor
+
+		final int[] distance;		// from the first cell, or INFINITY
+		final byte[] via;			// the move into each cell
+		final int[] queue;
+	} // Scratch class
+
+	/**
+	 * Class holds one cluster: its entrances and the lengths of the
+	 *    shortest walks between them that stay inside it
+	 */
+	private final class Cluster
+	{
+		Cluster(int row0, int col0)
+		{
+			this.row0 = row0;
+			this.col0 = col0;
+			height = Math.min(side, maze.rowCount - row0);
+			width = Math.min(side, maze.colCount - col0);
+		} // Cluster constructor
+
+		/**
+		 * Utility method: finds the entrances again, then the distances
+		 *    between them
+		 */
+		void rebuild(Scratch scratch)
+		{
+			for(int node : nodes)
+				nodeSlot[node] = -1;
+
+			int[] found = new int[2 * (height + width)];
+			int count = 0;
+			for(int r = 0; r < height; r++)
+			{
+				for(int c = 0; c < width; c++)
+				{
+					if(r > 0 && r < height - 1 && c > 0 && c < width - 1) continue;
+					int index = maze.layout.index(row0 + r, col0 + c);
+					if(isEntrance(index)) found[count++] = index;
+				}
+			}
+
+			int[] newNodes = Arrays.copyOf(found, count);
+			int[] newDistance = new int[count * count];
+			for(int i = 0; i < count; i++)
+			{
+				search(newNodes[i], scratch);
+				for(int j = 0; j < count; j++)
+					newDistance[i * count + j] = scratch.distance[local(newNodes[j])];
+			}
+			for(int i = 0; i < count; i++)
+				nodeSlot[newNodes[i]] = i;
+			nodes = newNodes;
+			distance = newDistance;
+		} // rebuild()
+
+		/**
+		 * @return	true if the cell has an open path out of the cluster
+		 * 				to another cell of the maze
+		 */
+		private boolean isEntrance(int index)
+		{
+			for(int i = 0; i < DIRECTIONS.length; i++)
+			{
+				if(maze.isOpen(index, DIRECTIONS[i])
+						&& !contains(maze.neighborIndex(index, DIRECTIONS[i])))
+					return true;
+			}
+			return false;
+		} // isEntrance()
+
+		/**
+		 * Utility method: breadth-first search from a cell of the
+		 *    cluster, without leaving it
+		 */
+		void search(int from, Scratch scratch)
+		{
+			Arrays.fill(scratch.distance, 0, height * width, INFINITY);
+			int first = local(from);
+			scratch.distance[first] = 0;
+			int[] queue = scratch.queue;
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = first;
+			while(head < tail)
+			{
+				int l = queue[head++];
+				int index = maze.layout.index(row0 + l / width, col0 + l % width);
+				for(int i = 0; i < DIRECTIONS.length; i++)
+				{
+					if(!maze.isOpen(index, DIRECTIONS[i])) continue;
+					int next = maze.neighborIndex(index, DIRECTIONS[i]);
+					if(!contains(next)) continue;
+					int n = local(next);
+					if(scratch.distance[n] != INFINITY) continue;
+					scratch.distance[n] = scratch.distance[l] + 1;
+					scratch.via[n] = (byte) i;
+					queue[tail++] = n;
+				}
+			}
+		} // search()
+
+		/**
+		 * Utility method: appends the moves of a shortest walk inside
+		 *    the cluster from a to b
+		 */
+		void refine(int a, int b, Scratch scratch, MazePath.Builder builder)
+		{
+			search(a, scratch);
+			int moves = scratch.distance[local(b)];
+			byte[] reversed = new byte[moves];
+			int l = local(b);
+			for(int k = 0; k < moves; k++)
+			{
+				int move = scratch.via[l];
+				reversed[k] = (byte) move;
+				int row = l / width;
+				int col = l % width;
+				switch(DIRECTIONS[move])
+				{
+				case NORTH:	row++; break;
+				case EAST:	col--; break;
+				case SOUTH:	row--; break;
+				case WEST:	col++; break;
+				}
+				l = row * width + col;
+			}
+			for(int k = moves - 1; k >= 0; k--)
+				builder.add(DIRECTIONS[reversed[k]]);
+		} // refine()
+
+		/**
+		 * @return	the place of a cell in the cluster, row-major
+		 */
+		int local(int index)
+		{
+			return (maze.layout.row(index) - row0) * width + maze.layout.col(index) - col0;
+		} // local()
+
+		boolean contains(int index)
+		{
+			int row = maze.layout.row(index) - row0;
+			int col = maze.layout.col(index) - col0;
+			return row >= 0 && row < height && col >= 0 && col < width;
+		} // contains()
+
+		final int row0;				// the first cell of the cluster
+		final int col0;
+		final int height;			// smaller at the south and east edges
+		final int width;
+		int[] nodes = new int[0];	// the entrances, by storage index
+		int[] distance = new int[0];	// nodes x nodes, INFINITY if the
+										// cluster does not connect them
+	} // Cluster class
+} // HierarchicalPathfinder class
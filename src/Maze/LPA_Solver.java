@@ -0,0 +1,320 @@
+package Maze;
+import Maze.Maze.Path;
+import queue.IndexedMinHeap;
+
+import java.util.Arrays;
+
+/**
+ * LPA_Solver inherits from the general MazeSolver class. It
+ *    implements solve() with Lifelong Planning A* (Koenig and
+ *    Likhachev), which keeps its search state between calls: after
+ *    walls are opened or closed, the next solve() repairs the
+ *    previous shortest path instead of searching from scratch,
+ *    expanding only cells whose distance from the start the edits
+ *    actually changed.
+ *
+ * Each cell keeps two distance estimates from the start: g, the
+ *    distance as last expanded, and rhs, the distance implied by its
+ *    neighbors' g values. Cells where the two disagree wait in a
+ *    priority queue ordered by [min(g, rhs) + h; min(g, rhs)], where
+ *    h is the Manhattan distance to the end cell.
+ *
+ * Usage, once per simulation tick:
+ * 			solver.setWall(row, col, direction, wall);	// any number
+ * 			solver.solve();
+ *    Walls changed through Maze.openWall()/closeWall() directly must
+ *    be reported with wallChanged() before the next solve().
+ */
+public class LPA_Solver extends MazeSolver
+{
+///// Constructors /////////////////////////////////////////////////
+	/**
+	 * Default LPA_Solver Constructor: searches from mazeStart to
+	 * mazeEnd
+	 *
+	 * @param inputMaze		the Maze this Solver will attempt to
+	 * 						   solve
+	 */
+	public LPA_Solver(Maze inputMaze) {
+		this(inputMaze, inputMaze.mazeStart.row, inputMaze.mazeStart.col,
+				inputMaze.mazeEnd.row, inputMaze.mazeEnd.col);
+	} // LPA_Solver default constructor
+
+	/**
+	 * Endpoint LPA_Solver Constructor: searches for the shortest
+	 * path between two given cells
+	 *
+	 * @param inputMaze		the Maze this Solver will attempt to
+	 * 						   solve
+	 * @param fromRow		the row of the first cell of the path
+	 * @param fromCol		the column of the first cell of the path
+	 * @param toRow			the row of the last cell of the path
+	 * @param toCol			the column of the last cell of the path
+	 * @throws IndexOutOfBoundsException	if either cell is outside
+	 * 						   the maze
+	 */
+	public LPA_Solver(Maze inputMaze, int fromRow, int fromCol, int toRow, int toCol) {
+		super(inputMaze, inputMaze.checkedCellAt(fromRow, fromCol),
+				inputMaze.checkedCellAt(toRow, toCol));
+
+		int slots = maze.layout.capacity();
+		g = new int[slots];
+		rhs = new int[slots];
+		Arrays.fill(g, INFINITY);
+		Arrays.fill(rhs, INFINITY);
+		open = new IndexedMinHeap(slots);
+		path = new int[0];
+
+		rhs[start.index] = 0;
+		open.put(start.index, key(start.index));
+	} // LPA_Solver endpoint constructor
+
+///// Instance Methods /////////////////////////////////////////////
+	/**
+	 * Utility method: expands the next inconsistent cell. A search
+	 *    brings the shortest path up to date with every wall change
+	 *    reported since the last one, then marks it in the solution
+	 *    array and returns -1; the next call starts a new search.
+	 *    The first search is a full A* search.
+	 */
+	@Override
+	protected int step()
+	{
+		if(!searching)
+		{
+			expansions = 0;
+			searching = true;
+		}
+		int goal = end.index;
+		if(open.peekPriority() >= key(goal) && rhs[goal] == g[goal])
+		{
+			searching = false;
+			markPath(DIRECTIONS);
+			return -1;
+		}
+
+		expanded();
+		int u = open.poll();
+		expansions++;
+
+		SolutionCell sc = solution[u];
+		sc.visited = true;
+		sc.searchOrdinal = time++;
+
+		if(g[u] > rhs[u])
+		{
+			// overconsistent: the cell got closer to the start
+			g[u] = rhs[u];
+		}
+		else
+		{
+			// underconsistent: the cell got farther away (or was
+			// cut off), so re-derive it along with its successors
+			g[u] = INFINITY;
+			updateCell(u);
+		}
+		for(int i = 0; i < DIRECTIONS.length; i++)
+		{
+			if(maze.isOpen(u, DIRECTIONS[i]))
+				updateCell(maze.neighborIndex(u, DIRECTIONS[i]));
+		}
+		return u;
+	} // step()
+
+	/**
+	 * @return	the distance of the cell from start as just expanded,
+	 * 				or -1 if it was cut off
+	 */
+	@Override
+	protected int depth(int u)
+	{
+		return g[u] == INFINITY ? -1 : g[u];
+	} // depth()
+
+	/**
+	 * Utility method: LPA* only links the cells of the final path, so
+	 *    the parent of an expanded cell is the open neighbor its
+	 *    distance comes through
+	 */
+	@Override
+	protected int parentOf(int u)
+	{
+		if(u == start.index || g[u] == INFINITY) return -1;
+		for(int i = 0; i < DIRECTIONS.length; i++)
+		{
+			if(maze.isOpen(u, DIRECTIONS[i]))
+			{
+				int v = maze.neighborIndex(u, DIRECTIONS[i]);
+				if(g[v] + 1 == g[u]) return v;
+			}
+		}
+		return -1;
+	} // parentOf()
+
+	/**
+	 * Utility method: opens or closes a wall of the maze and records
+	 *    the change for the next solve()
+	 *
+	 * @param row			the row of the cell
+	 * @param col			the column of the cell
+	 * @param direction		the wall to change
+	 * @param wall			true to put the wall up, false to open it
+	 * @return				true if the wall changed
+	 * @throws IndexOutOfBoundsException	if (row, col) is outside
+	 * 							the maze
+	 * @throws IllegalArgumentException		if the wall is on the
+	 * 							boundary of the maze
+	 */
+	public boolean setWall(int row, int col, Path direction, boolean wall)
+	{
+		boolean changed = wall ? maze.closeWall(row, col, direction)
+				: maze.openWall(row, col, direction);
+		if(changed) wallChanged(row, col, direction);
+		return changed;
+	} // setWall()
+
+	/**
+	 * Utility method: records that the wall between a cell and its
+	 *    neighbor in the given direction was opened or closed
+	 *    directly on the maze
+	 *
+	 * @param row			the row of the cell
+	 * @param col			the column of the cell
+	 * @param direction		the wall that changed
+	 */
+	public void wallChanged(int row, int col, Path direction)
+	{
+		int u = maze.checkedCellAt(row, col).index;
+		int v = maze.neighborIndex(u, direction);
+		updateCell(u);
+		if(v >= 0) updateCell(v);
+	} // wallChanged()
+
+	/**
+	 * @return	the number of cells on the current shortest path, or 0
+	 * 				if the end cannot be reached
+	 */
+	public int pathLength()
+	{
+		return path.length;
+	} // pathLength()
+
+	/**
+	 * @return	the number of cells expanded by the last solve(); after
+	 * 				a few edits this tracks the size of the region the
+	 * 				edits affected, not the size of the maze
+	 */
+	public int expansions()
+	{
+		return expansions;
+	} // expansions()
+
+	/**
+	 * Utility method: recomputes rhs for a cell from its open
+	 *    neighbors and re-queues it if it is now inconsistent
+	 *
+	 * @param u		the storage index of the cell
+	 */
+	private void updateCell(int u)
+	{
+		if(u != start.index)
+		{
+			int best = INFINITY;
+			for(int i = 0; i < DIRECTIONS.length; i++)
+			{
+				if(maze.isOpen(u, DIRECTIONS[i]))
+				{
+					int through = g[maze.neighborIndex(u, DIRECTIONS[i])] + 1;
+					if(through < best) best = through;
+				}
+			}
+			rhs[u] = best;
+		}
+
+		if(g[u] != rhs[u])
+			open.put(u, key(u));
+		else
+			open.remove(u);
+	} // updateCell()
+
+	/**
+	 * Utility method: the priority of a cell, [min(g, rhs) + h;
+	 *    min(g, rhs)] packed into one long so that the natural order
+	 *    of longs is the lexicographic order of the pair
+	 */
+	private long key(int u)
+	{
+		int k2 = Math.min(g[u], rhs[u]);
+		int k1 = k2 == INFINITY ? INFINITY : k2 + heuristic(u);
+		return ((long) k1 << 32) | k2;
+	} // key()
+
+	/**
+	 * @return	the Manhattan distance from a cell to the end cell
+	 */
+	private int heuristic(int u)
+	{
+		return Math.abs(maze.layout.row(u) - end.row)
+				+ Math.abs(maze.layout.col(u) - end.col);
+	} // heuristic()
+
+	/**
+	 * Utility method: clears the previous path from the solution
+	 *    array, then walks back from the end cell, always to the
+	 *    open neighbor with the smallest g, to mark the new one (and
+	 *    its parent links)
+	 */
+	private void markPath(Path[] paths)
+	{
+		for(int i = 0; i < path.length; i++)
+		{
+			solution[path[i]].inOptimalPath = false;
+			solution[path[i]].parent = null;
+		}
+
+		solved = g[end.index] < INFINITY;
+		if(!solved)
+		{
+			path = new int[0];
+			return;
+		}
+
+		int[] walk = new int[g[end.index] + 1];
+		int length = 0;
+		int u = end.index;
+		while(true)
+		{
+			if(length == walk.length) walk = Arrays.copyOf(walk, length * 2);
+			walk[length++] = u;
+			solution[u].inOptimalPath = true;
+			if(u == start.index) break;
+
+			int next = -1;
+			for(int d = 0; d < paths.length; d++)
+			{
+				if(maze.isOpen(u, paths[d]))
+				{
+					int v = maze.neighborIndex(u, paths[d]);
+					if(next < 0 || g[v] < g[next]) next = v;
+				}
+			}
+			solution[u].parent = solution[next];
+			u = next;
+		}
+
+		// store start first
+		path = new int[length];
+		for(int i = 0; i < length; i++)
+			path[i] = walk[length - 1 - i];
+	} // markPath()
+
+///// Instance Fields //////////////////////////////////////////////
+	private final int[] g;				// distance from start, as expanded
+	private final int[] rhs;			// one-step lookahead of g
+	private final IndexedMinHeap open;	// the inconsistent cells
+	private int[] path;					// the current path, start first
+	private int expansions;				// cells expanded by last solve()
+	private boolean searching;			// step() is part way through a search
+
+	private static final int INFINITY = Integer.MAX_VALUE / 2;
+}
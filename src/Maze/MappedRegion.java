@@ -0,0 +1,155 @@
+package Maze;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Class MappedRegion maps a region of a file into memory and reads and
+ *    writes its bytes by long offset. A single MappedByteBuffer is
+ *    limited to 2GB, so the region is mapped as a run of 1GB segments;
+ *    the bytes live in the page cache, not on the heap, and the region
+ *    may be larger than physical memory.
+ *
+ * Not thread-safe for writes.
+ */
+final class MappedRegion implements Closeable
+{
+///// Constructors /////////////////////////////////////////////////
+	/**
+	 * Default constructor: called by create() and open()
+	 */
+	private MappedRegion(RandomAccessFile file, long offset, long bytes,
+			boolean writable, int shift) throws IOException
+	{
+		this.file = file;
+		this.bytes = bytes;
+		this.shift = shift;
+		mask = (1L << shift) - 1;
+		FileChannel channel = file.getChannel();
+		FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE
+				: FileChannel.MapMode.READ_ONLY;
+		segments = new MappedByteBuffer[(int) ((bytes + mask) >>> shift)];
+		for(int i = 0; i < segments.length; i++)
+		{
+			long at = (long) i << shift;
+			segments[i] = channel.map(mode, offset + at, Math.min(mask + 1, bytes - at));
+		}
+	} // default MappedRegion constructor
+
+///// Static Methods ///////////////////////////////////////////////
+	/**
+	 * Factory method: creates (or truncates) a file of the given size,
+	 *    all zeros, and maps the whole of it for reading and writing.
+	 *    The file is created sparse, so its zeros cost no disk until
+	 *    they are written.
+	 *
+	 * @param path	the file
+	 * @param bytes	the size of the file
+	 * @return		the mapped region
+	 * @throws IOException	if the file cannot be created or mapped
+	 */
+	static MappedRegion create(java.nio.file.Path path, long bytes) throws IOException
+	{
+		return create(path, bytes, SHIFT);
+	} // create()
+
+	/**
+	 * Factory method: as create(path, bytes), but in segments of
+	 *    2^shift bytes; small segments let tests cross their
+	 *    boundaries without gigabyte files
+	 */
+	static MappedRegion create(java.nio.file.Path path, long bytes, int shift) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+		try
+		{
+			file.setLength(0);
+			file.setLength(bytes);
+			return new MappedRegion(file, 0, bytes, true, shift);
+		}
+		catch(IOException e)
+		{
+			file.close();
+			throw e;
+		}
+	} // create()
+
+	/**
+	 * Factory method: maps part of an existing file
+	 *
+	 * @param path		the file
+	 * @param offset	the first byte of the region in the file
+	 * @param bytes		the size of the region
+	 * @param writable	true to map it for writing as well
+	 * @return			the mapped region
+	 * @throws IOException	if the file cannot be opened or mapped, or
+	 * 						is too short
+	 */
+	static MappedRegion open(java.nio.file.Path path, long offset, long bytes,
+			boolean writable) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(path.toFile(), writable ? "rw" : "r");
+		try
+		{
+			if(file.length() < offset + bytes)
+				throw new IOException(path + " is shorter than " + (offset + bytes) + " bytes");
+			return new MappedRegion(file, offset, bytes, writable, SHIFT);
+		}
+		catch(IOException e)
+		{
+			file.close();
+			throw e;
+		}
+	} // open()
+
+///// Instance Methods /////////////////////////////////////////////
+	/**
+	 * @param at	an offset in the region, 0 <= at < size()
+	 * @return		the byte at that offset
+	 */
+	byte get(long at)
+	{
+		return segments[(int) (at >>> shift)].get((int) (at & mask));
+	} // get()
+
+	/**
+	 * @param at	an offset in the region, 0 <= at < size()
+	 * @param value	the byte to store there
+	 */
+	void put(long at, byte value)
+	{
+		segments[(int) (at >>> shift)].put((int) (at & mask), value);
+	} // put()
+
+	/**
+	 * @return	the size of the region in bytes
+	 */
+	long size()
+	{
+		return bytes;
+	} // size()
+
+	/**
+	 * Utility method: closes the file. The mapping itself stays valid
+	 *    until the segments are garbage collected, as the JDK has no
+	 *    public way to unmap a buffer, so the region must not be used
+	 *    after close().
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		file.close();
+	} // close()
+
+///// Instance Fields //////////////////////////////////////////////
+	private final RandomAccessFile file;
+	private final MappedByteBuffer[] segments;
+	private final long bytes;				// the size of the region
+	private final int shift;				// log2 of the segment size
+	private final long mask;				// the segment size - 1
+
+	static final int SHIFT = 30;					// 1GB segments
+} // MappedRegion class
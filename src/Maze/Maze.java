@@ -14,13 +14,15 @@ import java.util.Random;
  *  		2, which means the degree of any vertex is at least 2
  *  -Edges are unweighted.
  *  
- *  For the above reasons, the maze itself is implemented as a two-
- *     dimensional array of type MazeCell (defined below as in 
- *     inner class). Adjacency is implemented as a byte field, pathState, in the
- *     MazeCell type, with the upper four bits representing the
- *     existence of a physically-adjacent MazeCell, and the lower
- *     four bits representing logically-adjacent MazeCells (i.e. 
- *     an open path in the maze).
+ *  For the above reasons, the maze itself is implemented as a packed
+ *     byte array, grid, holding one pathState byte per cell, with the
+ *     upper four bits representing the existence of a physically-
+ *     adjacent cell, and the lower four bits representing logically-
+ *     adjacent cells (i.e. an open path in the maze). The order of
+ *     the cells in grid is set by a CellLayout (row-major, tiled or
+ *     Morton), and every cell is addressed by its storage index.
+ *     MazeCell (defined below as an inner class) is a handle on one
+ *     slot of grid that also carries the cell's row and column.
  * 
  * To facilitate this implementation, the Maze class also includes
  * an enumerated type Path with the following binary values:
@@ -38,7 +40,7 @@ import java.util.Random;
  *    adjacent neighbor.
  *
  */
-public class Maze {
+public class Maze implements CellGraph {
 
 ///// Constructors /////////////////////////////////////////////////
 	/**
@@ -58,6 +60,64 @@ public class Maze {
 	 * @param cols the number of columns in the maze
 	 */
 	public Maze(int rows, int cols)
+	{
+		this(rows, cols, CellLayout.Type.ROW_MAJOR);
+	} // Default Maze constructor
+
+	/**
+	 * Layout Constructor: as the default constructor, but stores the
+	 * cells in the given order. The blocked layouts keep vertically-
+	 * adjacent cells close together in memory, which helps searches
+	 * that move NORTH and SOUTH as often as EAST and WEST.
+	 * 
+	 * @param rows		the number of rows in the maze
+	 * @param cols		the number of columns in the maze
+	 * @param layoutType	the storage order of the cells
+	 */
+	public Maze(int rows, int cols, CellLayout.Type layoutType)
+	{
+		this(rows, cols, layoutType, new Random());
+	} // Layout Maze constructor
+	
+	/**
+	 * Seeded Constructor: as the default constructor, but the maze is
+	 * chosen by the given seed, so the same seed and dimensions always
+	 * produce the same maze.
+	 * 
+	 * @param rows	the number of rows in the maze
+	 * @param cols	the number of columns in the maze
+	 * @param seed	the seed of the random choices made by mazify()
+	 */
+	public Maze(int rows, int cols, long seed)
+	{
+		this(rows, cols, CellLayout.Type.ROW_MAJOR, seed);
+	} // Seeded Maze constructor
+	
+	/**
+	 * Seeded Layout Constructor: a seeded maze stored in the given
+	 * order. The maze produced does not depend on the layout.
+	 * 
+	 * @param rows		the number of rows in the maze
+	 * @param cols		the number of columns in the maze
+	 * @param layoutType	the storage order of the cells
+	 * @param seed		the seed of the random choices made by mazify()
+	 */
+	public Maze(int rows, int cols, CellLayout.Type layoutType, long seed)
+	{
+		this(rows, cols, layoutType, new Random(seed));
+	} // Seeded Layout Maze constructor
+	
+	/**
+	 * Working Constructor: builds the grid, then carves it into a maze
+	 * using random, or leaves every wall standing if random is null
+	 * (for callers that set the walls themselves).
+	 * 
+	 * @param rows		the number of rows in the maze
+	 * @param cols		the number of columns in the maze
+	 * @param layoutType	the storage order of the cells
+	 * @param random	the source of mazify()'s random choices, or null
+	 */
+	private Maze(int rows, int cols, CellLayout.Type layoutType, Random random)
 	{
 		// if an invalid parameter is passed, set to default
 		rowCount = rows < 2 ? 2 : rows;
@@ -65,44 +125,277 @@ public class Maze {
 		
 		cellCount = rowCount*colCount;
 		
-		cells = new MazeCell[rowCount][colCount];
+		layout = CellLayout.of(layoutType, rowCount, colCount);
+		grid = new byte[layout.capacity()];
+		cells = new MazeCell[layout.capacity()];
 		
-		// instantiate all maze array elements
-		for (int row = 0; row < rowCount; row++)
+		// instantiate all maze array elements in storage order, so
+		// the MazeCell objects are allocated in the same order too
+		for (int index = 0; index < cells.length; index++)
 		{
-			for(int col = 0; col < colCount; col++)
-			{
-				cells[row][col] = new MazeCell(row, col, this.cells);
+			if(!layout.isCell(index)) continue;	// padding slot
+			int row = layout.row(index);
+			int col = layout.col(index);
+			cells[index] = new MazeCell(row, col, index);
 				
-				// identify in which directions physically-adjacent
-				// cells lie to avoid attempting to access out-of-
-				// bounds array indices later
-				byte pathExistence = 0;
-				if (row - 1 >= 0) 	pathExistence |= Path.NORTH.value;
-				if (row + 1 < rows) pathExistence |= Path.SOUTH.value;
-				if (col - 1 >= 0)	pathExistence |= Path.WEST.value;
-				if (col + 1 < cols) pathExistence |= Path.EAST.value;
-				cells[row][col].pathState |= (pathExistence << 4);
-			}
+			// identify in which directions physically-adjacent
+			// cells lie to avoid attempting to access out-of-
+			// bounds array indices later
+			byte pathExistence = 0;
+			if (row - 1 >= 0) 			pathExistence |= Path.NORTH.value;
+			if (row + 1 < rowCount) 	pathExistence |= Path.SOUTH.value;
+			if (col - 1 >= 0)			pathExistence |= Path.WEST.value;
+			if (col + 1 < colCount) 	pathExistence |= Path.EAST.value;
+			grid[index] |= (pathExistence << 4);
 		}
 
 		// identify the start and end cells of the maze
-		mazeStart = cells[0][0];
-		mazeEnd = cells[rowCount - 1][colCount - 1];
+		mazeStart = cellAt(0, 0);
+		mazeEnd = cellAt(rowCount - 1, colCount - 1);
 		
 		// mazify() creates the paths (i.e. removes the walls) to
 		// convert the array into a connected maze
 		// (this implements the pseudocode in "Project3.pdf")
-		mazify();
-	} // Default Maze constructor
+		if(random != null)
+			mazify(random);
+	} // working Maze constructor
+	
+	// Static Methods
+	/**
+	 * Factory method: rebuilds a maze from the text printed by
+	 *    printMaze() (as returned by toText()). Any line ending is
+	 *    accepted, and any three characters other than spaces are
+	 *    read as a wall.
+	 * 
+	 * @param text	the text representation of a maze
+	 * @return		a row-major maze with the same walls
+	 * @throws IllegalArgumentException	if text is not in that format
+	 */
+	public static Maze fromText(String text)
+	{
+		String[] lines = text.split("\\R");
+		if(lines.length < 5 || (lines.length - 3) % 2 != 0 || !lines[0].equals("start"))
+			throw new IllegalArgumentException("not a maze: bad line count or header");
+		
+		int rows = (lines.length - 3) / 2;
+		int cols = (lines[1].length() - 1) / 4;
+		if(rows < 2 || cols < 2)
+			throw new IllegalArgumentException("not a maze: fewer than 2x2 cells");
+		for(int i = 1; i < lines.length - 1; i++)
+		{
+			if(lines[i].length() != cols * 4 + 1)
+				throw new IllegalArgumentException("not a maze: line " + (i + 1)
+						+ " should have " + (cols * 4 + 1) + " characters");
+		}
+		
+		Maze maze = new Maze(rows, cols, CellLayout.Type.ROW_MAJOR, null);
+		for(int col = 0; col < cols; col++)
+		{
+			if(isOpen(lines[1], col))
+				maze.cellAt(0, col).pathConnect(Path.NORTH);
+		}
+		for(int row = 0; row < rows; row++)
+		{
+			String eastWestWalls = lines[2 + 2 * row];
+			String southWalls = lines[3 + 2 * row];
+			for(int col = 0; col < cols; col++)
+			{
+				MazeCell cell = maze.cellAt(row, col);
+				if(eastWestWalls.charAt(4 * col + 4) == ' ')
+					cell.pathConnect(Path.EAST);
+				if(isOpen(southWalls, col))
+					cell.pathConnect(Path.SOUTH);
+			}
+		}
+		return maze;
+	} // fromText()
+	
+	/**
+	 * Utility method: checks a north/south wall line of the text
+	 *    format for an opening above or below the given column
+	 */
+	private static boolean isOpen(String wallLine, int col)
+	{
+		return wallLine.startsWith("   ", 4 * col + 1);
+	} // isOpen()
 	
 	// Instance Methods
+	/**
+	 * Utility method: returns the cell at the given address
+	 * 
+	 * @param row	the row of the cell, 0 <= row < rowCount
+	 * @param col	the column of the cell, 0 <= col < colCount
+	 * @return		the cell at (row, col)
+	 */
+	protected MazeCell cellAt(int row, int col)
+	{
+		return cells[layout.index(row, col)];
+	} // cellAt()
+	
+	/**
+	 * Utility method: returns the cell at the given address, after
+	 *    checking that the address lies inside the maze
+	 * 
+	 * @param row	the row of the cell
+	 * @param col	the column of the cell
+	 * @return		the cell at (row, col)
+	 * @throws IndexOutOfBoundsException	if (row, col) is outside
+	 * 					the maze
+	 */
+	protected MazeCell checkedCellAt(int row, int col)
+	{
+		if(row < 0 || row >= rowCount || col < 0 || col >= colCount)
+			throw new IndexOutOfBoundsException("cell (" + row + ", " + col
+					+ ") is outside the " + rowCount + "x" + colCount + " maze");
+		return cellAt(row, col);
+	} // checkedCellAt()
+	
+	/**
+	 * Utility method: returns the storage index of the neighbor in the
+	 *    indicated direction of the cell stored at index, or -1 if no
+	 *    neighbor exists in that direction. This is the cell-index
+	 *    counterpart of MazeCell.getNeighbor(), for callers that walk
+	 *    the packed grid without going through MazeCell objects.
+	 *    
+	 * @param index			the storage index of a cell
+	 * @param direction		the direction of the neighbor
+	 * @return				the storage index of the neighbor, or -1
+	 */
+	int neighborIndex(int index, Path direction)
+	{
+		if((grid[index] & (direction.value << 4)) == 0)
+			return -1;
+		
+		switch(direction)
+		{
+		case NORTH:
+			return layout.step(index, -1, 0);
+		case EAST:
+			return layout.step(index, 0, 1);
+		case SOUTH:
+			return layout.step(index, 1, 0);
+		case WEST:
+			return layout.step(index, 0, -1);
+		default:
+			return -1;
+		}
+	} // neighborIndex()
+	
+	/**
+	 * Utility method: checks for an open path from the cell stored at
+	 *    index to a neighbor inside the maze in the given direction
+	 *    (the openings out of the maze at start and end don't count)
+	 * 
+	 * @param index			the storage index of a cell
+	 * @param direction		the direction to check
+	 * @return				true if the path is open
+	 */
+	boolean isOpen(int index, Path direction)
+	{
+		int state = grid[index];
+		return (state & direction.value) != 0
+				&& (state & (direction.value << 4)) != 0;
+	} // isOpen()
+	
+	// CellGraph methods: a cell's id is its storage index
+	@Override
+	public long cellId(long row, long col)
+	{
+		if(row < 0 || row >= rowCount || col < 0 || col >= colCount)
+			return NONE;
+		return layout.index((int) row, (int) col);
+	} // cellId()
+	
+	@Override
+	public long rowOf(long cell)
+	{
+		return layout.row((int) cell);
+	} // rowOf()
+	
+	@Override
+	public long colOf(long cell)
+	{
+		return layout.col((int) cell);
+	} // colOf()
+	
+	@Override
+	public boolean hasPath(long cell, Path direction)
+	{
+		return isOpen((int) cell, direction);
+	} // hasPath()
+	
+	@Override
+	public long neighbor(long cell, Path direction)
+	{
+		int index = neighborIndex((int) cell, direction);
+		return index < 0 ? NONE : index;
+	} // neighbor()
+	
+	/**
+	 * Utility method: removes the wall between a cell and its
+	 *    neighbor in the given direction. The maze may no longer be
+	 *    perfect afterwards (it may contain loops).
+	 * 
+	 * @param row			the row of the cell
+	 * @param col			the column of the cell
+	 * @param direction		the wall to remove
+	 * @return				true if the wall was there
+	 * @throws IndexOutOfBoundsException	if (row, col) is outside
+	 * 							the maze
+	 * @throws IllegalArgumentException		if the wall is on the
+	 * 							boundary of the maze
+	 */
+	public boolean openWall(int row, int col, Path direction)
+	{
+		MazeCell cell = checkedBoundaryCell(row, col, direction);
+		if(cell.hasPath(direction)) return false;
+		cell.pathConnect(direction);
+		return true;
+	} // openWall()
+	
+	/**
+	 * Utility method: puts up the wall between a cell and its
+	 *    neighbor in the given direction. Parts of the maze may be
+	 *    cut off from each other afterwards.
+	 * 
+	 * @param row			the row of the cell
+	 * @param col			the column of the cell
+	 * @param direction		the wall to put up
+	 * @return				true if the wall was not there
+	 * @throws IndexOutOfBoundsException	if (row, col) is outside
+	 * 							the maze
+	 * @throws IllegalArgumentException		if the wall is on the
+	 * 							boundary of the maze
+	 */
+	public boolean closeWall(int row, int col, Path direction)
+	{
+		MazeCell cell = checkedBoundaryCell(row, col, direction);
+		if(cell.hasWall(direction)) return false;
+		cell.pathDisconnect(direction);
+		return true;
+	} // closeWall()
+	
+	/**
+	 * Utility method: checks the arguments of openWall() and
+	 *    closeWall()
+	 * 
+	 * @return	the cell at (row, col)
+	 */
+	private MazeCell checkedBoundaryCell(int row, int col, Path direction)
+	{
+		MazeCell cell = checkedCellAt(row, col);
+		if(!cell.hasNeighbor(direction))
+			throw new IllegalArgumentException("the " + direction + " wall of ("
+					+ row + ", " + col + ") is on the boundary of the maze");
+		return cell;
+	} // checkedBoundaryCell()
+	
 	/**
 	 * Utility method: changes the maze instance field an 
 	 * unconnected two-dimensional array of type MazeCell into a
 	 * randomized connected maze
 	 */
-	private void mazify()
+	private void mazify(Random random)
 	{
 		Stack<MazeCell> stack = new Stack<MazeCell>();
 
@@ -121,7 +414,7 @@ public class Maze {
 		{
 			neighbor = null;
 			// randomize the traverse order from the current cell
-			spinner = shuffle(spinner);
+			spinner = shuffle(spinner, random);
 			Path direction = null;
 
 			for(int i = 0; i < spinner.length  && neighbor == null; i++)
@@ -170,11 +463,11 @@ public class Maze {
 	 *    http://stackoverflow.com/questions/1519736/random-shuffling-of-an-array
 	 * 
 	 * @param spinner	the array to shuffle
+	 * @param random	the source of the shuffle
 	 * @return			the shuffled array
 	 */
-	private Path[] shuffle(Path[] spinner)
+	private Path[] shuffle(Path[] spinner, Random random)
 	{
-		Random random = new Random();
 		for(int i = spinner.length - 1; i > 0; i--)
 		{
 			int index = random.nextInt(i + 1);
@@ -192,39 +485,56 @@ public class Maze {
 	 */
 	public void printMaze()
 	{
-		System.out.println("start");
+		System.out.print(toText());
+	} // printMaze()
+	
+	/**
+	 * Output method: returns the text representation of the maze
+	 * printed by printMaze(). fromText() reads it back.
+	 * 
+	 * @return	the maze as text, one line per row of walls
+	 */
+	public String toText()
+	{
+		String newLine = System.lineSeparator();
+		StringBuilder text = new StringBuilder();
+		text.append("start").append(newLine);
 		for(int row = 0; row < rowCount; row++)
 		{
-			String northWalls = "+";
-			String eastWestWalls = "|";
-			String southWalls = "+";
+			StringBuilder northWalls = new StringBuilder("+");
+			StringBuilder eastWestWalls = new StringBuilder("|");
+			StringBuilder southWalls = new StringBuilder("+");
 			for( int col = 0; col < colCount; col++)
 			{
-				MazeCell currentCell = cells[row][col];
-				if(row == 0) northWalls += 
-						currentCell.hasWall(Path.NORTH) ? "���+" : "   +";
-				southWalls += 
-						currentCell.hasWall(Path.SOUTH) ? "���+" : "   +";
-				eastWestWalls += 
-						currentCell.hasWall(Path.EAST) ? "   |" :  "    ";
+				MazeCell currentCell = cellAt(row, col);
+				if(row == 0) northWalls.append(
+						currentCell.hasWall(Path.NORTH) ? "���+" : "   +");
+				southWalls.append(
+						currentCell.hasWall(Path.SOUTH) ? "���+" : "   +");
+				eastWestWalls.append(
+						currentCell.hasWall(Path.EAST) ? "   |" :  "    ");
 			}
-			if(row == 0) System.out.println(northWalls);
-			System.out.println(eastWestWalls);
-			System.out.println(southWalls);
+			if(row == 0) text.append(northWalls).append(newLine);
+			text.append(eastWestWalls).append(newLine);
+			text.append(southWalls).append(newLine);
 		}
 		
 		// for spacing out the "end" label
-		String buffer = "";
 		for(int i = 0; i < (colCount)*4 - 3; i++)
 		{
-			buffer += " ";
+			text.append(' ');
 		}
-		System.out.println(buffer + "end");
-	} // printMaze()
+		text.append("end").append(newLine);
+		return text.toString();
+	} // toText()
 
 	
 ///// Instance Fields //////////////////////////////////////////////
-	protected MazeCell[][] cells;		// the chambers in the maze
+	protected MazeCell[] cells;			// the chambers in the maze, in
+										// storage order
+	final byte[] grid;					// the pathState of each chamber,
+										// in storage order
+	public final CellLayout layout;		// maps (row, col) to storage index
 	final public MazeCell mazeStart;	// the starting chamber
 	final public MazeCell mazeEnd;		// the ending chamber
 	public final int rowCount;			// the number of rows
@@ -250,7 +560,7 @@ public class Maze {
 	 * 		etc...
 	 * @author Iain Davis
 	 */
-	protected enum Path
+	public enum Path
 	{
 		// labels and values
 		NORTH(0b0001), EAST(0b0010), SOUTH(0b0100), WEST(0b1000);
@@ -290,11 +600,10 @@ public class Maze {
 	}// enum Path
 	
 	/**
-	 * Class implements one cell in a Maze represented as a two-
-	 *    dimensional array. MazeCell contains its own "address"
-	 *    in the form of row and column indices into the maze
-	 *    array. MazeCell also contains a pointer back to the
-	 *    maze that contains it.
+	 * Class implements one cell in a Maze. MazeCell contains its own
+	 *    "address" in the form of row and column indices, and the
+	 *    storage index of its pathState byte in the packed grid of
+	 *    the maze that contains it.
 	 *    
 	 * @author Iain Davis
 	 *
@@ -305,19 +614,16 @@ public class Maze {
 		/**
 		 * Default Constructor: initializes values
 		 * 
-		 * @param newRow		the row index (into the maze array)
-		 * 							that points at this cell
-		 * @param newCol		the column index (into the maze
-		 * 							array) that points at this cell
-		 * @param parentMaze	the 2D array that contains this cell
+		 * @param newRow		the row index of this cell
+		 * @param newCol		the column index of this cell
+		 * @param newIndex		the storage index of this cell in
+		 * 							the packed grid
 		 */
-		protected MazeCell(int newRow, int newCol, MazeCell[][] parentMaze)
+		protected MazeCell(int newRow, int newCol, int newIndex)
 		{
 			row = newRow;
 			col = newCol;
-			maze = parentMaze;
-
-			pathState = 0;
+			index = newIndex;
 		} // default MazeCell constructor
 		
 	///// Instance Methods /////////////////////////////////////////
@@ -330,7 +636,7 @@ public class Maze {
 		 * 				has any paths open
 		 */
 		private boolean hasAllWalls(){
-			return (pathState & 0b00001111) == 0;
+			return (grid[index] & 0b00001111) == 0;
 		} // hasAllWalls()
 		
 		/**
@@ -346,7 +652,7 @@ public class Maze {
 		 * opposite to the hasPath() method
 		 */
 		protected boolean hasWall(Path direction){
-			return (pathState & direction.value) == 0;
+			return (grid[index] & direction.value) == 0;
 		} // hasWall()
 		
 		/**
@@ -362,7 +668,7 @@ public class Maze {
 		 * opposite to the hasWall() method
 		 */
 		protected boolean hasPath(Path direction){
-			return (pathState & direction.value) != 0;
+			return (grid[index] & direction.value) != 0;
 		} // hasPath()
 		
 		/**
@@ -378,7 +684,7 @@ public class Maze {
 		 * 						false, if no neighbor exists
 		 */
 		protected boolean hasNeighbor(Path direction){
-			return (pathState & (direction.value << 4)) != 0;
+			return (grid[index] & (direction.value << 4)) != 0;
 		} // hasNeighbor()
 		
 		/**
@@ -393,21 +699,8 @@ public class Maze {
 		 */
 		protected MazeCell getNeighbor(Path direction)
 		{
-			if(hasNeighbor(direction)) 
-			{
-				switch(direction)
-				{
-				case NORTH:
-					return maze[row - 1][col];
-				case EAST:
-					return maze[row][col + 1];
-				case SOUTH:
-					return maze[row + 1][col];
-				case WEST:
-					return maze[row][col - 1];
-				}
-			}
-			return null;
+			int neighbor = neighborIndex(index, direction);
+			return neighbor < 0 ? null : cells[neighbor];
 		} // getNeighbor()
 		
 		/**
@@ -424,26 +717,45 @@ public class Maze {
 		private byte pathConnect(Path direction)
 		{
 			// create outbound path
-			this.pathState |= direction.value;
+			grid[index] |= direction.value;
 			
-			MazeCell that = this.getNeighbor(direction);
-			if(that != null)
+			int that = neighborIndex(index, direction);
+			if(that >= 0)
 				// create inbound path (in neighbor)
-				that.pathState |= direction.getOpposite().value;
+				grid[that] |= direction.getOpposite().value;
 			
-			return this.pathState;
+			return grid[index];
 		} // pathConnect()
+		
+		/**
+		 * Utility method: closes the two-way path between the MazeCell
+		 *    and its neighbor in the indicated direction (the reverse
+		 *    of pathConnect()).
+		 *    
+		 * @param direction		the direction to close the path
+		 * 							from the caller
+		 * @return				the new pathState of the caller
+		 */
+		private byte pathDisconnect(Path direction)
+		{
+			grid[index] &= ~direction.value;
+			
+			int that = neighborIndex(index, direction);
+			if(that >= 0)
+				grid[that] &= ~direction.getOpposite().value;
+			
+			return grid[index];
+		} // pathDisconnect()
 
 		
 	///// Instance Fields //////////////////////////////////////////
 		final int row;
 		final int col;
-		final MazeCell[][] maze;
-		
-		byte pathState; 	// the lower 4 bits of pathState indicate which
+		final int index;	// the slot in grid holding this cell's
+							// pathState: the lower 4 bits indicate which
 							// neighboring cells are logically-adjacent
-							// the upper 4 bits of pathState indicate whether
-							// the array contains array-adjacent cells
+							// the upper 4 bits indicate whether the
+							// grid contains array-adjacent cells
 	} // MazeCell class
 	
 } // Maze class
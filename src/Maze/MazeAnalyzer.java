@@ -0,0 +1,315 @@
+package Maze;
+import Maze.Maze.Path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Class MazeAnalyzer measures the structure of a maze, for choosing
+ *    hard or easy fixtures:
+ * 			- dead ends (cells with one open path) and junctions (three
+ * 			  or four)
+ * 			- corridors, the runs of cells with two open paths between
+ * 			  two cells that have some other number, as a histogram of
+ * 			  their lengths in moves
+ * 			- the length of the path from mazeStart to mazeEnd
+ * 			- the diameter, the longest of all shortest paths
+ *
+ * The counts come from one sweep over the packed wall bits in storage
+ *    order; a corridor is walked from its end with the lower storage
+ *    index, so each is measured once. The sweep can be cut into
+ *    stripes of storage order, swept in parallel: in the row-major
+ *    layout these are stripes of rows, in the others bands of whole
+ *    tiles. The path length and the diameter then take two serial
+ *    breadth-first searches over storage indexes, with two ints per
+ *    cell: one from mazeStart, which reaches mazeEnd and ends at a
+ *    farthest cell, and one from that cell, which ends at the other
+ *    end of a longest path. In a perfect maze (a tree) that path is
+ *    the diameter; in a maze with loops it is a lower bound, and a
+ *    ring of corridor cells with no junction on it is not counted.
+ */
+public final class MazeAnalyzer
+{
+	private MazeAnalyzer() {}	// static methods only
+
+///// Static Methods ///////////////////////////////////////////////
+	/**
+	 * Utility method: analyzes a maze on the calling thread
+	 *
+	 * @param maze	the maze
+	 * @return		what was measured
+	 */
+	public static Report analyze(Maze maze)
+	{
+		return measure(maze, new Stripe[] {
+				new Stripe(maze, 0, maze.layout.capacity()) });
+	} // analyze()
+
+	/**
+	 * Utility method: analyzes a maze, sweeping stripes in parallel
+	 *
+	 * @param maze		the maze
+	 * @param threads	the number of threads to sweep with
+	 * @return			what was measured
+	 * @throws InterruptedException	if the caller is interrupted
+	 */
+	public static Report analyze(final Maze maze, int threads) throws InterruptedException
+	{
+		if(threads <= 1) return analyze(maze);
+
+		final int capacity = maze.layout.capacity();
+		int stripes = Math.min(maze.rowCount, 4 * threads);
+		List<Future<Stripe>> futures = new ArrayList<Future<Stripe>>(stripes);
+		ExecutorService pool = ThreadPools.newCpuPool("maze-analyze", threads);
+		try
+		{
+			for(int s = 0; s < stripes; s++)
+			{
+				final int first = (int) ((long) capacity * s / stripes);
+				final int end = (int) ((long) capacity * (s + 1) / stripes);
+				futures.add(pool.submit(new Callable<Stripe>() {
+					public Stripe call()
+					{
+						return new Stripe(maze, first, end);
+					}
+				}));
+			}
+
+			Stripe[] swept = new Stripe[stripes];
+			for(int s = 0; s < stripes; s++)
+				swept[s] = futures.get(s).get();
+			return measure(maze, swept);
+		}
+		catch(ExecutionException e)
+		{
+			if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			if(e.getCause() instanceof Error) throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+	} // analyze()
+
+	/**
+	 * Utility method: adds up the stripes, then runs the two searches
+	 */
+	private static Report measure(Maze maze, Stripe[] stripes)
+	{
+		long degrees = 0;
+		long deadEnds = 0;
+		long junctions = 0;
+		long[] corridors = new long[32];
+		int longestCorridor = 0;
+		for(Stripe stripe : stripes)
+		{
+			degrees += stripe.degrees;
+			deadEnds += stripe.deadEnds;
+			junctions += stripe.junctions;
+			for(int bin = 0; bin < corridors.length; bin++)
+				corridors[bin] += stripe.corridors[bin];
+			longestCorridor = Math.max(longestCorridor, stripe.longestCorridor);
+		}
+
+		int[] distance = new int[maze.layout.capacity()];
+		int[] queue = new int[maze.cellCount];
+		int far = search(maze, maze.mazeStart.index, distance, queue);
+		int pathLength = distance[maze.mazeEnd.index];
+		int other = search(maze, far, distance, queue);
+
+		int length = corridors.length;
+		while(length > 0 && corridors[length - 1] == 0) length--;
+		return new Report(maze.cellCount, degrees / 2, deadEnds, junctions,
+				Arrays.copyOf(corridors, length), longestCorridor, pathLength,
+				distance[other], maze.layout.row(far), maze.layout.col(far),
+				maze.layout.row(other), maze.layout.col(other));
+	} // measure()
+
+	/**
+	 * Utility method: a breadth-first search over storage indexes
+	 *
+	 * @param from		the storage index of the first cell
+	 * @param distance	receives the moves to each cell, or -1
+	 * @param queue		room for every cell
+	 * @return			the storage index of a cell farthest from the
+	 * 						first
+	 */
+	private static int search(Maze maze, int from, int[] distance, int[] queue)
+	{
+		Arrays.fill(distance, -1);
+		int head = 0;
+		int tail = 0;
+		distance[from] = 0;
+		queue[tail++] = from;
+		while(head < tail)
+		{
+			int cell = queue[head++];
+			int open = openBits(maze.grid[cell]);
+			while(open != 0)
+			{
+				int d = Integer.numberOfTrailingZeros(open);
+				open &= open - 1;
+				int next = maze.neighborIndex(cell, DIRECTIONS[d]);
+				if(distance[next] >= 0) continue;
+				distance[next] = distance[cell] + 1;
+				queue[tail++] = next;
+			}
+		}
+		return queue[tail - 1];		// queued in order of distance
+	} // search()
+
+	/**
+	 * Utility method: the open paths of a cell to neighbors inside the
+	 *    maze, as one bit per Path ordinal
+	 */
+	static int openBits(byte state)
+	{
+		return state & (state >>> 4) & 0xF;
+	} // openBits()
+
+	private static final Path[] DIRECTIONS = Path.values();	// by ordinal
+
+///// Inner Classes ////////////////////////////////////////////////
+	/**
+	 * Class sweeps the storage indexes first..end-1 of a maze, and
+	 *    walks the corridors that start there
+	 */
+	private static final class Stripe
+	{
+		Stripe(Maze maze, int first, int end)
+		{
+			byte[] grid = maze.grid;
+			for(int index = first; index < end; index++)
+			{
+				if(!maze.layout.isCell(index)) continue;	// padding slot
+				int open = openBits(grid[index]);
+				int degree = Integer.bitCount(open);
+				degrees += degree;
+				if(degree == 2) continue;
+				if(degree == 1) deadEnds++;
+				else if(degree > 2) junctions++;
+
+				// walk each corridor out of this cell to its other end
+				for(int start = open; start != 0; start &= start - 1)
+				{
+					int d = Integer.numberOfTrailingZeros(start);
+					int cell = maze.neighborIndex(index, DIRECTIONS[d]);
+					int length = 1;
+					int state;
+					while(Integer.bitCount(state = openBits(grid[cell])) == 2)
+					{
+						d = Integer.numberOfTrailingZeros(state & ~(1 << ((d + 2) & 3)));
+						cell = maze.neighborIndex(cell, DIRECTIONS[d]);
+						length++;
+					}
+					// from both ends only once; a loop back to this
+					// cell by the lower of its two directions
+					if(cell > index || (cell == index
+							&& Integer.numberOfTrailingZeros(start) < ((d + 2) & 3)))
+					{
+						corridors[31 - Integer.numberOfLeadingZeros(length)]++;
+						longestCorridor = Math.max(longestCorridor, length);
+					}
+				}
+			}
+		} // Stripe constructor
+
+		long degrees;			// open paths, each counted from both sides
+		long deadEnds;
+		long junctions;
+		final long[] corridors = new long[32];	// by floor(log2(length))
+		int longestCorridor;
+	} // Stripe class
+
+	/**
+	 * Class holds the findings of analyze()
+	 */
+	public static final class Report
+	{
+		Report(long cells, long edges, long deadEnds, long junctions, long[] corridors,
+				int longestCorridor, int pathLength, int diameter,
+				int diameterFromRow, int diameterFromCol, int diameterToRow, int diameterToCol)
+		{
+			this.cells = cells;
+			this.edges = edges;
+			this.deadEnds = deadEnds;
+			this.junctions = junctions;
+			this.corridors = corridors;
+			this.longestCorridor = longestCorridor;
+			this.pathLength = pathLength;
+			this.diameter = diameter;
+			this.diameterFromRow = diameterFromRow;
+			this.diameterFromCol = diameterFromCol;
+			this.diameterToRow = diameterToRow;
+			this.diameterToCol = diameterToCol;
+		} // Report constructor
+
+		/**
+		 * @return	the number of corridors
+		 */
+		public long corridorCount()
+		{
+			long count = 0;
+			for(long bin : corridors) count += bin;
+			return count;
+		} // corridorCount()
+
+		/**
+		 * @param bin	a bin of the corridor histogram
+		 * @return		the number of corridors with 2^bin to
+		 * 					2^(bin+1) - 1 moves
+		 */
+		public long corridors(int bin)
+		{
+			return bin < corridors.length ? corridors[bin] : 0;
+		} // corridors()
+
+		/**
+		 * @return	the number of bins up to the last non-empty one
+		 */
+		public int corridorBins()
+		{
+			return corridors.length;
+		} // corridorBins()
+
+		@Override
+		public String toString()
+		{
+			StringBuilder out = new StringBuilder();
+			out.append(cells).append(" cells, ").append(edges).append(" paths, ")
+				.append(deadEnds).append(" dead ends, ").append(junctions).append(" junctions, ")
+				.append(corridorCount()).append(" corridors (longest ")
+				.append(longestCorridor).append("; by length");
+			for(int bin = 0; bin < corridors.length; bin++)
+			{
+				out.append(' ').append(1 << bin);
+				if(bin > 0) out.append('-').append((2 << bin) - 1);
+				out.append(':').append(corridors[bin]);
+			}
+			out.append("), path ").append(pathLength).append(", diameter ").append(diameter)
+				.append(" from (").append(diameterFromRow).append(", ").append(diameterFromCol)
+				.append(") to (").append(diameterToRow).append(", ").append(diameterToCol)
+				.append(')');
+			return out.toString();
+		} // toString()
+
+		public final long cells;
+		public final long edges;			// open paths, each counted once
+		public final long deadEnds;			// cells with one open path
+		public final long junctions;		// cells with three or four
+		public final int longestCorridor;	// in moves
+		public final int pathLength;		// moves from mazeStart to mazeEnd, or -1
+		public final int diameter;			// moves along a longest shortest path
+		public final int diameterFromRow;
+		public final int diameterFromCol;
+		public final int diameterToRow;
+		public final int diameterToCol;
+		private final long[] corridors;		// corridors by floor(log2(moves))
+	} // Report class
+} // MazeAnalyzer class
@@ -0,0 +1,81 @@
+package Maze;
+
+/**
+ * Driver
+ * main() method times maze generation and both solvers under each
+ *    CellLayout, and prints the throughput of each (in cells per
+ *    second) next to its change relative to the row-major layout.
+ *
+ * Usage: java Maze.MazeBenchmark [side] [layout]
+ * 			side	- the maze is side x side cells (default 1024)
+ * 			layout	- run only one layout (ROW_MAJOR, TILED or
+ * 						MORTON); with no layout all three are run
+ *
+ * The JVM cannot read hardware counters, so cache misses are taken
+ *    by running one layout at a time under perf, e.g.
+ * 		perf stat -e cache-misses,cache-references \
+ * 			java -cp bin Maze.MazeBenchmark 2048 TILED
+ *    and comparing the counts between layouts.
+ */
+public class MazeBenchmark
+{
+	public static void main(String[] args)
+	{
+		int side = args.length > 0 ? Integer.parseInt(args[0]) : 1024;
+		CellLayout.Type[] types = args.length > 1
+				? new CellLayout.Type[] { CellLayout.Type.valueOf(args[1]) }
+				: CellLayout.Type.values();
+		runAll(side, types);
+	} // main()
+
+	/**
+	 * Utility method: warms up, then times each layout in turn
+	 *
+	 * @param side	the number of rows and columns
+	 * @param types	the layouts to time
+	 */
+	private static void runAll(int side, CellLayout.Type[] types)
+	{
+		for(CellLayout.Type type : types)
+			time(Math.min(side, 256), type);	// warm-up, not reported
+
+		double[] base = null;
+		System.out.printf("%-10s %14s %14s %14s%n",
+				"layout", "generate", "BFS", "DFS");
+		for(CellLayout.Type type : types)
+		{
+			double[] rates = time(side, type);
+			if(base == null) base = rates;
+
+			System.out.printf("%-10s", type);
+			for(int i = 0; i < rates.length; i++)
+				System.out.printf(" %8.2fM/s %+4.0f%%",
+						rates[i] / 1e6, 100.0 * (rates[i] / base[i] - 1));
+			System.out.println();
+		}
+	} // runAll()
+
+	/**
+	 * Utility method: times one generate/BFS/DFS round
+	 *
+	 * @param side	the number of rows and columns
+	 * @param type	the layout to use
+	 * @return		the throughput of each stage, in cells per second
+	 */
+	private static double[] time(int side, CellLayout.Type type)
+	{
+		long t0 = System.nanoTime();
+		Maze maze = new Maze(side, side, type);
+		long t1 = System.nanoTime();
+		new BFS_Solver(maze).solve();
+		long t2 = System.nanoTime();
+		new DFS_Solver(maze).solve();
+		long t3 = System.nanoTime();
+
+		double cells = maze.cellCount;
+		return new double[] {
+				cells * 1e9 / (t1 - t0),
+				cells * 1e9 / (t2 - t1),
+				cells * 1e9 / (t3 - t2) };
+	} // time()
+} // MazeBenchmark class
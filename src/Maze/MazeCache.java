@@ -0,0 +1,224 @@
+package Maze;
+
+import cache.LruCache;
+
+/**
+ * Class MazeCache keeps recently generated mazes and recently solved
+ *    paths, so that asking again for the same seeded maze, or for the
+ *    same path through it, skips mazify() or the solver.
+ *
+ * Mazes are keyed by (generator, seed, rows, cols) and weighed by their
+ *    heap footprint, mostly the MazeCell objects; paths are keyed by
+ *    (maze, endpoints, algorithm) and weighed by the bytes of their
+ *    MazePath encoding, and an unreachable end by the fixed cost of
+ *    an entry alone. Each kind has its own weight bound and its own
+ *    hit/miss/eviction counters.
+ *    A maze evicted while paths through it are still cached is simply
+ *    regenerated (identically, from its seed) if it is needed again.
+ *
+ * Safe for use from many solver threads; see LruCache. Cached mazes
+ *    are shared, so callers must not change their walls.
+ */
+public class MazeCache
+{
+///// Constructors /////////////////////////////////////////////////
+	/**
+	 * Default constructor
+	 *
+	 * @param mazeBytes	the total heap bytes of the cached mazes
+	 * @param pathBytes	the total encoded bytes of the cached paths
+	 */
+	public MazeCache(long mazeBytes, long pathBytes)
+	{
+		mazes = new LruCache<MazeKey, Maze>(mazeBytes, new LruCache.Weigher<Maze>() {
+			public long weigh(Maze maze) { return mazeBytes(maze); }
+		});
+		paths = new LruCache<PathKey, MazePath>(pathBytes, new LruCache.Weigher<MazePath>() {
+			public long weigh(MazePath path)
+			{
+				return (path == null ? 0 : path.encodedBytes()) + PATH_OVERHEAD_BYTES;
+			}
+		});
+	} // default MazeCache constructor
+
+///// Static Methods ///////////////////////////////////////////////
+	/**
+	 * @return	the approximate heap bytes of a maze: its grid and its
+	 * 				MazeCell objects
+	 */
+	static long mazeBytes(Maze maze)
+	{
+		return maze.grid.length + (long) maze.cells.length * CELL_BYTES;
+	} // mazeBytes()
+
+///// Instance Methods /////////////////////////////////////////////
+	/**
+	 * Utility method: returns the maze mazify() makes from the given
+	 *    seed, generating it only if it is not cached
+	 *
+	 * @param key	the generator, seed and dimensions of the maze
+	 * @return		the (shared) maze
+	 */
+	public Maze maze(MazeKey key)
+	{
+		return mazes.get(key, new LruCache.Loader<MazeKey, Maze>() {
+			public Maze load(MazeKey k) { return new Maze(k.rows, k.cols, k.seed); }
+		});
+	} // maze()
+
+	/**
+	 * Utility method: returns the path found by the given algorithm
+	 *    between two cells of a seeded maze, solving it only if it is
+	 *    not cached
+	 *
+	 * @param key		the maze
+	 * @param fromRow	the row of the first cell of the path
+	 * @param fromCol	the column of the first cell of the path
+	 * @param toRow		the row of the last cell of the path
+	 * @param toCol		the column of the last cell of the path
+	 * @param algorithm	the solver to use
+	 * @return			the path, or null if the end cannot be reached
+	 * @throws IndexOutOfBoundsException	if either cell is outside
+	 * 						the maze
+	 */
+	public MazePath path(final MazeKey key, int fromRow, int fromCol,
+			int toRow, int toCol, SolverType algorithm)
+	{
+		return paths.get(new PathKey(key, fromRow, fromCol, toRow, toCol, algorithm),
+				new LruCache.Loader<PathKey, MazePath>() {
+					public MazePath load(PathKey k)
+					{
+						MazeSolver solver = k.algorithm.create(maze(key),
+								k.fromRow, k.fromCol, k.toRow, k.toCol);
+						solver.solve();
+						return solver.getPath();
+					}
+				});
+	} // path()
+
+	/**
+	 * @return	the counters of both caches, one line each
+	 */
+	@Override
+	public String toString()
+	{
+		return "maze cache: " + mazes + "\npath cache: " + paths + "\n";
+	} // toString()
+
+///// Instance Fields //////////////////////////////////////////////
+	final LruCache<MazeKey, Maze> mazes;
+	final LruCache<PathKey, MazePath> paths;
+
+	/** the approximate fixed cost of a cached path: object headers,
+	 *  the key and the cache entry */
+	static final int PATH_OVERHEAD_BYTES = 96;
+
+	/** the approximate heap cost of one cell of a maze: a MazeCell
+	 *  (header, outer reference, row, col and index) and its slot in
+	 *  the cells array */
+	static final int CELL_BYTES = 36;
+
+	/** the name of the generator used by the Maze constructors */
+	public static final String BACKTRACKER = "backtracker";
+
+///// Inner Classes ////////////////////////////////////////////////
+	/**
+	 * Class names one generated maze. Two equal keys always describe
+	 *    the same maze.
+	 */
+	public static final class MazeKey
+	{
+		/**
+		 * Default constructor: a maze made by the Maze constructors
+		 */
+		public MazeKey(long seed, int rows, int cols)
+		{
+			this(BACKTRACKER, seed, rows, cols);
+		} // default MazeKey constructor
+
+		public MazeKey(String generator, long seed, int rows, int cols)
+		{
+			if(!generator.equals(BACKTRACKER))
+				throw new IllegalArgumentException("unknown generator " + generator);
+			this.generator = generator;
+			this.seed = seed;
+			// the same clamping as the Maze constructor
+			this.rows = rows < 2 ? 2 : rows;
+			this.cols = cols < 2 ? 2 : cols;
+		} // MazeKey constructor
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if(!(o instanceof MazeKey)) return false;
+			MazeKey that = (MazeKey) o;
+			return seed == that.seed && rows == that.rows && cols == that.cols
+					&& generator.equals(that.generator);
+		} // equals()
+
+		@Override
+		public int hashCode()
+		{
+			int h = generator.hashCode();
+			h = 31 * h + Long.hashCode(seed);
+			h = 31 * h + rows;
+			return 31 * h + cols;
+		} // hashCode()
+
+		@Override
+		public String toString()
+		{
+			return generator + "-" + seed + "-" + rows + "x" + cols;
+		} // toString()
+
+		public final String generator;
+		public final long seed;
+		public final int rows;
+		public final int cols;
+	} // MazeKey class
+
+	/**
+	 * Class names one solved path
+	 */
+	static final class PathKey
+	{
+		PathKey(MazeKey maze, int fromRow, int fromCol, int toRow, int toCol,
+				SolverType algorithm)
+		{
+			this.maze = maze;
+			this.fromRow = fromRow;
+			this.fromCol = fromCol;
+			this.toRow = toRow;
+			this.toCol = toCol;
+			this.algorithm = algorithm;
+		} // PathKey constructor
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if(!(o instanceof PathKey)) return false;
+			PathKey that = (PathKey) o;
+			return fromRow == that.fromRow && fromCol == that.fromCol
+					&& toRow == that.toRow && toCol == that.toCol
+					&& algorithm == that.algorithm && maze.equals(that.maze);
+		} // equals()
+
+		@Override
+		public int hashCode()
+		{
+			int h = maze.hashCode();
+			h = 31 * h + fromRow;
+			h = 31 * h + fromCol;
+			h = 31 * h + toRow;
+			h = 31 * h + toCol;
+			return 31 * h + algorithm.hashCode();
+		} // hashCode()
+
+		final MazeKey maze;
+		final int fromRow;
+		final int fromCol;
+		final int toRow;
+		final int toCol;
+		final SolverType algorithm;
+	} // PathKey class
+} // MazeCache class
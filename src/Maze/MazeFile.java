@@ -0,0 +1,416 @@
+package Maze;
+import Maze.Maze.Path;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Class MazeFile reads a maze stored in a file, through a read-only
+ *    memory mapping, so the maze may be far larger than the heap (or
+ *    than physical memory: the page cache holds whatever part of it is
+ *    being searched).
+ *
+ * The file is a 32-byte header followed by 2 bits per cell, cells in
+ *    row-major order, 4 cells per byte from the low bits up:
+ * 			header	- int MAGIC, int VERSION, long rows, long cols
+ * 			bit 0	- the path EAST of the cell is open
+ * 			bit 1	- the path SOUTH of the cell is open
+ *    The NORTH and WEST paths of a cell are the SOUTH and EAST paths
+ *    of its neighbors. Writers never open a path out of the maze, so
+ *    at 2 bits per cell a 10^10-cell maze takes 2.5GB.
+ *
+ * write() stores an in-memory Maze; generate() writes a perfect maze
+ *    of any height row by row with Eller's algorithm, holding only a
+ *    few arrays of one row in memory.
+ *
+ * MazeFile is a CellGraph whose cell ids are row * cols + col.
+ */
+public class MazeFile implements CellGraph, Closeable
+{
+///// Constructors /////////////////////////////////////////////////
+	/**
+	 * Default constructor: called by open()
+	 */
+	private MazeFile(long rows, long cols, long firstByte, MappedRegion cells)
+	{
+		this.rows = rows;
+		this.cols = cols;
+		this.firstByte = firstByte;
+		this.cells = cells;
+	} // default MazeFile constructor
+
+///// Static Methods ///////////////////////////////////////////////
+	/**
+	 * Factory method: maps a maze file for reading
+	 *
+	 * @param file	a file written by write() or generate()
+	 * @return		the maze
+	 * @throws IOException	if the file cannot be read, or is not a
+	 * 						maze file
+	 */
+	public static MazeFile open(java.nio.file.Path file) throws IOException
+	{
+		long[] size = readSize(file);
+		return openRows(file, 0, size[0]);
+	} // open()
+
+	/**
+	 * Factory method: maps only the rows firstRow..endRow-1 of a maze
+	 *    file, for a process that works on one stripe of a maze too
+	 *    large to map whole. Cell ids are those of the whole maze, but
+	 *    hasPath() may only be asked of cells in those rows, and asked
+	 *    for NORTH only below firstRow (whose NORTH paths are stored
+	 *    in the row above it).
+	 *
+	 * @param file		a file written by write() or generate()
+	 * @param firstRow	the first row to map
+	 * @param endRow	the row after the last row to map
+	 * @return			the maze
+	 * @throws IOException	if the file cannot be read, or is not a
+	 * 						maze file
+	 * @throws IndexOutOfBoundsException	if the rows are not in the
+	 * 						maze
+	 */
+	public static MazeFile openRows(java.nio.file.Path file, long firstRow, long endRow)
+			throws IOException
+	{
+		long[] size = readSize(file);
+		long rows = size[0];
+		long cols = size[1];
+		if(firstRow < 0 || endRow > rows || firstRow >= endRow)
+			throw new IndexOutOfBoundsException("rows " + firstRow + ".." + (endRow - 1)
+					+ " of a maze of " + rows);
+		long firstByte = Math.multiplyExact(firstRow, cols) >>> 2;
+		long endByte = (Math.multiplyExact(endRow, cols) + 3) >>> 2;
+		return new MazeFile(rows, cols, firstByte,
+				MappedRegion.open(file, HEADER + firstByte, endByte - firstByte, false));
+	} // openRows()
+
+	/**
+	 * Utility method: reads the size from the header of a maze file
+	 *
+	 * @param file	a file written by write() or generate()
+	 * @return		{ rows, cols }
+	 * @throws IOException	if the file cannot be read, or is not a
+	 * 						maze file
+	 */
+	static long[] readSize(java.nio.file.Path file) throws IOException
+	{
+		long rows;
+		long cols;
+		try(InputStream in = Files.newInputStream(file))
+		{
+			DataInputStream header = new DataInputStream(in);
+			if(header.readInt() != MAGIC || header.readInt() != VERSION)
+				throw new IOException(file + " is not a maze file");
+			rows = header.readLong();
+			cols = header.readLong();
+		}
+		if(rows < 1 || cols < 1)
+			throw new IOException(file + " has " + rows + " x " + cols + " cells");
+		return new long[] { rows, cols };
+	} // readSize()
+
+	/**
+	 * Output method: stores an in-memory maze in a maze file
+	 *
+	 * @param maze	the maze
+	 * @param file	the file to write (replaced if it exists)
+	 * @throws IOException	if the file cannot be written
+	 */
+	public static void write(Maze maze, java.nio.file.Path file) throws IOException
+	{
+		try(CellWriter out = new CellWriter(file, maze.rowCount, maze.colCount))
+		{
+			for(int row = 0; row < maze.rowCount; row++)
+			{
+				for(int col = 0; col < maze.colCount; col++)
+				{
+					int index = maze.cellAt(row, col).index;
+					out.add(maze.isOpen(index, Path.EAST), maze.isOpen(index, Path.SOUTH));
+				}
+			}
+		}
+	} // write()
+
+	/**
+	 * Output method: generates a perfect maze (exactly one path
+	 *    between any two cells) straight into a maze file, one row at
+	 *    a time, with Eller's algorithm:
+	 * 			- each cell of a row belongs to a set of cells already
+	 * 			  connected through the rows above
+	 * 			- neighboring cells of different sets are joined at
+	 * 			  random, merging their sets
+	 * 			- every set opens at least one path south, at random,
+	 * 			  so no set is cut off; cells below with no path from
+	 * 			  above start sets of their own
+	 * 			- the last row joins every remaining set
+	 *    Memory is a few arrays of cols entries, whatever rows is.
+	 *
+	 * @param file	the file to write (replaced if it exists)
+	 * @param rows	the number of rows, rows >= 1
+	 * @param cols	the number of columns, cols >= 1
+	 * @param seed	chooses the maze
+	 * @throws IOException	if the file cannot be written
+	 */
+	public static void generate(java.nio.file.Path file, long rows, int cols, long seed)
+			throws IOException
+	{
+		EllerRows maze = new EllerRows(rows, cols, seed);
+		try(CellWriter out = new CellWriter(file, rows, cols))
+		{
+			for(long row = 0; row < rows; row++)
+			{
+				maze.next();
+				for(int c = 0; c < cols; c++)
+					out.add(maze.east[c], maze.south[c]);
+			}
+		}
+	} // generate()
+
+///// Instance Methods /////////////////////////////////////////////
+	/**
+	 * @return	the number of cells in the maze
+	 */
+	public long cellCount()
+	{
+		return rows * cols;
+	} // cellCount()
+
+	@Override
+	public long cellId(long row, long col)
+	{
+		if(row < 0 || row >= rows || col < 0 || col >= cols) return NONE;
+		return row * cols + col;
+	} // cellId()
+
+	@Override
+	public long rowOf(long cell)
+	{
+		return cell / cols;
+	} // rowOf()
+
+	@Override
+	public long colOf(long cell)
+	{
+		return cell % cols;
+	} // colOf()
+
+	@Override
+	public boolean hasPath(long cell, Path direction)
+	{
+		switch(direction)
+		{
+		case NORTH:	return cell >= cols && bit(cell - cols, SOUTH_BIT);
+		case EAST:	return bit(cell, EAST_BIT);
+		case SOUTH:	return bit(cell, SOUTH_BIT);
+		case WEST:	return cell > 0 && bit(cell - 1, EAST_BIT);	// never set on the last column
+		default:	return false;
+		}
+	} // hasPath()
+
+	@Override
+	public long neighbor(long cell, Path direction)
+	{
+		switch(direction)
+		{
+		case NORTH:	return cell >= cols ? cell - cols : NONE;
+		case EAST:	return cell % cols < cols - 1 ? cell + 1 : NONE;
+		case SOUTH:	return cell < cellCount() - cols ? cell + cols : NONE;
+		case WEST:	return cell % cols > 0 ? cell - 1 : NONE;
+		default:	return NONE;
+		}
+	} // neighbor()
+
+	@Override
+	public void close() throws IOException
+	{
+		cells.close();
+	} // close()
+
+	private boolean bit(long cell, int bit)
+	{
+		return (cells.get((cell >>> 2) - firstByte) & (bit << ((cell & 3) * 2))) != 0;
+	} // bit()
+
+///// Instance Fields //////////////////////////////////////////////
+	public final long rows;
+	public final long cols;
+	private final long firstByte;			// of the mapped rows, in the file's cells
+	private final MappedRegion cells;		// 2 bits per cell
+
+	private static final int MAGIC = 0x4d415a45;	// "MAZE"
+	private static final int VERSION = 1;
+	private static final int HEADER = 32;			// bytes before the cells
+	private static final int EAST_BIT = 1;
+	private static final int SOUTH_BIT = 2;
+
+///// Inner Classes ////////////////////////////////////////////////
+	/**
+	 * Class writes the header and then the cells of a maze file, in
+	 *    order, through a large buffer
+	 */
+	private static final class CellWriter implements Closeable
+	{
+		CellWriter(java.nio.file.Path file, long rows, long cols) throws IOException
+		{
+			out = new DataOutputStream(new BufferedOutputStream(
+					Files.newOutputStream(file), 1 << 20));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(rows);
+			out.writeLong(cols);
+			out.write(new byte[HEADER - 24]);
+		} // CellWriter constructor
+
+		void add(boolean east, boolean south) throws IOException
+		{
+			int bits = (east ? EAST_BIT : 0) | (south ? SOUTH_BIT : 0);
+			pending |= bits << ((count & 3) * 2);
+			if((++count & 3) == 0)
+			{
+				out.write(pending);
+				pending = 0;
+			}
+		} // add()
+
+		@Override
+		public void close() throws IOException
+		{
+			if((count & 3) != 0) out.write(pending);
+			out.close();
+		} // close()
+
+		private final DataOutputStream out;
+		private int pending;		// the cells of the current byte
+		private long count;			// cells written
+	} // CellWriter class
+
+	/**
+	 * Class produces a perfect maze one row at a time with Eller's
+	 *    algorithm, as described at generate(). Each call to next()
+	 *    fills east and south with the open paths of the next row.
+	 *    The rows depend only on the size and the seed, so every
+	 *    store of the same maze holds the same cells.
+	 */
+	static final class EllerRows
+	{
+		/**
+		 * @param rows	the number of rows, rows >= 1
+		 * @param cols	the number of columns, cols >= 1
+		 * @param seed	chooses the maze
+		 */
+		EllerRows(long rows, int cols, long seed)
+		{
+			if(rows < 1 || cols < 1)
+				throw new IllegalArgumentException(rows + " x " + cols + " cells");
+			this.rows = rows;
+			this.cols = cols;
+			random = new SplittableRandom(seed);
+			set = new int[cols];
+			parent = new int[cols];
+			someCell = new int[cols];
+			rename = new int[cols];
+			carried = new boolean[cols];
+			east = new boolean[cols];
+			south = new boolean[cols];
+			Arrays.fill(set, -1);
+		} // EllerRows constructor
+
+		/**
+		 * Utility method: generates the next row into east and south
+		 */
+		void next()
+		{
+			boolean lastRow = ++row == rows - 1;
+			for(int c = 0; c < cols; c++)
+			{
+				if(set[c] < 0) set[c] = c;
+				parent[set[c]] = set[c];
+			}
+
+			for(int c = 0; c < cols - 1; c++)
+			{
+				int a = find(parent, set[c]);
+				int b = find(parent, set[c + 1]);
+				east[c] = a != b && (lastRow || random.nextInt(2) == 0);
+				if(east[c]) parent[Math.max(a, b)] = Math.min(a, b);
+			}
+			east[cols - 1] = false;
+
+			if(lastRow)
+				Arrays.fill(south, false);
+			else
+			{
+				for(int c = 0; c < cols; c++)
+					carried[find(parent, set[c])] = false;
+				for(int c = 0; c < cols; c++)
+				{
+					int root = find(parent, set[c]);
+					south[c] = random.nextInt(2) == 0;
+					if(south[c]) carried[root] = true;
+					someCell[root] = c;
+				}
+				for(int c = 0; c < cols; c++)
+				{
+					int root = find(parent, set[c]);
+					if(!carried[root])
+					{
+						south[someCell[root]] = true;
+						carried[root] = true;
+					}
+				}
+			}
+
+			// the row below inherits the sets carried south
+			Arrays.fill(rename, -1);
+			for(int c = 0; c < cols; c++)
+			{
+				if(south[c])
+				{
+					int root = find(parent, set[c]);
+					if(rename[root] < 0) rename[root] = c;
+					set[c] = rename[root];
+				}
+				else
+					set[c] = -1;
+			}
+		} // next()
+
+		/**
+		 * Utility method: the root of a set, halving the path to it
+		 */
+		private static int find(int[] parent, int x)
+		{
+			while(parent[x] != x)
+			{
+				parent[x] = parent[parent[x]];
+				x = parent[x];
+			}
+			return x;
+		} // find()
+
+		final boolean[] east;		// the row's open paths east
+		final boolean[] south;		// the row's open paths south
+		private final long rows;
+		private final int cols;
+		private final SplittableRandom random;
+		private long row = -1;		// the row last generated
+
+		// set[c] is the set of column c, named by the leftmost column
+		// of the row holding one of its cells; sets merge in a
+		// union-find forest over those names
+		private final int[] set;
+		private final int[] parent;
+		private final int[] someCell;		// per set: a column in it
+		private final int[] rename;
+		private final boolean[] carried;	// per set: has a path south
+	} // EllerRows class
+} // MazeFile class
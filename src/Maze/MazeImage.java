@@ -0,0 +1,495 @@
+package Maze;
+import Maze.Maze.Path;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Class MazeImage draws a maze, optionally with a path through it or
+ *    the traversal of a solver as a heat map, to a PNG or a raw PPM
+ *    image, using only the JDK.
+ *
+ * Each cell is a square of cellPixels pixels, with 1-pixel walls and
+ *    wall posts between cells, so an R x C maze is an image of
+ *    C * (cellPixels + 1) + 1 by R * (cellPixels + 1) + 1 pixels. The
+ *    openings at mazeStart and mazeEnd are drawn in the outer wall.
+ *
+ * The image is never held whole. It is cut into bands of cell rows,
+ *    rendered (and, for PNG, filtered and deflated) in parallel, and
+ *    written in order, with at most a few bands per thread in memory
+ *    at once. A PNG's pixel data is a single zlib stream; each band is
+ *    deflated on its own and ends on a sync flush, so the compressed
+ *    bands simply concatenate, and the Adler-32 of the stream is
+ *    computed as the bands are written.
+ *
+ * Usage:
+ * 			MazeImage image = new MazeImage(maze, 4, threads);
+ * 			image.showTraversal(solver);				// optional
+ * 			image.showPath(solver.getPath());			// optional
+ * 			image.write(file, MazeImage.Format.PNG);
+ */
+public class MazeImage
+{
+///// Constructors /////////////////////////////////////////////////
+	/**
+	 * Default constructor
+	 *
+	 * @param maze			the maze to draw
+	 * @param cellPixels	the width and height of a cell, in pixels
+	 * @param threads		the number of threads to render with
+	 */
+	public MazeImage(Maze maze, int cellPixels, int threads)
+	{
+		if(cellPixels < 1)
+			throw new IllegalArgumentException("cellPixels < 1");
+		this.maze = maze;
+		this.cellPixels = cellPixels;
+		this.threads = Math.max(1, threads);
+		width = Math.toIntExact((long) maze.colCount * (cellPixels + 1) + 1);
+		height = (long) maze.rowCount * (cellPixels + 1) + 1;
+	} // default MazeImage constructor
+
+///// Instance Methods /////////////////////////////////////////////
+	/**
+	 * Utility method: draws a path over the maze
+	 *
+	 * @param path	the path, or null to draw none
+	 */
+	public void showPath(MazePath path)
+	{
+		if(path == null)
+		{
+			onPath = null;
+			return;
+		}
+		onPath = new BitSet();
+		MazePath.Cursor cursor = path.cursor();
+		do
+		{
+			onPath.set(maze.checkedCellAt(cursor.row(), cursor.col()).index);
+		} while(cursor.next());
+	} // showPath()
+
+	/**
+	 * Utility method: colors each cell a solver visited by when it was
+	 *    visited, from blue (first) to yellow (last)
+	 *
+	 * @param solver	a solver that has run on this maze, or null for
+	 * 						no heat map (as is a solver that keeps no solution
+	 * 						array)
+	 */
+	public void showTraversal(MazeSolver solver)
+	{
+		traversal = solver;
+		lastOrdinal = 1;
+		if(solver == null || solver.solution == null)
+		{
+			traversal = null;	// it keeps no traversal order
+			return;
+		}
+		for(MazeSolver.SolutionCell sc : solver.solution)
+		{
+			if(sc != null && sc.visited)
+				lastOrdinal = Math.max(lastOrdinal, sc.searchOrdinal);
+		}
+	} // showTraversal()
+
+	/**
+	 * @return	the width of the image, in pixels
+	 */
+	public int width()
+	{
+		return width;
+	} // width()
+
+	/**
+	 * @return	the height of the image, in pixels
+	 */
+	public long height()
+	{
+		return height;
+	} // height()
+
+	/**
+	 * Output method: writes the image to a file
+	 *
+	 * @param file		the file (replaced if it exists)
+	 * @param format	PNG or PPM
+	 * @throws IOException			if the file cannot be written
+	 * @throws InterruptedException	if the caller is interrupted
+	 */
+	public void write(java.nio.file.Path file, Format format)
+			throws IOException, InterruptedException
+	{
+		try(OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))
+		{
+			write(out, format);
+		}
+	} // write()
+
+	/**
+	 * Output method: writes the image to a stream, which is left open
+	 *
+	 * @param out		the stream
+	 * @param format	PNG or PPM
+	 * @throws IOException			if the stream cannot be written
+	 * @throws InterruptedException	if the caller is interrupted
+	 */
+	public void write(OutputStream out, final Format format)
+			throws IOException, InterruptedException
+	{
+		if(format == Format.PNG)
+		{
+			if(height > Integer.MAX_VALUE)
+				throw new IllegalArgumentException("a PNG is at most 2^31 - 1 pixels high");
+			out.write(PNG_SIGNATURE);
+			byte[] header = new byte[13];
+			putInt(header, 0, width);
+			putInt(header, 4, (int) height);
+			header[8] = 8;		// bits per sample
+			header[9] = 2;		// RGB
+			writeChunk(out, "IHDR", header);
+		}
+		else
+			out.write(("P6\n" + width + " " + height + "\n255\n").getBytes(StandardCharsets.US_ASCII));
+
+		// about 4MB of pixels per band, in whole cell rows
+		long bandBytes = 3L * width * (cellPixels + 1);
+		final int rowsPerBand = (int) Math.max(1, Math.min(maze.rowCount, (4L << 20) / bandBytes));
+		final int bands = (maze.rowCount + rowsPerBand - 1) / rowsPerBand;
+
+		Adler32 adler = new Adler32();
+		Deque<Future<Band>> pending = new ArrayDeque<Future<Band>>();
+		ExecutorService pool = ThreadPools.newCpuPool("maze-image", threads);
+		try
+		{
+			int submitted = 0;
+			for(int b = 0; b < bands; b++)
+			{
+				while(submitted < bands && pending.size() < 2 * threads)
+				{
+					final int firstRow = submitted * rowsPerBand;
+					final boolean last = ++submitted == bands;
+					pending.add(pool.submit(new Callable<Band>() {
+						public Band call()
+						{
+							int endRow = Math.min(maze.rowCount, firstRow + rowsPerBand);
+							return new Band(firstRow, endRow, last, format);
+						}
+					}));
+				}
+
+				Band band = result(pending.poll());
+				if(format == Format.PPM)
+				{
+					out.write(band.pixels);
+					continue;
+				}
+				adler.update(band.pixels);
+				byte[] before = b == 0 ? ZLIB_HEADER : new byte[0];
+				byte[] after = new byte[0];
+				if(band.last)
+				{
+					after = new byte[4];
+					putInt(after, 0, (int) adler.getValue());
+				}
+				writeChunk(out, "IDAT", before, band.deflated, after);
+			}
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+
+		if(format == Format.PNG)
+			writeChunk(out, "IEND");
+		out.flush();
+	} // write()
+
+	/**
+	 * Utility method: renders one row of pixels
+	 *
+	 * @param y		the row, 0 <= y < height
+	 * @param rgb	receives 3 * width bytes
+	 * @param at	the offset in rgb of the first
+	 */
+	private void renderRow(long y, byte[] rgb, int at)
+	{
+		int step = cellPixels + 1;
+		boolean wallLine = y % step == 0;
+		int row = (int) (y / step);
+		if(y == height - 1)
+		{
+			// the outer wall below the last row
+			row = maze.rowCount - 1;
+		}
+		fill(rgb, at, 3 * width, WALL);
+
+		for(int col = 0; col < maze.colCount; col++)
+		{
+			int index = maze.layout.index(row, col);
+			int x = at + 3 * (col * step + 1);
+			if(y == height - 1)
+			{
+				if(has(index, Path.SOUTH)) fill(rgb, x, 3 * cellPixels, color(index));
+			}
+			else if(wallLine)
+			{
+				if(!has(index, Path.NORTH)) continue;
+				int above = row > 0 ? maze.layout.index(row - 1, col) : -1;
+				fill(rgb, x, 3 * cellPixels, gapColor(above, index));
+			}
+			else
+			{
+				fill(rgb, x, 3 * cellPixels, color(index));
+				if(has(index, Path.WEST))
+				{
+					int left = col > 0 ? maze.layout.index(row, col - 1) : -1;
+					fill(rgb, x - 3, 3, gapColor(left, index));
+				}
+				if(col == maze.colCount - 1 && has(index, Path.EAST))
+					fill(rgb, x + 3 * cellPixels, 3, color(index));
+			}
+		}
+	} // renderRow()
+
+	/**
+	 * @return	true if the cell's path in that direction is open, to a
+	 * 				neighbor or out of the maze
+	 */
+	private boolean has(int index, Path direction)
+	{
+		return (maze.grid[index] & (1 << direction.ordinal())) != 0;
+	} // has()
+
+	/**
+	 * @return	the color of a cell
+	 */
+	private int color(int index)
+	{
+		if(onPath != null && onPath.get(index)) return PATH;
+		return background(index);
+	} // color()
+
+	/**
+	 * @param from	the cell on the other side of the gap, or -1 if the
+	 * 					gap opens out of the maze
+	 * @param to	the cell whose wall has the gap
+	 * @return		the path color if the path runs through the gap,
+	 * 					otherwise the color of the cell under the path
+	 */
+	private int gapColor(int from, int to)
+	{
+		if(onPath != null && onPath.get(to) && (from < 0 || onPath.get(from)))
+			return PATH;
+		return background(to);
+	} // gapColor()
+
+	/**
+	 * @return	the color of a cell without the path: its heat, if the
+	 * 				solver visited it, or plain
+	 */
+	private int background(int index)
+	{
+		if(traversal != null && traversal.solution[index].visited)
+			return heat((float) traversal.solution[index].searchOrdinal / lastOrdinal);
+		return OPEN;
+	} // background()
+
+	/**
+	 * @param t		0 for the first cell visited, 1 for the last
+	 * @return		blue through to yellow
+	 */
+	private static int heat(float t)
+	{
+		int r = (int) (255 * t);
+		int g = (int) (64 + 160 * t);
+		int b = (int) (255 * (1 - t));
+		return (r << 16) | (g << 8) | b;
+	} // heat()
+
+	private static void fill(byte[] rgb, int at, int bytes, int color)
+	{
+		byte r = (byte) (color >>> 16);
+		byte g = (byte) (color >>> 8);
+		byte b = (byte) color;
+		for(int i = at; i < at + bytes; i += 3)
+		{
+			rgb[i] = r;
+			rgb[i + 1] = g;
+			rgb[i + 2] = b;
+		}
+	} // fill()
+
+	private static void putInt(byte[] bytes, int at, int value)
+	{
+		bytes[at] = (byte) (value >>> 24);
+		bytes[at + 1] = (byte) (value >>> 16);
+		bytes[at + 2] = (byte) (value >>> 8);
+		bytes[at + 3] = (byte) value;
+	} // putInt()
+
+	/**
+	 * Output method: writes a PNG chunk whose data is the given parts,
+	 *    in order
+	 */
+	private static void writeChunk(OutputStream out, String type, byte[]... parts)
+			throws IOException
+	{
+		int length = 0;
+		for(byte[] part : parts) length += part.length;
+		byte[] word = new byte[4];
+		putInt(word, 0, length);
+		out.write(word);
+
+		CRC32 crc = new CRC32();
+		byte[] name = type.getBytes(StandardCharsets.US_ASCII);
+		out.write(name);
+		crc.update(name);
+		for(byte[] part : parts)
+		{
+			out.write(part);
+			crc.update(part);
+		}
+		putInt(word, 0, (int) crc.getValue());
+		out.write(word);
+	} // writeChunk()
+
+	/**
+	 * @return	the result of a finished task, rethrowing its failure
+	 */
+	private static <T> T result(Future<T> f) throws InterruptedException
+	{
+		try
+		{
+			return f.get();
+		}
+		catch(ExecutionException e)
+		{
+			if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			if(e.getCause() instanceof Error) throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	} // result()
+
+///// Instance Fields //////////////////////////////////////////////
+	private final Maze maze;
+	private final int cellPixels;		// the side of a cell, in pixels
+	private final int threads;
+	private final int width;			// of the image, in pixels
+	private final long height;
+	private BitSet onPath;				// by storage index, or null
+	private MazeSolver traversal;		// the heat map, or null
+	private int lastOrdinal = 1;		// the largest searchOrdinal
+
+	private static final int WALL = 0x000000;
+	private static final int OPEN = 0xffffff;
+	private static final int PATH = 0xd62728;
+	private static final byte[] PNG_SIGNATURE =
+		{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+	private static final byte[] ZLIB_HEADER = {0x78, 0x01};	// deflate, fastest
+
+///// Inner Classes ////////////////////////////////////////////////
+	/**
+	 * Enum names the image formats
+	 */
+	public enum Format
+	{
+		PNG,	// compressed, readable everywhere
+		PPM		// binary portable pixmap (P6), uncompressed
+	} // Format enum
+
+	/**
+	 * Class renders the pixel rows of the cell rows firstRow..endRow-1
+	 *    (and the outer wall below them, for the last band). For a PNG
+	 *    each pixel row is prefixed with its filter: None for the first
+	 *    row of the band, which cannot see the band above, and Up for
+	 *    the rest, as most rows repeat the one above; the band is then
+	 *    deflated to a sync flush, or to the end of the stream if it is
+	 *    the last.
+	 */
+	private final class Band
+	{
+		Band(int firstRow, int endRow, boolean last, Format format)
+		{
+			this.last = last;
+			int step = cellPixels + 1;
+			long firstY = (long) firstRow * step;
+			long endY = last ? height : (long) endRow * step;
+			int rows = (int) (endY - firstY);
+			int rowBytes = 3 * width;
+
+			if(format == Format.PPM)
+			{
+				pixels = new byte[rows * rowBytes];
+				for(int y = 0; y < rows; y++)
+					renderRow(firstY + y, pixels, y * rowBytes);
+				deflated = null;
+				return;
+			}
+
+			int stride = rowBytes + 1;
+			pixels = new byte[rows * stride];
+			byte[] previous = new byte[rowBytes];
+			byte[] current = new byte[rowBytes];
+			for(int y = 0; y < rows; y++)
+			{
+				renderRow(firstY + y, current, 0);
+				int at = y * stride;
+				if(y == 0)
+				{
+					pixels[at] = 0;
+					System.arraycopy(current, 0, pixels, at + 1, rowBytes);
+				}
+				else
+				{
+					pixels[at] = 2;
+					for(int i = 0; i < rowBytes; i++)
+						pixels[at + 1 + i] = (byte) (current[i] - previous[i]);
+				}
+				byte[] swap = previous;
+				previous = current;
+				current = swap;
+			}
+
+			Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+			try
+			{
+				deflater.setInput(pixels);
+				byte[] out = new byte[pixels.length / 16 + 64];
+				int length = 0;
+				if(last) deflater.finish();
+				while(true)
+				{
+					if(length == out.length) out = Arrays.copyOf(out, out.length * 2);
+					length += deflater.deflate(out, length, out.length - length,
+							last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+					if(last ? deflater.finished() : length < out.length) break;
+				}
+				deflated = Arrays.copyOf(out, length);
+			}
+			finally
+			{
+				deflater.end();
+			}
+		} // Band constructor
+
+		final boolean last;
+		final byte[] pixels;		// as written (PPM) or before deflate
+		final byte[] deflated;		// PNG only
+	} // Band class
+} // MazeImage class
@@ -0,0 +1,115 @@
+package Maze;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Driver
+ * main() method drives a running MazeService with random endpoint
+ *    queries from many concurrent clients for a fixed time, then
+ *    prints the query rate and the p50/p99 latency.
+ *
+ * Usage: java Maze.MazeLoadGenerator [port] [clients] [seconds]
+ * 			[mazes] [side]
+ * 			port	- the port of the service (default 8146)
+ * 			clients	- concurrent clients (default 64)
+ * 			seconds	- how long to run (default 10)
+ * 			mazes	- how many distinct seeded mazes to query; fewer
+ * 						mazes means larger batches (default 8)
+ * 			side	- the mazes are side x side cells (default 256)
+ */
+public class MazeLoadGenerator
+{
+	public static void main(String[] args) throws Exception
+	{
+		final int port = args.length > 0 ? Integer.parseInt(args[0]) : 8146;
+		final int clients = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+		final int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		final int mazes = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+		final int side = args.length > 4 ? Integer.parseInt(args[4]) : 256;
+
+		final HttpClient http = HttpClient.newHttpClient();
+		final long[][] latencies = new long[clients][];
+		final int[] counts = new int[clients];
+		final LongAdder errors = new LongAdder();
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+		ExecutorService pool = ThreadPools.newIoExecutor("maze-load");
+		long start = System.nanoTime();
+		for(int c = 0; c < clients; c++)
+		{
+			final int client = c;
+			pool.execute(new Runnable() {
+				public void run()
+				{
+					Random random = new Random(client);
+					long[] mine = new long[1024];
+					int n = 0;
+					while(System.nanoTime() < deadline)
+					{
+						String uri = "http://127.0.0.1:" + port + "/solve?seed="
+								+ random.nextInt(mazes) + "&rows=" + side + "&cols=" + side
+								+ "&from=" + random.nextInt(side) + "," + random.nextInt(side)
+								+ "&to=" + random.nextInt(side) + "," + random.nextInt(side);
+						long t0 = System.nanoTime();
+						try
+						{
+							HttpResponse<String> response = http.send(
+									HttpRequest.newBuilder(URI.create(uri)).build(),
+									HttpResponse.BodyHandlers.ofString());
+							if(response.statusCode() != 200)
+							{
+								errors.increment();
+								continue;
+							}
+						}
+						catch(IOException e)
+						{
+							errors.increment();
+							continue;
+						}
+						catch(InterruptedException e)
+						{
+							break;
+						}
+						if(n == mine.length) mine = Arrays.copyOf(mine, n * 2);
+						mine[n++] = System.nanoTime() - t0;
+					}
+					latencies[client] = mine;
+					counts[client] = n;
+				}
+			});
+		}
+		pool.shutdown();
+		pool.awaitTermination(seconds + 60, TimeUnit.SECONDS);
+		double elapsed = (System.nanoTime() - start) / 1e9;
+
+		int total = 0;
+		for(int count : counts) total += count;
+		long[] all = new long[total];
+		int at = 0;
+		for(int c = 0; c < clients; c++)
+		{
+			if(latencies[c] == null) continue;
+			System.arraycopy(latencies[c], 0, all, at, counts[c]);
+			at += counts[c];
+		}
+		Arrays.sort(all);
+
+		System.out.printf("queries %d, errors %d, %.1f s%n", total, errors.sum(), elapsed);
+		System.out.printf("QPS %.0f%n", total / elapsed);
+		if(total > 0)
+		{
+			System.out.printf("p50 %.3f ms%n", all[(int) (total * 0.50)] / 1e6);
+			System.out.printf("p99 %.3f ms%n", all[Math.min(total - 1, (int) (total * 0.99))] / 1e6);
+		}
+	} // main()
+} // MazeLoadGenerator class
@@ -0,0 +1,413 @@
+package Maze;
+import Maze.Maze.Path;
+
+import java.util.Arrays;
+
+/**
+ * Class MazePath holds one path through a maze as its first cell and
+ *    the sequence of moves from it, without reference to any maze or
+ *    solver, so paths can be compared, cached or sent elsewhere
+ *    cheaply.
+ *
+ * Each move is one of the four Path directions, i.e. 2 bits. The
+ *    moves are stored in whichever of two encodings is smaller:
+ * 			packed		- 2 bits per move, 4 moves per byte
+ * 			run-length	- one varint per run of equal moves, holding
+ * 							(run length - 1) << 2 | direction; a
+ * 							corridor of up to 32 moves takes one byte
+ *    The choice depends only on the moves, so two equal paths always
+ *    have equal encodings, and equals() and hashCode() work on the
+ *    encoded bytes. The number of cells, the last cell and the hash
+ *    are computed once, when the path is built.
+ *
+ * The cells of a path are produced lazily by a Cursor, one at a time.
+ */
+public final class MazePath
+{
+///// Constructors /////////////////////////////////////////////////
+	/**
+	 * Default constructor: called by Builder and parse()
+	 */
+	private MazePath(int startRow, int startCol, int endRow, int endCol,
+			int moves, boolean runLength, byte[] data)
+	{
+		this.startRow = startRow;
+		this.startCol = startCol;
+		this.endRow = endRow;
+		this.endCol = endCol;
+		this.moves = moves;
+		this.runLength = runLength;
+		this.data = data;
+
+		int h = Arrays.hashCode(data);
+		h = 31 * h + moves;
+		h = 31 * h + startRow;
+		hash = 31 * h + startCol;
+	} // default MazePath constructor
+
+///// Static Methods ///////////////////////////////////////////////
+	/**
+	 * Factory method: reads a path back from the text produced by
+	 *    toString()
+	 *
+	 * @param text	"cells row,col moves", as described in toString()
+	 * @return		the path
+	 * @throws IllegalArgumentException	if text is not in that format
+	 */
+	public static MazePath parse(String text)
+	{
+		String[] fields = text.trim().split(" ");
+		if(fields.length != 3)
+			throw new IllegalArgumentException("not a path: " + text);
+		int comma = fields[1].indexOf(',');
+		if(comma < 0)
+			throw new IllegalArgumentException("not a path: " + text);
+
+		int cells = Integer.parseInt(fields[0]);
+		Builder builder = new Builder(Integer.parseInt(fields[1].substring(0, comma)),
+				Integer.parseInt(fields[1].substring(comma + 1)));
+		String moves = fields[2];
+		long total = 0;
+		if(!moves.equals("-"))
+		{
+			for(int i = 0; i < moves.length(); )
+			{
+				Path direction = directionOf(moves.charAt(i++));
+				int first = i;
+				long count = 0;
+				while(i < moves.length() && Character.isDigit(moves.charAt(i))
+						&& count < cells)
+					count = count * 10 + (moves.charAt(i++) - '0');
+				if(i == first) count = 1;
+				else if(count < 1)
+					throw new IllegalArgumentException("a run has at least one move: " + text);
+				// checked before adding, so a huge count can't run away
+				total += count;
+				if(total >= cells)
+					throw new IllegalArgumentException("cell count does not match moves: " + text);
+				builder.add(direction, (int) count);
+			}
+		}
+
+		if(total + 1 != cells)
+			throw new IllegalArgumentException("cell count does not match moves: " + text);
+		return builder.build();
+	} // parse()
+
+	private static Path directionOf(char letter)
+	{
+		switch(letter)
+		{
+		case 'N': return Path.NORTH;
+		case 'E': return Path.EAST;
+		case 'S': return Path.SOUTH;
+		case 'W': return Path.WEST;
+		default:
+			throw new IllegalArgumentException("not a move: " + letter);
+		}
+	} // directionOf()
+
+///// Instance Methods /////////////////////////////////////////////
+	/**
+	 * @return	the number of cells on the path, including both ends
+	 */
+	public int cellCount()
+	{
+		return moves + 1;
+	} // cellCount()
+
+	/**
+	 * @return	the number of moves on the path (cellCount() - 1)
+	 */
+	public int moveCount()
+	{
+		return moves;
+	} // moveCount()
+
+	/**
+	 * @return	the number of bytes used to store the moves
+	 */
+	public int encodedBytes()
+	{
+		return data.length;
+	} // encodedBytes()
+
+	/**
+	 * @return	a cursor positioned on the first cell of the path
+	 */
+	public Cursor cursor()
+	{
+		return new Cursor();
+	} // cursor()
+
+	@Override
+	public boolean equals(Object o)
+	{
+		if(this == o) return true;
+		if(!(o instanceof MazePath)) return false;
+		MazePath that = (MazePath) o;
+		return hash == that.hash && moves == that.moves
+				&& startRow == that.startRow && startCol == that.startCol
+				&& runLength == that.runLength && Arrays.equals(data, that.data);
+	} // equals()
+
+	@Override
+	public int hashCode()
+	{
+		return hash;
+	} // hashCode()
+
+	/**
+	 * Output method: returns the path as "cells row,col moves": the
+	 *    number of cells, the first cell, and the moves from it, each
+	 *    run of equal moves written as a direction letter (N, E, S or
+	 *    W) followed by its length when the length is more than one.
+	 *    A path of one cell has no moves and is written with "-".
+	 *    parse() reads this format back.
+	 */
+	@Override
+	public String toString()
+	{
+		StringBuilder out = new StringBuilder();
+		out.append(cellCount()).append(' ')
+			.append(startRow).append(',').append(startCol).append(' ');
+		if(moves == 0)
+			return out.append('-').toString();
+
+		Cursor cursor = cursor();
+		Path run = null;
+		int count = 0;
+		while(cursor.next())
+		{
+			if(cursor.direction() != run && count > 0)
+			{
+				appendRun(out, run, count);
+				count = 0;
+			}
+			run = cursor.direction();
+			count++;
+		}
+		appendRun(out, run, count);
+		return out.toString();
+	} // toString()
+
+	private static void appendRun(StringBuilder out, Path direction, int count)
+	{
+		out.append(direction.name().charAt(0));
+		if(count > 1) out.append(count);
+	} // appendRun()
+
+///// Instance Fields //////////////////////////////////////////////
+	public final int startRow;		// the first cell of the path
+	public final int startCol;
+	public final int endRow;		// the last cell of the path
+	public final int endCol;
+	private final int moves;		// the number of moves
+	private final boolean runLength;	// which encoding data holds
+	private final byte[] data;		// the encoded moves
+	private final int hash;
+
+	private static final Path[] DIRECTIONS = Path.values();	// by ordinal
+
+///// Inner Classes ////////////////////////////////////////////////
+	/**
+	 * Class walks the cells of a path in order without allocating:
+	 *    it starts on the first cell, and each call to next() makes
+	 *    one move.
+	 */
+	public final class Cursor
+	{
+		private Cursor()
+		{
+			row = startRow;
+			col = startCol;
+		} // Cursor constructor
+
+		/**
+		 * Utility method: moves to the next cell of the path
+		 *
+		 * @return	true if there was a next cell, false if the cursor
+		 * 				was already on the last cell
+		 */
+		public boolean next()
+		{
+			if(taken == moves) return false;
+
+			if(runLength)
+			{
+				if(left == 0)
+				{
+					// decode the next run: a little-endian varint
+					int token = 0;
+					int shift = 0;
+					byte b;
+					do
+					{
+						b = data[at++];
+						token |= (b & 0x7f) << shift;
+						shift += 7;
+					} while(b < 0);
+					direction = DIRECTIONS[token & 3];
+					left = (token >>> 2) + 1;
+				}
+				left--;
+			}
+			else
+			{
+				direction = DIRECTIONS[(data[taken >>> 2] >>> ((taken & 3) * 2)) & 3];
+			}
+			taken++;
+
+			switch(direction)
+			{
+			case NORTH:	row--; break;
+			case EAST:	col++; break;
+			case SOUTH:	row++; break;
+			case WEST:	col--; break;
+			}
+			return true;
+		} // next()
+
+		/**
+		 * @return	the row of the current cell
+		 */
+		public int row()				{ return row; }
+
+		/**
+		 * @return	the column of the current cell
+		 */
+		public int col()				{ return col; }
+
+		/**
+		 * @return	the move that led to the current cell, or null on
+		 * 				the first cell
+		 */
+		public Path direction()			{ return direction; }
+
+		private int row;
+		private int col;
+		private Path direction;
+		private int taken;		// moves made so far
+		private int at;			// next byte of data (run-length only)
+		private int left;		// moves left in the current run
+	} // Cursor class
+
+	/**
+	 * Class builds a MazePath one move at a time
+	 */
+	public static final class Builder
+	{
+		/**
+		 * Default constructor
+		 *
+		 * @param startRow	the row of the first cell
+		 * @param startCol	the column of the first cell
+		 */
+		public Builder(int startRow, int startCol)
+		{
+			this.startRow = startRow;
+			this.startCol = startCol;
+			row = startRow;
+			col = startCol;
+			packed = new byte[16];
+			runs = new byte[16];
+		} // default Builder constructor
+
+		/**
+		 * Utility method: appends one move
+		 *
+		 * @param direction	the direction of the move
+		 * @return			this builder
+		 */
+		public Builder add(Path direction)
+		{
+			return add(direction, 1);
+		} // add()
+
+		/**
+		 * Utility method: appends a run of equal moves
+		 *
+		 * @param direction	the direction of the moves
+		 * @param count		the number of moves, count >= 0
+		 * @return			this builder
+		 */
+		public Builder add(Path direction, int count)
+		{
+			for(int i = 0; i < count; i++)
+			{
+				int bits = direction.ordinal();
+				if((moves >>> 2) == packed.length)
+					packed = Arrays.copyOf(packed, packed.length * 2);
+				packed[moves >>> 2] |= bits << ((moves & 3) * 2);
+				moves++;
+
+				if(direction == run && runCount < MAX_RUN)
+					runCount++;
+				else
+				{
+					flushRun();
+					run = direction;
+					runCount = 1;
+				}
+			}
+			switch(direction)
+			{
+			case NORTH:	row -= count; break;
+			case EAST:	col += count; break;
+			case SOUTH:	row += count; break;
+			case WEST:	col -= count; break;
+			}
+			return this;
+		} // add()
+
+		/**
+		 * @return	the path built so far, in the smaller encoding
+		 */
+		public MazePath build()
+		{
+			flushRun();
+			run = null;
+			runCount = 0;
+
+			int packedBytes = (moves + 3) >>> 2;
+			boolean useRuns = runBytes < packedBytes;
+			byte[] data = useRuns ? Arrays.copyOf(runs, runBytes)
+					: Arrays.copyOf(packed, packedBytes);
+			return new MazePath(startRow, startCol, row, col, moves, useRuns, data);
+		} // build()
+
+		/**
+		 * Utility method: appends the pending run as a varint
+		 */
+		private void flushRun()
+		{
+			if(runCount == 0) return;
+			int token = ((runCount - 1) << 2) | run.ordinal();
+			while(true)
+			{
+				if(runBytes == runs.length)
+					runs = Arrays.copyOf(runs, runs.length * 2);
+				if((token & ~0x7f) == 0)
+				{
+					runs[runBytes++] = (byte) token;
+					break;
+				}
+				runs[runBytes++] = (byte) ((token & 0x7f) | 0x80);
+				token >>>= 7;
+			}
+		} // flushRun()
+
+		private final int startRow;
+		private final int startCol;
+		private int row;			// the last cell so far
+		private int col;
+		private int moves;			// moves added so far
+		private byte[] packed;		// the moves, 2 bits each
+		private byte[] runs;		// the moves, run-length encoded
+		private int runBytes;		// bytes used in runs
+		private Path run;			// the direction of the pending run
+		private int runCount;		// the length of the pending run
+
+		private static final int MAX_RUN = 1 << 28;	// keeps tokens positive
+	} // Builder class
+} // MazePath class
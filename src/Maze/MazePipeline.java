@@ -0,0 +1,459 @@
+package Maze;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class MazePipeline runs a batch of maze jobs through three stages,
+ *    each connected to the next by a bounded queue:
+ * 			generate	- builds a Maze for each Job
+ * 			solve		- runs BFS_Solver and DFS_Solver on it
+ * 			write		- hands the solved maze to a Sink
+ *
+ * The generate and solve stages are CPU-bound and run on fixed-size
+ *    thread pools. The write stage is I/O-bound and runs on virtual
+ *    threads when the JVM provides them (Java 21 and later), or on
+ *    a cached pool of platform threads otherwise.
+ *
+ * When a stage falls behind, the queue in front of it fills and the
+ *    stage before it blocks, back to the caller of run(), so the
+ *    number of mazes held in memory never exceeds the sum of the
+ *    queue capacities and the worker counts.
+ *
+ * A job whose stage throws anything, an Error such as running out of
+ *    memory included, is counted as failed and dropped; the rest of
+ *    the batch carries on. run() returns a Report with the throughput
+ *    of each stage and the occupancy of each queue.
+ */
+public class MazePipeline
+{
+///// Constructors /////////////////////////////////////////////////
+	/**
+	 * Default constructor
+	 *
+	 * @param generateThreads	the number of threads generating mazes
+	 * @param solveThreads		the number of threads solving mazes
+	 * @param writeThreads		the number of (virtual) threads
+	 * 								writing results
+	 * @param queueCapacity		the capacity of each queue between
+	 * 								stages
+	 * @param sink				where solved mazes are written
+	 */
+	public MazePipeline(int generateThreads, int solveThreads,
+			int writeThreads, int queueCapacity, Sink sink)
+	{
+		if(generateThreads < 1 || solveThreads < 1 || writeThreads < 1)
+			throw new IllegalArgumentException("each stage needs a thread");
+		if(queueCapacity < 1)
+			throw new IllegalArgumentException("queueCapacity < 1");
+
+		this.generateThreads = generateThreads;
+		this.solveThreads = solveThreads;
+		this.writeThreads = writeThreads;
+		this.queueCapacity = queueCapacity;
+		this.sink = sink;
+	} // default MazePipeline constructor
+
+///// Static Methods ///////////////////////////////////////////////
+	/**
+	 * Factory method: returns a Sink that writes the BFS shortest-path
+	 *    rendering of each maze to its own text file in dir
+	 *
+	 * @param dir	an existing directory
+	 * @return		the sink
+	 */
+	public static Sink directorySink(final java.nio.file.Path dir)
+	{
+		return new Sink() {
+			public void write(Result result) throws IOException
+			{
+				java.nio.file.Path file = dir.resolve("maze-" + result.sequence
+						+ "-" + result.maze.rowCount + "x" + result.maze.colCount
+						+ ".txt");
+				try(Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8))
+				{
+					out.write(result.bfs.printSolution());
+				}
+			}
+		};
+	} // directorySink()
+
+///// Instance Methods /////////////////////////////////////////////
+	/**
+	 * Utility method: runs every job through the pipeline and waits
+	 *    for the last result to be written. The calling thread feeds
+	 *    the first queue, so it blocks whenever the pipeline is full.
+	 *
+	 * @param jobs	the jobs to run
+	 * @return		per-stage statistics for the run
+	 * @throws InterruptedException	if the caller is interrupted;
+	 * 					the pipeline is shut down first
+	 */
+	public Report run(Iterable<Job> jobs) throws InterruptedException
+	{
+		firstFailure.set(null);
+		Channel toGenerate = new Channel("jobs", queueCapacity);
+		Channel toSolve = new Channel("generated", queueCapacity);
+		Channel toWrite = new Channel("solved", queueCapacity);
+
+		Stage generate = new Stage("generate", generateThreads, toGenerate, toSolve) {
+			Result apply(Result in)
+			{
+				Job job = in.job;
+				return new Result(in.sequence, job,
+						new Maze(job.rows, job.cols, job.layout), null, null);
+			}
+		};
+		Stage solve = new Stage("solve", solveThreads, toSolve, toWrite) {
+			Result apply(Result in)
+			{
+				BFS_Solver bfs = new BFS_Solver(in.maze);
+				bfs.solve();
+				DFS_Solver dfs = new DFS_Solver(in.maze);
+				dfs.solve();
+				return new Result(in.sequence, in.job, in.maze, bfs, dfs);
+			}
+		};
+		Stage write = new Stage("write", writeThreads, toWrite, null) {
+			Result apply(Result in) throws IOException
+			{
+				sink.write(in);
+				return null;
+			}
+		};
+
+		ExecutorService generatePool =
+				ThreadPools.newCpuPool("maze-generate", generateThreads);
+		ExecutorService solvePool = ThreadPools.newCpuPool("maze-solve", solveThreads);
+		ExecutorService writePool = ThreadPools.newIoExecutor("maze-write");
+
+		long start = System.nanoTime();
+		try
+		{
+			generate.start(generatePool);
+			solve.start(solvePool);
+			write.start(writePool);
+
+			long sequence = 0;
+			for(Job job : jobs)
+				toGenerate.put(new Result(sequence++, job, null, null, null));
+			toGenerate.put(END);
+
+			write.done.await();
+		}
+		finally
+		{
+			generatePool.shutdownNow();
+			solvePool.shutdownNow();
+			writePool.shutdownNow();
+		}
+		long elapsed = System.nanoTime() - start;
+
+		List<StageReport> stages = new ArrayList<StageReport>();
+		for(Stage stage : new Stage[] { generate, solve, write })
+			stages.add(stage.report(elapsed));
+		return new Report(elapsed, stages, firstFailure.get());
+	} // run()
+
+///// Instance Fields //////////////////////////////////////////////
+	private final int generateThreads;
+	private final int solveThreads;
+	private final int writeThreads;
+	private final int queueCapacity;
+	private final Sink sink;
+	private final AtomicReference<Throwable> firstFailure =
+			new AtomicReference<Throwable>();
+
+	private static final Object END = new Object();	// end-of-batch marker
+
+///// Inner Classes ////////////////////////////////////////////////
+	/**
+	 * Interface for the final stage: receives each solved maze
+	 */
+	public interface Sink
+	{
+		/**
+		 * @param result	a solved maze; called from many threads
+		 * @throws IOException	if the result could not be written
+		 */
+		void write(Result result) throws IOException;
+	} // Sink interface
+
+	/**
+	 * Class describes one maze to generate and solve
+	 */
+	public static final class Job
+	{
+		public Job(int rows, int cols)
+		{
+			this(rows, cols, CellLayout.Type.ROW_MAJOR);
+		} // default Job constructor
+
+		public Job(int rows, int cols, CellLayout.Type layout)
+		{
+			this.rows = rows;
+			this.cols = cols;
+			this.layout = layout;
+		} // Job constructor
+
+		public final int rows;
+		public final int cols;
+		public final CellLayout.Type layout;
+	} // Job class
+
+	/**
+	 * Class holds a job as it moves down the pipeline. The maze is
+	 *    filled in by the generate stage and the two solvers by the
+	 *    solve stage.
+	 */
+	public static final class Result
+	{
+		private Result(long sequence, Job job, Maze maze,
+				BFS_Solver bfs, DFS_Solver dfs)
+		{
+			this.sequence = sequence;
+			this.job = job;
+			this.maze = maze;
+			this.bfs = bfs;
+			this.dfs = dfs;
+		} // Result constructor
+
+		public final long sequence;		// position of the job in the batch
+		public final Job job;
+		public final Maze maze;
+		public final BFS_Solver bfs;
+		public final DFS_Solver dfs;
+	} // Result class
+
+	/**
+	 * Class implements a bounded queue between two stages, recording
+	 *    how full it is each time an item is put on it
+	 */
+	private static final class Channel
+	{
+		private Channel(String name, int capacity)
+		{
+			this.name = name;
+			this.capacity = capacity;
+			queue = new ArrayBlockingQueue<Object>(capacity);
+		} // Channel constructor
+
+		private void put(Object item) throws InterruptedException
+		{
+			queue.put(item);
+			int size = queue.size();
+			puts.increment();
+			occupancySum.add(size);
+			maxOccupancy.accumulateAndGet(size, Math::max);
+		} // put()
+
+		private Object take() throws InterruptedException
+		{
+			return queue.take();
+		} // take()
+
+		final String name;
+		final int capacity;
+		final BlockingQueue<Object> queue;
+		final LongAdder puts = new LongAdder();
+		final LongAdder occupancySum = new LongAdder();
+		final AtomicLong maxOccupancy = new AtomicLong();
+	} // Channel class
+
+	/**
+	 * Abstract class implements one stage: a fixed number of workers,
+	 *    each taking from the input channel, applying the stage, and
+	 *    putting the result on the output channel. The last worker of
+	 *    a stage to see END passes it on to the next stage.
+	 */
+	private abstract class Stage
+	{
+		private Stage(String name, int workers, Channel in, Channel out)
+		{
+			this.name = name;
+			this.workers = workers;
+			this.in = in;
+			this.out = out;
+			live = new AtomicInteger(workers);
+			done = new CountDownLatch(1);
+		} // Stage constructor
+
+		/**
+		 * @param in	the job so far
+		 * @return		the job after this stage, or null to pass
+		 * 					nothing on
+		 * @throws Exception	if this job fails in this stage
+		 */
+		abstract Result apply(Result in) throws Exception;
+
+		private void start(ExecutorService pool)
+		{
+			for(int i = 0; i < workers; i++)
+			{
+				pool.execute(new Runnable() {
+					public void run() { work(); }
+				});
+			}
+		} // start()
+
+		private void work()
+		{
+			try
+			{
+				Object item;
+				while((item = in.take()) != END)
+				{
+					long t0 = System.nanoTime();
+					Result result = null;
+					try
+					{
+						result = apply((Result) item);
+						processed.increment();
+					}
+					catch(Throwable e)	// an Error fails only this job too
+					{
+						failed.increment();
+						firstFailure.compareAndSet(null, e);
+					}
+					busyNanos.add(System.nanoTime() - t0);
+
+					if(result != null && out != null)
+						out.put(result);
+				}
+				in.queue.put(END);	// let the sibling workers see it too
+			}
+			catch(InterruptedException e)
+			{
+				// the pipeline is being shut down
+				Thread.currentThread().interrupt();
+			}
+			finally
+			{
+				// however this worker ends, the last one out passes END
+				// on, so the stages after it and run() still finish
+				if(live.decrementAndGet() == 0)
+				{
+					try
+					{
+						if(out != null) out.put(END);
+					}
+					catch(InterruptedException e)
+					{
+						Thread.currentThread().interrupt();
+					}
+					finally
+					{
+						done.countDown();
+					}
+				}
+			}
+		} // work()
+
+		private StageReport report(long elapsedNanos)
+		{
+			long puts = in.puts.sum();
+			return new StageReport(name, workers, processed.sum(), failed.sum(),
+					elapsedNanos, busyNanos.sum(),
+					in.name, in.capacity, in.maxOccupancy.get(),
+					puts == 0 ? 0 : (double) in.occupancySum.sum() / puts);
+		} // report()
+
+		final String name;
+		final int workers;
+		final Channel in;
+		final Channel out;
+		final AtomicInteger live;				// workers still running
+		final CountDownLatch done;				// released when all finish
+		final LongAdder processed = new LongAdder();
+		final LongAdder failed = new LongAdder();
+		final LongAdder busyNanos = new LongAdder();
+	} // Stage class
+
+	/**
+	 * Class holds the statistics of one stage and the queue feeding it
+	 */
+	public static final class StageReport
+	{
+		private StageReport(String name, int workers, long processed,
+				long failed, long elapsedNanos, long busyNanos,
+				String queueName, int queueCapacity, long queueMax,
+				double queueMean)
+		{
+			this.name = name;
+			this.workers = workers;
+			this.processed = processed;
+			this.failed = failed;
+			this.throughput = processed * 1e9 / Math.max(1, elapsedNanos);
+			this.utilization = (double) busyNanos
+					/ Math.max(1, elapsedNanos) / workers;
+			this.queueName = queueName;
+			this.queueCapacity = queueCapacity;
+			this.queueMax = queueMax;
+			this.queueMean = queueMean;
+		} // StageReport constructor
+
+		@Override
+		public String toString()
+		{
+			return String.format("%-9s %3d workers %8d ok %4d failed %10.1f/s"
+					+ " %5.1f%% busy | %-9s max %4d/%-4d mean %6.1f",
+					name, workers, processed, failed, throughput,
+					100 * utilization, queueName, queueMax, queueCapacity,
+					queueMean);
+		} // toString()
+
+		public final String name;
+		public final int workers;
+		public final long processed;		// jobs completed by this stage
+		public final long failed;			// jobs dropped by this stage
+		public final double throughput;		// jobs per second, wall clock
+		public final double utilization;	// busy time / (wall * workers)
+		public final String queueName;		// the queue feeding this stage
+		public final int queueCapacity;
+		public final long queueMax;			// highest occupancy seen
+		public final double queueMean;		// mean occupancy after a put
+	} // StageReport class
+
+	/**
+	 * Class holds the statistics of one run
+	 */
+	public static final class Report
+	{
+		private Report(long elapsedNanos, List<StageReport> stages,
+				Throwable firstFailure)
+		{
+			this.elapsedNanos = elapsedNanos;
+			this.stages = stages;
+			this.firstFailure = firstFailure;
+		} // Report constructor
+
+		@Override
+		public String toString()
+		{
+			StringBuilder sb = new StringBuilder();
+			sb.append(String.format("pipeline: %.3f s%n", elapsedNanos / 1e9));
+			for(StageReport stage : stages)
+				sb.append(stage).append(System.lineSeparator());
+			if(firstFailure != null)
+				sb.append("first failure: ").append(firstFailure)
+						.append(System.lineSeparator());
+			return sb.toString();
+		} // toString()
+
+		public final long elapsedNanos;
+		public final List<StageReport> stages;
+		public final Throwable firstFailure;	// null if nothing failed
+	} // Report class
+} // MazePipeline class
@@ -0,0 +1,589 @@
+package Maze;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import cache.LruCache;
+
+/**
+ * Class MazeService serves shortest-path queries over HTTP on the
+ *    loopback interface, using the JDK's built-in HttpServer. Every
+ *    request and response body is plain UTF-8 text.
+ *
+ * A maze is named either by seed and dimensions, or by uploading it
+ *    in the text format of Maze.toText():
+ * 			POST /mazes						body: the maze text
+ * 								-> the id of the uploaded maze
+ * 			GET  /solve?seed=S&rows=R&cols=C[&from=r,c][&to=r,c]
+ * 			GET  /solve?maze=ID[&from=r,c][&to=r,c]
+ * 								-> one path (from and to default to
+ * 									mazeStart and mazeEnd)
+ * 			POST /solve?seed=S&rows=R&cols=C	(or ?maze=ID)
+ * 								body: one "fromRow fromCol toRow
+ * 									toCol" query per line
+ * 								-> one path per line, in order
+ * 			GET  /stats		-> query, batch and solve counters
+ *
+ * Each path is returned in the text form of MazePath.toString(),
+ *    "cells row,col moves", e.g. "9 0,0 E3SWSES"; MazePath.parse()
+ *    reads it back. An unreachable end is returned as "none".
+ *
+ * Queries for the same maze are batched: each maze keeps a queue of
+ *    pending queries, and a single solver task drains the whole queue
+ *    against one loaded instance before letting the maze be scheduled
+ *    again. Requests are handled on virtual threads when the JVM
+ *    provides them.
+ *
+ * Seeded mazes, and the paths through them, are held in a MazeCache,
+ *    so they are generated and solved once and evicted when the cache
+ *    fills. Uploaded mazes cannot be regenerated, so they are kept in
+ *    an LruCache of their own, bounded by DEFAULT_UPLOAD_BYTES; an
+ *    evicted upload is answered 404 and must be uploaded again, and
+ *    repeated endpoints inside a batch on one are solved once. A maze
+ *    is only tracked for batching while queries on it are waiting.
+ *
+ * A maze of more than MAX_CELLS cells, and a request body of more than
+ *    MAX_BODY_BYTES, are refused (400). A query not answered within
+ *    ANSWER_SECONDS of the request is answered 503.
+ */
+public class MazeService
+{
+///// Constructors /////////////////////////////////////////////////
+	/**
+	 * Default constructor: binds the server to a loopback port. The
+	 *    server does not accept requests until start() is called.
+	 *
+	 * @param port				the port to listen on, or 0 for any
+	 * 								free port
+	 * @param solverThreads		the number of threads solving batches
+	 * @throws IOException		if the port cannot be bound
+	 */
+	public MazeService(int port, int solverThreads) throws IOException
+	{
+		this(port, solverThreads, new MazeCache(DEFAULT_MAZE_CACHE_BYTES,
+				DEFAULT_PATH_CACHE_BYTES));
+	} // default MazeService constructor
+
+	/**
+	 * Cache constructor: as the default constructor, but keeps seeded
+	 *    mazes and their paths in the given cache
+	 *
+	 * @param port				the port to listen on, or 0 for any
+	 * 								free port
+	 * @param solverThreads		the number of threads solving batches
+	 * @param cache				the cache of seeded mazes and paths
+	 * @throws IOException		if the port cannot be bound
+	 */
+	public MazeService(int port, int solverThreads, MazeCache cache) throws IOException
+	{
+		this.cache = cache;
+		uploads = new LruCache<String, Maze>(DEFAULT_UPLOAD_BYTES, new LruCache.Weigher<Maze>() {
+			public long weigh(Maze maze) { return MazeCache.mazeBytes(maze); }
+		});
+		server = HttpServer.create(
+				new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		requestPool = ThreadPools.newIoExecutor("maze-http");
+		solverPool = ThreadPools.newCpuPool("maze-solve", solverThreads);
+
+		server.setExecutor(requestPool);
+		server.createContext("/mazes", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				if(!exchange.getRequestMethod().equals("POST"))
+					reply(exchange, 405, "use POST\n");
+				else
+					upload(exchange);
+			}
+		});
+		server.createContext("/solve", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException { solve(exchange); }
+		});
+		server.createContext("/stats", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				reply(exchange, 200, stats());
+			}
+		});
+	} // cache MazeService constructor
+
+///// Static Methods ///////////////////////////////////////////////
+	/**
+	 * Driver: runs the service until the process is killed
+	 *
+	 * Usage: java Maze.MazeService [port] [solverThreads]
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 8146;
+		int threads = args.length > 1 ? Integer.parseInt(args[1])
+				: Runtime.getRuntime().availableProcessors();
+
+		MazeService service = new MazeService(port, threads);
+		service.start();
+		System.out.println("maze service listening on " + service.address());
+	} // main()
+
+	private static void reply(HttpExchange exchange, int status, String body)
+			throws IOException
+	{
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try(OutputStream out = exchange.getResponseBody())
+		{
+			out.write(bytes);
+		}
+	} // reply()
+
+	/**
+	 * @return	the request body as text
+	 * @throws IllegalArgumentException	if it is over MAX_BODY_BYTES
+	 */
+	private static String readBody(HttpExchange exchange) throws IOException
+	{
+		try(InputStream in = exchange.getRequestBody())
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int n;
+			while((n = in.read(buffer)) > 0)
+			{
+				if(bytes.size() + n > MAX_BODY_BYTES)
+					throw new IllegalArgumentException("a request body has at most "
+							+ MAX_BODY_BYTES + " bytes");
+				bytes.write(buffer, 0, n);
+			}
+			return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+		}
+	} // readBody()
+
+	private static Map<String, String> parameters(HttpExchange exchange)
+	{
+		Map<String, String> params = new HashMap<String, String>();
+		String query = exchange.getRequestURI().getRawQuery();
+		if(query == null) return params;
+		for(String pair : query.split("&"))
+		{
+			int eq = pair.indexOf('=');
+			if(eq < 0) continue;
+			params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+					URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+		}
+		return params;
+	} // parameters()
+
+	/**
+	 * @param cell	a "row,col" parameter
+	 * @return		{row, col}
+	 */
+	private static int[] parseCell(String cell)
+	{
+		int comma = cell.indexOf(',');
+		if(comma < 0)
+			throw new IllegalArgumentException("expected row,col but got " + cell);
+		return new int[] { Integer.parseInt(cell.substring(0, comma).trim()),
+				Integer.parseInt(cell.substring(comma + 1).trim()) };
+	} // parseCell()
+
+///// Instance Methods /////////////////////////////////////////////
+	/**
+	 * Utility method: starts accepting requests
+	 */
+	public void start()
+	{
+		server.start();
+	} // start()
+
+	/**
+	 * Utility method: stops accepting requests and shuts down the
+	 *    worker threads
+	 */
+	public void stop()
+	{
+		server.stop(0);
+		requestPool.shutdownNow();
+		solverPool.shutdownNow();
+	} // stop()
+
+	/**
+	 * @return	the address the server is bound to
+	 */
+	public InetSocketAddress address()
+	{
+		return server.getAddress();
+	} // address()
+
+	/**
+	 * @return	the counters reported by GET /stats
+	 */
+	public String stats()
+	{
+		long batchCount = batches.sum();
+		return "mazes " + mazes.size() + "\n"
+				+ "queries " + queries.sum() + "\n"
+				+ "batches " + batchCount + "\n"
+				+ String.format("mean_batch %.2f%n",
+						batchCount == 0 ? 0.0 : (double) queries.sum() / batchCount)
+				+ cache
+				+ "upload cache: " + uploads + "\n";
+	} // stats()
+
+	/**
+	 * Handler: POST /mazes
+	 */
+	private void upload(HttpExchange exchange) throws IOException
+	{
+		Maze maze;
+		try
+		{
+			maze = Maze.fromText(readBody(exchange));
+			if(maze.cellCount > MAX_CELLS)
+				throw new IllegalArgumentException("a maze has at most " + MAX_CELLS + " cells");
+		}
+		catch(IllegalArgumentException e)
+		{
+			reply(exchange, 400, e.getMessage() + "\n");
+			return;
+		}
+
+		String id = "text-" + digest(maze.toText());
+		uploads.put(id, maze);
+		reply(exchange, 200, id + "\n");
+	} // upload()
+
+	/**
+	 * Handler: GET or POST /solve
+	 */
+	private void solve(HttpExchange exchange) throws IOException
+	{
+		List<CompletableFuture<MazePath>> answers = new ArrayList<CompletableFuture<MazePath>>();
+		try
+		{
+			// every query is parsed before the maze is looked up, so a
+			// bad one can't leave a maze registered with nothing to do
+			Map<String, String> params = parameters(exchange);
+			List<int[]> ends = new ArrayList<int[]>();
+			int[] to = null;		// of a GET: null for mazeEnd
+			if(exchange.getRequestMethod().equals("POST"))
+			{
+				for(String line : readBody(exchange).split("\\R"))
+				{
+					line = line.trim();
+					if(line.isEmpty()) continue;
+					String[] f = line.split("\\s+");
+					if(f.length != 4)
+						throw new IllegalArgumentException("expected 4 numbers: " + line);
+					ends.add(new int[] { Integer.parseInt(f[0]), Integer.parseInt(f[1]),
+							Integer.parseInt(f[2]), Integer.parseInt(f[3]) });
+				}
+				if(ends.isEmpty())
+					throw new IllegalArgumentException("no queries");
+			}
+			else
+			{
+				int[] from = params.containsKey("from") ? parseCell(params.get("from"))
+						: new int[] { 0, 0 };
+				if(params.containsKey("to")) to = parseCell(params.get("to"));
+				ends.add(from);
+			}
+
+			LoadedMaze loaded = lookup(params);
+			if(loaded == null)
+			{
+				reply(exchange, 404, "no such maze\n");
+				return;
+			}
+			for(int[] e : ends)
+			{
+				if(e.length == 4)
+					answers.add(loaded.submit(e[0], e[1], e[2], e[3]));
+				else if(to != null)
+					answers.add(loaded.submit(e[0], e[1], to[0], to[1]));
+				else
+					answers.add(loaded.submit(e[0], e[1], loaded.rows - 1, loaded.cols - 1));
+			}
+
+			StringBuilder body = new StringBuilder();
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(ANSWER_SECONDS);
+			for(CompletableFuture<MazePath> answer : answers)
+			{
+				MazePath path = answer.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+				body.append(path == null ? "none" : path.toString()).append('\n');
+			}
+			reply(exchange, 200, body.toString());
+		}
+		catch(IllegalArgumentException e)
+		{
+			reply(exchange, 400, e.getMessage() + "\n");
+		}
+		catch(ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			reply(exchange, cause instanceof IndexOutOfBoundsException ? 400 : 500,
+					cause + "\n");
+		}
+		catch(TimeoutException e)
+		{
+			reply(exchange, 503, "timed out\n");
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			reply(exchange, 503, "interrupted\n");
+		}
+	} // solve()
+
+	/**
+	 * Utility method: finds, or registers, the maze a request names
+	 *
+	 * @return	the maze, or null if an uploaded id is unknown (or was
+	 * 				evicted)
+	 */
+	private LoadedMaze lookup(Map<String, String> params)
+	{
+		String id = params.get("maze");
+		if(id != null)
+		{
+			LoadedMaze loaded = mazes.get(id);
+			if(loaded != null) return loaded;
+			Maze maze = uploads.getIfPresent(id);
+			if(maze == null) return null;
+			LoadedMaze created = new LoadedMaze(id, maze);
+			loaded = mazes.putIfAbsent(id, created);
+			return loaded == null ? created : loaded;
+		}
+
+		if(!params.containsKey("seed") || !params.containsKey("rows")
+				|| !params.containsKey("cols"))
+			throw new IllegalArgumentException("name a maze by maze=ID or by seed, rows and cols");
+
+		final long seed = Long.parseLong(params.get("seed"));
+		final int rows = Integer.parseInt(params.get("rows"));
+		final int cols = Integer.parseInt(params.get("cols"));
+		if(rows < 2 || cols < 2)
+			throw new IllegalArgumentException("a maze has at least 2 rows and 2 columns");
+		if((long) rows * cols > MAX_CELLS)
+			throw new IllegalArgumentException("a maze has at most " + MAX_CELLS + " cells");
+
+		String key = "seed-" + seed + "-" + rows + "x" + cols;
+		LoadedMaze loaded = mazes.get(key);
+		if(loaded == null)
+		{
+			LoadedMaze created = new LoadedMaze(key, new MazeCache.MazeKey(seed, rows, cols));
+			loaded = mazes.putIfAbsent(key, created);
+			if(loaded == null) loaded = created;
+		}
+		return loaded;
+	} // lookup()
+
+	private static String digest(String text)
+	{
+		try
+		{
+			byte[] hash = MessageDigest.getInstance("SHA-256")
+					.digest(text.getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder();
+			for(int i = 0; i < 8; i++)
+				hex.append(String.format("%02x", hash[i]));
+			return hex.toString();
+		}
+		catch(NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);	// every JDK has SHA-256
+		}
+	} // digest()
+
+///// Instance Fields //////////////////////////////////////////////
+	private final HttpServer server;
+	private final ExecutorService requestPool;		// runs the handlers
+	private final ExecutorService solverPool;		// runs the batches
+	private final ConcurrentHashMap<String, LoadedMaze> mazes =
+			new ConcurrentHashMap<String, LoadedMaze>();
+
+	private final LongAdder queries = new LongAdder();
+	private final LongAdder batches = new LongAdder();
+	private final MazeCache cache;					// seeded mazes and paths
+	private final LruCache<String, Maze> uploads;	// uploaded mazes, by id
+
+	static final long DEFAULT_MAZE_CACHE_BYTES = 256L << 20;
+	static final long DEFAULT_PATH_CACHE_BYTES = 64L << 20;
+	static final long DEFAULT_UPLOAD_BYTES = 256L << 20;
+	static final int MAX_BODY_BYTES = 16 << 20;		// about a million cells of text
+	static final long MAX_CELLS = 1L << 22;		// of a maze: about 150MB
+	static final long ANSWER_SECONDS = 60;		// before a request is given up on
+
+///// Inner Classes ////////////////////////////////////////////////
+	/**
+	 * Class holds one maze known to the service and the queries
+	 *    waiting on it. At most one batch per maze runs at a time.
+	 */
+	private final class LoadedMaze implements Runnable
+	{
+		/**
+		 * Seeded constructor: the maze lives in the cache
+		 */
+		private LoadedMaze(String id, MazeCache.MazeKey key)
+		{
+			this.id = id;
+			this.key = key;
+			this.maze = null;
+			rows = key.rows;
+			cols = key.cols;
+		} // seeded LoadedMaze constructor
+
+		/**
+		 * Uploaded constructor: the maze is held here while queries on
+		 *    it are waiting
+		 */
+		private LoadedMaze(String id, Maze maze)
+		{
+			this.id = id;
+			this.key = null;
+			this.maze = maze;
+			rows = maze.rowCount;
+			cols = maze.colCount;
+		} // uploaded LoadedMaze constructor
+
+		/**
+		 * Utility method: queues a query and schedules a batch if
+		 *    none is already scheduled
+		 *
+		 * @return	the path, once a batch has solved it (null if the
+		 * 				end cannot be reached)
+		 */
+		private CompletableFuture<MazePath> submit(int fromRow, int fromCol,
+				int toRow, int toCol)
+		{
+			Query query = new Query(fromRow, fromCol, toRow, toCol);
+			queries.increment();
+			pending.add(query);
+			if(scheduled.compareAndSet(false, true))
+				solverPool.execute(this);
+			return query.answer;
+		} // submit()
+
+		/**
+		 * Utility method: solves every query pending when it starts,
+		 *    then reschedules itself if more have arrived meanwhile
+		 */
+		public void run()
+		{
+			List<Query> batch = new ArrayList<Query>();
+			try
+			{
+				Query query;
+				while((query = pending.poll()) != null)
+					batch.add(query);
+				if(batch.isEmpty()) return;
+				batches.increment();
+
+				Map<String, MazePath> solved = new HashMap<String, MazePath>();
+				for(Query q : batch)
+				{
+					String endpoints = q.fromRow + "," + q.fromCol + "," + q.toRow + "," + q.toCol;
+					try
+					{
+						MazePath path = solved.get(endpoints);
+						if(path == null && key != null)
+						{
+							path = cache.path(key, q.fromRow, q.fromCol,
+									q.toRow, q.toCol, SolverType.BFS);
+						}
+						else if(path == null)
+						{
+							BFS_Solver solver = new BFS_Solver(maze,
+									q.fromRow, q.fromCol, q.toRow, q.toCol);
+							solver.solve();
+							path = solver.getPath();
+						}
+						solved.put(endpoints, path);
+						q.answer.complete(path);
+					}
+					catch(RuntimeException e)
+					{
+						q.answer.completeExceptionally(e);
+					}
+				}
+			}
+			catch(RuntimeException | Error e)
+			{
+				// e.g. out of memory generating the maze: fail whatever
+				// is still waiting rather than leave it hanging
+				for(Query q : batch)
+					q.answer.completeExceptionally(e);	// no-op if answered
+				Query query;
+				while((query = pending.poll()) != null)
+					query.answer.completeExceptionally(e);
+				throw e;
+			}
+			finally
+			{
+				scheduled.set(false);
+				if(!pending.isEmpty())
+				{
+					if(scheduled.compareAndSet(false, true))
+						solverPool.execute(this);
+				}
+				else
+				{
+					// the caches keep the maze itself; a query arriving
+					// after this still runs here, or on a fresh entry
+					mazes.remove(id, this);
+				}
+			}
+		} // run()
+
+		final String id;				// in mazes
+		final MazeCache.MazeKey key;	// for seeded mazes, else null
+		final Maze maze;				// for uploaded mazes, else null
+		final int rows;
+		final int cols;
+		final ConcurrentLinkedQueue<Query> pending = new ConcurrentLinkedQueue<Query>();
+		final AtomicBoolean scheduled = new AtomicBoolean();
+	} // LoadedMaze class
+
+	/**
+	 * Class holds one endpoint query and its eventual answer
+	 */
+	private static final class Query
+	{
+		private Query(int fromRow, int fromCol, int toRow, int toCol)
+		{
+			this.fromRow = fromRow;
+			this.fromCol = fromCol;
+			this.toRow = toRow;
+			this.toCol = toCol;
+		} // Query constructor
+
+		final int fromRow;
+		final int fromCol;
+		final int toRow;
+		final int toCol;
+		final CompletableFuture<MazePath> answer = new CompletableFuture<MazePath>();
+	} // Query class
+} // MazeService class
@@ -5,14 +5,23 @@ import Maze.Maze.Path;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Abstract Class MazeSolver implements a general maze solver. It 
- *    contains a pointer to the maze to be solved and a two-
- *    dimensional array (of the same size) with attributes 
- *    necessary to solving the maze that are not included in the
- *    maze itself, implemented as an abstract inner class,
- *    SolutionCell.
+ *    contains a pointer to the maze to be solved and a flat array,
+ *    solution, with one SolutionCell (an abstract inner class) per
+ *    storage slot of the maze, holding the attributes necessary to
+ *    solving the maze that are not included in the maze itself.
+ *    The array is indexed by the storage index of each cell, so it
+ *    follows the same CellLayout as the maze.
  *    
  * MazeSolver contains methods for printing the solved maze in
  *    two ways: one shows the traversal order of cells in the maze,
@@ -20,9 +29,11 @@ import java.io.PrintStream;
  *    also contains methods for confirming the existence of and
  *    retrieving a given cell's neighbors based on criteria
  *    
- * MazeSolver leaves unimplemented the abstract solver() method.
- *     Derived classes must implement this using any suitable
- *     algorithm.
+ * MazeSolver leaves unimplemented the abstract step() method,
+ *     which expands one cell of the search. Derived classes must
+ *     implement this using any suitable algorithm; solve() runs
+ *     step() until the search is over, and steps() runs it only as
+ *     far as the caller pulls, one Expansion at a time.
  *     
  * MazeSolver contains a boolean (solved) that is false until a
  *    solution traversal visits the cell that is the end of the
@@ -38,43 +49,252 @@ abstract class MazeSolver {
 	 * 							will solve.
 	 */
 	protected MazeSolver(Maze inputMaze)
+	{
+		this(inputMaze, inputMaze.mazeStart, inputMaze.mazeEnd);
+	} // Endpoint MazeSolver constructor
+	
+	/**
+	 * Endpoint constructor. Connects MazeSolver to a specific Maze,
+	 *    to search for a path between two given cells rather than
+	 *    from mazeStart to mazeEnd
+	 * 
+	 * @param inputMaze		the Maze this instance of MazeSolver
+	 * 							will solve.
+	 * @param from			the cell the path starts at
+	 * @param to			the cell the path ends at
+	 */
+	protected MazeSolver(Maze inputMaze, MazeCell from, MazeCell to)
+	{
+		this(inputMaze, from, to, true);
+	} // Endpoint MazeSolver constructor
+
+	/**
+	 * Endpoint constructor for solvers that may keep no per-cell
+	 *    objects. Without them, solution is null: the solver must
+	 *    override getPath(), and printTraverseMap() is not available.
+	 * 
+	 * @param inputMaze		the Maze this instance of MazeSolver
+	 * 							will solve.
+	 * @param from			the cell the path starts at
+	 * @param to			the cell the path ends at
+	 * @param cellState		false to skip the solution array
+	 */
+	protected MazeSolver(Maze inputMaze, MazeCell from, MazeCell to, boolean cellState)
 	{
 		maze = inputMaze;
+		start = from;
+		end = to;
 		solved = false;
 		time = 0;
-		solution = new SolutionCell[maze.rowCount][maze.colCount];
+		if(!cellState) return;
+		solution = new SolutionCell[maze.cells.length];
 		
-		for(int row = 0; row < maze.rowCount; row++)
+		// allocate in storage order (padding slots stay null)
+		for(int index = 0; index < solution.length; index++)
 		{
-			for(int col = 0; col < maze.colCount; col++)
-			{
+			if(maze.cells[index] != null)
 				// default SolutionCell sets visited = false
-				solution[row][col] = new SolutionCell(maze.cells[row][col]);
-			}
+				solution[index] = new SolutionCell(maze.cells[index]);
 		}
-	} // Default MazeSolver constructor
+	} // Cell-state MazeSolver constructor
 
 ///// Instance Methods /////////////////////////////////////////////
+	/**
+	 * Utility Method: runs the search to the end, producing a
+	 *    traversal and a shortest-path from start to end
+	 */
+	public void solve()
+	{
+		while(step() >= 0);
+	} // solve()
+
 	/**
 	 * Utility Method: derived classes must implement their
-	 * solution algorithm in the solve() method
+	 *    solution algorithm in the step() method, one cell per call.
+	 *    When the search is over, step() marks the optimal path and
+	 *    returns -1.
+	 *
+	 * @return	the storage index of the cell just expanded (or
+	 * 				reached, if it is the end cell), or -1 once the
+	 * 				search is over
+	 */
+	protected abstract int step();
+
+	/**
+	 * Utility method: the depth of the cell step() just returned, as
+	 *    reported by Expansion
+	 *
+	 * @param index		the storage index of the cell
+	 */
+	protected abstract int depth(int index);
+
+	/**
+	 * Utility method: the cell the search reached the cell step()
+	 *    just returned from. Derived classes that don't keep parent
+	 *    links while searching override this.
+	 *
+	 * @param index		the storage index of the cell
+	 * @return			the storage index of the parent, or -1 for a
+	 * 						cell the search started from
+	 */
+	protected int parentOf(int index)
+	{
+		SolutionCell parent = solution[index].parent;
+		return parent == null ? -1 : parent.cell.index;
+	} // parentOf()
+
+	/**
+	 * Output method: the search as a lazy sequence of Expansions.
+	 *    Each call to tryAdvance() runs one step() and nothing is
+	 *    buffered, so a caller may pause between steps, sample them,
+	 *    or stop early, using no memory beyond the solver's own. The
+	 *    search continues from wherever it stands; once the
+	 *    spliterator is exhausted the path is marked as after solve().
+	 *
+	 * @return	a spliterator over the remaining steps of the search
+	 */
+	public Spliterator<Expansion> spliterator()
+	{
+		return new Spliterators.AbstractSpliterator<Expansion>(Long.MAX_VALUE,
+				Spliterator.ORDERED | Spliterator.NONNULL) {
+			public boolean tryAdvance(Consumer<? super Expansion> action)
+			{
+				int index = step();
+				if(index < 0) return false;
+				int parent = parentOf(index);
+				action.accept(new Expansion(maze.layout.row(index), maze.layout.col(index),
+						parent < 0 ? -1 : maze.layout.row(parent),
+						parent < 0 ? -1 : maze.layout.col(parent), depth(index)));
+				return true;
+			}
+		};
+	} // spliterator()
+
+	/**
+	 * Output method: spliterator() as an Iterator
+	 */
+	public Iterator<Expansion> steps()
+	{
+		return Spliterators.iterator(spliterator());
+	} // steps()
+
+	/**
+	 * Output method: spliterator() as a sequential Stream, e.g.
+	 *    stream().limit(1000) or stream().filter(...).findFirst()
+	 */
+	public Stream<Expansion> stream()
+	{
+		return StreamSupport.stream(spliterator(), false);
+	} // stream()
+
+	/**
+	 * Utility method: runs solve() under a SolveControl, which may
+	 *    stop it part way through. A stopped solve drops its solution
+	 *    array at once rather than leaving the per-cell state of a
+	 *    half-searched maze to whoever holds the solver, so the
+	 *    solver can't be used again.
+	 *
+	 * @param control	the deadline, token and progress callback
+	 * @return			the path, or null if the end can't be reached
+	 * @throws SolveControl.Stopped		if the solve was cancelled or
+	 * 						timed out
+	 */
+	MazePath solve(SolveControl control)
+	{
+		this.control = control;
+		try
+		{
+			solve();
+			control.finished(cellsExpanded);
+			return getPath();
+		}
+		catch(SolveControl.Stopped e)
+		{
+			solution = null;
+			solved = false;
+			throw e;
+		}
+		finally
+		{
+			this.control = null;
+		}
+	} // solve()
+
+	/**
+	 * Utility method: derived classes call this once for each cell
+	 *    they expand. Every CHECK_INTERVAL cells it lets the control
+	 *    of an asynchronous solve report progress and stop the
+	 *    search; otherwise it only counts.
+	 *
+	 * @throws SolveControl.Stopped		if the solve should stop
+	 */
+	protected final void expanded()
+	{
+		if((++cellsExpanded & (CHECK_INTERVAL - 1)) == 0 && control != null)
+			control.check(cellsExpanded);
+	} // expanded()
+
+	/**
+	 * Output method: returns the path found by solve(), from start
+	 *    to end, as a MazePath that does not refer back to the maze
+	 *    or this solver. It is built by following the parent links
+	 *    back from the end cell.
+	 *    
+	 * @return	the path, or null if solve() has not run or did not
+	 * 				reach the end cell
 	 */
-	public abstract void solve();
+	public MazePath getPath()
+	{
+		// collect the path from end back to start
+		int[] cells = new int[64];
+		int length = 0;
+		SolutionCell sc = solution[end.index];
+		for(; sc != null; sc = sc.parent)
+		{
+			if(length == cells.length)
+				cells = Arrays.copyOf(cells, length * 2);
+			cells[length++] = sc.cell.index;
+			if(sc.cell == start) break;
+		}
+		if(sc == null) return null;
+		
+		// and emit its moves from start to end
+		MazePath.Builder builder = new MazePath.Builder(start.row, start.col);
+		for(int i = length - 1; i > 0; i--)
+		{
+			MazeCell from = maze.cells[cells[i]];
+			MazeCell to = maze.cells[cells[i - 1]];
+			builder.add(to.row < from.row ? Path.NORTH : to.row > from.row ? Path.SOUTH
+					: to.col > from.col ? Path.EAST : Path.WEST);
+		}
+		return builder.build();
+	} // getPath()
 	
 	/**
 	 * Output method: Prints a text representation of the maze
 	 *    including the shortest-path from start to end.
+	 *    
+	 * The text is built in a private stream rather than by
+	 *    redirecting System.out, so solvers may be printed from
+	 *    several threads at once.
 	 */
 	public String printSolution()
 	{
+		// a solver without a solution array marks its path here
+		BitSet onPath = new BitSet();
+		if(solution == null && getPath() != null)
+		{
+			MazePath.Cursor cursor = getPath().cursor();
+			do
+			{
+				onPath.set(maze.layout.index(cursor.row(), cursor.col()));
+			}while(cursor.next());
+		}
+		
 		// Create a stream to hold the output
 		ByteArrayOutputStream baos = new ByteArrayOutputStream();
 		PrintStream ps = new PrintStream(baos);
-		// IMPORTANT: Save the old System.out!
-		PrintStream old = System.out;
-		// Tell Java to use your special stream
-		System.setOut(ps);
-		System.out.println("start");
+		ps.println("start");
 		for(int row = 0; row < maze.rowCount; row++)
 		{
 			String northWalls = "+";
@@ -82,15 +302,17 @@ abstract class MazeSolver {
 			String southWalls = "+";
 			for( int col = 0; col < maze.colCount; col++)
 			{
-				SolutionCell sc = solution[row][col];
-				if(row == 0) northWalls += sc.cell.hasWall(Path.NORTH) ? "���+" : "   +";
-				southWalls += sc.cell.hasWall(Path.SOUTH) ? "���+" : "   +";
-				eastWestWalls += sc.inOptimalPath ? " # " : "   ";
-				eastWestWalls += sc.cell.hasWall(Path.EAST) ? "|" :  " ";
+				MazeCell cell = maze.cellAt(row, col);
+				boolean inPath = solution == null ? onPath.get(cell.index)
+						: solution[cell.index].inOptimalPath;
+				if(row == 0) northWalls += cell.hasWall(Path.NORTH) ? "���+" : "   +";
+				southWalls += cell.hasWall(Path.SOUTH) ? "���+" : "   +";
+				eastWestWalls += inPath ? " # " : "   ";
+				eastWestWalls += cell.hasWall(Path.EAST) ? "|" :  " ";
 			}
-			if(row == 0) System.out.println(northWalls);
-			System.out.println(eastWestWalls);
-			System.out.println(southWalls);
+			if(row == 0) ps.println(northWalls);
+			ps.println(eastWestWalls);
+			ps.println(southWalls);
 		}
 		
 		// for spacing out the "end" label
@@ -99,10 +321,8 @@ abstract class MazeSolver {
 		{
 			buffer += " ";
 		}
-		System.out.println(buffer + "end");
-		// Put things back
-		System.out.flush();
-		System.setOut(old);
+		ps.println(buffer + "end");
+		ps.flush();
 		return baos.toString();
 	} // printSolution()
 
@@ -110,18 +330,21 @@ abstract class MazeSolver {
 	 * Output method: Prints a text representation of the maze
 	 *    including the order that the solution algorithm
 	 *    traversed the maze
+	 *    
+	 * @throws UnsupportedOperationException	if the solver keeps no
+	 * 						solution array, so has no traversal order
 	 */
 	public String printTraverseMap()
 	{
+		if(solution == null)
+			throw new UnsupportedOperationException(getClass().getSimpleName()
+					+ " does not record its traversal");
+		
 		// Create a stream to hold the output
 		ByteArrayOutputStream baos = new ByteArrayOutputStream();
 		PrintStream ps = new PrintStream(baos);
-		// IMPORTANT: Save the old System.out!
-		PrintStream old = System.out;
-		// Tell Java to use your special stream
-		System.setOut(ps);
 
-		System.out.println("start");
+		ps.println("start");
 		for(int row = 0; row < maze.rowCount; row++)
 		{
 			String northWalls = "+";
@@ -129,16 +352,16 @@ abstract class MazeSolver {
 			String southWalls = "+";
 			for( int col = 0; col < maze.colCount; col++)
 			{
-				SolutionCell sc = solution[row][col];
+				SolutionCell sc = solutionAt(row, col);
 				if(row == 0) northWalls += sc.cell.hasWall(Path.NORTH) ? "���+" : "   +";
 				southWalls += sc.cell.hasWall(Path.SOUTH) ? "���+" : "   +";
 				eastWestWalls += " ";
 				eastWestWalls += sc.visited ? (sc.searchOrdinal % 10) + " " : "  ";
 				eastWestWalls += sc.cell.hasWall(Path.EAST) ? "|" :  " ";
 			}
-			if(row == 0) System.out.println(northWalls);
-			System.out.println(eastWestWalls);
-			System.out.println(southWalls);
+			if(row == 0) ps.println(northWalls);
+			ps.println(eastWestWalls);
+			ps.println(southWalls);
 		}
 		
 		// for spacing out the "end" label
@@ -147,22 +370,36 @@ abstract class MazeSolver {
 		{
 			buffer += " ";
 		}
-		System.out.println(buffer + "end");
-		// Print some output: goes to your special stream
-		//System.out.println("Foofoofoo!");
-		// Put things back
-		System.out.flush();
-		System.setOut(old);
-//		// Show what happened
-//		System.out.println("Here: " + baos.toString());
+		ps.println(buffer + "end");
+		ps.flush();
 	return baos.toString();
 	} // printTraverseMap()
 
+	/**
+	 * Utility method: returns the solution cell at the given address
+	 * 
+	 * @param row	the row of the cell
+	 * @param col	the column of the cell
+	 * @return		the SolutionCell for the maze cell at (row, col)
+	 */
+	protected SolutionCell solutionAt(int row, int col)
+	{
+		return solution[maze.layout.index(row, col)];
+	} // solutionAt()
+
 ///// Instance Fields //////////////////////////////////////////////
 	Maze maze;
-	SolutionCell[][] solution;
+	final MazeCell start;		// the cell the search starts from
+	final MazeCell end;			// the cell the search looks for
+	SolutionCell[] solution;	// indexed by storage index
 	boolean solved;
 	int time;
+	long cellsExpanded;	// cells expanded, for SolveControl
+	private SolveControl control;	// set while solve(control) runs
+
+	// expansions between checks of an asynchronous solve; a power of 2
+	static final int CHECK_INTERVAL = 1024;
+	static final Path[] DIRECTIONS = Path.values();	// by ordinal
 	
 ///// Inner Classes ////////////////////////////////////////////////
 	
@@ -230,9 +467,8 @@ abstract class MazeSolver {
 		{
 			if(this.cell.hasNeighbor(direction) && this.cell.hasPath(direction))
 			{
-				int row = cell.getNeighbor(direction).row;
-				int col = cell.getNeighbor(direction).col;
-				SolutionCell neighbor = solution[row][col];
+				SolutionCell neighbor = 
+						solution[maze.neighborIndex(cell.index, direction)];
 				return !neighbor.visited;
 			} 
 			else return false;
@@ -240,19 +476,15 @@ abstract class MazeSolver {
 		
 		/**
 		 * Utility method: retrieves a neighboring SolutionCell by
-		 * first retrieving the neighbor of the corresponding MazeCell
-		 * and extracting its row and column indices.
+		 * looking up the storage index of the neighbor of the
+		 * corresponding MazeCell.
 		 * 
 		 * @param direction
 		 * @return the neighboring SolutionCell
 		 */
 		private SolutionCell getNeighbor(Path direction)
 		{
-			Maze.MazeCell mazeNeighbor = this.cell.getNeighbor(direction);
-			int row = mazeNeighbor.row;
-			int col = mazeNeighbor.col;
-			
-			return solution[row][col];
+			return solution[maze.neighborIndex(cell.index, direction)];
 		} // getNeighbor();
 		
 		final MazeCell cell; 	// link to the related cell in the Maze
@@ -3,69 +3,923 @@ import static org.junit.Assert.*;
 /**
  * Driver
  * \main() method instantiates Maze and MazeSolver types
- *    then solves the maze and outputs the result.
+ *    then solves the maze with every solver and checks each path
+ *    structurally, through SolverHarness.
  *
  */
 public class MazeTester {
 	@org.junit.Test
 	public void maze2x2() {
-		System.out.println("\n\n------- 1x1 Graph -------");
 		Maze maze2x2 = new Maze(2, 2);
-		testDFSBFS(maze2x2);
+		checkSolvers(maze2x2);
 	}
 	@org.junit.Test
 	public void maze4x4() {
-		System.out.println("\n\n------- 1x1 Graph -------");
 		Maze maze4x4 = new Maze(4, 4);
-		testDFSBFS(maze4x4);
+		checkSolvers(maze4x4);
 	}
 	@org.junit.Test
 	public void maze6x6() {
-		System.out.println("\n\n------- 1x1 Graph -------");
 		Maze maze6x6 = new Maze(6, 6);
-		testDFSBFS(maze6x6);
+		checkSolvers(maze6x6);
 	}
 	@org.junit.Test
 	public void maze8x8() {
-		System.out.println("\n\n------- 1x1 Graph -------");
 		Maze maze8x8 = new Maze(8, 8);
-		testDFSBFS(maze8x8);
+		checkSolvers(maze8x8);
 	}
+	@org.junit.Test
+	public void mazesArePerfect() throws InterruptedException {
+		for (CellLayout.Type layout : CellLayout.Type.values()) {
+			for (int size = 2; size <= 64; size *= 2) {
+				MazeVerifier.Report report = MazeVerifier.verify(new Maze(size, size + 3, layout, size), 4);
+				assertTrue(report.toString(), report.isPerfect());
+			}
+		}
+	}
+
+	@org.junit.Test
+	public void analyzerMatchesSearches() throws InterruptedException {
+		for (int size = 2; size <= 16; size *= 2) {
+			Maze maze = new Maze(size, size + 3, size);
+			MazeAnalyzer.Report report = MazeAnalyzer.analyze(maze);
+			assertEquals(report.toString(), MazeAnalyzer.analyze(maze, 3).toString());
+			assertEquals(SolverHarness.distance(maze, maze.mazeStart, maze.mazeEnd), report.pathLength);
+			assertEquals(report.deadEnds + report.junctions - 1, report.corridorCount());
+			int diameter = 0;
+			for (int from = 0; from < maze.cells.length; from++) {
+				for (int to = 0; to < maze.cells.length; to++) {
+					diameter = Math.max(diameter, SolverHarness.distance(maze, maze.cells[from], maze.cells[to]));
+				}
+			}
+			assertEquals(diameter, report.diameter);
+		}
+	}
+
+	@org.junit.Test
+	public void stripeWorkersFindShortestPaths() throws java.io.IOException {
+		Maze maze = new Maze(40, 43, 46L);
+		SolverHarness.addLoops(maze, 46L);
+		java.nio.file.Path file = java.nio.file.Files.createTempFile("maze", ".bin");
+		try {
+			MazeFile.write(maze, file);
+			try (StripeBFS bfs = new StripeBFS(file, 3)) {
+				for (int row = 0; row < maze.rowCount; row += 7) {
+					Maze.MazeCell from = maze.cellAt(row, row % maze.colCount);
+					int distance = SolverHarness.distance(maze, from, maze.mazeEnd);
+					assertEquals(distance + 1, bfs.solve(from.row, from.col, maze.mazeEnd.row, maze.mazeEnd.col));
+					assertNull(SolverHarness.checkPath(maze, bfs.path(), from, maze.mazeEnd, distance));
+				}
+			}
+		} finally {
+			java.nio.file.Files.delete(file);
+		}
+	}
+
+	@org.junit.Test
+	public void solversOnSeededMazes() throws InterruptedException {
+		for (SolverHarness.Result result : SolverHarness.run(128, 4, 2, null)) {
+			assertNull(result.toString(), result.failure);
+		}
+	}
+
+	@org.junit.Test
+	public void pipelineDropsOnlyFailedJobs() throws InterruptedException {
+		final java.util.concurrent.atomic.AtomicInteger written = new java.util.concurrent.atomic.AtomicInteger();
+		MazePipeline pipeline = new MazePipeline(2, 2, 2, 2, new MazePipeline.Sink() {
+			public void write(MazePipeline.Result result) throws java.io.IOException {
+				if (result.sequence % 5 == 0) throw new java.io.IOException("sink " + result.sequence);
+				if (result.sequence % 5 == 1) throw new OutOfMemoryError("sink " + result.sequence);
+				written.incrementAndGet();
+			}
+		});
+		java.util.List<MazePipeline.Job> jobs = new java.util.ArrayList<MazePipeline.Job>();
+		for (int i = 0; i < 50; i++) jobs.add(new MazePipeline.Job(8, 8));
+		MazePipeline.Report report = pipeline.run(jobs);
+		assertEquals(30, written.get());
+		MazePipeline.StageReport write = report.stages.get(2);
+		assertEquals(30, write.processed);
+		assertEquals(20, write.failed);
+		assertNotNull(report.firstFailure);
+	}
+
+	@org.junit.Test
+	public void pipelineHoldsBackTheCaller() throws Exception {
+		final int capacity = 2;
+		final java.util.concurrent.CountDownLatch release = new java.util.concurrent.CountDownLatch(1);
+		final java.util.concurrent.atomic.AtomicInteger pulled = new java.util.concurrent.atomic.AtomicInteger();
+		final MazePipeline pipeline = new MazePipeline(1, 1, 1, capacity, new MazePipeline.Sink() {
+			public void write(MazePipeline.Result result) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		final Iterable<MazePipeline.Job> jobs = new Iterable<MazePipeline.Job>() {
+			public java.util.Iterator<MazePipeline.Job> iterator() {
+				return new java.util.Iterator<MazePipeline.Job>() {
+					public boolean hasNext() { return pulled.get() < 1000; }
+					public MazePipeline.Job next() {
+						pulled.incrementAndGet();
+						return new MazePipeline.Job(4, 4);
+					}
+				};
+			}
+		};
+		final MazePipeline.Report[] report = new MazePipeline.Report[1];
+		Thread caller = new Thread(new Runnable() {
+			public void run() {
+				try {
+					report[0] = pipeline.run(jobs);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		caller.start();
+		Thread.sleep(500);
+		// three queues, one job in each stage, and one in the caller's hand
+		assertTrue("pulled " + pulled.get(), pulled.get() <= 3 * capacity + 3 + 1);
+		release.countDown();
+		caller.join(60000);
+		assertEquals(1000, report[0].stages.get(2).processed);
+	}
+
+	@org.junit.Test
+	public void serviceRefusesHugeMazesAndForgetsSeededOnes() throws Exception {
+		MazeService service = new MazeService(0, 2);
+		service.start();
+		try {
+			String base = "http://127.0.0.1:" + service.address().getPort() + "/solve?rows=";
+			assertEquals(400, get(base + "100000&cols=100000&seed=1").getResponseCode());
+			for (int seed = 0; seed < 20; seed++) {
+				assertEquals(200, get(base + "8&cols=8&seed=" + seed).getResponseCode());
+			}
+			long deadline = System.currentTimeMillis() + 10000;
+			while (!service.stats().startsWith("mazes 0\n") && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertTrue(service.stats(), service.stats().startsWith("mazes 0\n"));
+		} finally {
+			service.stop();
+		}
+	}
+
+	@org.junit.Test
+	public void serviceRegistersNothingForBadQueries() throws Exception {
+		MazeService service = new MazeService(0, 2);
+		service.start();
+		try {
+			String base = "http://127.0.0.1:" + service.address().getPort() + "/solve?rows=8&cols=8&seed=";
+			for (int seed = 0; seed < 50; seed++) {
+				assertEquals(400, get(base + seed + "&from=x").getResponseCode());
+			}
+			assertEquals(400, post(base + 50, "").getResponseCode());
+			assertEquals(400, post(base + 51, "0 0 7\n").getResponseCode());
+			assertTrue(service.stats(), service.stats().startsWith("mazes 0\n"));
+		} finally {
+			service.stop();
+		}
+	}
+
+	@org.junit.Test
+	public void serviceBoundsUploads() throws Exception {
+		MazeService service = new MazeService(0, 2);
+		service.start();
+		try {
+			String base = "http://127.0.0.1:" + service.address().getPort();
+			Maze maze = new Maze(5, 6, 1);
+			java.net.HttpURLConnection upload = post(base + "/mazes", maze.toText());
+			assertEquals(200, upload.getResponseCode());
+			String id = read(upload).trim();
+			java.net.HttpURLConnection solved = get(base + "/solve?maze=" + id);
+			assertEquals(200, solved.getResponseCode());
+			MazePath path = MazePath.parse(read(solved).trim());
+			assertNull(SolverHarness.checkPath(maze, path, maze.mazeStart, maze.mazeEnd,
+					SolverHarness.distance(maze, maze.mazeStart, maze.mazeEnd)));
+			assertEquals(404, get(base + "/solve?maze=text-0").getResponseCode());
+
+			StringBuilder huge = new StringBuilder(MazeService.MAX_BODY_BYTES + 1);
+			while (huge.length() <= MazeService.MAX_BODY_BYTES) huge.append('+');
+			try {
+				assertEquals(400, post(base + "/mazes", huge.toString()).getResponseCode());
+			} catch (java.io.IOException refused) {
+				// the service may stop reading and close before the
+				// whole body is sent
+			}
+			long deadline = System.currentTimeMillis() + 10000;
+			while (!service.stats().startsWith("mazes 0\n") && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertTrue(service.stats(), service.stats().startsWith("mazes 0\n"));
+			assertTrue(service.stats(), service.stats().contains("upload cache: entries 1,"));
+		} finally {
+			service.stop();
+		}
+	}
+
+	private static java.net.HttpURLConnection post(String url, String body) throws java.io.IOException {
+		byte[] bytes = body.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+		java.net.HttpURLConnection connection = (java.net.HttpURLConnection) new java.net.URL(url).openConnection();
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		connection.setFixedLengthStreamingMode(bytes.length);
+		try (java.io.OutputStream out = connection.getOutputStream()) {
+			out.write(bytes);
+		}
+		connection.getResponseCode();
+		return connection;
+	}
+
+	private static String read(java.net.HttpURLConnection connection) throws java.io.IOException {
+		try (java.io.InputStream in = connection.getInputStream()) {
+			return new String(in.readAllBytes(), java.nio.charset.StandardCharsets.UTF_8);
+		}
+	}
+
+	private static java.net.HttpURLConnection get(String url) throws java.io.IOException {
+		java.net.HttpURLConnection connection = (java.net.HttpURLConnection) new java.net.URL(url).openConnection();
+		connection.getResponseCode();
+		return connection;
+	}
+
+	@org.junit.Test
+	public void lruCacheEvictsLeastRecentlyUsedByWeight() {
+		final int[] loads = new int[1];
+		cache.LruCache<String, String> lru = new cache.LruCache<String, String>(10,
+				new cache.LruCache.Weigher<String>() {
+					public long weigh(String value) { return value.length(); }
+				});
+		cache.LruCache.Loader<String, String> loader = new cache.LruCache.Loader<String, String>() {
+			public String load(String key) {
+				loads[0]++;
+				if (key.equals("bad")) throw new IllegalStateException(key);
+				return key + key + key + key;
+			}
+		};
+		lru.put("a", "aaaa");
+		lru.put("b", "bbbb");
+		assertEquals("aaaa", lru.getIfPresent("a"));	// b is now the eldest
+		assertEquals("cccc", lru.get("c", loader));
+		assertNull(lru.getIfPresent("b"));
+		assertEquals("cccc", lru.get("c", loader));
+		assertEquals(1, loads[0]);
+		assertEquals(8, lru.weight());
+		assertEquals(2, lru.size());
+		assertEquals(1, lru.evictions());
+
+		lru.put("d", "ddddddddddd");	// heavier than the whole cache
+		assertNull(lru.getIfPresent("d"));
+		assertEquals(8, lru.weight());
+		lru.invalidate("a");
+		assertEquals(4, lru.weight());
+		try {
+			lru.get("bad", loader);
+			fail("the loader's exception was swallowed");
+		} catch (IllegalStateException expected) {
+		}
+		assertNull(lru.getIfPresent("bad"));
+		assertEquals(4, lru.weight());
+	}
+
+	@org.junit.Test
+	public void indexedMinHeapPollsInPriorityOrder() {
+		java.util.Random random = new java.util.Random(7);
+		int n = 2000;
+		queue.IndexedMinHeap heap = new queue.IndexedMinHeap(n);
+		long[] priority = new long[n];
+		java.util.Arrays.fill(priority, -1);
+		for (int i = 0; i < 20000; i++) {
+			int item = random.nextInt(n);
+			if (random.nextInt(4) == 0) {
+				heap.remove(item);
+				priority[item] = -1;
+			} else {
+				// distinct priorities, so the order is unambiguous
+				priority[item] = (long) random.nextInt(1 << 20) * n + item;
+				heap.put(item, priority[item]);
+			}
+			assertEquals(priority[item] >= 0, heap.contains(item));
+		}
+		java.util.List<Long> expected = new java.util.ArrayList<Long>();
+		for (long p : priority) if (p >= 0) expected.add(p);
+		java.util.Collections.sort(expected);
+		assertEquals(expected.size(), heap.size());
+		for (long p : expected) {
+			assertEquals(p, heap.peekPriority());
+			assertEquals((int) (p % n), heap.poll());
+		}
+		assertTrue(heap.isEmpty());
+	}
+
+	@org.junit.Test
+	public void wallEditsChangeBothSides() throws InterruptedException {
+		Maze maze = new Maze(4, 5, 3);
+		Maze.Path[] paths = Maze.Path.values();
+		for (int row = 0; row < 4; row++) {
+			for (int col = 0; col < 5; col++) {
+				for (int d = 0; d < paths.length; d++) {
+					Maze.Path direction = paths[d];
+					if (!maze.checkedCellAt(row, col).hasNeighbor(direction)) {
+						try {
+							maze.openWall(row, col, direction);
+							fail("opened a boundary wall");
+						} catch (IllegalArgumentException expected) {
+						}
+						continue;
+					}
+					int cell = maze.layout.index(row, col);
+					int neighbor = maze.neighborIndex(cell, direction);
+					boolean wasOpen = maze.isOpen(cell, direction);
+					assertEquals(!wasOpen, maze.openWall(row, col, direction));
+					assertFalse(maze.openWall(row, col, direction));
+					assertTrue(maze.isOpen(neighbor, paths[(d + 2) & 3]));
+					assertTrue(maze.closeWall(row, col, direction));
+					assertFalse(maze.closeWall(row, col, direction));
+					assertFalse(maze.isOpen(neighbor, paths[(d + 2) & 3]));
+					if (wasOpen) maze.openWall(row, col, direction);
+				}
+			}
+		}
+		try {
+			maze.closeWall(4, 0, Maze.Path.NORTH);
+			fail("closed a wall outside the maze");
+		} catch (IndexOutOfBoundsException expected) {
+		}
+		assertTrue(MazeVerifier.verify(maze, 1).isPerfect());
+	}
+
+	@org.junit.Test
+	public void lpaFollowsRandomWallEdits() {
+		java.util.Random random = new java.util.Random(11);
+		Maze.Path[] paths = Maze.Path.values();
+		Maze maze = new Maze(16, 19, 5);
+		LPA_Solver solver = new LPA_Solver(maze);
+		for (int round = 0; round < 60; round++) {
+			solver.solve();
+			int distance = SolverHarness.distance(maze, maze.mazeStart, maze.mazeEnd);
+			assertEquals("round " + round, distance + 1, solver.pathLength());
+			if (distance >= 0) {
+				assertNull(SolverHarness.checkPath(maze, solver.getPath(), maze.mazeStart, maze.mazeEnd, distance));
+			}
+			for (int edit = 0; edit < 1 + round % 8; edit++) {
+				int row = random.nextInt(maze.rowCount);
+				int col = random.nextInt(maze.colCount);
+				Maze.Path direction = paths[random.nextInt(paths.length)];
+				if (!maze.checkedCellAt(row, col).hasNeighbor(direction)) continue;
+				boolean wall = random.nextInt(3) == 0;
+				if (round % 2 == 0) {
+					solver.setWall(row, col, direction, wall);
+				} else if (wall ? maze.closeWall(row, col, direction) : maze.openWall(row, col, direction)) {
+					solver.wallChanged(row, col, direction);
+				}
+			}
+		}
+	}
+
+	@org.junit.Test
+	public void mazePathRoundTripsInBothEncodings() {
+		MazePath.Builder zigzag = new MazePath.Builder(3, 4);
+		for (int i = 0; i < 20; i++) zigzag.add(Maze.Path.EAST).add(Maze.Path.SOUTH);
+		MazePath packed = zigzag.build();
+		assertEquals(10, packed.encodedBytes());	// 2 bits a move
+		MazePath runs = new MazePath.Builder(0, 0).add(Maze.Path.SOUTH, 100)
+				.add(Maze.Path.EAST, 3).add(Maze.Path.NORTH).build();
+		assertEquals(4, runs.encodedBytes());		// a varint a run
+		assertEquals("105 0,0 S100E3N", runs.toString());
+		MazePath single = new MazePath.Builder(5, 6).build();
+		assertEquals("1 5,6 -", single.toString());
+
+		for (MazePath path : new MazePath[] { packed, runs, single }) {
+			MazePath parsed = MazePath.parse(path.toString());
+			assertEquals(path, parsed);
+			assertEquals(path.hashCode(), parsed.hashCode());
+			assertEquals(path.toString(), parsed.toString());
+			assertEquals(path.encodedBytes(), parsed.encodedBytes());
+			assertEquals(path.endRow, parsed.endRow);
+			assertEquals(path.endCol, parsed.endCol);
+		}
+		assertEquals(23, packed.endRow);
+		assertEquals(24, packed.endCol);
+		assertFalse(packed.equals(runs));
+		assertFalse(runs.equals(MazePath.parse("105 0,0 S100E3W")));
 
-	Maze maze = new Maze(4, 4);
+		for (String bad : new String[] { "2 0,0 E0", "1 0,0 E0", "3 0,0 E0E2", "4 0,0 E2",
+				"3 0,0 E99999999999", "2 0,0 X", "1 0,0", "0 0,0 -" }) {
+			try {
+				MazePath.parse(bad);
+				fail("parsed " + bad);
+			} catch (IllegalArgumentException expected) {
+			}
+		}
+	}
 
-	public void testDFSBFS(Maze maze) {
-		DFS_Solver solver1 = new DFS_Solver(maze);
-		solver1.solve();
-		System.out.println("===== UNSOLVED MAZE =====");
-		maze.printMaze();
-		System.out.println("\n");
+	@org.junit.Test
+	public void spillQueueKeepsFifoOrder() throws java.io.IOException {
+		java.nio.file.Path dir = java.nio.file.Files.createTempDirectory("spill");
+		java.util.Random random = new java.util.Random(3);
+		java.util.ArrayDeque<Long> expected = new java.util.ArrayDeque<Long>();
+		try (ExternalBFS.SpillQueue queue = new ExternalBFS.SpillQueue(dir.resolve("q"), 4)) {
+			long next = 0;
+			for (int round = 0; round < 200; round++) {
+				// bursts longer than the two in-memory blocks spill
+				for (int i = random.nextInt(30); i > 0; i--) {
+					queue.add(next);
+					expected.add(next++);
+				}
+				for (int i = random.nextInt(30); i > 0 && !expected.isEmpty(); i--) {
+					assertFalse(queue.isEmpty());
+					assertEquals((long) expected.poll(), queue.poll());
+				}
+				assertEquals(expected.isEmpty(), queue.isEmpty());
+			}
+		} finally {
+			java.nio.file.Files.delete(dir);
+		}
+	}
 
-		System.out.println("===== DFS TRAVERSAL =====");
-		System.out.println(solver1.printTraverseMap());
-		System.out.println("\n");
+	@org.junit.Test
+	public void mappedRegionCrossesSegments() throws java.io.IOException {
+		java.nio.file.Path file = java.nio.file.Files.createTempFile("region", ".bin");
+		try {
+			MappedRegion region = MappedRegion.create(file, 100, 4);	// 16-byte segments
+			for (int at = 0; at < 100; at++) region.put(at, (byte) (at * 7));
+			region.close();
+			region = MappedRegion.open(file, 13, 80, false);
+			for (int at = 0; at < 80; at++) assertEquals((byte) ((at + 13) * 7), region.get(at));
+			region.close();
+		} finally {
+			java.nio.file.Files.delete(file);
+		}
+	}
 
-		System.out.println("===== SHORTEST PATH =====");
-		System.out.println(solver1.printSolution());
-		//assertEquals(solver1.printSolution(),solver1.printTraverseMap());
+	@org.junit.Test
+	public void externalBfsSpillsAndFindsShortestPaths() throws java.io.IOException {
+		java.nio.file.Path dir = java.nio.file.Files.createTempDirectory("external");
+		java.nio.file.Path file = dir.resolve("maze.bin");
+		Maze maze = new Maze(40, 43, 9);
+		SolverHarness.addLoops(maze, 9);
+		MazeFile.write(maze, file);
+		java.util.Random random = new java.util.Random(9);
+		try (MazeFile mazeFile = MazeFile.open(file);
+				ExternalBFS bfs = new ExternalBFS(mazeFile, dir.resolve("work"), 8, 5)) {
+			for (int i = 0; i < 20; i++) {
+				Maze.MazeCell from = maze.cells[random.nextInt(maze.cells.length)];
+				Maze.MazeCell to = i == 0 ? from : maze.cells[random.nextInt(maze.cells.length)];
+				int distance = SolverHarness.distance(maze, from, to);
+				assertEquals(distance + 1, bfs.solve(from.row, from.col, to.row, to.col));
+				assertNull(SolverHarness.checkPath(maze, bfs.path(), from, to, distance));
+				MazePath reference = GraphSearch.shortestPath(mazeFile, from.row, from.col, to.row, to.col, Long.MAX_VALUE);
+				assertEquals(reference.moveCount(), bfs.path().moveCount());
+			}
+		} finally {
+			// the work files are deleted by close()
+			java.nio.file.Files.deleteIfExists(dir.resolve("work"));
+			java.nio.file.Files.delete(file);
+			java.nio.file.Files.delete(dir);
+		}
+	}
 
-		System.out.println("\n\n");
-		System.out.println("==============================================================");
-		System.out.println("==============================================================");
-		System.out.println("\n\n");
+	@org.junit.Test
+	public void flowFieldRefreshMatchesFreshBuild() throws InterruptedException {
+		java.util.Random random = new java.util.Random(5);
+		Maze maze = new Maze(30, 33, 5);
+		SolverHarness.addLoops(maze, 5);
+		FlowField incremental = new FlowField(maze);
+		incremental.addTarget(maze.mazeEnd.row, maze.mazeEnd.col);
+		incremental.build();
+		for (Maze.MazeCell cell : maze.cells) {
+			assertEquals(SolverHarness.distance(maze, cell, maze.mazeEnd), incremental.distance(cell.row, cell.col));
+		}
+
+		java.util.List<Maze.MazeCell> targets = new java.util.ArrayList<Maze.MazeCell>();
+		targets.add(maze.mazeEnd);
+		for (int round = 0; round < 30; round++) {
+			for (int i = random.nextInt(4); i >= 0; i--) {
+				if (!targets.isEmpty() && random.nextInt(3) == 0) {
+					Maze.MazeCell gone = targets.remove(random.nextInt(targets.size()));
+					incremental.removeTarget(gone.row, gone.col);
+				} else {
+					Maze.MazeCell cell = maze.cells[random.nextInt(maze.cells.length)];
+					if (targets.contains(cell)) continue;
+					targets.add(cell);
+					incremental.addTarget(cell.row, cell.col);
+				}
+			}
+			incremental.refresh();
+			FlowField fresh = new FlowField(maze);
+			for (Maze.MazeCell target : targets) fresh.addTarget(target.row, target.col);
+			fresh.build(round % 2 == 0 ? 1 : 3);
+			for (Maze.MazeCell cell : maze.cells) {
+				String at = "round " + round + " at (" + cell.row + ", " + cell.col + ")";
+				assertEquals(at, fresh.distance(cell.row, cell.col), incremental.distance(cell.row, cell.col));
+				assertEquals(at, fresh.next(cell.row, cell.col), incremental.next(cell.row, cell.col));
+			}
+			Maze.MazeCell from = maze.cells[random.nextInt(maze.cells.length)];
+			MazePath path = incremental.pathFrom(from.row, from.col);
+			assertEquals(fresh.pathFrom(from.row, from.col), path);
+			if (path != null) {
+				assertEquals(incremental.distance(from.row, from.col), path.moveCount());
+			}
+		}
+	}
 
-		BFS_Solver solver2 = new BFS_Solver(maze);
-		solver2.solve();
-		System.out.println("===== UNSOLVED MAZE =====");
-		maze.printMaze();
-		System.out.println("\n");
+	@org.junit.Test
+	public void tiledMazeFileRoundTrips() throws Exception {
+		java.nio.file.Path file = java.nio.file.Files.createTempFile("tiled", ".maze");
+		try {
+			for (int loops = 0; loops < 2; loops++) {
+				// 7 divides neither side, so the south and east tiles are partial
+				Maze maze = new Maze(45, 38, 2);
+				if (loops == 1) SolverHarness.addLoops(maze, 2);
+				TiledMazeFile.write(maze, maze.rowCount, maze.colCount, 7, file);
+				try (TiledMazeFile tiled = TiledMazeFile.open(file, 200)) {	// a few tiles
+					for (int row = 0; row < maze.rowCount; row++) {
+						for (int col = 0; col < maze.colCount; col++) {
+							long id = maze.cellId(row, col);
+							long tiledId = tiled.cellId(row, col);
+							for (Maze.Path direction : Maze.Path.values()) {
+								assertEquals(maze.hasPath(id, direction), tiled.hasPath(tiledId, direction));
+							}
+						}
+					}
+					assertEquals(loops == 0, MazeVerifier.verify(tiled, tiled.rows, (int) tiled.cols, 2).isPerfect());
+					MazePath path = GraphSearch.shortestPath(tiled, 0, 0, maze.rowCount - 1, maze.colCount - 1, Long.MAX_VALUE);
+					assertNull(SolverHarness.checkPath(maze, path, maze.mazeStart, maze.mazeEnd,
+							SolverHarness.distance(maze, maze.mazeStart, maze.mazeEnd)));
+				}
+			}
+		} finally {
+			java.nio.file.Files.delete(file);
+		}
+	}
 
-		System.out.println("===== BFS TRAVERSAL =====");
-		System.out.println(solver2.printTraverseMap());
-		System.out.println("\n");
+	@org.junit.Test
+	public void hierarchicalPathsMatchBfsAfterWallEdits() throws InterruptedException {
+		java.util.Random random = new java.util.Random(13);
+		Maze.Path[] paths = Maze.Path.values();
+		Maze maze = new Maze(37, 41, 13);
+		SolverHarness.addLoops(maze, 13);
+		HierarchicalPathfinder hpa = new HierarchicalPathfinder(maze, 8);	// partial edge clusters
+		hpa.build(2);
+		for (int round = 0; round < 40; round++) {
+			for (int query = 0; query < 5; query++) {
+				Maze.MazeCell from = maze.cells[random.nextInt(maze.cells.length)];
+				Maze.MazeCell to = query == 0 ? from : maze.cells[random.nextInt(maze.cells.length)];
+				int distance = SolverHarness.distance(maze, from, to);
+				MazePath path = hpa.findPath(from.row, from.col, to.row, to.col);
+				if (distance < 0) {
+					assertNull(path);
+				} else {
+					assertNotNull("round " + round, path);
+					assertNull(SolverHarness.checkPath(maze, path, from, to, distance));
+				}
+			}
+			for (int edit = 0; edit < 3; edit++) {
+				int row = random.nextInt(maze.rowCount);
+				int col = random.nextInt(maze.colCount);
+				Maze.Path direction = paths[random.nextInt(paths.length)];
+				if (!maze.checkedCellAt(row, col).hasNeighbor(direction)) continue;
+				boolean wall = random.nextBoolean();
+				if (round % 2 == 0) {
+					hpa.setWall(row, col, direction, wall);
+				} else if (wall ? maze.closeWall(row, col, direction) : maze.openWall(row, col, direction)) {
+					hpa.wallChanged(row, col, direction);
+				}
+			}
+		}
+	}
+
+	@org.junit.Test
+	public void offHeapSearchesMatchGraphSearch() throws InterruptedException {
+		java.util.Random random = new java.util.Random(17);
+		Maze maze = new Maze(29, 31, 17);
+		SolverHarness.addLoops(maze, 17);
+		try (OffHeapMaze copy = OffHeapMaze.copyOf(maze, maze.rowCount, maze.colCount);
+				OffHeapMaze perfect = OffHeapMaze.generate(33, 27, 17);
+				OffHeapSearch looped = new OffHeapSearch(copy);
+				OffHeapSearch tree = new OffHeapSearch(perfect)) {
+			assertTrue(MazeVerifier.verify(perfect, perfect.rows, (int) perfect.cols, 2).isPerfect());
+			for (int i = 0; i < 20; i++) {
+				Maze.MazeCell from = maze.cells[random.nextInt(maze.cells.length)];
+				Maze.MazeCell to = i == 0 ? from : maze.cells[random.nextInt(maze.cells.length)];
+				int distance = SolverHarness.distance(maze, from, to);
+				MazePath reference = GraphSearch.shortestPath(copy, from.row, from.col, to.row, to.col, Long.MAX_VALUE);
+				assertEquals(distance, reference.moveCount());
+				assertEquals(distance + 1, looped.bfs(from.row, from.col, to.row, to.col));
+				assertNull(SolverHarness.checkPath(maze, looped.path(), from, to, distance));
+				assertTrue(looped.dfs(from.row, from.col, to.row, to.col) >= distance + 1);
+				assertNull(SolverHarness.checkPath(maze, looped.path(), from, to, -1));
+
+				// in a perfect maze the only path is found by either search
+				long fromRow = random.nextInt((int) perfect.rows);
+				long fromCol = random.nextInt((int) perfect.cols);
+				long toRow = random.nextInt((int) perfect.rows);
+				long toCol = random.nextInt((int) perfect.cols);
+				MazePath only = GraphSearch.shortestPath(perfect, fromRow, fromCol, toRow, toCol, Long.MAX_VALUE);
+				assertEquals(only.cellCount(), tree.bfs(fromRow, fromCol, toRow, toCol));
+				assertEquals(only, tree.path());
+				assertEquals(only.cellCount(), tree.dfs(fromRow, fromCol, toRow, toCol));
+				assertEquals(only, tree.path());
+			}
+		}
+	}
+
+	@org.junit.Test
+	public void solveAsyncStopsWhenCancelledOrLate() throws Exception {
+		final Maze maze = new Maze(100, 100, 19);
+		java.util.concurrent.Executor caller = new java.util.concurrent.Executor() {
+			public void execute(Runnable task) { task.run(); }
+		};
+		for (SolverType type : SolverType.values()) {
+			// a token cancelled from the progress callback
+			final CancellationToken token = new CancellationToken();
+			final java.util.List<Long> reports = new java.util.ArrayList<Long>();
+			java.util.concurrent.CompletableFuture<MazePath> future = type.solveAsync(maze, 0, 0, 99, 99,
+					caller, 1, java.util.concurrent.TimeUnit.MINUTES, token, new java.util.function.LongConsumer() {
+						public void accept(long expanded) {
+							reports.add(expanded);
+							if (expanded >= 2 * MazeSolver.CHECK_INTERVAL) token.cancel();
+						}
+					});
+			try {
+				MazePath path = future.get();
+				// only a solver that ends within two intervals gets here
+				assertTrue(type + " " + reports, reports.get(reports.size() - 1) < 2 * MazeSolver.CHECK_INTERVAL);
+				assertNotNull(type.toString(), path);
+			} catch (java.util.concurrent.CancellationException expected) {
+				assertEquals(java.util.Arrays.asList(0L, (long) MazeSolver.CHECK_INTERVAL,
+						2L * MazeSolver.CHECK_INTERVAL), reports);
+			}
+
+			// a callback slower than the timeout
+			future = type.solveAsync(maze, 0, 0, 99, 99, caller, 1, java.util.concurrent.TimeUnit.MILLISECONDS,
+					null, new java.util.function.LongConsumer() {
+						public void accept(long expanded) {
+							try {
+								Thread.sleep(5);
+							} catch (InterruptedException e) {
+								Thread.currentThread().interrupt();
+							}
+						}
+					});
+			try {
+				future.get();
+				fail(type + " ran past its timeout");
+			} catch (java.util.concurrent.ExecutionException e) {
+				assertTrue(type + " " + e.getCause(), e.getCause() instanceof java.util.concurrent.TimeoutException);
+			}
+		}
+
+		// run to the end: the last report is the whole search
+		final long[] last = new long[1];
+		MazePath path = SolverType.BFS.solveAsync(maze, 0, 0, 99, 99, caller, 1, java.util.concurrent.TimeUnit.MINUTES,
+				null, new java.util.function.LongConsumer() {
+					public void accept(long expanded) { last[0] = expanded; }
+				}).get();
+		MazeSolver solver = SolverType.BFS.create(maze, 0, 0, 99, 99);
+		// the stream also yields the end cell, reached but not expanded
+		assertEquals(last[0] + 1, solver.stream().count());
+		assertEquals(solver.getPath(), path);
+	}
+
+	@org.junit.Test
+	public void streamStopsEarlyAndReportsParents() {
+		Maze maze = new Maze(30, 30, 23);
+		SolverHarness.addLoops(maze, 23);
+		for (SolverType type : SolverType.values()) {
+			long total = type.create(maze, 0, 0, 29, 29).stream().count();
+			final int[] pulled = new int[1];
+			MazeSolver solver = type.create(maze, 0, 0, 29, 29);
+			long n = Math.min(100, total);
+			assertEquals(n, solver.stream().peek(new java.util.function.Consumer<Expansion>() {
+				public void accept(Expansion e) { pulled[0]++; }
+			}).limit(n).count());
+			assertEquals(type.toString(), n, pulled[0]);
+			// the search goes on from where the stream stopped
+			assertEquals(type.toString(), total - n, solver.stream().count());
+			MazeSolver whole = type.create(maze, 0, 0, 29, 29);
+			whole.solve();
+			assertEquals(type.toString(), whole.getPath(), solver.getPath());
+		}
+
+		// BFS: parents come first, one move away and one level up
+		java.util.Map<Integer, Integer> depth = new java.util.HashMap<Integer, Integer>();
+		java.util.Iterator<Expansion> steps = SolverType.BFS.create(maze, 0, 0, 29, 29).steps();
+		Expansion first = steps.next();
+		assertFalse(first.hasParent());
+		assertEquals(0, first.row);
+		assertEquals(0, first.col);
+		assertEquals(0, first.depth);
+		depth.put(0, 0);
+		int previous = 0;
+		while (steps.hasNext()) {
+			Expansion e = steps.next();
+			assertTrue(e.toString(), e.hasParent());
+			assertEquals(e.toString(), 1, Math.abs(e.row - e.parentRow) + Math.abs(e.col - e.parentCol));
+			Integer parentDepth = depth.get(e.parentRow * 30 + e.parentCol);
+			assertNotNull(e.toString(), parentDepth);
+			assertEquals(e.toString(), parentDepth + 1, e.depth);
+			assertTrue(e.toString(), e.depth >= previous);
+			assertEquals(e.toString(), SolverHarness.distance(maze, maze.cells[0], maze.checkedCellAt(e.row, e.col)), e.depth);
+			previous = e.depth;
+			depth.put(e.row * 30 + e.col, e.depth);
+		}
+	}
+
+	@org.junit.Test
+	public void harnessReportIsJsonInAnyLocale() throws InterruptedException {
+		java.util.Locale locale = java.util.Locale.getDefault();
+		java.util.Locale.setDefault(java.util.Locale.GERMANY);
+		try {
+			SolverHarness.Result result = new SolverHarness.Result(8, 11, 1, false, SolverType.BFS,
+					2212000, 0, "threw \"odd\" \\ thing\n");
+			assertEquals("{\"kind\":\"run\",\"rows\":8,\"cols\":11,\"seed\":1,\"loops\":false,"
+					+ "\"solver\":\"BFS\",\"ms\":2.212,\"pathCells\":0,\"ok\":false,"
+					+ "\"failure\":\"threw \\\"odd\\\" \\\\ thing\\u000a\"}", result.toJson());
+			java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+			SolverHarness.run(8, 1, 1, new java.io.PrintStream(bytes, true));
+			assertFalse(bytes.toString(), bytes.toString().matches("(?s).*\"ms\":\\d+,.*"));
+		} finally {
+			java.util.Locale.setDefault(locale);
+		}
+	}
+
+	@org.junit.Test
+	public void toolFailsOnlyTheJobThatThrows() throws Exception {
+		java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+		java.io.PrintStream out = new java.io.PrintStream(bytes, true, "UTF-8");
+		MazeTool tool = new MazeTool(out);
+		java.nio.file.Path image = java.nio.file.Files.createTempFile("tool", ".png");
+		try {
+			tool.run(new String[] { "export", "rows=3", "cols=3", "seed=1", "out=" + image, "pixels=2000000000" });
+			tool.run(new String[] { "solve", "rows=3", "cols=3", "seed=1" });
+		} finally {
+			java.nio.file.Files.delete(image);
+		}
+		out.flush();
+		String[] lines = bytes.toString("UTF-8").split("\\R");
+		assertEquals(2, lines.length);
+		assertTrue(lines[0], lines[0].startsWith("error: "));
+		MazePath path = MazePath.parse(lines[1]);	// the batch went on
+		assertEquals(2, path.endRow);
+		assertEquals(2, path.endCol);
+		assertEquals(2, tool.jobs);
+		assertEquals(1, tool.failures);
+	}
+
+	@org.junit.Test
+	public void toolReportsAMissingManifest() throws Exception {
+		java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+		java.io.PrintStream out = new java.io.PrintStream(bytes, true, "UTF-8");
+		MazeTool tool = new MazeTool(out);
+		java.nio.file.Path manifest = java.nio.file.Files.createTempFile("manifest", ".txt");
+		java.nio.file.Files.delete(manifest);
+		tool.runBatch(new String[] { "batch", manifest.toString() });
+		tool.run(new String[] { "solve", "rows=3", "cols=3", "seed=1" });
+		out.flush();
+		String[] lines = bytes.toString("UTF-8").split("\\R");
+		assertEquals(2, lines.length);
+		assertTrue(lines[0], lines[0].startsWith("error: cannot open manifest "));
+		assertEquals(2, MazePath.parse(lines[1]).endRow);
+		assertEquals(1, tool.failures);
+	}
+
+	@org.junit.Test
+	public void chunkedMazeAgreesAcrossChunksAndEvictions() {
+		Maze.Path[] paths = Maze.Path.values();
+		int from = -12;
+		int to = 12;
+		int width = to - from + 1;
+		// row-major from the north-west, and the reverse
+		ChunkedMaze forward = new ChunkedMaze(29, 5, 1 << 20);
+		ChunkedMaze backward = new ChunkedMaze(29, 5, 1 << 20);
+		int[] open = new int[width * width];
+		for (int row = from; row <= to; row++) {
+			for (int col = from; col <= to; col++) {
+				open[(row - from) * width + col - from] = openBits(forward, row, col);
+			}
+		}
+		for (int row = to; row >= from; row--) {
+			for (int col = to; col >= from; col--) {
+				assertEquals(open[(row - from) * width + col - from], openBits(backward, row, col));
+			}
+		}
+		for (int row = from; row <= to; row++) {
+			for (int col = from; col <= to; col++) {
+				long cell = forward.cellId(row, col);
+				for (int d = 0; d < paths.length; d++) {
+					long next = forward.neighbor(cell, paths[d]);
+					assertEquals("(" + row + ", " + col + ") " + paths[d],
+							forward.hasPath(cell, paths[d]), forward.hasPath(next, paths[(d + 2) & 3]));
+				}
+			}
+		}
+
+		// a cache of one chunk: every other lookup regenerates one
+		ChunkedMaze tiny = new ChunkedMaze(29, 5, 25);
+		java.util.Random random = new java.util.Random(29);
+		for (int i = 0; i < 2000; i++) {
+			int row = from + random.nextInt(width);
+			int col = from + random.nextInt(width);
+			assertEquals(open[(row - from) * width + col - from], openBits(tiny, row, col));
+		}
+		assertFalse(tiny.cacheStats(), tiny.cacheStats().endsWith("evictions 0"));
+
+		// a path several chunks long, through negative coordinates
+		MazePath path = GraphSearch.shortestPath(tiny, -17, -23, 14, 9, Long.MAX_VALUE);
+		assertNotNull(path);
+		assertEquals(-17, path.startRow);
+		assertEquals(-23, path.startCol);
+		assertEquals(14, path.endRow);
+		assertEquals(9, path.endCol);
+		assertTrue(path.moveCount() >= 31 + 32);
+		MazePath.Cursor cursor = path.cursor();
+		long cell = tiny.cellId(cursor.row(), cursor.col());
+		while (cursor.next()) {
+			assertTrue(cursor.direction() + " from " + tiny.rowOf(cell) + ", " + tiny.colOf(cell),
+					tiny.hasPath(cell, cursor.direction()));
+			cell = tiny.neighbor(cell, cursor.direction());
+			assertEquals(tiny.cellId(cursor.row(), cursor.col()), cell);
+		}
+	}
+
+	private static int openBits(CellGraph graph, long row, long col) {
+		long cell = graph.cellId(row, col);
+		int bits = 0;
+		for (Maze.Path direction : Maze.Path.values()) {
+			if (graph.hasPath(cell, direction)) bits |= 1 << direction.ordinal();
+		}
+		return bits;
+	}
+
+	@org.junit.Test
+	public void imagePngMatchesPpmAndMaze() throws Exception {
+		// 500 rows of 4-pixel cells make 3 bands of about 4MB
+		Maze maze = new Maze(500, 400, 31);
+		MazeSolver solver = SolverType.BFS.create(maze, 0, 0, 499, 399);
+		solver.solve();
+		java.util.BitSet onPath = new java.util.BitSet();
+		MazePath.Cursor cursor = solver.getPath().cursor();
+		do {
+			onPath.set(maze.layout.index(cursor.row(), cursor.col()));
+		} while (cursor.next());
+
+		int step = 4;
+		int width = 400 * step + 1;
+		int height = 500 * step + 1;
+		byte[] ppm = null;
+		for (int threads : new int[] { 1, 4 }) {
+			MazeImage image = new MazeImage(maze, step - 1, threads);
+			image.showPath(solver.getPath());
+			java.io.ByteArrayOutputStream png = new java.io.ByteArrayOutputStream();
+			image.write(png, MazeImage.Format.PNG);
+			java.io.ByteArrayOutputStream raw = new java.io.ByteArrayOutputStream();
+			image.write(raw, MazeImage.Format.PPM);
+			if (ppm == null) ppm = raw.toByteArray();
+			assertTrue(java.util.Arrays.equals(ppm, raw.toByteArray()));
+
+			java.awt.image.BufferedImage decoded = javax.imageio.ImageIO.read(
+					new java.io.ByteArrayInputStream(png.toByteArray()));
+			assertNotNull("not a PNG", decoded);
+			assertEquals(width, decoded.getWidth());
+			assertEquals(height, decoded.getHeight());
+			int[] rgb = decoded.getRGB(0, 0, width, height, null, 0, width);
+			byte[] header = ("P6\n" + width + " " + height + "\n255\n").getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+			assertEquals(header.length + 3L * width * height, ppm.length);
+			for (int i = 0; i < rgb.length; i++) {
+				int at = header.length + 3 * i;
+				int pixel = (ppm[at] & 0xff) << 16 | (ppm[at + 1] & 0xff) << 8 | (ppm[at + 2] & 0xff);
+				if ((rgb[i] & 0xffffff) != pixel) {
+					fail(threads + " threads: pixel (" + i % width + ", " + i / width + ") is "
+							+ Integer.toHexString(rgb[i] & 0xffffff) + " in the PNG, " + Integer.toHexString(pixel) + " in the PPM");
+				}
+			}
+
+			for (int row = 0; row < 500; row++) {
+				for (int col = 0; col < 400; col++) {
+					int index = maze.layout.index(row, col);
+					int y = row * step;
+					int x = col * step;
+					assertEquals(0x000000, rgb[y * width + x] & 0xffffff);	// wall post
+					int inside = rgb[(y + 1) * width + x + 1] & 0xffffff;
+					assertEquals(onPath.get(index) ? 0xd62728 : 0xffffff, inside);
+					if (col < 399) {
+						int east = rgb[(y + 1) * width + x + step] & 0xffffff;
+						assertEquals(!maze.isOpen(index, Maze.Path.EAST), east == 0x000000);
+					}
+				}
+			}
+		}
+	}
 
-		System.out.println("===== SHORTEST PATH =====");
-		System.out.println(solver2.printSolution());
-		assertEquals(solver1.printSolution(),solver2.printSolution());
+	public void checkSolvers(Maze maze) {
+		int distance = SolverHarness.distance(maze, maze.mazeStart, maze.mazeEnd);
+		for (SolverType type : SolverType.values()) {
+			SolverHarness.Result result = SolverHarness.solve(maze, type, 0, false, distance);
+			assertNull(result.toString(), result.failure);
+		}
 	}
 }
@@ -0,0 +1,437 @@
+package Maze;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Driver
+ * main() method generates, solves, verifies and exports mazes from
+ *    the command line, one job per run or a manifest of many jobs in
+ *    one process. A job is a command followed by key=value arguments,
+ *    the same keys MazeService takes:
+ * 			generate rows=R cols=C [seed=S] [layout=L] [out=FILE]
+ * 								-> the maze text (Maze.toText()), or
+ * 									"wrote FILE"
+ * 			solve  MAZE [solver=BFS] [from=r,c] [to=r,c]
+ * 								-> the path as MazePath.toString(), or
+ * 									"none"
+ * 			verify MAZE [threads=N]
+ * 								-> the MazeVerifier report
+ * 			analyze MAZE [threads=N]
+ * 								-> the MazeAnalyzer report
+ * 			export MAZE out=FILE [solver=S] [pixels=N]
+ * 								-> a PNG, or a PPM if FILE ends in .ppm,
+ * 									with the solver's path drawn if given
+ * 			batch  FILE			-> runs one job per line of FILE ("-"
+ * 									for standard input); blank lines and
+ * 									lines starting with # are skipped
+ * 			train				-> runs one job of each kind on small
+ * 									mazes, to record a class archive
+ *    where MAZE is either "rows=R cols=C seed=S [layout=L]" or
+ *    "maze=FILE", a maze in text form. A failed job prints "error:"
+ *    and its reason in place of its result, the rest of a batch still
+ *    runs, and the exit status is 1. Consecutive jobs on the same
+ *    maze share one instance.
+ *
+ * The tool is meant to be started thousands of times, so its startup
+ *    avoids reflection, lambdas and String.format(), and it starts
+ *    fastest from an application class-data sharing archive, made
+ *    once per build by running the train command. The archive only
+ *    takes classes loaded from a JAR file, so the tool runs from one:
+ * 		jar cf maze.jar -C bin .
+ * 		java -XX:ArchiveClassesAtExit=maze.jsa -cp maze.jar Maze.MazeTool train
+ * 		java -XX:SharedArchiveFile=maze.jsa -XX:TieredStopAtLevel=1 \
+ * 			-cp maze.jar Maze.MazeTool solve rows=64 cols=64 seed=7
+ *    With time=true before the command, the time from JVM start to
+ *    the first result, and to the last, is printed to standard error.
+ *
+ * Usage: java Maze.MazeTool [time=true] command [key=value ...]
+ */
+public class MazeTool
+{
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		int first = 0;
+		boolean time = false;
+		if(args.length > 0 && args[0].startsWith("time="))
+		{
+			time = Boolean.parseBoolean(args[0].substring(5));
+			first = 1;
+		}
+		if(args.length == first)
+		{
+			System.err.println("usage: java Maze.MazeTool [time=true] "
+					+ "generate|solve|verify|analyze|export|batch|train [key=value ...]");
+			System.exit(2);
+		}
+
+		MazeTool tool = new MazeTool(new PrintStream(System.out, false, "UTF-8"));
+		String[] job = new String[args.length - first];
+		System.arraycopy(args, first, job, 0, job.length);
+		if(job[0].equals("batch"))
+			tool.runBatch(job);
+		else if(job[0].equals("train"))
+			tool.runTraining();
+		else
+			tool.run(job);
+		tool.out.flush();
+
+		if(time)
+		{
+			long lastNanos = System.nanoTime();
+			long firstNanos = tool.firstResultNanos == 0 ? lastNanos : tool.firstResultNanos;
+			long uptime = uptimeMillis(lastNanos);
+			StringBuilder line = new StringBuilder();
+			line.append(tool.jobs).append(" jobs; first result ")
+				.append(uptime - (lastNanos - firstNanos) / 1000000)
+				.append(" ms, last ").append(uptime).append(" ms after JVM start");
+			System.err.println(line);
+		}
+		System.exit(tool.failures == 0 ? 0 : 1);
+	} // main()
+
+///// Constructors /////////////////////////////////////////////////
+	/**
+	 * Default constructor
+	 *
+	 * @param out	receives the result of each job
+	 */
+	MazeTool(PrintStream out)
+	{
+		this.out = out;
+	} // default MazeTool constructor
+
+///// Instance Methods /////////////////////////////////////////////
+	/**
+	 * Utility method: runs the jobs of a manifest, one per line
+	 *
+	 * @param job	"batch" and the manifest file, or "-"
+	 */
+	void runBatch(String[] job) throws IOException, InterruptedException
+	{
+		if(job.length != 2)
+		{
+			fail("batch takes one manifest file");
+			return;
+		}
+		BufferedReader in;
+		try
+		{
+			in = job[1].equals("-")
+					? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+					: Files.newBufferedReader(Paths.get(job[1]), StandardCharsets.UTF_8);
+		}
+		catch(IOException | RuntimeException e)
+		{
+			fail("cannot open manifest " + job[1] + " (" + e.getClass().getSimpleName() + ")");
+			return;
+		}
+		try
+		{
+			String line;
+			while((line = in.readLine()) != null)
+			{
+				line = line.trim();
+				if(line.isEmpty() || line.charAt(0) == '#') continue;
+				String[] words = line.split("\\s+");
+				if(words[0].equals("batch") || words[0].equals("train"))
+					fail(words[0] + " cannot be run from a manifest");
+				else
+					run(words);
+			}
+		}
+		catch(IOException e)
+		{
+			fail("cannot read manifest " + job[1] + " (" + e.getClass().getSimpleName() + ")");
+		}
+		finally
+		{
+			in.close();
+		}
+	} // runBatch()
+
+	/**
+	 * Utility method: runs one job of each kind on small mazes, so
+	 *    that a run under -XX:ArchiveClassesAtExit loads every class
+	 *    the jobs need. Images go to a temporary file.
+	 */
+	void runTraining() throws IOException, InterruptedException
+	{
+		java.nio.file.Path image = Files.createTempFile("maze-train", ".png");
+		try
+		{
+			run(new String[] { "generate", "rows=8", "cols=8", "seed=1" });
+			for(SolverType type : SolverType.values())
+				run(new String[] { "solve", "rows=8", "cols=8", "seed=1",
+						"solver=" + type.name() });
+			run(new String[] { "verify", "rows=8", "cols=8", "seed=1", "threads=1" });
+			run(new String[] { "analyze", "rows=8", "cols=8", "seed=1" });
+			run(new String[] { "export", "rows=8", "cols=8", "seed=1",
+					"solver=BFS", "out=" + image });
+		}
+		finally
+		{
+			Files.deleteIfExists(image);
+		}
+	} // runTraining()
+
+	/**
+	 * Utility method: runs one job and prints its result, or why it
+	 *    failed
+	 *
+	 * @param job	the command and its key=value arguments
+	 */
+	void run(String[] job) throws InterruptedException
+	{
+		jobs++;
+		try
+		{
+			Map<String, String> args = arguments(job);
+			String command = job[0];
+			if(command.equals("generate"))
+				generate(args);
+			else if(command.equals("solve"))
+				solve(args);
+			else if(command.equals("verify"))
+				verify(args);
+			else if(command.equals("analyze"))
+				analyze(args);
+			else if(command.equals("export"))
+				export(args);
+			else
+				throw new IllegalArgumentException("unknown command " + command);
+		}
+		catch(IOException | RuntimeException e)
+		{
+			// e.g. UncheckedIOException, or ArithmeticException from a
+			// huge image: only this job fails
+			fail(e.getMessage() != null ? e.getMessage() : e.toString());
+		}
+	} // run()
+
+	/**
+	 * Utility method: the generate command
+	 */
+	private void generate(Map<String, String> args) throws IOException
+	{
+		Maze maze = args.containsKey("seed")
+				? maze(args)
+				: new Maze(intArg(args, "rows"), intArg(args, "cols"), layout(args));
+		String file = args.get("out");
+		if(file == null)
+		{
+			result(maze.toText());
+			return;
+		}
+		Files.write(Paths.get(file), maze.toText().getBytes(StandardCharsets.UTF_8));
+		result("wrote " + file);
+	} // generate()
+
+	/**
+	 * Utility method: the solve command
+	 */
+	private void solve(Map<String, String> args) throws IOException
+	{
+		Maze maze = maze(args);
+		MazeSolver solver = solver(maze, args, "BFS");
+		solver.solve();
+		MazePath path = solver.getPath();
+		result(path == null ? "none" : path.toString());
+	} // solve()
+
+	/**
+	 * Utility method: the verify command
+	 */
+	private void verify(Map<String, String> args) throws IOException, InterruptedException
+	{
+		Maze maze = maze(args);
+		int threads = args.containsKey("threads") ? intArg(args, "threads") : 1;
+		result(MazeVerifier.verify(maze, threads).toString());
+	} // verify()
+
+	/**
+	 * Utility method: the analyze command
+	 */
+	private void analyze(Map<String, String> args) throws IOException, InterruptedException
+	{
+		Maze maze = maze(args);
+		int threads = args.containsKey("threads") ? intArg(args, "threads") : 1;
+		result(MazeAnalyzer.analyze(maze, threads).toString());
+	} // analyze()
+
+	/**
+	 * Utility method: the export command
+	 */
+	private void export(Map<String, String> args) throws IOException, InterruptedException
+	{
+		String file = args.get("out");
+		if(file == null)
+			throw new IllegalArgumentException("export needs out=FILE");
+		Maze maze = maze(args);
+		MazeImage image = new MazeImage(maze,
+				args.containsKey("pixels") ? intArg(args, "pixels") : 4, 1);
+		if(args.containsKey("solver"))
+		{
+			MazeSolver solver = solver(maze, args, null);
+			solver.solve();
+			image.showPath(solver.getPath());
+		}
+		image.write(Paths.get(file),
+				file.endsWith(".ppm") ? MazeImage.Format.PPM : MazeImage.Format.PNG);
+		result("wrote " + file);
+	} // export()
+
+	/**
+	 * Utility method: the maze a job names, reusing the previous job's
+	 *    maze when it names the same one
+	 */
+	private Maze maze(Map<String, String> args) throws IOException
+	{
+		String file = args.get("maze");
+		String key;
+		if(file != null)
+			key = "maze=" + file;
+		else
+		{
+			if(!args.containsKey("seed"))
+				throw new IllegalArgumentException("needs maze=FILE or rows, cols and seed");
+			key = new StringBuilder().append(args.get("rows")).append('x')
+					.append(args.get("cols")).append(' ').append(args.get("seed"))
+					.append(' ').append(args.get("layout")).toString();
+		}
+		if(key.equals(lastKey)) return lastMaze;
+
+		Maze maze = file != null
+				? Maze.fromText(new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8))
+				: new Maze(intArg(args, "rows"), intArg(args, "cols"), layout(args),
+						Long.parseLong(args.get("seed")));
+		lastKey = key;
+		lastMaze = maze;
+		return maze;
+	} // maze()
+
+	/**
+	 * Utility method: the solver a job names, between its from and to
+	 *    cells
+	 *
+	 * @param fallback	the solver to use if none is named
+	 */
+	private static MazeSolver solver(Maze maze, Map<String, String> args, String fallback)
+	{
+		String name = args.containsKey("solver") ? args.get("solver") : fallback;
+		SolverType type = null;
+		for(SolverType candidate : SolverType.values())		// not valueOf(), which reflects
+			if(candidate.name().equals(name)) type = candidate;
+		if(type == null)
+			throw new IllegalArgumentException("unknown solver " + name);
+
+		int[] from = cellArg(args, "from", maze.mazeStart);
+		int[] to = cellArg(args, "to", maze.mazeEnd);
+		return type.create(maze, from[0], from[1], to[0], to[1]);
+	} // solver()
+
+	/**
+	 * Utility method: prints one result, ending it with a line
+	 *    separator unless it already ends with one
+	 */
+	private void result(String text)
+	{
+		if(text.endsWith("\n"))
+			out.print(text);
+		else
+			out.println(text);
+		if(firstResultNanos == 0)
+		{
+			out.flush();
+			firstResultNanos = System.nanoTime();
+		}
+	} // result()
+
+	/**
+	 * Utility method: prints why a job failed
+	 */
+	private void fail(String reason)
+	{
+		failures++;
+		result("error: " + reason);
+	} // fail()
+
+///// Static Methods ///////////////////////////////////////////////
+	/**
+	 * Utility method: splits key=value arguments, after the command
+	 */
+	private static Map<String, String> arguments(String[] job)
+	{
+		Map<String, String> args = new HashMap<String, String>();
+		for(int i = 1; i < job.length; i++)
+		{
+			int equals = job[i].indexOf('=');
+			if(equals <= 0)
+				throw new IllegalArgumentException("expected key=value, not " + job[i]);
+			args.put(job[i].substring(0, equals), job[i].substring(equals + 1));
+		}
+		return args;
+	} // arguments()
+
+	private static int intArg(Map<String, String> args, String key)
+	{
+		String value = args.get(key);
+		if(value == null)
+			throw new IllegalArgumentException("needs " + key);
+		return Integer.parseInt(value);
+	} // intArg()
+
+	/**
+	 * Utility method: reads a "row,col" argument
+	 *
+	 * @param fallback	the cell to use when the argument is missing
+	 */
+	private static int[] cellArg(Map<String, String> args, String key, Maze.MazeCell fallback)
+	{
+		String value = args.get(key);
+		if(value == null)
+			return new int[] { fallback.row, fallback.col };
+		int comma = value.indexOf(',');
+		if(comma < 0)
+			throw new IllegalArgumentException(key + " must be row,col");
+		return new int[] { Integer.parseInt(value.substring(0, comma)),
+				Integer.parseInt(value.substring(comma + 1)) };
+	} // cellArg()
+
+	private static CellLayout.Type layout(Map<String, String> args)
+	{
+		String name = args.get("layout");
+		if(name == null) return CellLayout.Type.ROW_MAJOR;
+		for(CellLayout.Type type : CellLayout.Type.values())
+			if(type.name().equals(name)) return type;
+		throw new IllegalArgumentException("unknown layout " + name);
+	} // layout()
+
+	/**
+	 * Utility method: how long the JVM had been running at a given
+	 *    instant. The JVM's own record is in the management classes,
+	 *    which are only loaded here, after the last result.
+	 *
+	 * @param nanos	the instant, by System.nanoTime()
+	 */
+	private static long uptimeMillis(long nanos)
+	{
+		long uptime = java.lang.management.ManagementFactory.getRuntimeMXBean().getUptime();
+		return uptime - (System.nanoTime() - nanos) / 1000000;
+	} // uptimeMillis()
+
+///// Instance Fields //////////////////////////////////////////////
+	final PrintStream out;
+	int jobs;					// run, failed or not
+	int failures;
+	long firstResultNanos;		// System.nanoTime() of the first result, or 0
+	private String lastKey;		// names lastMaze
+	private Maze lastMaze;
+} // MazeTool class
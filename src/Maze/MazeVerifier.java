@@ -0,0 +1,367 @@
+package Maze;
+import Maze.Maze.Path;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Class MazeVerifier checks that a maze is perfect, i.e. that there is
+ *    exactly one path between any two cells, as Maze promises:
+ * 			- every wall agrees on both of its sides
+ * 			- the paths form no cycle
+ * 			- all cells are connected
+ *    (so the number of paths is the number of cells - 1), and reports
+ *    what it counted.
+ *
+ * The rows are cut into stripes, swept in parallel. A stripe is swept
+ *    one row at a time, in the manner of Eller's algorithm: each cell
+ *    of the current row is labeled with its set of cells connected
+ *    within the stripe so far, in a union-find forest over 2 * cols
+ *    labels. Labels 0..cols-1 are the cells of the stripe's top row
+ *    and are kept for the whole sweep; labels cols..2*cols-1 name the
+ *    other sets and are reused every row, so a stripe needs O(cols)
+ *    memory whatever its height. A set that stops before the stripe's
+ *    bottom row without reaching its top row is a whole component.
+ *
+ * Each stripe reports the sets of its top and bottom rows; a final,
+ *    serial pass joins them across the stripe boundaries. The maze is
+ *    read only through CellGraph, so in-memory mazes and MazeFiles
+ *    larger than memory are verified alike.
+ */
+public final class MazeVerifier
+{
+	private MazeVerifier() {}	// static methods only
+
+///// Static Methods ///////////////////////////////////////////////
+	/**
+	 * Utility method: verifies an in-memory maze
+	 *
+	 * @param maze		the maze
+	 * @param threads	the number of threads to sweep with
+	 * @return			what was found
+	 * @throws InterruptedException	if the caller is interrupted
+	 */
+	public static Report verify(Maze maze, int threads) throws InterruptedException
+	{
+		return verify(maze, maze.rowCount, maze.colCount, threads);
+	} // verify()
+
+	/**
+	 * Utility method: verifies a maze file
+	 *
+	 * @param maze		the maze
+	 * @param threads	the number of threads to sweep with
+	 * @return			what was found
+	 * @throws InterruptedException	if the caller is interrupted
+	 */
+	public static Report verify(MazeFile maze, int threads) throws InterruptedException
+	{
+		return verify(maze, maze.rows, Math.toIntExact(maze.cols), threads);
+	} // verify()
+
+	/**
+	 * Utility method: verifies any rectangular maze
+	 *
+	 * @param graph		the maze, with a cell at every (row, col) for
+	 * 						0 <= row < rows and 0 <= col < cols
+	 * @param rows		the number of rows
+	 * @param cols		the number of columns
+	 * @param threads	the number of threads to sweep with
+	 * @return			what was found
+	 * @throws InterruptedException	if the caller is interrupted
+	 */
+	public static Report verify(final CellGraph graph, final long rows, final int cols,
+			int threads) throws InterruptedException
+	{
+		int stripes = (int) Math.min(rows, 4L * threads);
+		List<Future<Stripe>> futures = new ArrayList<Future<Stripe>>(stripes);
+		ExecutorService pool = ThreadPools.newCpuPool("maze-verify", threads);
+		try
+		{
+			for(int s = 0; s < stripes; s++)
+			{
+				final long firstRow = rows * s / stripes;
+				final long endRow = rows * (s + 1) / stripes;
+				futures.add(pool.submit(new Callable<Stripe>() {
+					public Stripe call()
+					{
+						return new Stripe(graph, rows, cols, firstRow, endRow);
+					}
+				}));
+			}
+
+			Stripe[] swept = new Stripe[stripes];
+			for(int s = 0; s < stripes; s++)
+				swept[s] = futures.get(s).get();
+			return join(swept, rows, cols);
+		}
+		catch(ExecutionException e)
+		{
+			if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			if(e.getCause() instanceof Error) throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+	} // verify()
+
+	/**
+	 * Utility method: joins the stripes through the paths that cross
+	 *    from the bottom row of each into the top row of the next, and
+	 *    counts the components that touch a stripe boundary
+	 */
+	private static Report join(Stripe[] stripes, long rows, int cols)
+	{
+		// label l of stripe s is node s * 2 * cols + l
+		int[] parent = new int[stripes.length * 2 * cols];
+		for(int i = 0; i < parent.length; i++) parent[i] = i;
+
+		long edges = 0;
+		long cycles = 0;
+		long asymmetric = 0;
+		long components = 0;
+		String firstAsymmetry = null;
+		for(int s = 0; s < stripes.length; s++)
+		{
+			Stripe stripe = stripes[s];
+			edges += stripe.edges;
+			cycles += stripe.cycles;
+			asymmetric += stripe.asymmetric;
+			components += stripe.closed;
+			if(firstAsymmetry == null) firstAsymmetry = stripe.firstAsymmetry;
+
+			if(s == stripes.length - 1) break;
+			int base = s * 2 * cols;
+			int nextBase = base + 2 * cols;
+			for(int c = 0; c < cols; c++)
+			{
+				if(!stripe.crossing[c]) continue;
+				edges++;
+				if(!union(parent, base + stripe.bottom[c], nextBase + stripes[s + 1].top[c]))
+					cycles++;
+			}
+		}
+
+		boolean[] counted = new boolean[parent.length];
+		for(int s = 0; s < stripes.length; s++)
+		{
+			int base = s * 2 * cols;
+			for(int c = 0; c < cols; c++)
+			{
+				int[] ends = {find(parent, base + stripes[s].top[c]),
+						find(parent, base + stripes[s].bottom[c])};
+				for(int root : ends)
+				{
+					if(!counted[root]) components++;
+					counted[root] = true;
+				}
+			}
+		}
+		return new Report(rows * cols, edges, cycles, components, asymmetric, firstAsymmetry);
+	} // join()
+
+	/**
+	 * Utility method: the root of a set, halving the path to it
+	 */
+	private static int find(int[] parent, int x)
+	{
+		while(parent[x] != x)
+		{
+			parent[x] = parent[parent[x]];
+			x = parent[x];
+		}
+		return x;
+	} // find()
+
+	/**
+	 * Utility method: merges two sets under the smaller root, so that
+	 *    the top-row labels of a stripe stay roots
+	 *
+	 * @return	false if they were already one set
+	 */
+	private static boolean union(int[] parent, int a, int b)
+	{
+		a = find(parent, a);
+		b = find(parent, b);
+		if(a == b) return false;
+		if(a < b) parent[b] = a;
+		else parent[a] = b;
+		return true;
+	} // union()
+
+///// Inner Classes ////////////////////////////////////////////////
+	/**
+	 * Class sweeps the rows firstRow..endRow-1 of a maze and holds
+	 *    what the join needs: the set labels of the top and bottom rows
+	 *    and the paths leaving the bottom row, along with its counts
+	 */
+	private static final class Stripe
+	{
+		Stripe(CellGraph graph, long rows, int cols, long firstRow, long endRow)
+		{
+			int[] parent = new int[2 * cols];
+			int[] label = new int[cols];		// the set of each cell of the row
+			int[] below = new int[cols];		// the same, for the next row
+			int[] rename = new int[2 * cols];	// old set -> label below
+			boolean[] carried = new boolean[2 * cols];	// set continues south
+			boolean[] south = new boolean[cols];
+			for(int c = 0; c < cols; c++)
+			{
+				parent[c] = c;
+				label[c] = c;
+			}
+
+			for(long row = firstRow; row < endRow; row++)
+			{
+				for(int c = 0; c < cols; c++)
+				{
+					long cell = graph.cellId(row, c);
+					if(c < cols - 1)
+					{
+						boolean east = graph.hasPath(cell, Path.EAST);
+						if(east != graph.hasPath(graph.neighbor(cell, Path.EAST), Path.WEST))
+							asymmetry(row, c, Path.EAST);
+						if(east)
+						{
+							edges++;
+							if(!union(parent, label[c], label[c + 1])) cycles++;
+						}
+					}
+					south[c] = false;
+					if(row < rows - 1)
+					{
+						south[c] = graph.hasPath(cell, Path.SOUTH);
+						if(south[c] != graph.hasPath(graph.neighbor(cell, Path.SOUTH), Path.NORTH))
+							asymmetry(row, c, Path.SOUTH);
+					}
+				}
+				if(row == endRow - 1) break;
+
+				// a set with no path south, and not from the top row,
+				// is a component of its own
+				for(int c = 0; c < cols; c++)
+				{
+					int root = find(parent, label[c]);
+					carried[root] = false;
+					rename[root] = -1;
+				}
+				for(int c = 0; c < cols; c++)
+				{
+					if(south[c])
+					{
+						edges++;
+						carried[find(parent, label[c])] = true;
+					}
+				}
+				for(int c = 0; c < cols; c++)
+				{
+					int root = find(parent, label[c]);
+					if(root >= cols && !carried[root])
+					{
+						closed++;
+						carried[root] = true;
+					}
+				}
+
+				// label the row below: top-row sets keep their labels,
+				// other sets are renamed after their leftmost cell, and
+				// cells with no path from above start new sets
+				for(int c = 0; c < cols; c++)
+				{
+					if(!south[c])
+					{
+						below[c] = cols + c;
+						continue;
+					}
+					int root = find(parent, label[c]);
+					if(root < cols)
+						below[c] = root;
+					else
+					{
+						if(rename[root] < 0) rename[root] = cols + c;
+						below[c] = rename[root];
+					}
+				}
+				for(int c = 0; c < cols; c++)
+				{
+					if(below[c] >= cols) parent[below[c]] = below[c];
+				}
+				int[] swap = label;
+				label = below;
+				below = swap;
+			}
+
+			top = new int[cols];
+			bottom = new int[cols];
+			for(int c = 0; c < cols; c++)
+			{
+				top[c] = find(parent, c);
+				bottom[c] = find(parent, label[c]);
+			}
+			crossing = south;
+		} // Stripe constructor
+
+		private void asymmetry(long row, int col, Path direction)
+		{
+			if(asymmetric++ == 0)
+				firstAsymmetry = "(" + row + ", " + col + ") " + direction;
+		} // asymmetry()
+
+		int[] top;				// the set of each cell of the top row
+		int[] bottom;			// the set of each cell of the bottom row
+		boolean[] crossing;		// open paths south of the bottom row
+		long edges;				// open paths inside the stripe
+		long cycles;			// paths that closed a cycle
+		long closed;			// components wholly inside the stripe
+		long asymmetric;		// walls open on one side only
+		String firstAsymmetry;
+	} // Stripe class
+
+	/**
+	 * Class holds the findings of verify()
+	 */
+	public static final class Report
+	{
+		Report(long cells, long edges, long cycles, long components,
+				long asymmetric, String firstAsymmetry)
+		{
+			this.cells = cells;
+			this.edges = edges;
+			this.cycles = cycles;
+			this.components = components;
+			this.asymmetric = asymmetric;
+			this.firstAsymmetry = firstAsymmetry;
+		} // Report constructor
+
+		/**
+		 * @return	true if the maze has exactly one path between any two
+		 * 				cells
+		 */
+		public boolean isPerfect()
+		{
+			return asymmetric == 0 && components == 1 && edges == cells - 1;
+		} // isPerfect()
+
+		@Override
+		public String toString()
+		{
+			return (isPerfect() ? "perfect" : "NOT perfect") + ": " + cells + " cells, "
+					+ edges + " paths, " + cycles + " cycles, " + components + " components, "
+					+ asymmetric + " one-sided walls"
+					+ (firstAsymmetry == null ? "" : " (first at " + firstAsymmetry + ")");
+		} // toString()
+
+		public final long cells;
+		public final long edges;		// open paths, each counted once
+		public final long cycles;		// paths beyond a spanning forest
+		public final long components;	// sets of connected cells
+		public final long asymmetric;	// walls open on one side only
+		public final String firstAsymmetry;	// where, or null
+	} // Report class
+} // MazeVerifier class
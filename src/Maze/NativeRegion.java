@@ -0,0 +1,169 @@
+package Maze;
+
+import java.io.Closeable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Class NativeRegion is a block of zeroed memory outside the heap,
+ *    read and written by long offset, for per-cell arrays too large
+ *    for a Java array. It is the in-memory counterpart of MappedRegion:
+ *    a direct ByteBuffer is limited to 2GB, so the region is a run of
+ *    1GB direct buffers. The garbage collector never scans or copies
+ *    the bytes, and close() returns them to the operating system at
+ *    once rather than whenever the buffers are collected.
+ *
+ * Direct memory is limited by -XX:MaxDirectMemorySize, which defaults
+ *    to the maximum heap size; large regions need it raised.
+ *
+ * Not thread-safe for writes. A region must not be used after close().
+ */
+final class NativeRegion implements Closeable
+{
+///// Constructors /////////////////////////////////////////////////
+	/**
+	 * Default constructor: allocates the memory, all zeros
+	 *
+	 * @param bytes		the size of the region, bytes >= 0
+	 * @throws OutOfMemoryError	if the direct memory limit is reached
+	 */
+	NativeRegion(long bytes)
+	{
+		if(bytes < 0) throw new IllegalArgumentException(bytes + " bytes");
+		this.bytes = bytes;
+		segments = new ByteBuffer[(int) ((bytes + SEGMENT - 1) >>> SHIFT)];
+		try
+		{
+			for(int i = 0; i < segments.length; i++)
+			{
+				long at = (long) i << SHIFT;
+				segments[i] = ByteBuffer.allocateDirect((int) Math.min(SEGMENT, bytes - at))
+						.order(ByteOrder.nativeOrder());
+			}
+		}
+		catch(OutOfMemoryError e)
+		{
+			close();
+			throw e;
+		}
+	} // default NativeRegion constructor
+
+///// Instance Methods /////////////////////////////////////////////
+	/**
+	 * @param at	an offset in the region, 0 <= at < size()
+	 * @return		the byte at that offset
+	 */
+	byte get(long at)
+	{
+		return segments[(int) (at >>> SHIFT)].get((int) (at & (SEGMENT - 1)));
+	} // get()
+
+	/**
+	 * @param at	an offset in the region, 0 <= at < size()
+	 * @param value	the byte to store there
+	 */
+	void put(long at, byte value)
+	{
+		segments[(int) (at >>> SHIFT)].put((int) (at & (SEGMENT - 1)), value);
+	} // put()
+
+	/**
+	 * @param index	the index of a long, 0 <= index < size() / 8
+	 * @return		the long at offset 8 * index
+	 */
+	long getLong(long index)
+	{
+		long at = index << 3;
+		return segments[(int) (at >>> SHIFT)].getLong((int) (at & (SEGMENT - 1)));
+	} // getLong()
+
+	/**
+	 * @param index	the index of a long, 0 <= index < size() / 8
+	 * @param value	the long to store at offset 8 * index
+	 */
+	void putLong(long index, long value)
+	{
+		long at = index << 3;
+		segments[(int) (at >>> SHIFT)].putLong((int) (at & (SEGMENT - 1)), value);
+	} // putLong()
+
+	/**
+	 * Utility method: sets every byte of the region back to zero
+	 */
+	void clear()
+	{
+		byte[] zeros = new byte[1 << 16];
+		for(ByteBuffer segment : segments)
+		{
+			for(int at = 0; at < segment.capacity(); at += zeros.length)
+				segment.put(at, zeros, 0, Math.min(zeros.length, segment.capacity() - at));
+		}
+	} // clear()
+
+	/**
+	 * @return	the size of the region in bytes
+	 */
+	long size()
+	{
+		return bytes;
+	} // size()
+
+	/**
+	 * Utility method: frees the memory. It is released through
+	 *    sun.misc.Unsafe.invokeCleaner(), looked up by name, when the
+	 *    JVM has it; otherwise the buffers are only dropped, and freed
+	 *    when they are garbage collected.
+	 */
+	@Override
+	public void close()
+	{
+		for(int i = 0; i < segments.length; i++)
+		{
+			if(segments[i] != null && INVOKE_CLEANER != null)
+			{
+				try
+				{
+					INVOKE_CLEANER.invoke(UNSAFE, segments[i]);
+				}
+				catch(ReflectiveOperationException e)
+				{
+					// left to the garbage collector
+				}
+			}
+			segments[i] = null;
+		}
+	} // close()
+
+///// Static Fields ////////////////////////////////////////////////
+	private static final Object UNSAFE;
+	private static final Method INVOKE_CLEANER;	// or null
+
+	static
+	{
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try
+		{
+			Class<?> type = Class.forName("sun.misc.Unsafe");
+			Field field = type.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = field.get(null);
+			invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+		}
+		catch(ReflectiveOperationException | RuntimeException e)
+		{
+			invokeCleaner = null;
+		}
+		UNSAFE = unsafe;
+		INVOKE_CLEANER = invokeCleaner;
+	}
+
+///// Instance Fields //////////////////////////////////////////////
+	private final ByteBuffer[] segments;
+	private final long bytes;				// the size of the region
+
+	private static final int SHIFT = 30;			// 1GB segments
+	private static final long SEGMENT = 1L << SHIFT;
+} // NativeRegion class
@@ -0,0 +1,183 @@
+package Maze;
+import Maze.Maze.Path;
+
+import java.io.Closeable;
+
+/**
+ * Class OffHeapMaze holds a maze in memory outside the Java heap,
+ *    with long cell addressing, for mazes past the reach of Maze:
+ *    Maze counts its cells in an int and keeps them in Java arrays,
+ *    so it stops at about 46341 x 46341 cells. An OffHeapMaze of
+ *    tens of billions of cells costs the garbage collector nothing,
+ *    and close() frees it at once.
+ *
+ * The cells are stored as in MazeFile, 2 bits per cell in row-major
+ *    order, 4 cells per byte from the low bits up:
+ * 			bit 0	- the path EAST of the cell is open
+ * 			bit 1	- the path SOUTH of the cell is open
+ *    so a 10^10-cell maze takes 2.5GB of direct memory (raise
+ *    -XX:MaxDirectMemorySize to match). generate() fills one with
+ *    Eller's algorithm, row by row, cell for cell the same maze as
+ *    MazeFile.generate() with the same seed; OffHeapSearch runs
+ *    breadth- and depth-first searches on it.
+ *
+ * OffHeapMaze is a CellGraph whose cell ids are row * cols + col.
+ */
+public class OffHeapMaze implements CellGraph, Closeable
+{
+///// Constructors /////////////////////////////////////////////////
+	/**
+	 * Default constructor: a maze with every wall up
+	 *
+	 * @param rows	the number of rows, rows >= 1
+	 * @param cols	the number of columns, cols >= 1
+	 * @throws OutOfMemoryError	if the direct memory limit is reached
+	 */
+	public OffHeapMaze(long rows, long cols)
+	{
+		if(rows < 1 || cols < 1)
+			throw new IllegalArgumentException(rows + " x " + cols + " cells");
+		this.rows = rows;
+		this.cols = cols;
+		cells = new NativeRegion((Math.multiplyExact(rows, cols) + 3) >>> 2);
+	} // default OffHeapMaze constructor
+
+///// Static Methods ///////////////////////////////////////////////
+	/**
+	 * Factory method: generates a perfect maze (exactly one path
+	 *    between any two cells) with Eller's algorithm, as described
+	 *    at MazeFile.generate()
+	 *
+	 * @param rows	the number of rows, rows >= 1
+	 * @param cols	the number of columns, cols >= 1
+	 * @param seed	chooses the maze
+	 * @return		the maze
+	 * @throws OutOfMemoryError	if the direct memory limit is reached
+	 */
+	public static OffHeapMaze generate(long rows, int cols, long seed)
+	{
+		MazeFile.EllerRows rowMaker = new MazeFile.EllerRows(rows, cols, seed);
+		OffHeapMaze maze = new OffHeapMaze(rows, cols);
+		long cell = 0;
+		for(long row = 0; row < rows; row++)
+		{
+			rowMaker.next();
+			for(int c = 0; c < cols; c++, cell++)
+			{
+				int bits = (rowMaker.east[c] ? EAST_BIT : 0) | (rowMaker.south[c] ? SOUTH_BIT : 0);
+				if(bits != 0) maze.set(cell, bits);
+			}
+		}
+		return maze;
+	} // generate()
+
+	/**
+	 * Factory method: copies a rectangular maze, e.g. a Maze or a
+	 *    MazeFile, into off-heap memory
+	 *
+	 * @param graph		the maze, with a cell at every (row, col) for
+	 * 						0 <= row < rows and 0 <= col < cols
+	 * @param rows		the number of rows
+	 * @param cols		the number of columns
+	 * @return			the copy
+	 * @throws OutOfMemoryError	if the direct memory limit is reached
+	 */
+	public static OffHeapMaze copyOf(CellGraph graph, long rows, long cols)
+	{
+		OffHeapMaze maze = new OffHeapMaze(rows, cols);
+		for(long row = 0; row < rows; row++)
+		{
+			for(long col = 0; col < cols; col++)
+			{
+				long id = graph.cellId(row, col);
+				int bits = (col < cols - 1 && graph.hasPath(id, Path.EAST) ? EAST_BIT : 0)
+						| (row < rows - 1 && graph.hasPath(id, Path.SOUTH) ? SOUTH_BIT : 0);
+				if(bits != 0) maze.set(row * cols + col, bits);
+			}
+		}
+		return maze;
+	} // copyOf()
+
+///// Instance Methods /////////////////////////////////////////////
+	/**
+	 * @return	the number of cells in the maze
+	 */
+	public long cellCount()
+	{
+		return rows * cols;
+	} // cellCount()
+
+	@Override
+	public long cellId(long row, long col)
+	{
+		if(row < 0 || row >= rows || col < 0 || col >= cols) return NONE;
+		return row * cols + col;
+	} // cellId()
+
+	@Override
+	public long rowOf(long cell)
+	{
+		return cell / cols;
+	} // rowOf()
+
+	@Override
+	public long colOf(long cell)
+	{
+		return cell % cols;
+	} // colOf()
+
+	@Override
+	public boolean hasPath(long cell, Path direction)
+	{
+		switch(direction)
+		{
+		case NORTH:	return cell >= cols && bit(cell - cols, SOUTH_BIT);
+		case EAST:	return bit(cell, EAST_BIT);
+		case SOUTH:	return bit(cell, SOUTH_BIT);
+		case WEST:	return cell > 0 && bit(cell - 1, EAST_BIT);	// never set on the last column
+		default:	return false;
+		}
+	} // hasPath()
+
+	@Override
+	public long neighbor(long cell, Path direction)
+	{
+		switch(direction)
+		{
+		case NORTH:	return cell >= cols ? cell - cols : NONE;
+		case EAST:	return cell % cols < cols - 1 ? cell + 1 : NONE;
+		case SOUTH:	return cell < cellCount() - cols ? cell + cols : NONE;
+		case WEST:	return cell % cols > 0 ? cell - 1 : NONE;
+		default:	return NONE;
+		}
+	} // neighbor()
+
+	/**
+	 * Utility method: frees the memory of the maze. It must not be
+	 *    used afterwards.
+	 */
+	@Override
+	public void close()
+	{
+		cells.close();
+	} // close()
+
+	private boolean bit(long cell, int bit)
+	{
+		return (cells.get(cell >>> 2) & (bit << ((cell & 3) * 2))) != 0;
+	} // bit()
+
+	private void set(long cell, int bits)
+	{
+		long at = cell >>> 2;
+		cells.put(at, (byte) (cells.get(at) | bits << ((cell & 3) * 2)));
+	} // set()
+
+///// Instance Fields //////////////////////////////////////////////
+	public final long rows;
+	public final long cols;
+	private final NativeRegion cells;		// 2 bits per cell
+
+	private static final int EAST_BIT = 1;
+	private static final int SOUTH_BIT = 2;
+} // OffHeapMaze class
@@ -0,0 +1,315 @@
+package Maze;
+import Maze.Maze.Path;
+
+import java.io.Closeable;
+
+/**
+ * Class OffHeapSearch implements breadth- and depth-first search over
+ *    an OffHeapMaze with all of its per-cell state off the heap as
+ *    well, so a search of a maze with tens of billions of cells puts
+ *    no load on the garbage collector. It is the in-memory counterpart
+ *    of ExternalBFS.
+ *
+ * The state is 4 bits per cell, 2 cells per byte, in a NativeRegion:
+ * 			bit 3		- the cell has been reached
+ * 			bits 0-1	- the move into the cell when it was first
+ * 						  reached, a Path ordinal
+ *    BFS adds a queue of cell ids, also off the heap, which grows as
+ *    needed. DFS needs nothing more: it walks back along the moves
+ *    into each cell instead of keeping a stack, resuming a cell at
+ *    the direction after the one it last left by.
+ *
+ * The state is kept for path() until the next search, and freed by
+ *    close().
+ *
+ * Usage:
+ * 			try(OffHeapMaze maze = OffHeapMaze.generate(rows, cols, seed);
+ * 					OffHeapSearch search = new OffHeapSearch(maze))
+ * 			{
+ * 				long cells = search.bfs(fromRow, fromCol, toRow, toCol);
+ * 				...
+ * 			}
+ */
+public class OffHeapSearch implements Closeable
+{
+///// Constructors /////////////////////////////////////////////////
+	/**
+	 * Default constructor
+	 *
+	 * @param maze		the maze to search
+	 */
+	public OffHeapSearch(OffHeapMaze maze)
+	{
+		this.maze = maze;
+	} // default OffHeapSearch constructor
+
+///// Instance Methods /////////////////////////////////////////////
+	/**
+	 * Utility method: finds a shortest path between two cells by
+	 *    breadth-first search and keeps it for path()
+	 *
+	 * @param fromRow	the row of the first cell of the path
+	 * @param fromCol	the column of the first cell of the path
+	 * @param toRow		the row of the last cell of the path
+	 * @param toCol		the column of the last cell of the path
+	 * @return			the number of cells on the path, or 0 if the
+	 * 						last cell cannot be reached
+	 * @throws IndexOutOfBoundsException	if either cell is outside
+	 * 						the maze
+	 */
+	public long bfs(long fromRow, long fromCol, long toRow, long toCol)
+	{
+		begin(fromRow, fromCol, toRow, toCol);
+		if(queue == null) queue = new LongQueue();
+		queue.clear();
+		queue.add(from);
+
+		boolean found = from == to;
+		while(!found && !queue.isEmpty())
+		{
+			long cell = queue.poll();
+			expanded++;
+			for(int d = 0; d < DIRECTIONS.length && !found; d++)
+			{
+				if(!maze.hasPath(cell, DIRECTIONS[d])) continue;
+				long next = maze.neighbor(cell, DIRECTIONS[d]);
+				if(reached(next)) continue;
+				mark(next, d);
+				found = next == to;
+				queue.add(next);
+			}
+		}
+		return end(found);
+	} // bfs()
+
+	/**
+	 * Utility method: finds a path between two cells by depth-first
+	 *    search and keeps it for path(). In a perfect maze it is the
+	 *    only path, so also the shortest.
+	 *
+	 * @param fromRow	the row of the first cell of the path
+	 * @param fromCol	the column of the first cell of the path
+	 * @param toRow		the row of the last cell of the path
+	 * @param toCol		the column of the last cell of the path
+	 * @return			the number of cells on the path, or 0 if the
+	 * 						last cell cannot be reached
+	 * @throws IndexOutOfBoundsException	if either cell is outside
+	 * 						the maze
+	 */
+	public long dfs(long fromRow, long fromCol, long toRow, long toCol)
+	{
+		begin(fromRow, fromCol, toRow, toCol);
+
+		long cell = from;
+		int d = 0;		// the next direction to try from cell
+		expanded++;
+		while(cell != to)
+		{
+			for(; d < DIRECTIONS.length; d++)
+			{
+				if(!maze.hasPath(cell, DIRECTIONS[d])) continue;
+				long next = maze.neighbor(cell, DIRECTIONS[d]);
+				if(reached(next)) continue;
+				mark(next, d);
+				break;
+			}
+			if(d < DIRECTIONS.length)
+			{
+				// go deeper
+				cell = maze.neighbor(cell, DIRECTIONS[d]);
+				d = 0;
+				expanded++;
+			}
+			else if(cell == from)
+				return end(false);	// every direction tried from the start
+			else
+			{
+				// back up, and go on from the parent with the
+				// direction after the one that led here
+				int came = cameBy(cell);
+				cell = maze.neighbor(cell, DIRECTIONS[(came + 2) & 3]);
+				d = came + 1;
+			}
+		}
+		return end(true);
+	} // dfs()
+
+	/**
+	 * @return	the path found by the last search, or null if there was
+	 * 				none
+	 * @throws ArithmeticException	if the path has more moves, or its
+	 * 				cells more rows or columns, than an int can count
+	 */
+	public MazePath path()
+	{
+		if(cellsOnPath == 0) return null;
+
+		// walk back from the end, collecting the moves in reverse
+		byte[] moves = new byte[Math.toIntExact(cellsOnPath - 1)];
+		int count = 0;
+		for(long cell = to; cell != from; )
+		{
+			int move = cameBy(cell);
+			moves[count++] = (byte) move;
+			cell = maze.neighbor(cell, DIRECTIONS[(move + 2) & 3]);	// step back
+		}
+
+		MazePath.Builder builder = new MazePath.Builder(
+				Math.toIntExact(maze.rowOf(from)), Math.toIntExact(maze.colOf(from)));
+		for(int i = count - 1; i >= 0; i--)
+			builder.add(DIRECTIONS[moves[i]]);
+		return builder.build();
+	} // path()
+
+	/**
+	 * @return	the number of cells expanded by the last search
+	 */
+	public long expanded()
+	{
+		return expanded;
+	} // expanded()
+
+	/**
+	 * Utility method: frees the state of the search. The path of the
+	 *    last search is no longer available afterwards.
+	 */
+	@Override
+	public void close()
+	{
+		if(marks != null) marks.close();
+		if(queue != null) queue.close();
+		marks = null;
+		queue = null;
+		cellsOnPath = 0;
+	} // close()
+
+	/**
+	 * Utility method: checks the ends of a search and clears the
+	 *    state of the last one
+	 */
+	private void begin(long fromRow, long fromCol, long toRow, long toCol)
+	{
+		from = maze.cellId(fromRow, fromCol);
+		to = maze.cellId(toRow, toCol);
+		if(from == CellGraph.NONE || to == CellGraph.NONE)
+			throw new IndexOutOfBoundsException("no cell at (" + fromRow + ", " + fromCol
+					+ ") or (" + toRow + ", " + toCol + ")");
+		if(marks == null)
+			marks = new NativeRegion((maze.cellCount() + 1) >>> 1);
+		else
+			marks.clear();
+		expanded = 0;
+		cellsOnPath = 0;
+		mark(from, 0);
+	} // begin()
+
+	/**
+	 * Utility method: counts the cells on the path just found
+	 */
+	private long end(boolean found)
+	{
+		if(queue != null) queue.clear();
+		if(!found) return 0;
+		long cells = 1;
+		for(long cell = to; cell != from; cells++)
+			cell = maze.neighbor(cell, DIRECTIONS[(cameBy(cell) + 2) & 3]);
+		cellsOnPath = cells;
+		return cells;
+	} // end()
+
+	private boolean reached(long cell)
+	{
+		return (marks.get(cell >>> 1) & (REACHED << ((cell & 1) * 4))) != 0;
+	} // reached()
+
+	private int cameBy(long cell)
+	{
+		return (marks.get(cell >>> 1) >>> ((cell & 1) * 4)) & 3;
+	} // cameBy()
+
+	private void mark(long cell, int move)
+	{
+		long at = cell >>> 1;
+		marks.put(at, (byte) (marks.get(at) | (REACHED | move) << ((cell & 1) * 4)));
+	} // mark()
+
+///// Instance Fields //////////////////////////////////////////////
+	private final OffHeapMaze maze;
+	private NativeRegion marks;			// 4 bits per cell, or null
+	private LongQueue queue;			// for BFS, or null
+	private long from;					// the ends of the last search
+	private long to;
+	private long cellsOnPath;			// 0 if none was found
+	private long expanded;
+
+	private static final int REACHED = 8;
+	private static final Path[] DIRECTIONS = Path.values();	// by ordinal
+
+///// Inner Classes ////////////////////////////////////////////////
+	/**
+	 * Class implements a FIFO queue of longs in a ring buffer off the
+	 *    heap, doubled (and the old one freed) when it fills
+	 */
+	static final class LongQueue implements Closeable
+	{
+		LongQueue()
+		{
+			ring = new NativeRegion(8L * INITIAL);
+			capacity = INITIAL;
+		} // LongQueue constructor
+
+		void add(long value)
+		{
+			if(size == capacity) grow();
+			ring.putLong((head + size++) & (capacity - 1), value);
+		} // add()
+
+		long poll()
+		{
+			long value = ring.getLong(head);
+			head = (head + 1) & (capacity - 1);
+			size--;
+			return value;
+		} // poll()
+
+		boolean isEmpty()
+		{
+			return size == 0;
+		} // isEmpty()
+
+		long size()
+		{
+			return size;
+		} // size()
+
+		void clear()
+		{
+			head = 0;
+			size = 0;
+		} // clear()
+
+		@Override
+		public void close()
+		{
+			ring.close();
+		} // close()
+
+		private void grow()
+		{
+			NativeRegion bigger = new NativeRegion(16 * capacity);
+			for(long i = 0; i < size; i++)
+				bigger.putLong(i, ring.getLong((head + i) & (capacity - 1)));
+			ring.close();
+			ring = bigger;
+			capacity *= 2;
+			head = 0;
+		} // grow()
+
+		private NativeRegion ring;
+		private long capacity;		// in longs, a power of 2
+		private long head;			// the index of the first long
+		private long size;			// the number of longs queued
+
+		private static final long INITIAL = 1 << 16;
+	} // LongQueue class
+} // OffHeapSearch class
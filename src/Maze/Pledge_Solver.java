@@ -0,0 +1,99 @@
+package Maze;
+import Maze.Maze.Path;
+
+/**
+ * Pledge_Solver inherits from WalkingSolver. It implements the Pledge
+ *    algorithm, which, unlike the plain wall follower, can't be
+ *    trapped circling an island of walls. The walker picks a
+ *    preferred direction and goes straight that way until it meets a
+ *    wall; then it turns right and follows the wall with its left
+ *    hand, counting its turns (+1 right, -1 left), until the count
+ *    is back to 0 and it faces the preferred direction again, when
+ *    it goes straight once more. Its memory is its position, heading
+ *    and the count.
+ *
+ * The Pledge algorithm finds a way out of a maze, i.e. a gap in its
+ *    outer wall: here that is the end cell, taken to have a gap in
+ *    the side of the maze it lies on, and the preferred direction is
+ *    out through that side (south for mazeEnd). The walk is
+ *    guaranteed to reach an end cell on the edge of the maze, from
+ *    any start; for an end cell inside the maze there is no such
+ *    guarantee, and the walk gives up after 16 moves per cell.
+ */
+public class Pledge_Solver extends WalkingSolver
+{
+///// Constructors /////////////////////////////////////////////////
+	/**
+	 * Default Pledge_Solver Constructor: walks from mazeStart to
+	 * mazeEnd
+	 *
+	 * @param inputMaze		the Maze this Solver will attempt to
+	 * 						   solve
+	 */
+	public Pledge_Solver(Maze inputMaze) {
+		this(inputMaze, inputMaze.mazeStart.row, inputMaze.mazeStart.col,
+				inputMaze.mazeEnd.row, inputMaze.mazeEnd.col);
+	} // Pledge_Solver default constructor
+
+	/**
+	 * Endpoint Pledge_Solver Constructor: walks between two given
+	 * cells
+	 *
+	 * @param inputMaze		the Maze this Solver will attempt to
+	 * 						   solve
+	 * @param fromRow		the row of the first cell of the path
+	 * @param fromCol		the column of the first cell of the path
+	 * @param toRow			the row of the last cell of the path
+	 * @param toCol			the column of the last cell of the path
+	 * @throws IndexOutOfBoundsException	if either cell is outside
+	 * 						   the maze
+	 */
+	public Pledge_Solver(Maze inputMaze, int fromRow, int fromCol, int toRow, int toCol) {
+		super(inputMaze, fromRow, fromCol, toRow, toCol,
+				16L * inputMaze.rowCount * inputMaze.colCount);
+		preferred = toRow == maze.rowCount - 1 ? Path.SOUTH
+				: toCol == maze.colCount - 1 ? Path.EAST
+				: toRow == 0 ? Path.NORTH
+				: toCol == 0 ? Path.WEST
+				: Math.abs(toRow - fromRow) >= Math.abs(toCol - fromCol)
+						? (toRow > fromRow ? Path.SOUTH : Path.NORTH)
+						: (toCol > fromCol ? Path.EAST : Path.WEST);
+		heading = preferred;
+	} // Pledge_Solver endpoint constructor
+
+///// Instance Methods /////////////////////////////////////////////
+	/**
+	 * @return	the preferred direction while the turn count is 0 and
+	 * 				the way is open; otherwise the first open way of
+	 * 				left, ahead, right and back along the wall
+	 */
+	@Override
+	protected Path nextMove()
+	{
+		int first = -1;
+		int last = 2;
+		if(turns == 0)
+		{
+			if(maze.isOpen(at, preferred)) return preferred;
+
+			// blocked: turn right, so the wall is on the left, and
+			// follow it from there
+			first = 1;
+			last = 3;
+		}
+		for(int turn = first; turn <= last; turn++)
+		{
+			Path direction = DIRECTIONS[(heading.ordinal() + turn) & 3];
+			if(maze.isOpen(at, direction))
+			{
+				turns += turn;
+				return direction;
+			}
+		}
+		return null;	// a cell with no way out
+	} // nextMove()
+
+///// Instance Fields //////////////////////////////////////////////
+	private final Path preferred;
+	private int turns;				// right turns minus left turns
+}
@@ -0,0 +1,85 @@
+package Maze;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongConsumer;
+
+/**
+ * Class SolveControl holds what an asynchronous solve is checked
+ *    against: its deadline, its CancellationToken, the future it will
+ *    complete (which the caller may cancel) and the progress callback.
+ *    A MazeSolver calls check() every CHECK_INTERVAL expansions; when
+ *    the solve should stop, check() throws Stopped, which unwinds the
+ *    search back to MazeSolver.solve(control).
+ */
+final class SolveControl
+{
+///// Constructors /////////////////////////////////////////////////
+	/**
+	 * @param deadline	the System.nanoTime() after which the solve stops
+	 * @param token		the caller's token, or null
+	 * @param future	the future the solve will complete
+	 * @param progress	called with the number of cells expanded so far,
+	 * 						or null
+	 */
+	SolveControl(long deadline, CancellationToken token,
+			CompletableFuture<?> future, LongConsumer progress)
+	{
+		this.deadline = deadline;
+		this.token = token;
+		this.future = future;
+		this.progress = progress;
+	} // SolveControl constructor
+
+///// Instance Methods /////////////////////////////////////////////
+	/**
+	 * Utility method: reports progress, then stops the solve if it was
+	 *    cancelled or has run past its deadline
+	 *
+	 * @param expanded	the number of cells expanded so far
+	 * @throws Stopped	if the solve should stop
+	 */
+	void check(long expanded)
+	{
+		if(progress != null) progress.accept(expanded);
+		if((token != null && token.isCancelled()) || future.isCancelled())
+			throw new Stopped(new CancellationException("solve cancelled after "
+					+ expanded + " cells"));
+		if(future.isDone() || System.nanoTime() - deadline > 0)
+			throw new Stopped(new TimeoutException("solve timed out after "
+					+ expanded + " cells"));
+	} // check()
+
+	/**
+	 * Utility method: reports the final count of a solve that ran to
+	 *    the end
+	 */
+	void finished(long expanded)
+	{
+		if(progress != null) progress.accept(expanded);
+	} // finished()
+
+///// Instance Fields //////////////////////////////////////////////
+	private final long deadline;
+	private final CancellationToken token;
+	private final CompletableFuture<?> future;
+	private final LongConsumer progress;
+
+///// Inner Classes ////////////////////////////////////////////////
+	/**
+	 * Class is thrown through a search to stop it. Its cause is the
+	 *    CancellationException or TimeoutException the future completes
+	 *    with. It records no stack trace, since it is only
+	 *    thrown to unwind.
+	 */
+	static final class Stopped extends RuntimeException
+	{
+		Stopped(Exception reason)
+		{
+			super(reason.getMessage(), reason, false, false);
+		} // Stopped constructor
+
+		private static final long serialVersionUID = 1L;
+	} // Stopped class
+} // SolveControl class
@@ -0,0 +1,361 @@
+package Maze;
+import Maze.Maze.MazeCell;
+import Maze.Maze.Path;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Driver
+ * main() method checks every solver on seeded mazes of growing size,
+ *    up to millions of cells, and times it. Each path is checked for
+ *    what it is rather than how it prints:
+ * 			- it starts at the start cell and ends at the end cell
+ * 			- every move goes through an open wall, inside the maze
+ * 			- its length is the BFS distance between them, for every
+ * 			  solver on a perfect maze, and for the shortest-path
+ * 			  solvers on a maze with loops
+ *    Every other seed opens extra walls to make loops, where the
+ *    solvers that don't promise a path (SolverType.alwaysFindsPath())
+ *    may give up, but may not return a wrong one.
+ *
+ * The solvers of each size run in parallel on a pool of threads. Each
+ *    run, and each size as a whole, is written to a report as one JSON
+ *    object per line, so reports can be appended to and compared over
+ *    time:
+ * 			{"kind":"start", ...}	- the date, JVM and settings
+ * 			{"kind":"run", ...}		- one solver on one maze
+ * 			{"kind":"size", ...}	- the wall-clock time of a size
+ *    The process exits with status 1 if any check failed.
+ *
+ * Usage: java Maze.SolverHarness [maxSide] [seeds] [threads] [report]
+ * 			maxSide	- the largest mazes are maxSide x (maxSide + 3)
+ * 						cells; sides grow by 4x from 8 (default 2048)
+ * 			seeds	- mazes per size (default 2)
+ * 			threads	- solver threads (default: one per processor)
+ * 			report	- the file to append the report to (default:
+ * 						standard output)
+ */
+public class SolverHarness
+{
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		int maxSide = args.length > 0 ? Integer.parseInt(args[0]) : 2048;
+		int seeds = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+		int threads = args.length > 2 ? Integer.parseInt(args[2])
+				: Runtime.getRuntime().availableProcessors();
+		PrintStream report = args.length > 3
+				? new PrintStream(new FileOutputStream(args[3], true), true, "UTF-8")
+				: System.out;
+
+		List<Result> results;
+		try
+		{
+			results = run(maxSide, seeds, threads, report);
+		}
+		finally
+		{
+			if(report != System.out) report.close();
+		}
+
+		int failures = 0;
+		for(Result result : results)
+		{
+			if(result.failure != null)
+			{
+				System.err.println("FAILED " + result);
+				failures++;
+			}
+		}
+		System.err.println(results.size() + " runs, " + failures + " failed");
+		System.exit(failures == 0 ? 0 : 1);
+	} // main()
+
+	/**
+	 * Utility method: checks and times every solver on every size
+	 *
+	 * @param maxSide	the largest side
+	 * @param seeds		the number of mazes per size
+	 * @param threads	the number of solver threads
+	 * @param report	receives the report lines, or null
+	 * @return			the result of every run
+	 * @throws InterruptedException	if the caller is interrupted
+	 */
+	public static List<Result> run(int maxSide, int seeds, int threads, PrintStream report)
+			throws InterruptedException
+	{
+		if(report != null)
+			report.printf(Locale.ROOT, "{\"kind\":\"start\",\"date\":\"%s\",\"java\":\"%s\",\"processors\":%d,"
+					+ "\"threads\":%d,\"maxSide\":%d,\"seeds\":%d}%n",
+					Instant.now(), System.getProperty("java.version"),
+					Runtime.getRuntime().availableProcessors(), threads, maxSide, seeds);
+
+		List<Result> results = new ArrayList<Result>();
+		ExecutorService pool = ThreadPools.newCpuPool("solver-harness", threads);
+		try
+		{
+			for(int side = 8; ; side = Math.min(side * 4, maxSide))
+			{
+				results.addAll(runSize(pool, side, side + 3, seeds, report));
+				if(side >= maxSide) break;
+			}
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+		return results;
+	} // run()
+
+	/**
+	 * Utility method: runs every solver on the mazes of one size
+	 */
+	private static List<Result> runSize(ExecutorService pool, final int rows, final int cols,
+			int seeds, PrintStream report) throws InterruptedException
+	{
+		long start = System.nanoTime();
+		List<Future<Result>> futures = new ArrayList<Future<Result>>();
+		for(int s = 0; s < seeds; s++)
+		{
+			final long seed = (long) rows * 1000 + s;
+			final boolean loops = s % 2 == 1;
+			final Maze maze = new Maze(rows, cols, seed);
+			if(loops) addLoops(maze, seed);
+			final int distance = distance(maze, maze.mazeStart, maze.mazeEnd);
+
+			for(final SolverType type : SolverType.values())
+			{
+				futures.add(pool.submit(new Callable<Result>() {
+					public Result call()
+					{
+						return solve(maze, type, seed, loops, distance);
+					}
+				}));
+			}
+		}
+
+		List<Result> results = new ArrayList<Result>(futures.size());
+		int failures = 0;
+		try
+		{
+			for(Future<Result> future : futures)
+			{
+				Result result = future.get();
+				results.add(result);
+				if(result.failure != null) failures++;
+				if(report != null) report.println(result.toJson());
+			}
+		}
+		catch(ExecutionException e)
+		{
+			if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			if(e.getCause() instanceof Error) throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+		if(report != null)
+			report.printf(Locale.ROOT, "{\"kind\":\"size\",\"rows\":%d,\"cols\":%d,\"runs\":%d,"
+					+ "\"failures\":%d,\"ms\":%.3f}%n",
+					rows, cols, results.size(), failures, (System.nanoTime() - start) / 1e6);
+		return results;
+	} // runSize()
+
+	/**
+	 * Utility method: solves one maze with one solver, from mazeStart
+	 *    to mazeEnd, and checks the path. A solver that throws fails
+	 *    its own run, not the harness.
+	 *
+	 * @param maze		the maze
+	 * @param type		the solver
+	 * @param seed		the seed of the maze, for the report
+	 * @param loops		true if walls were opened to make loops
+	 * @param distance	the BFS distance from start to end
+	 * @return			the outcome
+	 */
+	static Result solve(Maze maze, SolverType type, long seed, boolean loops, int distance)
+	{
+		MazeCell from = maze.mazeStart;
+		MazeCell to = maze.mazeEnd;
+		long t0 = System.nanoTime();
+		MazePath path;
+		try
+		{
+			MazeSolver solver = type.create(maze, from.row, from.col, to.row, to.col);
+			solver.solve();
+			path = solver.getPath();
+		}
+		catch(RuntimeException | StackOverflowError e)
+		{
+			return new Result(maze.rowCount, maze.colCount, seed, loops, type,
+					System.nanoTime() - t0, 0, "threw " + e);
+		}
+		long nanos = System.nanoTime() - t0;
+
+		String failure;
+		if(path == null)
+			failure = loops && !type.alwaysFindsPath() ? null : "no path found";
+		else
+			failure = checkPath(maze, path, from, to,
+					!loops || type.findsShortestPath() ? distance : -1);
+		return new Result(maze.rowCount, maze.colCount, seed, loops, type, nanos,
+				path == null ? 0 : path.cellCount(), failure);
+	} // solve()
+
+	/**
+	 * Utility method: checks a path structurally
+	 *
+	 * @param maze		the maze
+	 * @param path		the path
+	 * @param from		the cell the path must start at
+	 * @param to		the cell the path must end at
+	 * @param distance	the number of moves the path must make, or -1
+	 * 						for any number
+	 * @return			what is wrong with the path, or null if nothing
+	 */
+	static String checkPath(Maze maze, MazePath path, MazeCell from, MazeCell to, int distance)
+	{
+		if(path.startRow != from.row || path.startCol != from.col)
+			return "starts at (" + path.startRow + ", " + path.startCol + ")";
+		if(path.endRow != to.row || path.endCol != to.col)
+			return "ends at (" + path.endRow + ", " + path.endCol + ")";
+		if(distance >= 0 && path.moveCount() != distance)
+			return path.moveCount() + " moves, shortest is " + distance;
+
+		MazePath.Cursor cursor = path.cursor();
+		int row = cursor.row();
+		int col = cursor.col();
+		while(cursor.next())
+		{
+			Path direction = cursor.direction();
+			if(row < 0 || row >= maze.rowCount || col < 0 || col >= maze.colCount
+					|| !maze.isOpen(maze.layout.index(row, col), direction))
+				return "moves " + direction + " through a wall at (" + row + ", " + col + ")";
+			row = cursor.row();
+			col = cursor.col();
+		}
+		return null;
+	} // checkPath()
+
+	/**
+	 * Utility method: the reference distance, by a breadth-first search
+	 *    over storage indexes with one int per cell
+	 *
+	 * @return	the number of moves between the cells, or -1 if the end
+	 * 				can't be reached
+	 */
+	static int distance(Maze maze, MazeCell from, MazeCell to)
+	{
+		int[] distance = new int[maze.cells.length];
+		java.util.Arrays.fill(distance, -1);
+		int[] queue = new int[maze.cells.length];
+		int head = 0;
+		int tail = 0;
+		distance[from.index] = 0;
+		queue[tail++] = from.index;
+		while(head < tail && distance[to.index] < 0)
+		{
+			int cell = queue[head++];
+			for(Path direction : Path.values())
+			{
+				if(!maze.isOpen(cell, direction)) continue;
+				int next = maze.neighborIndex(cell, direction);
+				if(distance[next] >= 0) continue;
+				distance[next] = distance[cell] + 1;
+				queue[tail++] = next;
+			}
+		}
+		return distance[to.index];
+	} // distance()
+
+	/**
+	 * Utility method: opens about one wall in 16 at random, which
+	 *    leaves the maze full of loops
+	 */
+	static void addLoops(Maze maze, long seed)
+	{
+		Random random = new Random(seed);
+		Path[] paths = Path.values();
+		for(long i = (long) maze.rowCount * maze.colCount / 16; i > 0; i--)
+		{
+			int row = random.nextInt(maze.rowCount);
+			int col = random.nextInt(maze.colCount);
+			Path direction = paths[random.nextInt(paths.length)];
+			if(maze.checkedCellAt(row, col).hasNeighbor(direction))
+				maze.openWall(row, col, direction);
+		}
+	} // addLoops()
+
+///// Inner Classes ////////////////////////////////////////////////
+	/**
+	 * Class holds the outcome of one solver on one maze
+	 */
+	public static final class Result
+	{
+		Result(int rows, int cols, long seed, boolean loops, SolverType solver,
+				long nanos, int pathCells, String failure)
+		{
+			this.rows = rows;
+			this.cols = cols;
+			this.seed = seed;
+			this.loops = loops;
+			this.solver = solver;
+			this.nanos = nanos;
+			this.pathCells = pathCells;
+			this.failure = failure;
+		} // Result constructor
+
+		/**
+		 * @return	the result as one line of JSON
+		 */
+		public String toJson()
+		{
+			return String.format(Locale.ROOT, "{\"kind\":\"run\",\"rows\":%d,\"cols\":%d,\"seed\":%d,"
+					+ "\"loops\":%b,\"solver\":\"%s\",\"ms\":%.3f,\"pathCells\":%d,"
+					+ "\"ok\":%b%s}",
+					rows, cols, seed, loops, solver, nanos / 1e6, pathCells, failure == null,
+					failure == null ? "" : ",\"failure\":" + quote(failure));
+		} // toJson()
+
+		/**
+		 * Utility method: a string as a JSON string literal
+		 */
+		private static String quote(String text)
+		{
+			StringBuilder out = new StringBuilder(text.length() + 2).append('"');
+			for(int i = 0; i < text.length(); i++)
+			{
+				char c = text.charAt(i);
+				if(c == '"' || c == '\\') out.append('\\').append(c);
+				else if(c < 0x20) out.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+				else out.append(c);
+			}
+			return out.append('"').toString();
+		} // quote()
+
+		@Override
+		public String toString()
+		{
+			return solver + " on " + rows + "x" + cols + " seed " + seed
+					+ (loops ? " with loops" : "") + ": "
+					+ (failure == null ? "ok" : failure);
+		} // toString()
+
+		public final int rows;
+		public final int cols;
+		public final long seed;
+		public final boolean loops;
+		public final SolverType solver;
+		public final long nanos;		// solver construction and solve()
+		public final int pathCells;		// 0 if no path was found
+		public final String failure;	// null if the path checked out
+	} // Result class
+} // SolverHarness class
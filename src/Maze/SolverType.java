@@ -0,0 +1,171 @@
+package Maze;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * enum type lists the available MazeSolver algorithms, so that
+ *    callers (caches, the service, batch jobs) can name one as data
+ *    and build a solver for it.
+ */
+public enum SolverType
+{
+	BFS(true, true)
+	{
+		MazeSolver create(Maze maze, int fromRow, int fromCol, int toRow, int toCol)
+		{
+			return new BFS_Solver(maze, fromRow, fromCol, toRow, toCol);
+		}
+	},
+	DFS(false, true)
+	{
+		MazeSolver create(Maze maze, int fromRow, int fromCol, int toRow, int toCol)
+		{
+			return new DFS_Solver(maze, fromRow, fromCol, toRow, toCol);
+		}
+	},
+	LPA(true, true)
+	{
+		MazeSolver create(Maze maze, int fromRow, int fromCol, int toRow, int toCol)
+		{
+			return new LPA_Solver(maze, fromRow, fromCol, toRow, toCol);
+		}
+	},
+	WALL_FOLLOWER(false, false)
+	{
+		MazeSolver create(Maze maze, int fromRow, int fromCol, int toRow, int toCol)
+		{
+			return new WallFollower_Solver(maze, fromRow, fromCol, toRow, toCol);
+		}
+	},
+	TREMAUX(false, true)
+	{
+		MazeSolver create(Maze maze, int fromRow, int fromCol, int toRow, int toCol)
+		{
+			return new Tremaux_Solver(maze, fromRow, fromCol, toRow, toCol);
+		}
+	},
+	PLEDGE(false, false)
+	{
+		MazeSolver create(Maze maze, int fromRow, int fromCol, int toRow, int toCol)
+		{
+			return new Pledge_Solver(maze, fromRow, fromCol, toRow, toCol);
+		}
+	};
+
+	/**
+	 * @param shortest	the solver always finds a shortest path
+	 * @param complete	the solver always finds a path if there is one
+	 */
+	private SolverType(boolean shortest, boolean complete)
+	{
+		this.shortest = shortest;
+		this.complete = complete;
+	} // SolverType constructor
+
+	/**
+	 * @return	true if the solver always finds a shortest path; on a
+	 * 				perfect maze every solver does, as there is only
+	 * 				one path
+	 */
+	public boolean findsShortestPath()
+	{
+		return shortest;
+	} // findsShortestPath()
+
+	/**
+	 * @return	true if the solver always finds a path when there is
+	 * 				one. The wall follower can circle an island of a
+	 * 				maze with loops, and the Pledge walker is only sure
+	 * 				to reach an end cell on the edge of the maze.
+	 */
+	public boolean alwaysFindsPath()
+	{
+		return complete;
+	} // alwaysFindsPath()
+
+	/**
+	 * Factory method: builds an unsolved solver of this type for a
+	 *    path between two given cells
+	 *
+	 * @param maze		the maze to solve
+	 * @param fromRow	the row of the first cell of the path
+	 * @param fromCol	the column of the first cell of the path
+	 * @param toRow		the row of the last cell of the path
+	 * @param toCol		the column of the last cell of the path
+	 * @return			the solver; call solve() on it
+	 * @throws IndexOutOfBoundsException	if either cell is outside
+	 * 						the maze
+	 */
+	abstract MazeSolver create(Maze maze, int fromRow, int fromCol, int toRow, int toCol);
+
+	/**
+	 * Factory method: solves for a path between two given cells on an
+	 *    executor, and returns at once. The solve stops, completing the
+	 *    future exceptionally, when
+	 * 			- the token is cancelled, or the future itself is
+	 * 			    cancelled (CancellationException)
+	 * 			- the timeout runs out, whether the solve is running or
+	 * 			    still waiting for a thread (TimeoutException)
+	 *    The solver checks both every MazeSolver.CHECK_INTERVAL cells it
+	 *    expands, and reports the number of cells expanded so far to
+	 *    progress at the same points, and once more at the end.
+	 *
+	 * The solver and its per-cell state are built on the executor's
+	 *    thread when the solve starts, not here, and are dropped as
+	 *    soon as it is stopped.
+	 *
+	 * @param maze		the maze to solve
+	 * @param fromRow	the row of the first cell of the path
+	 * @param fromCol	the column of the first cell of the path
+	 * @param toRow		the row of the last cell of the path
+	 * @param toCol		the column of the last cell of the path
+	 * @param executor	runs the solve
+	 * @param timeout	how long the solve may take, from now
+	 * @param unit		the unit of timeout
+	 * @param token		cancels the solve, or null
+	 * @param progress	called on the solving thread with the number of
+	 * 						cells expanded so far, or null
+	 * @return			the path, or null if the end can't be reached
+	 */
+	public CompletableFuture<MazePath> solveAsync(final Maze maze, final int fromRow,
+			final int fromCol, final int toRow, final int toCol, Executor executor,
+			long timeout, TimeUnit unit, CancellationToken token, LongConsumer progress)
+	{
+		final CompletableFuture<MazePath> future = new CompletableFuture<MazePath>();
+		final SolveControl control = new SolveControl(System.nanoTime() + unit.toNanos(timeout),
+				token, future, progress);
+		future.orTimeout(timeout, unit);
+		try
+		{
+			executor.execute(new Runnable() {
+				public void run()
+				{
+					try
+					{
+						control.check(0);
+						future.complete(create(maze, fromRow, fromCol, toRow, toCol).solve(control));
+					}
+					catch(SolveControl.Stopped e)
+					{
+						future.completeExceptionally(e.getCause());
+					}
+					catch(Throwable e)
+					{
+						future.completeExceptionally(e);
+					}
+				}
+			});
+		}
+		catch(RuntimeException e)
+		{
+			future.completeExceptionally(e);
+		}
+		return future;
+	} // solveAsync()
+
+	private final boolean shortest;
+	private final boolean complete;
+} // enum SolverType
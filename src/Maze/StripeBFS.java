@@ -0,0 +1,601 @@
+package Maze;
+import Maze.Maze.Path;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class StripeBFS implements breadth-first search over a MazeFile
+ *    split among several worker processes, for mazes too large to
+ *    search comfortably in one JVM. The rows are cut into horizontal
+ *    stripes; each worker maps only its own stripe of the file (and
+ *    the row above it, which holds its NORTH walls) and keeps 4 bits
+ *    per cell of its stripe, and its queue, off the heap.
+ *
+ * The search keeps the levels of BFS_Solver across processes. This
+ *    process coordinates, over loopback sockets, in rounds:
+ * 			- each worker with work is sent the cells of its stripe
+ * 			  reached across a stripe boundary in the last round, and
+ * 			  the move into each
+ * 			- it queues those it hasn't reached, then expands every
+ * 			  queued cell once, which takes the search one level on
+ * 			- it answers with the cells it reached outside its stripe,
+ * 			  which are routed to their owners for the next round
+ *    so every cell is reached at its true distance. While only one
+ *    worker has anything to expand, no other can reach a cell before
+ *    it sends one across, so it runs level after level on its own
+ *    until it does. The path is traced back from the end, each worker
+ *    walking its own stripe and handing over at the boundary.
+ *
+ * The workers are started when a StripeBFS is made, serve any number
+ *    of solve()s, and exit on close(). They run in JVMs like this one,
+ *    from the same class path.
+ *
+ * Usage:
+ * 			try(StripeBFS bfs = new StripeBFS(file, workers))
+ * 			{
+ * 				long cells = bfs.solve(fromRow, fromCol, toRow, toCol);
+ * 				...
+ * 			}
+ *    or from the command line:
+ * 			java Maze.StripeBFS file workers [fromRow fromCol toRow toCol]
+ */
+public class StripeBFS implements Closeable
+{
+	public static void main(String[] args) throws IOException
+	{
+		if(args.length > 0 && args[0].equals("worker"))
+		{
+			Worker.run(args);
+			return;
+		}
+		if(args.length != 2 && args.length != 6)
+		{
+			System.err.println("usage: java Maze.StripeBFS file workers "
+					+ "[fromRow fromCol toRow toCol]");
+			System.exit(2);
+		}
+
+		java.nio.file.Path file = Paths.get(args[0]);
+		long[] size = MazeFile.readSize(file);
+		long[] ends = args.length == 6
+				? new long[] { Long.parseLong(args[2]), Long.parseLong(args[3]),
+						Long.parseLong(args[4]), Long.parseLong(args[5]) }
+				: new long[] { 0, 0, size[0] - 1, size[1] - 1 };
+		try(StripeBFS bfs = new StripeBFS(file, Integer.parseInt(args[1])))
+		{
+			long t0 = System.nanoTime();
+			long cells = bfs.solve(ends[0], ends[1], ends[2], ends[3]);
+			long t1 = System.nanoTime();
+			System.out.println((cells == 0 ? "no path" : cells + " cells on the path")
+					+ ", " + bfs.expanded() + " cells expanded in " + bfs.rounds()
+					+ " rounds by " + bfs.workers() + " workers, "
+					+ (t1 - t0) / 1000000 + " ms");
+		}
+	} // main()
+
+///// Constructors /////////////////////////////////////////////////
+	/**
+	 * Default constructor: starts the workers, and waits for each to
+	 *    map its stripe and connect
+	 *
+	 * @param file		a maze file
+	 * @param workers	the number of worker processes; no more than
+	 * 						one per row is started
+	 * @throws IOException	if the file is not a maze file, or a worker
+	 * 						cannot be started or does not connect
+	 */
+	public StripeBFS(java.nio.file.Path file, int workers) throws IOException
+	{
+		if(workers < 1)
+			throw new IllegalArgumentException("workers < 1");
+		long[] size = MazeFile.readSize(file);
+		rows = size[0];
+		cols = size[1];
+
+		int stripes = (int) Math.min(workers, rows);
+		firstRows = new long[stripes + 1];
+		for(int s = 0; s <= stripes; s++)
+			firstRows[s] = rows / stripes * s + Math.min(s, rows % stripes);
+		processes = new Process[stripes];
+		sockets = new Socket[stripes];
+		ins = new DataInputStream[stripes];
+		outs = new DataOutputStream[stripes];
+		incoming = new Crossings[stripes];
+		for(int s = 0; s < stripes; s++)
+			incoming[s] = new Crossings();
+
+		server = new ServerSocket(0, stripes, InetAddress.getLoopbackAddress());
+		try
+		{
+			String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+			for(int s = 0; s < stripes; s++)
+			{
+				processes[s] = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+						StripeBFS.class.getName(), "worker",
+						Integer.toString(server.getLocalPort()), Integer.toString(s),
+						file.toAbsolutePath().toString(),
+						Long.toString(firstRows[s]), Long.toString(firstRows[s + 1]))
+					.redirectOutput(ProcessBuilder.Redirect.DISCARD)
+					.redirectError(ProcessBuilder.Redirect.INHERIT)
+					.start();
+			}
+
+			server.setSoTimeout(CONNECT_MILLIS);
+			for(int i = 0; i < stripes; i++)
+			{
+				Socket socket = server.accept();
+				socket.setTcpNoDelay(true);
+				DataInputStream in = new DataInputStream(
+						new BufferedInputStream(socket.getInputStream(), BUFFER));
+				int s = in.readInt();
+				sockets[s] = socket;
+				ins[s] = in;
+				outs[s] = new DataOutputStream(
+						new BufferedOutputStream(socket.getOutputStream(), BUFFER));
+			}
+		}
+		catch(IOException e)
+		{
+			close();
+			throw e;
+		}
+	} // default StripeBFS constructor
+
+///// Instance Methods /////////////////////////////////////////////
+	/**
+	 * Utility method: finds a shortest path between two cells and
+	 *    stores it for path()
+	 *
+	 * @param fromRow	the row of the first cell of the path
+	 * @param fromCol	the column of the first cell of the path
+	 * @param toRow		the row of the last cell of the path
+	 * @param toCol		the column of the last cell of the path
+	 * @return			the number of cells on the path, or 0 if the
+	 * 						last cell cannot be reached
+	 * @throws IndexOutOfBoundsException	if either cell is outside
+	 * 						the maze
+	 * @throws IOException	if a worker fails
+	 */
+	public long solve(long fromRow, long fromCol, long toRow, long toCol) throws IOException
+	{
+		if(fromRow < 0 || fromRow >= rows || fromCol < 0 || fromCol >= cols
+				|| toRow < 0 || toRow >= rows || toCol < 0 || toCol >= cols)
+			throw new IndexOutOfBoundsException("no cell at (" + fromRow + ", " + fromCol
+					+ ") or (" + toRow + ", " + toCol + ")");
+		long from = fromRow * cols + fromCol;
+		long to = toRow * cols + toCol;
+		startRow = fromRow;
+		startCol = fromCol;
+		moves = null;
+		expanded = 0;
+		rounds = 0;
+
+		int stripes = workers();
+		for(int s = 0; s < stripes; s++)
+		{
+			outs[s].writeByte(SOLVE);
+			outs[s].writeLong(to);
+			outs[s].flush();
+			incoming[s].clear();
+		}
+		incoming[owner(fromRow)].add(from, SOURCE);
+
+		boolean[] active = new boolean[stripes];	// cells queued
+		boolean[] sent = new boolean[stripes];
+		int finder = -1;
+		while(finder < 0)
+		{
+			int busy = 0;
+			for(int s = 0; s < stripes; s++)
+				if(active[s] || incoming[s].size > 0) busy++;
+			if(busy == 0) return 0;
+
+			rounds++;
+			for(int s = 0; s < stripes; s++)
+			{
+				sent[s] = active[s] || incoming[s].size > 0;
+				if(!sent[s]) continue;
+				outs[s].writeByte(LEVEL);
+				outs[s].writeInt(busy == 1 ? Integer.MAX_VALUE : 1);
+				incoming[s].write(outs[s]);
+				outs[s].flush();
+				incoming[s].clear();
+			}
+			for(int s = 0; s < stripes; s++)
+			{
+				if(!sent[s]) continue;
+				DataInputStream in = ins[s];
+				if(in.readBoolean()) finder = s;
+				active[s] = in.readBoolean();
+				expanded += in.readLong();
+				for(int n = in.readInt(); n > 0; n--)
+				{
+					long cell = in.readLong();
+					incoming[owner(cell / cols)].add(cell, in.readByte());
+				}
+			}
+		}
+
+		// trace back from the end, a stripe at a time
+		ByteArrayOutputStream reversed = new ByteArrayOutputStream();
+		for(long cell = to; cell != CellGraph.NONE; )
+		{
+			int s = owner(cell / cols);
+			outs[s].writeByte(TRACE);
+			outs[s].writeLong(cell);
+			outs[s].flush();
+			cell = ins[s].readLong();
+			byte[] segment = new byte[ins[s].readInt()];
+			ins[s].readFully(segment);
+			reversed.write(segment);
+		}
+		moves = reversed.toByteArray();
+		return moves.length + 1L;
+	} // solve()
+
+	/**
+	 * @return	the path found by the last solve(), or null if there was
+	 * 				none
+	 * @throws ArithmeticException	if its cells have more rows or
+	 * 				columns than an int can count
+	 */
+	public MazePath path()
+	{
+		if(moves == null) return null;
+		MazePath.Builder path = new MazePath.Builder(Math.toIntExact(startRow),
+				Math.toIntExact(startCol));
+		for(int i = moves.length - 1; i >= 0; i--)
+			path.add(DIRECTIONS[moves[i]]);
+		return path.build();
+	} // path()
+
+	/**
+	 * @return	the number of cells the workers expanded in the last
+	 * 				solve()
+	 */
+	public long expanded()
+	{
+		return expanded;
+	} // expanded()
+
+	/**
+	 * @return	the number of rounds of exchange in the last solve()
+	 */
+	public long rounds()
+	{
+		return rounds;
+	} // rounds()
+
+	/**
+	 * @return	the number of worker processes
+	 */
+	public int workers()
+	{
+		return processes.length;
+	} // workers()
+
+	/**
+	 * Utility method: tells the workers to exit, and waits for them
+	 */
+	@Override
+	public void close()
+	{
+		for(int s = 0; s < processes.length; s++)
+		{
+			try
+			{
+				if(outs[s] != null)
+				{
+					outs[s].writeByte(QUIT);
+					outs[s].flush();
+				}
+			}
+			catch(IOException e)
+			{
+				// the worker is gone already
+			}
+		}
+		closeQuietly(server);
+		for(int s = 0; s < processes.length; s++)
+		{
+			closeQuietly(sockets[s]);
+			outs[s] = null;
+		}
+		for(int s = 0; s < processes.length; s++)
+		{
+			if(processes[s] == null) continue;
+			try
+			{
+				if(!processes[s].waitFor(CONNECT_MILLIS, TimeUnit.MILLISECONDS))
+					processes[s].destroyForcibly();
+			}
+			catch(InterruptedException e)
+			{
+				processes[s].destroyForcibly();
+				Thread.currentThread().interrupt();
+			}
+			processes[s] = null;
+		}
+	} // close()
+
+	/**
+	 * Utility method: the stripe that holds a row
+	 */
+	private int owner(long row)
+	{
+		int s = processes.length - 1;
+		while(firstRows[s] > row) s--;
+		return s;
+	} // owner()
+
+	private static void closeQuietly(Closeable closeable)
+	{
+		try
+		{
+			if(closeable != null) closeable.close();
+		}
+		catch(IOException e)
+		{
+			// nothing left to do with it
+		}
+	} // closeQuietly()
+
+///// Instance Fields //////////////////////////////////////////////
+	private final long rows;
+	private final long cols;
+	private final long[] firstRows;			// of each stripe, then rows
+	private final ServerSocket server;
+	private final Process[] processes;		// by stripe
+	private final Socket[] sockets;
+	private final DataInputStream[] ins;
+	private final DataOutputStream[] outs;
+	private final Crossings[] incoming;		// for the next round
+	private long startRow;
+	private long startCol;
+	private byte[] moves;					// of the path, last first; or null
+	private long expanded;
+	private long rounds;
+
+	// requests to a worker
+	private static final int SOLVE = 1;		// long end cell
+	private static final int LEVEL = 2;		// int levels, then Crossings
+	private static final int TRACE = 3;		// long cell
+	private static final int QUIT = 4;
+
+	private static final int REACHED = 8;	// marks, and moves in Crossings
+	private static final int SOURCE = 4;	// the first cell of the path
+	private static final int BUFFER = 1 << 16;
+	private static final int CONNECT_MILLIS = 60000;
+	private static final Path[] DIRECTIONS = Path.values();	// by ordinal
+
+///// Inner Classes ////////////////////////////////////////////////
+	/**
+	 * Class holds cells reached across a stripe boundary, each with
+	 *    the move into it (or SOURCE)
+	 */
+	private static final class Crossings
+	{
+		void add(long cell, int move)
+		{
+			if(size == cells.length)
+			{
+				cells = java.util.Arrays.copyOf(cells, 2 * size);
+				moves = java.util.Arrays.copyOf(moves, 2 * size);
+			}
+			cells[size] = cell;
+			moves[size++] = (byte) move;
+		} // add()
+
+		void clear()
+		{
+			size = 0;
+		} // clear()
+
+		void write(DataOutputStream out) throws IOException
+		{
+			out.writeInt(size);
+			for(int i = 0; i < size; i++)
+			{
+				out.writeLong(cells[i]);
+				out.writeByte(moves[i]);
+			}
+		} // write()
+
+		private long[] cells = new long[64];
+		private byte[] moves = new byte[64];
+		int size;
+	} // Crossings class
+
+	/**
+	 * Class implements a worker process: it serves the requests of the
+	 *    coordinator on its stripe, rows firstRow..endRow-1
+	 */
+	private static final class Worker implements Closeable
+	{
+		Worker(MazeFile maze, long firstRow, long endRow)
+		{
+			this.maze = maze;
+			firstCell = firstRow * maze.cols;
+			endCell = endRow * maze.cols;
+			marks = new NativeRegion((endCell - firstCell + 1) >>> 1);
+		} // Worker constructor
+
+		/**
+		 * Utility method: the worker's main(): maps the stripe,
+		 *    connects, and serves until told to quit
+		 *
+		 * @param args	"worker", port, stripe, file, firstRow, endRow
+		 */
+		static void run(String[] args) throws IOException
+		{
+			int port = Integer.parseInt(args[1]);
+			int stripe = Integer.parseInt(args[2]);
+			long firstRow = Long.parseLong(args[4]);
+			long endRow = Long.parseLong(args[5]);
+			try(MazeFile maze = MazeFile.openRows(Paths.get(args[3]),
+						Math.max(0, firstRow - 1), endRow);
+					Worker worker = new Worker(maze, firstRow, endRow);
+					Socket socket = new Socket(InetAddress.getLoopbackAddress(), port))
+			{
+				socket.setTcpNoDelay(true);
+				DataInputStream in = new DataInputStream(
+						new BufferedInputStream(socket.getInputStream(), BUFFER));
+				DataOutputStream out = new DataOutputStream(
+						new BufferedOutputStream(socket.getOutputStream(), BUFFER));
+				out.writeInt(stripe);
+				out.flush();
+				worker.serve(in, out);
+			}
+		} // run()
+
+		private void serve(DataInputStream in, DataOutputStream out) throws IOException
+		{
+			while(true)
+			{
+				switch(in.read())
+				{
+				case SOLVE:
+					to = in.readLong();
+					marks.clear();
+					queue.clear();
+					break;
+				case LEVEL:
+					level(in, out);
+					break;
+				case TRACE:
+					trace(in, out);
+					break;
+				default:	// QUIT, or the coordinator is gone
+					return;
+				}
+				out.flush();
+			}
+		} // serve()
+
+		/**
+		 * Utility method: queues the cells sent across, then expands
+		 *    the queue a level at a time, up to the given number of
+		 *    levels and until a level reaches the end or leaves the
+		 *    stripe. Answers whether the end was reached, whether any
+		 *    cells are left queued, how many were expanded, and the
+		 *    cells reached outside the stripe.
+		 */
+		private void level(DataInputStream in, DataOutputStream out) throws IOException
+		{
+			int levels = in.readInt();
+			boolean found = false;
+			for(int n = in.readInt(); n > 0; n--)
+			{
+				long cell = in.readLong();
+				int move = in.readByte();
+				if(isReached(cell)) continue;
+				mark(cell, move);
+				queue.add(cell);
+				found |= cell == to;
+			}
+
+			long expandedNow = 0;
+			outgoing.clear();
+			for(int level = 0; level < levels && !found && outgoing.size == 0
+					&& !queue.isEmpty(); level++)
+			{
+				for(long n = queue.size(); n > 0 && !found; n--)
+				{
+					long cell = queue.poll();
+					expandedNow++;
+					for(int d = 0; d < DIRECTIONS.length && !found; d++)
+					{
+						if(!maze.hasPath(cell, DIRECTIONS[d])) continue;
+						long next = maze.neighbor(cell, DIRECTIONS[d]);
+						if(next < firstCell || next >= endCell)
+							outgoing.add(next, d);
+						else if(!isReached(next))
+						{
+							mark(next, d);
+							queue.add(next);
+							found = next == to;
+						}
+					}
+				}
+			}
+
+			out.writeBoolean(found);
+			out.writeBoolean(!queue.isEmpty());
+			out.writeLong(expandedNow);
+			outgoing.write(out);
+		} // level()
+
+		/**
+		 * Utility method: walks back from a cell to the start, or to
+		 *    the edge of the stripe, and answers with the cell beyond
+		 *    that edge (or NONE) and the moves walked, last first
+		 */
+		private void trace(DataInputStream in, DataOutputStream out) throws IOException
+		{
+			long cell = in.readLong();
+			long beyond = CellGraph.NONE;
+			ByteArrayOutputStream moves = new ByteArrayOutputStream();
+			while(true)
+			{
+				int mark = markOf(cell);
+				if((mark & SOURCE) != 0) break;
+				int move = mark & 3;
+				moves.write(move);
+				long previous = maze.neighbor(cell, DIRECTIONS[(move + 2) & 3]);
+				if(previous < firstCell || previous >= endCell)
+				{
+					beyond = previous;
+					break;
+				}
+				cell = previous;
+			}
+			out.writeLong(beyond);
+			out.writeInt(moves.size());
+			moves.writeTo(out);
+		} // trace()
+
+		private boolean isReached(long cell)
+		{
+			return markOf(cell) != 0;
+		} // isReached()
+
+		private int markOf(long cell)
+		{
+			long local = cell - firstCell;
+			return (marks.get(local >>> 1) >>> ((local & 1) * 4)) & 0xF;
+		} // markOf()
+
+		private void mark(long cell, int move)
+		{
+			long local = cell - firstCell;
+			long at = local >>> 1;
+			marks.put(at, (byte) (marks.get(at) | (REACHED | move) << ((local & 1) * 4)));
+		} // mark()
+
+		@Override
+		public void close()
+		{
+			marks.close();
+			queue.close();
+		} // close()
+
+		private final MazeFile maze;			// the stripe and the row above it
+		private final long firstCell;			// of the stripe
+		private final long endCell;
+		private final NativeRegion marks;		// 4 bits per cell of the stripe
+		private final OffHeapSearch.LongQueue queue = new OffHeapSearch.LongQueue();
+		private final Crossings outgoing = new Crossings();
+		private long to;						// the end cell of this solve
+	} // Worker class
+} // StripeBFS class
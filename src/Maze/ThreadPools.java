@@ -0,0 +1,69 @@
+package Maze;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class collects the thread pools shared by the batch and service
+ *    front ends of the package
+ */
+final class ThreadPools
+{
+	private ThreadPools() {}	// static methods only
+
+	/**
+	 * Factory method: returns a virtual-thread-per-task executor when
+	 *    the running JVM has one (Java 21 and later), and a cached
+	 *    pool of daemon platform threads otherwise. The method is
+	 *    looked up by name so this class still compiles and runs on
+	 *    older JDKs.
+	 *
+	 * @param prefix	the name prefix of the fallback threads
+	 * @return			an executor for blocking I/O tasks
+	 */
+	static ExecutorService newIoExecutor(String prefix)
+	{
+		try
+		{
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		}
+		catch(ReflectiveOperationException e)
+		{
+			return Executors.newCachedThreadPool(daemonThreads(prefix));
+		}
+	} // newIoExecutor()
+
+	/**
+	 * Factory method: returns a fixed-size pool of daemon threads for
+	 *    CPU-bound work
+	 *
+	 * @param prefix	the name prefix of the threads
+	 * @param threads	the number of threads
+	 * @return			the pool
+	 */
+	static ExecutorService newCpuPool(String prefix, int threads)
+	{
+		return Executors.newFixedThreadPool(threads, daemonThreads(prefix));
+	} // newCpuPool()
+
+	/**
+	 * @param prefix	the name prefix of the threads
+	 * @return			a factory for named daemon threads
+	 */
+	static ThreadFactory daemonThreads(final String prefix)
+	{
+		final AtomicInteger count = new AtomicInteger();
+		return new ThreadFactory() {
+			public Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, prefix + "-" + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		};
+	} // daemonThreads()
+} // ThreadPools class
@@ -0,0 +1,424 @@
+package Maze;
+import Maze.Maze.Path;
+import cache.LruCache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Class TiledMazeFile reads a maze stored as separately compressed
+ *    square tiles, decompressing only the tiles a search touches, so a
+ *    library of large mazes can be kept compressed and still be
+ *    searched without loading any maze whole.
+ *
+ * The file holds:
+ * 			header	- int MAGIC, int VERSION, long rows, long cols,
+ * 					  int tileSide, int 0
+ * 			index	- one long per tile, the file offset of its data,
+ * 					  tiles in row-major order, and one more long, the
+ * 					  end of the last tile
+ * 			tiles	- the cells of each tile, row-major within the
+ * 					  tile, 2 bits each as in MazeFile (EAST and SOUTH
+ * 					  open), deflated on their own
+ *    Tiles on the south and east edges of the maze hold only the cells
+ *    that exist.
+ *
+ * Decompressed tiles are kept in an LruCache bounded by their bytes,
+ *    and the last tile used is remembered, so walking inside one tile
+ *    does not touch the cache. stats() reports the compression ratio
+ *    and how fast tiles have been decoded.
+ *
+ * TiledMazeFile is a CellGraph whose cell ids are row * cols + col,
+ *    as in MazeFile. Safe for use from many threads.
+ */
+public class TiledMazeFile implements CellGraph, Closeable
+{
+///// Constructors /////////////////////////////////////////////////
+	/**
+	 * Default constructor: called by open()
+	 */
+	private TiledMazeFile(FileChannel channel, long rows, long cols, int tileSide,
+			long[] offsets, long cacheBytes)
+	{
+		this.channel = channel;
+		this.rows = rows;
+		this.cols = cols;
+		this.tileSide = tileSide;
+		this.offsets = offsets;
+		tileCols = (cols + tileSide - 1) / tileSide;
+		tiles = new LruCache<Long, byte[]>(cacheBytes, new LruCache.Weigher<byte[]>() {
+			public long weigh(byte[] tile) { return tile.length; }
+		});
+	} // default TiledMazeFile constructor
+
+///// Static Methods ///////////////////////////////////////////////
+	/**
+	 * Factory method: opens a tiled maze file for reading
+	 *
+	 * @param file			a file written by write()
+	 * @param cacheBytes	the bytes of decompressed tiles to keep
+	 * @return				the maze
+	 * @throws IOException	if the file cannot be read, or is not a
+	 * 						tiled maze file
+	 */
+	public static TiledMazeFile open(java.nio.file.Path file, long cacheBytes)
+			throws IOException
+	{
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try
+		{
+			ByteBuffer header = ByteBuffer.allocate(HEADER);
+			readFully(channel, header, 0);
+			header.flip();
+			if(header.getInt() != MAGIC || header.getInt() != VERSION)
+				throw new IOException(file + " is not a tiled maze file");
+			long rows = header.getLong();
+			long cols = header.getLong();
+			int tileSide = header.getInt();
+			if(rows < 1 || cols < 1 || tileSide < 1 || tileSide > MAX_TILE_SIDE)
+				throw new IOException(file + " has " + rows + " x " + cols
+						+ " cells in tiles of " + tileSide);
+
+			long tileCount = tileCount(rows, cols, tileSide);
+			ByteBuffer index = ByteBuffer.allocate(Math.toIntExact((tileCount + 1) * 8));
+			readFully(channel, index, HEADER);
+			index.flip();
+			long[] offsets = new long[(int) tileCount + 1];
+			index.asLongBuffer().get(offsets);
+			return new TiledMazeFile(channel, rows, cols, tileSide, offsets, cacheBytes);
+		}
+		catch(IOException | RuntimeException e)
+		{
+			channel.close();
+			throw e;
+		}
+	} // open()
+
+	/**
+	 * Output method: stores a maze as compressed tiles
+	 *
+	 * @param maze		the maze, with a cell at every (row, col) for
+	 * 						0 <= row < rows and 0 <= col < cols
+	 * @param rows		the number of rows
+	 * @param cols		the number of columns
+	 * @param tileSide	the number of rows (and columns) in a tile, at
+	 * 						most 32768
+	 * @param file		the file to write (replaced if it exists)
+	 * @throws IOException	if the file cannot be written
+	 */
+	public static void write(CellGraph maze, long rows, long cols, int tileSide,
+			java.nio.file.Path file) throws IOException
+	{
+		if(rows < 1 || cols < 1 || tileSide < 1 || tileSide > MAX_TILE_SIDE)
+			throw new IllegalArgumentException(rows + " x " + cols
+					+ " cells in tiles of " + tileSide);
+		long tileCount = tileCount(rows, cols, tileSide);
+		long tileRows = (rows + tileSide - 1) / tileSide;
+		long tileCols = (cols + tileSide - 1) / tileSide;
+
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+		{
+			ByteBuffer header = ByteBuffer.allocate(HEADER);
+			header.putInt(MAGIC).putInt(VERSION).putLong(rows).putLong(cols)
+				.putInt(tileSide).putInt(0);
+			header.flip();
+			writeFully(channel, header, 0);
+
+			// the tiles follow the index, which is written last
+			ByteBuffer index = ByteBuffer.allocate(Math.toIntExact((tileCount + 1) * 8));
+			long at = HEADER + index.capacity();
+			byte[] raw = new byte[(tileSide * tileSide + 3) / 4];
+			byte[] packed = new byte[raw.length + 64];
+			Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+			try
+			{
+				for(long tileRow = 0; tileRow < tileRows; tileRow++)
+				{
+					for(long tileCol = 0; tileCol < tileCols; tileCol++)
+					{
+						int length = packTile(maze, rows, cols, tileSide, tileRow, tileCol, raw);
+						deflater.reset();
+						deflater.setInput(raw, 0, length);
+						deflater.finish();
+						int size = 0;
+						while(!deflater.finished())
+						{
+							if(size == packed.length) packed = Arrays.copyOf(packed, size * 2);
+							size += deflater.deflate(packed, size, packed.length - size);
+						}
+						index.putLong(at);
+						writeFully(channel, ByteBuffer.wrap(packed, 0, size), at);
+						at += size;
+					}
+				}
+			}
+			finally
+			{
+				deflater.end();
+			}
+			index.putLong(at);
+			index.flip();
+			writeFully(channel, index, HEADER);
+		}
+	} // write()
+
+	/**
+	 * Utility method: packs the cells of one tile, 2 bits each
+	 *
+	 * @return	the number of bytes used in raw
+	 */
+	private static int packTile(CellGraph maze, long rows, long cols, int tileSide,
+			long tileRow, long tileCol, byte[] raw)
+	{
+		long row0 = tileRow * tileSide;
+		long col0 = tileCol * tileSide;
+		int height = (int) Math.min(tileSide, rows - row0);
+		int width = (int) Math.min(tileSide, cols - col0);
+		int length = (height * width + 3) / 4;
+		Arrays.fill(raw, 0, length, (byte) 0);
+		for(int r = 0; r < height; r++)
+		{
+			for(int c = 0; c < width; c++)
+			{
+				long cell = maze.cellId(row0 + r, col0 + c);
+				int bits = (maze.hasPath(cell, Path.EAST) ? EAST_BIT : 0)
+						| (maze.hasPath(cell, Path.SOUTH) ? SOUTH_BIT : 0);
+				int local = r * width + c;
+				raw[local >>> 2] |= bits << ((local & 3) * 2);
+			}
+		}
+		return length;
+	} // packTile()
+
+	private static long tileCount(long rows, long cols, int tileSide)
+	{
+		return ((rows + tileSide - 1) / tileSide) * ((cols + tileSide - 1) / tileSide);
+	} // tileCount()
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long at)
+			throws IOException
+	{
+		while(buffer.hasRemaining())
+		{
+			int n = channel.read(buffer, at);
+			if(n < 0) throw new IOException("unexpected end of file");
+			at += n;
+		}
+	} // readFully()
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long at)
+			throws IOException
+	{
+		while(buffer.hasRemaining())
+			at += channel.write(buffer, at);
+	} // writeFully()
+
+///// Instance Methods /////////////////////////////////////////////
+	@Override
+	public long cellId(long row, long col)
+	{
+		if(row < 0 || row >= rows || col < 0 || col >= cols) return NONE;
+		return row * cols + col;
+	} // cellId()
+
+	@Override
+	public long rowOf(long cell)
+	{
+		return cell / cols;
+	} // rowOf()
+
+	@Override
+	public long colOf(long cell)
+	{
+		return cell % cols;
+	} // colOf()
+
+	@Override
+	public boolean hasPath(long cell, Path direction)
+	{
+		long row = cell / cols;
+		long col = cell - row * cols;
+		switch(direction)
+		{
+		case NORTH:	return row > 0 && bit(row - 1, col, SOUTH_BIT);
+		case EAST:	return bit(row, col, EAST_BIT);
+		case SOUTH:	return bit(row, col, SOUTH_BIT);
+		case WEST:	return col > 0 && bit(row, col - 1, EAST_BIT);
+		default:	return false;
+		}
+	} // hasPath()
+
+	@Override
+	public long neighbor(long cell, Path direction)
+	{
+		switch(direction)
+		{
+		case NORTH:	return cell >= cols ? cell - cols : NONE;
+		case EAST:	return cell % cols < cols - 1 ? cell + 1 : NONE;
+		case SOUTH:	return cell < rows * cols - cols ? cell + cols : NONE;
+		case WEST:	return cell % cols > 0 ? cell - 1 : NONE;
+		default:	return NONE;
+		}
+	} // neighbor()
+
+	/**
+	 * @return	the size of the cells uncompressed (2 bits each) divided
+	 * 				by their size in the file
+	 */
+	public double compressionRatio()
+	{
+		long raw = 0;
+		for(long t = 0; t < offsets.length - 1; t++)
+		{
+			long tileRow = t / tileCols;
+			long tileCol = t % tileCols;
+			raw += (tileHeight(tileRow) * tileWidth(tileCol) + 3) / 4;
+		}
+		return (double) raw / (offsets[offsets.length - 1] - offsets[0]);
+	} // compressionRatio()
+
+	/**
+	 * @return	the compression ratio, the tiles decoded and how fast,
+	 * 				and the counters of the tile cache
+	 */
+	public String stats()
+	{
+		long bytes = decodedBytes.sum();
+		long nanos = Math.max(1, decodeNanos.sum());
+		return String.format("%d tiles of %d x %d, ratio %.1f:1; decoded %d tiles,"
+				+ " %.1f MB at %.1f MB/s; cache %s",
+				offsets.length - 1, tileSide, tileSide, compressionRatio(),
+				decodedTiles.sum(), bytes / 1e6, bytes * 1e3 / nanos, tiles);
+	} // stats()
+
+	@Override
+	public void close() throws IOException
+	{
+		channel.close();
+	} // close()
+
+	/**
+	 * @return	true if the given bit of the cell at (row, col) is set
+	 */
+	private boolean bit(long row, long col, int bit)
+	{
+		long tileRow = row / tileSide;
+		long tileCol = col / tileSide;
+		byte[] tile = tile(tileRow * tileCols + tileCol);
+		int local = (int) (row - tileRow * tileSide) * tileWidth(tileCol)
+				+ (int) (col - tileCol * tileSide);
+		return (tile[local >>> 2] & (bit << ((local & 3) * 2))) != 0;
+	} // bit()
+
+	/**
+	 * Utility method: returns the packed cells of a tile, decoding it
+	 *    if it is not cached
+	 */
+	private byte[] tile(final long number)
+	{
+		Tile last = lastTile;
+		if(last != null && last.number == number)
+			return last.cells;
+
+		byte[] cells = tiles.get(number, new LruCache.Loader<Long, byte[]>() {
+			public byte[] load(Long key) { return decode(number); }
+		});
+		lastTile = new Tile(number, cells);
+		return cells;
+	} // tile()
+
+	/**
+	 * Utility method: reads and inflates one tile
+	 */
+	private byte[] decode(long number)
+	{
+		long start = System.nanoTime();
+		int t = (int) number;
+		ByteBuffer packed = ByteBuffer.allocate((int) (offsets[t + 1] - offsets[t]));
+		byte[] cells = new byte[(int) ((tileHeight(number / tileCols)
+				* tileWidth(number % tileCols) + 3) / 4)];
+		Inflater inflater = new Inflater();
+		try
+		{
+			readFully(channel, packed, offsets[t]);
+			inflater.setInput(packed.array());
+			int size = 0;
+			while(size < cells.length && !inflater.finished())
+				size += inflater.inflate(cells, size, cells.length - size);
+			if(size < cells.length)
+				throw new IOException("tile " + number + " is truncated");
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+		catch(DataFormatException e)
+		{
+			throw new UncheckedIOException(new IOException("tile " + number + " is corrupt", e));
+		}
+		finally
+		{
+			inflater.end();
+		}
+		decodedTiles.increment();
+		decodedBytes.add(cells.length);
+		decodeNanos.add(System.nanoTime() - start);
+		return cells;
+	} // decode()
+
+	private long tileHeight(long tileRow)
+	{
+		return Math.min(tileSide, rows - tileRow * tileSide);
+	} // tileHeight()
+
+	private int tileWidth(long tileCol)
+	{
+		return (int) Math.min(tileSide, cols - tileCol * tileSide);
+	} // tileWidth()
+
+///// Instance Fields //////////////////////////////////////////////
+	public final long rows;
+	public final long cols;
+	public final int tileSide;				// rows (and columns) per tile
+	private final long tileCols;			// tiles per row of tiles
+	private final long[] offsets;			// of each tile, then the end
+	private final FileChannel channel;
+	private final LruCache<Long, byte[]> tiles;
+	private volatile Tile lastTile;			// the tile used most recently
+	private final LongAdder decodedTiles = new LongAdder();
+	private final LongAdder decodedBytes = new LongAdder();
+	private final LongAdder decodeNanos = new LongAdder();
+
+	private static final int MAGIC = 0x4d5a544c;	// "MZTL"
+	private static final int VERSION = 1;
+	private static final int HEADER = 32;			// bytes before the index
+	private static final int EAST_BIT = 1;
+	private static final int SOUTH_BIT = 2;
+	private static final int MAX_TILE_SIDE = 1 << 15;	// 256MB of cells
+
+///// Inner Classes ////////////////////////////////////////////////
+	/**
+	 * Class pairs a tile with its number, so that both are read together
+	 */
+	private static final class Tile
+	{
+		private Tile(long number, byte[] cells)
+		{
+			this.number = number;
+			this.cells = cells;
+		} // Tile constructor
+
+		final long number;
+		final byte[] cells;
+	} // Tile class
+} // TiledMazeFile class
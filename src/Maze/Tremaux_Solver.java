@@ -0,0 +1,138 @@
+package Maze;
+import Maze.Maze.Path;
+
+/**
+ * Tremaux_Solver inherits from WalkingSolver. It implements Trémaux's
+ *    algorithm, which finds a way through any maze, loops and all, by
+ *    marking each passage every time it walks through it:
+ * 			- at a cell seen for the first time, take an unmarked
+ * 			  passage if there is one, else go back
+ * 			- at a cell seen before, entered through a passage marked
+ * 			  once, go back the way it came
+ * 			- otherwise take the passage with the fewest marks, never
+ * 			  one marked twice
+ *    Every passage is walked at most twice, so the walk is at most
+ *    4 moves per cell; if it comes back to the start with nowhere to
+ *    go, the end can't be reached. On reaching the end, the passages
+ *    marked once are the path.
+ *
+ * A mark count is 0, 1 or 2, so it takes 2 bits. Each cell holds the
+ *    counts of its EAST and SOUTH passages (its NORTH and WEST ones are
+ *    held by its neighbors), i.e. 4 bits per cell, 2 cells per byte
+ *    of one byte array, in place of a SolutionCell object per cell.
+ */
+public class Tremaux_Solver extends WalkingSolver
+{
+///// Constructors /////////////////////////////////////////////////
+	/**
+	 * Default Tremaux_Solver Constructor: walks from mazeStart to
+	 * mazeEnd
+	 *
+	 * @param inputMaze		the Maze this Solver will attempt to
+	 * 						   solve
+	 */
+	public Tremaux_Solver(Maze inputMaze) {
+		this(inputMaze, inputMaze.mazeStart.row, inputMaze.mazeStart.col,
+				inputMaze.mazeEnd.row, inputMaze.mazeEnd.col);
+	} // Tremaux_Solver default constructor
+
+	/**
+	 * Endpoint Tremaux_Solver Constructor: walks between two given
+	 * cells
+	 *
+	 * @param inputMaze		the Maze this Solver will attempt to
+	 * 						   solve
+	 * @param fromRow		the row of the first cell of the path
+	 * @param fromCol		the column of the first cell of the path
+	 * @param toRow			the row of the last cell of the path
+	 * @param toCol			the column of the last cell of the path
+	 * @throws IndexOutOfBoundsException	if either cell is outside
+	 * 						   the maze
+	 */
+	public Tremaux_Solver(Maze inputMaze, int fromRow, int fromCol, int toRow, int toCol) {
+		super(inputMaze, fromRow, fromCol, toRow, toCol,
+				4L * inputMaze.rowCount * inputMaze.colCount);
+		marks = new byte[(inputMaze.cells.length + 1) / 2];
+	} // Tremaux_Solver endpoint constructor
+
+///// Instance Methods /////////////////////////////////////////////
+	/**
+	 * @return	the next passage by Trémaux's rules, marked once more,
+	 * 				or null if every passage out of the start is
+	 * 				marked twice
+	 */
+	@Override
+	protected Path nextMove()
+	{
+		// the passage the walker came in by, if any
+		Path back = walked == 0 ? null : DIRECTIONS[(heading.ordinal() + 2) & 3];
+
+		// look at the other passages
+		Path fewest = null;
+		int fewestMarks = 2;
+		boolean seen = false;
+		for(int i = 0; i < DIRECTIONS.length; i++)
+		{
+			Path direction = DIRECTIONS[i];
+			if(direction == back || !maze.isOpen(at, direction)) continue;
+			int marked = marks(at, direction);
+			if(marked > 0) seen = true;
+			if(marked < fewestMarks)
+			{
+				fewest = direction;
+				fewestMarks = marked;
+			}
+		}
+
+		Path choice;
+		if(back != null && seen && marks(at, back) == 1)
+			choice = back;			// an old cell by a new passage: turn around
+		else if(fewest != null && fewestMarks == 0)
+			choice = fewest;		// explore
+		else if(back != null && marks(at, back) == 1)
+			choice = back;			// a dead end, or all explored: go back
+		else
+			choice = fewest;		// marked once, toward the start; or none
+		if(choice != null) mark(at, choice);
+		return choice;
+	} // nextMove()
+
+	/**
+	 * @return	the number of marks on the passage out of a cell in the
+	 * 				given direction
+	 */
+	private int marks(int index, Path direction)
+	{
+		int owner = index;
+		int bit = 0;		// 0 for the EAST passage, 2 for SOUTH
+		switch(direction)
+		{
+		case NORTH:	owner = maze.neighborIndex(index, Path.NORTH); bit = 2; break;
+		case EAST:	bit = 0; break;
+		case SOUTH:	bit = 2; break;
+		case WEST:	owner = maze.neighborIndex(index, Path.WEST); bit = 0; break;
+		}
+		return (marks[owner >>> 1] >>> ((owner & 1) * 4 + bit)) & 3;
+	} // marks()
+
+	/**
+	 * Utility method: adds a mark to the passage out of a cell in the
+	 *    given direction
+	 */
+	private void mark(int index, Path direction)
+	{
+		int owner = index;
+		int bit = 0;
+		switch(direction)
+		{
+		case NORTH:	owner = maze.neighborIndex(index, Path.NORTH); bit = 2; break;
+		case EAST:	bit = 0; break;
+		case SOUTH:	bit = 2; break;
+		case WEST:	owner = maze.neighborIndex(index, Path.WEST); bit = 0; break;
+		}
+		marks[owner >>> 1] += (byte) (1 << ((owner & 1) * 4 + bit));
+	} // mark()
+
+///// Instance Fields //////////////////////////////////////////////
+	private final byte[] marks;		// 2 bits per passage, 2 cells per byte
+}
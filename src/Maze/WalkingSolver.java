@@ -0,0 +1,153 @@
+package Maze;
+import Maze.Maze.Path;
+
+import java.util.Arrays;
+
+/**
+ * Abstract Class WalkingSolver implements a solver that walks the maze
+ *    one cell at a time, the way a person in the maze would, instead
+ *    of searching it: it knows only the cell it stands in, the way it
+ *    faces, and whatever marks its algorithm leaves. It keeps no
+ *    solution array (no SolutionCell is allocated), so a walk costs
+ *    O(1) memory per cell of the maze, or none at all.
+ *
+ * Derived classes implement nextMove(), which picks the direction of
+ *    each move. step() makes one move; the walk ends at the end cell,
+ *    when nextMove() gives up, or after a number of moves set by the
+ *    derived class, past which the end can't be reachable.
+ *
+ * The path is kept as a stack of moves: a move that undoes the move
+ *    on top of the stack pops it, so dead ends walked into and back
+ *    out of leave nothing behind. On a perfect maze the stack holds
+ *    the only path from start to the current cell; in general it
+ *    holds a walk between them with the backtracking taken out. Its
+ *    size is that of the path, i.e. of the result.
+ */
+abstract class WalkingSolver extends MazeSolver
+{
+///// Constructors /////////////////////////////////////////////////
+	/**
+	 * Endpoint constructor
+	 *
+	 * @param inputMaze		the Maze this Solver will attempt to
+	 * 						   solve
+	 * @param fromRow		the row of the first cell of the path
+	 * @param fromCol		the column of the first cell of the path
+	 * @param toRow			the row of the last cell of the path
+	 * @param toCol			the column of the last cell of the path
+	 * @param maxMoves		the walk gives up after this many moves
+	 * @throws IndexOutOfBoundsException	if either cell is outside
+	 * 						   the maze
+	 */
+	protected WalkingSolver(Maze inputMaze, int fromRow, int fromCol, int toRow, int toCol,
+			long maxMoves)
+	{
+		super(inputMaze, inputMaze.checkedCellAt(fromRow, fromCol),
+				inputMaze.checkedCellAt(toRow, toCol), false);
+		this.maxMoves = maxMoves;
+		at = start.index;
+		previous = -1;
+		heading = Path.SOUTH;	// as if entering through the opening of mazeStart
+	} // WalkingSolver endpoint constructor
+
+///// Instance Methods /////////////////////////////////////////////
+	/**
+	 * Utility method: the direction of the next move from the cell
+	 *    the walker stands in. Called only when it isn't the end cell.
+	 *
+	 * @return	an open direction out of the current cell, or null to
+	 * 				give up
+	 */
+	protected abstract Path nextMove();
+
+	/**
+	 * Utility method: makes the next move of the walk. The first call
+	 *    only reports the start cell.
+	 */
+	@Override
+	protected int step()
+	{
+		if(over) return -1;
+		if(!begun)
+		{
+			begun = true;
+			return at;
+		}
+		Path direction = at == end.index || walked >= maxMoves ? null : nextMove();
+		if(direction == null)
+		{
+			over = true;
+			solved = at == end.index;
+			return -1;
+		}
+
+		expanded();
+		previous = at;
+		at = maze.neighborIndex(at, direction);
+		heading = direction;
+		walked++;
+		time++;
+		int move = direction.ordinal();
+		if(count > 0 && moves[count - 1] == ((move + 2) & 3))
+			count--;
+		else
+		{
+			if(count == moves.length) moves = Arrays.copyOf(moves, count * 2);
+			moves[count++] = (byte) move;
+		}
+		return at;
+	} // step()
+
+	/**
+	 * @return	the number of moves on the path to the current cell
+	 */
+	@Override
+	protected int depth(int index)
+	{
+		return count;
+	} // depth()
+
+	/**
+	 * @return	the cell the walker just left
+	 */
+	@Override
+	protected int parentOf(int index)
+	{
+		return previous;
+	} // parentOf()
+
+	/**
+	 * Output method: returns the path walked, from start to end, with
+	 *    the backtracking taken out
+	 *
+	 * @return	the path, or null if the walk has not reached the end
+	 */
+	@Override
+	public MazePath getPath()
+	{
+		if(!solved) return null;
+		MazePath.Builder builder = new MazePath.Builder(start.row, start.col);
+		for(int i = 0; i < count; i++)
+			builder.add(DIRECTIONS[moves[i]]);
+		return builder.build();
+	} // getPath()
+
+	/**
+	 * @return	the number of moves made so far, backtracking included
+	 */
+	public long moves()
+	{
+		return walked;
+	} // moves()
+
+///// Instance Fields //////////////////////////////////////////////
+	protected int at;				// the storage index of the current cell
+	protected Path heading;			// the direction of the last move
+	protected long walked;			// moves made
+	private int previous;			// the cell before, or -1
+	private final long maxMoves;
+	private byte[] moves = new byte[64];	// the path, as Path ordinals
+	private int count;				// moves on the path
+	private boolean begun;			// the start cell has been reported
+	private boolean over;			// the walk has ended
+} // WalkingSolver class
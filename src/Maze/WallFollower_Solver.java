@@ -0,0 +1,65 @@
+package Maze;
+import Maze.Maze.Path;
+
+/**
+ * WallFollower_Solver inherits from WalkingSolver. It implements
+ *    the left-hand rule: the walker keeps its left hand on the wall,
+ *    i.e. at each cell takes the first open way of left, straight
+ *    ahead, right and back. It needs no memory at all beyond its
+ *    position and heading.
+ *
+ * On a perfect maze, such as those Maze.mazify() generates, the walls
+ *    are one connected tree, and following them visits every cell,
+ *    so the walker reaches the end within 2 * (cells - 1) moves. On a
+ *    maze with loops it may circle an island forever; it gives up
+ *    after 4 moves per cell, which is more than any cycle of the
+ *    walk can take.
+ */
+public class WallFollower_Solver extends WalkingSolver
+{
+///// Constructors /////////////////////////////////////////////////
+	/**
+	 * Default WallFollower_Solver Constructor: walks from mazeStart
+	 * to mazeEnd
+	 *
+	 * @param inputMaze		the Maze this Solver will attempt to
+	 * 						   solve
+	 */
+	public WallFollower_Solver(Maze inputMaze) {
+		this(inputMaze, inputMaze.mazeStart.row, inputMaze.mazeStart.col,
+				inputMaze.mazeEnd.row, inputMaze.mazeEnd.col);
+	} // WallFollower_Solver default constructor
+
+	/**
+	 * Endpoint WallFollower_Solver Constructor: walks between two
+	 * given cells
+	 *
+	 * @param inputMaze		the Maze this Solver will attempt to
+	 * 						   solve
+	 * @param fromRow		the row of the first cell of the path
+	 * @param fromCol		the column of the first cell of the path
+	 * @param toRow			the row of the last cell of the path
+	 * @param toCol			the column of the last cell of the path
+	 * @throws IndexOutOfBoundsException	if either cell is outside
+	 * 						   the maze
+	 */
+	public WallFollower_Solver(Maze inputMaze, int fromRow, int fromCol, int toRow, int toCol) {
+		super(inputMaze, fromRow, fromCol, toRow, toCol,
+				4L * inputMaze.rowCount * inputMaze.colCount);
+	} // WallFollower_Solver endpoint constructor
+
+///// Instance Methods /////////////////////////////////////////////
+	/**
+	 * @return	the first open way of left, ahead, right and back
+	 */
+	@Override
+	protected Path nextMove()
+	{
+		for(int turn = -1; turn <= 2; turn++)
+		{
+			Path direction = DIRECTIONS[(heading.ordinal() + turn) & 3];
+			if(maze.isOpen(at, direction)) return direction;
+		}
+		return null;	// a cell with no way out
+	} // nextMove()
+}
@@ -0,0 +1,338 @@
+package cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Class implements a generic least-recently-used cache bounded by
+ *    total weight rather than by entry count. Each value is weighed
+ *    once, when it is added; when the total goes over the bound the
+ *    least recently used entries are evicted until it fits.
+ *
+ * All methods are safe to call from many threads. The map itself is
+ *    guarded by one lock held only for the map update, and values are
+ *    loaded outside the lock; concurrent get() calls for a key that
+ *    is being loaded wait for that one load rather than repeat it.
+ *
+ * @param <K> the key type; must implement equals() and hashCode()
+ * @param <V> the value type
+ */
+public class LruCache<K, V>
+{
+///// Constructors //////////////////////////////////////////////////
+	/**
+	 * Default constructor
+	 *
+	 * @param maxWeight		the total weight the cache may hold
+	 * @param weigher		gives the weight of each value
+	 */
+	public LruCache(long maxWeight, Weigher<? super V> weigher)
+	{
+		if(maxWeight < 0)
+			throw new IllegalArgumentException("maxWeight < 0");
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+		// access order: iteration starts at the least recently used
+		entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+		loading = new HashMap<K, CompletableFuture<V>>();
+	} // default LruCache constructor
+
+///// Instance Methods //////////////////////////////////////////////
+	/**
+	 * Utility method: looks up a value without loading it
+	 *
+	 * @param key	the key to look up
+	 * @return		the cached value, or null if there is none
+	 */
+	public V getIfPresent(K key)
+	{
+		lock.lock();
+		try
+		{
+			Entry<V> entry = entries.get(key);
+			if(entry == null)
+			{
+				misses++;
+				return null;
+			}
+			hits++;
+			return entry.value;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	} // getIfPresent()
+
+	/**
+	 * Utility method: looks up a value, loading and caching it on a
+	 *    miss. If another thread is already loading the same key,
+	 *    waits for that load instead of starting another.
+	 *
+	 * @param key		the key to look up
+	 * @param loader	computes the value on a miss
+	 * @return			the cached or newly loaded value
+	 * @throws RuntimeException	whatever the loader threw
+	 */
+	public V get(K key, Loader<? super K, ? extends V> loader)
+	{
+		CompletableFuture<V> pending;
+		CompletableFuture<V> mine = null;
+
+		lock.lock();
+		try
+		{
+			Entry<V> entry = entries.get(key);
+			if(entry != null)
+			{
+				hits++;
+				return entry.value;
+			}
+			misses++;
+			pending = loading.get(key);
+			if(pending == null)
+			{
+				mine = new CompletableFuture<V>();
+				loading.put(key, mine);
+				pending = mine;
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+
+		if(mine == null)
+			return await(pending);
+
+		V value;
+		try
+		{
+			value = loader.load(key);
+		}
+		catch(RuntimeException | Error e)
+		{
+			lock.lock();
+			try
+			{
+				loading.remove(key);
+			}
+			finally
+			{
+				lock.unlock();
+			}
+			mine.completeExceptionally(e);
+			throw e;
+		}
+
+		lock.lock();
+		try
+		{
+			loading.remove(key);
+			store(key, value);
+		}
+		finally
+		{
+			lock.unlock();
+		}
+		mine.complete(value);
+		return value;
+	} // get()
+
+	/**
+	 * Utility method: adds or replaces a value
+	 *
+	 * @param key	the key of the value
+	 * @param value	the value to cache
+	 */
+	public void put(K key, V value)
+	{
+		lock.lock();
+		try
+		{
+			store(key, value);
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	} // put()
+
+	/**
+	 * Utility method: removes a value, if present
+	 *
+	 * @param key	the key of the value
+	 */
+	public void invalidate(K key)
+	{
+		lock.lock();
+		try
+		{
+			Entry<V> entry = entries.remove(key);
+			if(entry != null) weight -= entry.weight;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	} // invalidate()
+
+	/**
+	 * Utility method: adds an entry and evicts from the least recently
+	 *    used end until the total weight fits. A value heavier than
+	 *    the whole cache is not stored. Caller holds the lock.
+	 */
+	private void store(K key, V value)
+	{
+		long w = weigher.weigh(value);
+		Entry<V> old = entries.remove(key);
+		if(old != null) weight -= old.weight;
+		if(w > maxWeight) return;
+
+		entries.put(key, new Entry<V>(value, w));
+		weight += w;
+
+		Iterator<Entry<V>> eldest = entries.values().iterator();
+		while(weight > maxWeight && eldest.hasNext())
+		{
+			Entry<V> victim = eldest.next();
+			eldest.remove();
+			weight -= victim.weight;
+			evictions++;
+		}
+	} // store()
+
+	/**
+	 * Utility method: waits for another thread's load, passing on
+	 *    its failure unchanged
+	 */
+	private V await(CompletableFuture<V> pending)
+	{
+		try
+		{
+			return pending.join();
+		}
+		catch(CompletionException e)
+		{
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if(cause instanceof Error) throw (Error) cause;
+			throw e;
+		}
+	} // await()
+
+	/**
+	 * @return	the number of lookups that found a cached value
+	 */
+	public long hits()
+	{
+		lock.lock();
+		try { return hits; } finally { lock.unlock(); }
+	} // hits()
+
+	/**
+	 * @return	the number of lookups that found no cached value
+	 */
+	public long misses()
+	{
+		lock.lock();
+		try { return misses; } finally { lock.unlock(); }
+	} // misses()
+
+	/**
+	 * @return	the number of entries evicted to make room
+	 */
+	public long evictions()
+	{
+		lock.lock();
+		try { return evictions; } finally { lock.unlock(); }
+	} // evictions()
+
+	/**
+	 * @return	the total weight of the cached values
+	 */
+	public long weight()
+	{
+		lock.lock();
+		try { return weight; } finally { lock.unlock(); }
+	} // weight()
+
+	/**
+	 * @return	the number of cached values
+	 */
+	public int size()
+	{
+		lock.lock();
+		try { return entries.size(); } finally { lock.unlock(); }
+	} // size()
+
+	@Override
+	public String toString()
+	{
+		lock.lock();
+		try
+		{
+			return "entries " + entries.size() + ", weight " + weight + "/" + maxWeight
+					+ ", hits " + hits + ", misses " + misses
+					+ ", evictions " + evictions;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	} // toString()
+
+///// Instance Fields ///////////////////////////////////////////////
+	private final long maxWeight;
+	private final Weigher<? super V> weigher;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final LinkedHashMap<K, Entry<V>> entries;		// guarded by lock
+	private final Map<K, CompletableFuture<V>> loading;		// guarded by lock
+	private long weight;									// guarded by lock
+	private long hits;
+	private long misses;
+	private long evictions;
+
+///// Inner Classes /////////////////////////////////////////////////
+	/**
+	 * Interface gives the weight of a value, in whatever unit the
+	 *    maxWeight of the cache is given in
+	 *
+	 * @param <V> the value type
+	 */
+	public interface Weigher<V>
+	{
+		long weigh(V value);
+	} // Weigher interface
+
+	/**
+	 * Interface computes the value for a key on a cache miss
+	 *
+	 * @param <K> the key type
+	 * @param <V> the value type
+	 */
+	public interface Loader<K, V>
+	{
+		V load(K key);
+	} // Loader interface
+
+	/**
+	 * Class holds a cached value and its weight
+	 */
+	private static final class Entry<V>
+	{
+		private Entry(V value, long weight)
+		{
+			this.value = value;
+			this.weight = weight;
+		} // Entry constructor
+
+		final V value;
+		final long weight;
+	} // Entry class
+} // LruCache class
@@ -0,0 +1,182 @@
+package queue;
+
+import java.util.Arrays;
+
+/**
+ * Class implements a binary min-heap of int items drawn from a fixed
+ *    range [0, capacity), each with a long priority. Because the
+ *    items are small ints, the heap keeps the position of every item
+ *    in an array, so an item's priority can be changed, or the item
+ *    removed, in O(log n) without searching for it.
+ */
+public class IndexedMinHeap
+{
+///// Constructors //////////////////////////////////////////////////
+	/**
+	 * Default constructor
+	 *
+	 * @param capacity	one more than the largest item that will be
+	 * 						stored
+	 */
+	public IndexedMinHeap(int capacity)
+	{
+		heap = new int[Math.max(16, Math.min(capacity, 1024))];
+		priority = new long[capacity];
+		position = new int[capacity];
+		Arrays.fill(position, -1);
+		size = 0;
+	} // default IndexedMinHeap constructor
+
+///// Instance Methods //////////////////////////////////////////////
+	/**
+	 * Utility method: adds an item, or changes its priority if it is
+	 *    already in the heap
+	 *
+	 * @param item			the item, 0 <= item < capacity
+	 * @param newPriority	the priority of the item
+	 */
+	public void put(int item, long newPriority)
+	{
+		int at = position[item];
+		if(at < 0)
+		{
+			if(size == heap.length)
+				heap = Arrays.copyOf(heap, Math.min(priority.length, size * 2));
+			at = size++;
+			heap[at] = item;
+			position[item] = at;
+			priority[item] = newPriority;
+			siftUp(at);
+		}
+		else
+		{
+			long old = priority[item];
+			priority[item] = newPriority;
+			if(newPriority < old) siftUp(at);
+			else siftDown(at);
+		}
+	} // put()
+
+	/**
+	 * Utility method: removes an item if it is in the heap
+	 *
+	 * @param item	the item to remove
+	 */
+	public void remove(int item)
+	{
+		int at = position[item];
+		if(at < 0) return;
+
+		position[item] = -1;
+		size--;
+		if(at == size) return;	// it was the last leaf
+
+		int moved = heap[size];
+		heap[at] = moved;
+		position[moved] = at;
+		siftUp(at);
+		siftDown(position[moved]);
+	} // remove()
+
+	/**
+	 * Utility method: removes and returns the item with the lowest
+	 *    priority
+	 *
+	 * @return	the item, or -1 if the heap is empty
+	 */
+	public int poll()
+	{
+		if(size == 0) return -1;
+		int top = heap[0];
+		remove(top);
+		return top;
+	} // poll()
+
+	/**
+	 * @return	the lowest priority in the heap, or Long.MAX_VALUE if
+	 * 				the heap is empty
+	 */
+	public long peekPriority()
+	{
+		return size == 0 ? Long.MAX_VALUE : priority[heap[0]];
+	} // peekPriority()
+
+	/**
+	 * @param item	an item, 0 <= item < capacity
+	 * @return		true if the item is in the heap
+	 */
+	public boolean contains(int item)
+	{
+		return position[item] >= 0;
+	} // contains()
+
+	/**
+	 * @return	true if the heap is empty
+	 */
+	public boolean isEmpty()
+	{
+		return size == 0;
+	} // isEmpty()
+
+	/**
+	 * @return	the number of items in the heap
+	 */
+	public int size()
+	{
+		return size;
+	} // size()
+
+	/**
+	 * Utility method: empties the heap in O(size)
+	 */
+	public void clear()
+	{
+		for(int i = 0; i < size; i++)
+			position[heap[i]] = -1;
+		size = 0;
+	} // clear()
+
+	private void siftUp(int at)
+	{
+		int item = heap[at];
+		long p = priority[item];
+		while(at > 0)
+		{
+			int parent = (at - 1) >>> 1;
+			int above = heap[parent];
+			if(priority[above] <= p) break;
+			heap[at] = above;
+			position[above] = at;
+			at = parent;
+		}
+		heap[at] = item;
+		position[item] = at;
+	} // siftUp()
+
+	private void siftDown(int at)
+	{
+		int item = heap[at];
+		long p = priority[item];
+		int half = size >>> 1;
+		while(at < half)
+		{
+			int child = 2 * at + 1;
+			int right = child + 1;
+			if(right < size && priority[heap[right]] < priority[heap[child]])
+				child = right;
+			int below = heap[child];
+			if(p <= priority[below]) break;
+			heap[at] = below;
+			position[below] = at;
+			at = child;
+		}
+		heap[at] = item;
+		position[item] = at;
+	} // siftDown()
+
+///// Instance Fields ///////////////////////////////////////////////
+	int[] heap;				// the items, in heap order
+	final long[] priority;	// the priority of each item
+	final int[] position;	// the slot of each item in heap, or -1
+	int size;				// the number of items in the heap
+} // IndexedMinHeap class